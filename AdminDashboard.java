@@ -1,6 +1,8 @@
 package com.mycompany.projectgrading;
 import javax.swing.*;
 import java.awt.*;
+import java.io.File;
+import java.time.LocalDate;
 
 public class AdminDashboard extends JFrame {
     private User currentUser;
@@ -56,6 +58,8 @@ public class AdminDashboard extends JFrame {
             repaint();
         });
 
+        JButton buttonExport = createTextButton("Export Gradebook", 200, e -> exportGradebook());
+
         JButton buttonLogout = createTextButton("Logout", 500, e -> {
             new LoginPage().setVisible(true);
             dispose();
@@ -64,11 +68,40 @@ public class AdminDashboard extends JFrame {
         rightPanel.add(buttonCourseManagement);
         rightPanel.add(buttonEnrollStudent);
         rightPanel.add(buttonAssignTeacher);
+        rightPanel.add(buttonExport);
         rightPanel.add(buttonLogout);
 
         return rightPanel;
     }
 
+    /**
+     * Streams every course's grades to a CSV or JSON-lines file for auditors.
+     */
+    private void exportGradebook() {
+        JComboBox<GradebookExporter.Format> formatSelector = new JComboBox<>(GradebookExporter.Format.values());
+        JCheckBox gzipBox = new JCheckBox("Compress (gzip)");
+        Object[] fields = {"Format:", formatSelector, gzipBox};
+        if (JOptionPane.showConfirmDialog(this, fields, "Export Gradebook", JOptionPane.OK_CANCEL_OPTION) != JOptionPane.OK_OPTION) {
+            return;
+        }
+        GradebookExporter.Format format = (GradebookExporter.Format) formatSelector.getSelectedItem();
+        boolean gzip = gzipBox.isSelected();
+
+        JFileChooser chooser = new JFileChooser();
+        chooser.setSelectedFile(new File("gradebook_" + LocalDate.now() + "." + format.getExtension() + (gzip ? ".gz" : "")));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        File target = chooser.getSelectedFile();
+
+        BackgroundTasks.submitWithProgress(this, "Exporting gradebook",
+                task -> GradebookExporter.export(task, target.toPath(), format, gzip),
+                result -> JOptionPane.showMessageDialog(this, "Exported " + result.getRows() + " rows ("
+                        + result.getBytes() / 1024 + " KB) in " + result.getElapsedMs() + " ms ("
+                        + result.getRowsPerSecond() + " rows/sec).\nSaved to: " + target),
+                ex -> JOptionPane.showMessageDialog(this, "Error exporting the gradebook: " + ex.getMessage()));
+    }
+
     private JButton createTextButton(String text, int yPosition, java.awt.event.ActionListener listener) {
         JButton button = new JButton(text);
         button.setFont(new Font("Arial", Font.PLAIN, 14));
@@ -0,0 +1,330 @@
+package com.mycompany.projectgrading;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.HierarchyEvent;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Runs database work off the Swing event dispatch thread on a small bounded
+ * worker pool and hands the result back to the EDT. A cancelled or superseded
+ * task never publishes its result, and cancelling a task also cancels the
+ * statement it is executing so the server stops working on it.
+ *
+ * Settings: -Dui.workerThreads sets the number of workers (default 4) and
+ * -Dui.workerQueue the number of tasks that may wait for one (default 100).
+ */
+public class BackgroundTasks {
+    private static final int WORKER_THREADS = Integer.getInteger("ui.workerThreads", 4);
+    private static final int QUEUE_CAPACITY = Integer.getInteger("ui.workerQueue", 100);
+    private static final AtomicInteger THREAD_IDS = new AtomicInteger();
+
+    private static final ThreadPoolExecutor WORKERS = new ThreadPoolExecutor(
+            WORKER_THREADS, WORKER_THREADS, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(QUEUE_CAPACITY),
+            r -> {
+                Thread thread = new Thread(r, "db-worker-" + THREAD_IDS.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    // Statement.cancel() may open a connection of its own (MySQL sends KILL QUERY), so it never runs on the EDT
+    private static final ExecutorService CANCELLER = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "statement-canceller");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final ThreadLocal<Task> CURRENT = new ThreadLocal<>();
+
+    static {
+        WORKERS.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * The task running on the calling worker thread, or null outside a task.
+     */
+    static Task currentTask() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Work to run on a worker thread. Long loops should call
+     * {@link Task#checkCancelled()} between steps.
+     */
+    public interface Work<T> {
+        T run(Task task) throws Exception;
+    }
+
+    private interface ProgressListener {
+        void update(int done, int total, String note);
+    }
+
+    /**
+     * Runs the work in the background; exactly one of the callbacks is invoked
+     * on the EDT unless the task is cancelled first.
+     */
+    public static <T> Task submit(Work<T> work, Consumer<T> onSuccess, Consumer<Exception> onFailure) {
+        return start(new Task(null, 0), work, onSuccess, onFailure);
+    }
+
+    /**
+     * Runs a long job behind a progress dialog whose Cancel button cancels the task.
+     * The work reports its progress with {@link Task#setProgress}.
+     */
+    public static <T> Task submitWithProgress(Component parent, String title, Work<T> work,
+                                              Consumer<T> onSuccess, Consumer<Exception> onFailure) {
+        ProgressMonitor monitor = new ProgressMonitor(parent, title, "Starting...", 0, 100);
+        monitor.setMillisToDecideToPopup(100);
+        monitor.setMillisToPopup(300);
+
+        Task task = new Task(null, 0);
+        task.progress = (done, total, note) -> {
+            monitor.setMaximum(Math.max(total, 1));
+            monitor.setProgress(done);
+            monitor.setNote(note);
+        };
+        // The Cancel button is only visible through polling
+        Timer cancelPoll = new Timer(200, e -> {
+            if (monitor.isCanceled()) {
+                task.cancel();
+            }
+        });
+        task.onDone = () -> {
+            cancelPoll.stop();
+            monitor.close();
+        };
+        cancelPoll.start();
+        return start(task, work, onSuccess, onFailure);
+    }
+
+    private static <T> Task start(Task task, Work<T> work, Consumer<T> onSuccess, Consumer<Exception> onFailure) {
+        try {
+            task.future = WORKERS.submit(() -> {
+                if (!task.claim()) {
+                    return; // Cancelled while queued and already finished
+                }
+                T result;
+                CURRENT.set(task);
+                try {
+                    task.checkCancelled();
+                    result = work.run(task);
+                } catch (CancellationException ex) {
+                    task.finish(null);
+                    return;
+                } catch (Exception ex) {
+                    task.finish(() -> onFailure.accept(ex));
+                    return;
+                } finally {
+                    CURRENT.remove();
+                }
+                task.finish(() -> onSuccess.accept(result));
+            });
+        } catch (RejectedExecutionException ex) {
+            task.finish(() -> onFailure.accept(new Exception("Too many background tasks are waiting; please try again")));
+        }
+        return task;
+    }
+
+    /**
+     * One background execution.
+     */
+    public static class Task {
+        private final Loader loader;
+        private final long generation;
+        private volatile boolean cancelled;
+        private volatile Future<?> future;
+        private volatile ProgressListener progress;
+        private volatile Runnable onDone;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private final Set<Statement> executing = ConcurrentHashMap.newKeySet();
+
+        private Task(Loader loader, long generation) {
+            this.loader = loader;
+            this.generation = generation;
+        }
+
+        /**
+         * True once the task was cancelled or a newer load replaced it.
+         */
+        public boolean isCancelled() {
+            return cancelled || (loader != null && loader.isSuperseded(generation));
+        }
+
+        public void checkCancelled() {
+            if (isCancelled()) {
+                throw new CancellationException();
+            }
+        }
+
+        /**
+         * Stops the task at its next cancellation check and cancels the statement
+         * it is executing. The worker thread is not interrupted: an interrupt
+         * during socket or file I/O can break the pooled connection it is using.
+         */
+        public void cancel() {
+            cancelled = true;
+            Future<?> running = future;
+            if (running != null) {
+                running.cancel(false);
+                // Still queued: it never runs, so it is finished here
+                if (claim()) {
+                    finish(null);
+                }
+            }
+            for (Statement statement : executing) {
+                cancelStatement(statement);
+            }
+        }
+
+        // Whichever of the worker and cancel() claims the task first finishes it
+        private boolean claim() {
+            return claimed.compareAndSet(false, true);
+        }
+
+        // Called by InstrumentedStatement around each execution on this task's thread
+        void statementStarted(Statement statement) {
+            executing.add(statement);
+            if (isCancelled()) {
+                cancelStatement(statement);
+            }
+        }
+
+        void statementFinished(Statement statement) {
+            executing.remove(statement);
+        }
+
+        private void cancelStatement(Statement statement) {
+            CANCELLER.execute(() -> {
+                // Only if it is still running; a finished statement may already be serving someone else
+                if (executing.contains(statement)) {
+                    try {
+                        statement.cancel();
+                    } catch (SQLException ignored) {
+                        // The statement finished or the driver cannot cancel; the timeout still applies
+                    }
+                }
+            });
+        }
+
+        public void setProgress(int done, int total, String note) {
+            ProgressListener listener = progress;
+            if (listener != null && !isCancelled()) {
+                SwingUtilities.invokeLater(() -> listener.update(done, total, note));
+            }
+        }
+
+        private void finish(Runnable publish) {
+            SwingUtilities.invokeLater(() -> {
+                if (loader != null) {
+                    loader.finished(this);
+                }
+                if (onDone != null) {
+                    onDone.run();
+                }
+                if (publish != null && !isCancelled()) {
+                    publish.run();
+                }
+            });
+        }
+    }
+
+    /**
+     * Latest-request-wins loading for one view. Starting a load cancels the one
+     * still running, the view shows a wait cursor and an optional status text
+     * while loading, and loads stop when the view is closed.
+     */
+    public static class Loader {
+        private final Component view;
+        private final JLabel status;
+        private final AtomicLong generation = new AtomicLong();
+        private String idleStatus;
+        private boolean busy;
+        private Task current;
+
+        /**
+         * @param status a label that shows the loading message, or null
+         */
+        public Loader(Component view, JLabel status) {
+            this.view = view;
+            this.status = status;
+            view.addHierarchyListener(e -> {
+                if ((e.getChangeFlags() & HierarchyEvent.DISPLAYABILITY_CHANGED) != 0 && !view.isDisplayable()) {
+                    cancel();
+                }
+            });
+        }
+
+        /**
+         * Starts a load, replacing any that is still running. Call on the EDT.
+         */
+        public <T> Task load(String message, Work<T> work, Consumer<T> onSuccess, Consumer<Exception> onFailure) {
+            cancel();
+            Task task = new Task(this, generation.incrementAndGet());
+            current = task;
+            showBusy(message);
+            return start(task, work, onSuccess, onFailure);
+        }
+
+        public boolean isLoading() {
+            return current != null;
+        }
+
+        public void cancel() {
+            if (current != null) {
+                current.cancel();
+                current = null;
+                showIdle();
+            }
+        }
+
+        private boolean isSuperseded(long taskGeneration) {
+            return taskGeneration != generation.get();
+        }
+
+        private void finished(Task task) {
+            if (task == current) {
+                current = null;
+                showIdle();
+            }
+        }
+
+        private void showBusy(String message) {
+            if (!busy) {
+                busy = true;
+                idleStatus = status != null ? status.getText() : null;
+            }
+            view.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+            if (status != null) {
+                status.setText(message);
+            }
+        }
+
+        private void showIdle() {
+            if (!busy) {
+                return;
+            }
+            busy = false;
+            // null restores the cursor inherited from the parent
+            view.setCursor(null);
+            if (status != null) {
+                status.setText(idleStatus);
+            }
+        }
+    }
+}
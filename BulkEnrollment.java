@@ -0,0 +1,332 @@
+package com.mycompany.projectgrading;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Enrolls many students into many courses at once, from a selection or from a
+ * roster file. Each course costs one query for its current roster and one JDBC
+ * batch per -Ddb.enroll.batchSize new enrollments (default 1000), each in its
+ * own transaction, instead of a check and an insert per pair.
+ *
+ * The insert is a no-op for a pair that already exists, so a rerun or a
+ * concurrent enrollment never fails or duplicates; the new and already-enrolled
+ * counts come from the roster read just before the insert.
+ *
+ * A roster file is CSV or TSV with one enrollment per line: student id, then
+ * course id or name. A header row (student_id and course_id or course, in any
+ * order) is optional.
+ */
+public class BulkEnrollment {
+    static final int BATCH_SIZE = Integer.getInteger("db.enroll.batchSize", 1000);
+
+    /**
+     * Enrolls every student into every course. Ids that do not exist are
+     * reported and skipped.
+     *
+     * @param task the running task, for progress and cancellation; may be null
+     */
+    public static Result enroll(BackgroundTasks.Task task, Collection<Integer> studentIds, Collection<Integer> courseIds)
+            throws SQLException {
+        long started = System.nanoTime();
+        Result result = new Result();
+        Ids ids = Ids.load();
+        Map<Integer, Set<Integer>> byCourse = new LinkedHashMap<>();
+        for (int courseId : new LinkedHashSet<>(courseIds)) {
+            if (!ids.courseNames.containsKey(courseId)) {
+                result.errors.add(new GradeImporter.RowError(0, "Unknown course id " + courseId));
+                continue;
+            }
+            Set<Integer> students = new LinkedHashSet<>();
+            for (int studentId : studentIds) {
+                if (ids.students.contains(studentId)) {
+                    students.add(studentId);
+                }
+            }
+            byCourse.put(courseId, students);
+        }
+        for (int studentId : new LinkedHashSet<>(studentIds)) {
+            if (!ids.students.contains(studentId)) {
+                result.errors.add(new GradeImporter.RowError(0, "Unknown student id " + studentId));
+            }
+        }
+        write(task, byCourse, result);
+        result.elapsedMs = Math.max(1, (System.nanoTime() - started) / 1_000_000);
+        return result;
+    }
+
+    /**
+     * Enrolls the students listed in a roster file. Malformed lines, unknown
+     * students and unknown courses are reported with their line numbers and
+     * skipped.
+     *
+     * @param task the running task, for progress and cancellation; may be null
+     * @throws IllegalArgumentException when the header is malformed
+     */
+    public static Result importRoster(BackgroundTasks.Task task, Path file) throws SQLException, IOException {
+        long started = System.nanoTime();
+        Result result = new Result();
+        Ids ids = Ids.load();
+        Map<String, Integer> courseIdsByName = new HashMap<>();
+        ids.courseNames.forEach((id, name) -> courseIdsByName.put(name.toLowerCase(Locale.ROOT), id));
+
+        Map<Integer, Set<Integer>> byCourse = new LinkedHashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line = reader.readLine();
+            int lineNumber = 1;
+            if (line != null && line.startsWith("\uFEFF")) {
+                line = line.substring(1); // Byte order mark written by spreadsheet programs
+            }
+            String delimiter = line != null && line.indexOf('\t') >= 0 ? "\t" : ",";
+            int studentColumn = 0;
+            int courseColumn = 1;
+            if (line != null && isHeader(line, delimiter)) {
+                String[] names = line.split(delimiter, -1);
+                studentColumn = -1;
+                courseColumn = -1;
+                for (int i = 0; i < names.length; i++) {
+                    String name = GradeImporter.unquote(names[i]).toLowerCase(Locale.ROOT).replace(' ', '_');
+                    if (name.equals("student_id") || name.equals("student")) {
+                        studentColumn = i;
+                    } else if (name.equals("course_id") || name.equals("course") || name.equals("course_name")) {
+                        courseColumn = i;
+                    }
+                }
+                if (studentColumn == -1 || courseColumn == -1) {
+                    throw new IllegalArgumentException("The header needs a 'student_id' and a 'course' column");
+                }
+                line = reader.readLine();
+                lineNumber++;
+            }
+
+            for (; line != null; line = reader.readLine(), lineNumber++) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                result.rowsRead++;
+                String[] cells = line.split(delimiter, -1);
+                if (cells.length <= Math.max(studentColumn, courseColumn)) {
+                    result.errors.add(new GradeImporter.RowError(lineNumber, "Expected a student and a course"));
+                    continue;
+                }
+                String studentCell = GradeImporter.unquote(cells[studentColumn]);
+                int studentId;
+                try {
+                    studentId = Integer.parseInt(studentCell);
+                } catch (NumberFormatException ex) {
+                    result.errors.add(new GradeImporter.RowError(lineNumber, "Invalid student id: '" + studentCell + "'"));
+                    continue;
+                }
+                if (!ids.students.contains(studentId)) {
+                    result.errors.add(new GradeImporter.RowError(lineNumber, "Unknown student id " + studentId));
+                    continue;
+                }
+                String courseCell = GradeImporter.unquote(cells[courseColumn]);
+                Integer courseId = courseIdsByName.get(courseCell.toLowerCase(Locale.ROOT));
+                if (courseId == null && !courseCell.isEmpty() && courseCell.chars().allMatch(Character::isDigit)) {
+                    courseId = Integer.valueOf(courseCell);
+                }
+                if (courseId == null || !ids.courseNames.containsKey(courseId)) {
+                    result.errors.add(new GradeImporter.RowError(lineNumber, "Unknown course '" + courseCell + "'"));
+                    continue;
+                }
+                byCourse.computeIfAbsent(courseId, id -> new LinkedHashSet<>()).add(studentId);
+            }
+        }
+        write(task, byCourse, result);
+        result.elapsedMs = Math.max(1, (System.nanoTime() - started) / 1_000_000);
+        return result;
+    }
+
+    // Per course: one roster read, then the missing pairs in batches
+    private static void write(BackgroundTasks.Task task, Map<Integer, Set<Integer>> byCourse, Result result)
+            throws SQLException {
+        int total = 0;
+        for (Set<Integer> students : byCourse.values()) {
+            total += students.size();
+        }
+        int done = 0;
+        Set<Integer> enrolledStudents = new HashSet<>();
+        try (Connection connection = DatabaseConfig.getWriteConnection()) {
+            for (Map.Entry<Integer, Set<Integer>> course : byCourse.entrySet()) {
+                int courseId = course.getKey();
+                Set<Integer> existing = new HashSet<>();
+                try (PreparedStatement stmt = connection.prepareStatement(Query.ENROLLED_STUDENT_IDS.sql())) {
+                    stmt.setInt(1, courseId);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            existing.add(rs.getInt("student_id"));
+                        }
+                    }
+                }
+                List<Integer> missing = new ArrayList<>();
+                int added = 0;
+                for (int studentId : course.getValue()) {
+                    if (existing.contains(studentId)) {
+                        result.alreadyEnrolled++;
+                    } else {
+                        missing.add(studentId);
+                    }
+                }
+
+                for (int from = 0; from < missing.size(); from += BATCH_SIZE) {
+                    if (task != null) {
+                        task.checkCancelled();
+                    }
+                    List<Integer> batch = missing.subList(from, Math.min(missing.size(), from + BATCH_SIZE));
+                    int[] counts;
+                    connection.setAutoCommit(false);
+                    try (PreparedStatement insert = connection.prepareStatement(Query.INSERT_ENROLLMENT_IF_ABSENT.sql())) {
+                        for (int studentId : batch) {
+                            insert.setInt(1, studentId);
+                            insert.setInt(2, courseId);
+                            insert.addBatch();
+                        }
+                        counts = insert.executeBatch();
+                        connection.commit();
+                    } catch (SQLException ex) {
+                        connection.rollback();
+                        throw ex;
+                    } finally {
+                        connection.setAutoCommit(true);
+                    }
+                    // The no-op update reports 0 for a pair enrolled since the roster read
+                    // (MySQL only with useAffectedRows, see DatabaseBackend); SUCCESS_NO_INFO counts as added
+                    for (int i = 0; i < batch.size(); i++) {
+                        if (counts[i] == 0) {
+                            result.alreadyEnrolled++;
+                        } else {
+                            result.added++;
+                            added++;
+                            enrolledStudents.add(batch.get(i));
+                        }
+                    }
+                    if (task != null) {
+                        task.setProgress(done + from + batch.size(), Math.max(total, 1),
+                                result.added + " enrolled, " + result.alreadyEnrolled + " already enrolled");
+                    }
+                }
+                done += course.getValue().size();
+                if (added > 0) {
+                    // A returning student may still have grades in the course
+                    CourseStatsStore.invalidate(courseId);
+                    ClassRankIndex.invalidate(courseId);
+                    result.courses++;
+                }
+            }
+        } finally {
+            for (int studentId : enrolledStudents) {
+                StudentGpaCache.enrollmentAdded(studentId);
+            }
+            result.students = enrolledStudents.size();
+        }
+    }
+
+    private static boolean isHeader(String line, String delimiter) {
+        String first = GradeImporter.unquote(line.split(delimiter, -1)[0]);
+        return !first.isEmpty() && !Character.isDigit(first.charAt(0));
+    }
+
+    /**
+     * The student ids and course names that exist, for validation.
+     */
+    private static class Ids {
+        private final Set<Integer> students = new HashSet<>();
+        private final Map<Integer, String> courseNames = new HashMap<>();
+
+        static Ids load() throws SQLException {
+            Ids ids = new Ids();
+            try (Connection connection = DatabaseConfig.getReadConnection()) {
+                try (PreparedStatement stmt = connection.prepareStatement(Query.ALL_STUDENTS.sql());
+                     ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        ids.students.add(rs.getInt("student_id"));
+                    }
+                }
+                try (PreparedStatement stmt = connection.prepareStatement(Query.ALL_COURSES.sql());
+                     ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        ids.courseNames.put(rs.getInt("course_id"), rs.getString("name"));
+                    }
+                }
+            }
+            return ids;
+        }
+    }
+
+    /**
+     * What a bulk enrollment did: new and already-existing enrollments, the
+     * rejected ids or roster lines, and the time taken.
+     */
+    public static class Result {
+        private final List<GradeImporter.RowError> errors = new ArrayList<>();
+        private int rowsRead;
+        private int added;
+        private int alreadyEnrolled;
+        private int students;
+        private int courses;
+        private long elapsedMs;
+
+        /**
+         * Roster lines read; 0 for a selection.
+         */
+        public int getRowsRead() {
+            return rowsRead;
+        }
+
+        public int getAdded() {
+            return added;
+        }
+
+        public int getAlreadyEnrolled() {
+            return alreadyEnrolled;
+        }
+
+        /**
+         * The number of students and courses that gained an enrollment.
+         */
+        public int getStudents() {
+            return students;
+        }
+
+        public int getCourses() {
+            return courses;
+        }
+
+        /**
+         * Unknown ids and rejected roster lines; a line number of 0 means a selected id.
+         */
+        public List<GradeImporter.RowError> getErrors() {
+            return errors;
+        }
+
+        public long getElapsedMs() {
+            return elapsedMs;
+        }
+
+        /**
+         * E.g. "2950 enrolled, 50 already enrolled (2950 students in 3 courses)".
+         */
+        public String format() {
+            return added + " enrolled, " + alreadyEnrolled + " already enrolled ("
+                    + students + " students in " + courses + " courses)";
+        }
+    }
+}
@@ -0,0 +1,338 @@
+package com.mycompany.projectgrading;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class standing per course: each course keeps its graded, enrolled students
+ * in a {@link RankTree} ordered by final grade, highest first, with ties
+ * broken by student id. Rank of a student, the student at a rank and the top k
+ * take O(log n) (plus k) instead of sorting the course's rows.
+ *
+ * Grade writes and removed enrollments update the tree in place; changes that
+ * move many finals at once (weights, policy, recompute jobs, new enrollments)
+ * drop the course so it is reloaded on the next read. {@link #rebuildAll()}
+ * loads every course at startup, several courses at a time.
+ *
+ * Settings: -Ddb.rank.rebuildThreads sets how many courses load at once
+ * (default 4).
+ */
+public class ClassRankIndex {
+    private static final int REBUILD_THREADS = Integer.getInteger("db.rank.rebuildThreads", 4);
+    private static final AtomicInteger THREAD_IDS = new AtomicInteger();
+
+    private static final ConcurrentHashMap<Integer, CourseRanks> COURSES = new ConcurrentHashMap<>();
+    // Bumped by every change so a load that raced with one is not cached
+    private static final AtomicLong GENERATION = new AtomicLong();
+    private static final AtomicLong LOADS = new AtomicLong();
+    private static final AtomicLong UPDATES = new AtomicLong();
+    private static final AtomicLong QUERIES = new AtomicLong();
+
+    /**
+     * The student's standing in the course.
+     *
+     * @return the standing, or null when the student has no final grade there
+     */
+    public static Standing standing(int courseId, int studentId) throws SQLException {
+        CourseRanks ranks = get(courseId);
+        return ranks == null ? null : ranks.standing(studentId);
+    }
+
+    /**
+     * The student at a rank, 1 being the highest final grade.
+     *
+     * @return the standing, or null when fewer students are graded
+     */
+    public static Standing nth(int courseId, int rank) throws SQLException {
+        CourseRanks ranks = get(courseId);
+        return ranks == null ? null : ranks.nth(rank);
+    }
+
+    /**
+     * The k highest final grades, best first.
+     */
+    public static List<Standing> top(int courseId, int k) throws SQLException {
+        CourseRanks ranks = get(courseId);
+        return ranks == null ? new ArrayList<>() : ranks.top(k);
+    }
+
+    private static CourseRanks get(int courseId) throws SQLException {
+        QUERIES.incrementAndGet();
+        CourseRanks ranks = COURSES.get(courseId);
+        if (ranks == null) {
+            long generation = GENERATION.get();
+            ranks = load(courseId);
+            if (ranks != null && GENERATION.get() == generation) {
+                CourseRanks cached = COURSES.putIfAbsent(courseId, ranks);
+                if (cached != null) {
+                    ranks = cached;
+                }
+            }
+        }
+        return ranks;
+    }
+
+    /**
+     * Applies a grade write to a loaded course.
+     */
+    public static void gradeChanged(int courseId, int studentId, int finalBasisPoints) {
+        GENERATION.incrementAndGet();
+        CourseRanks ranks = COURSES.get(courseId);
+        if (ranks != null) {
+            ranks.put(studentId, finalBasisPoints);
+            UPDATES.incrementAndGet();
+        }
+    }
+
+    /**
+     * Takes a student out of a loaded course.
+     */
+    public static void enrollmentRemoved(int courseId, int studentId) {
+        GENERATION.incrementAndGet();
+        CourseRanks ranks = COURSES.get(courseId);
+        if (ranks != null) {
+            ranks.remove(studentId);
+            UPDATES.incrementAndGet();
+        }
+    }
+
+    /**
+     * Drops a course so it is reloaded on the next read.
+     */
+    public static void invalidate(int courseId) {
+        GENERATION.incrementAndGet();
+        COURSES.remove(courseId);
+    }
+
+    public static void invalidate(String courseName) {
+        GENERATION.incrementAndGet();
+        COURSES.values().removeIf(ranks -> ranks.name.equals(courseName));
+    }
+
+    /**
+     * Loads every course, REBUILD_THREADS at a time, replacing what is cached.
+     *
+     * @return the number of courses loaded
+     */
+    public static int rebuildAll() throws SQLException, InterruptedException {
+        List<Integer> courseIds = new ArrayList<>();
+        try (Connection connection = DatabaseConfig.getReadConnection();
+             PreparedStatement stmt = connection.prepareStatement(Query.ALL_COURSES.sql());
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                courseIds.add(rs.getInt("course_id"));
+            }
+        }
+
+        ExecutorService loaders = Executors.newFixedThreadPool(Math.max(1, REBUILD_THREADS), r -> {
+            Thread thread = new Thread(r, "rank-rebuild-" + THREAD_IDS.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            long generation = GENERATION.get();
+            List<Future<CourseRanks>> loads = new ArrayList<>();
+            for (int courseId : courseIds) {
+                loads.add(loaders.submit(() -> load(courseId)));
+            }
+            int loaded = 0;
+            for (Future<CourseRanks> load : loads) {
+                CourseRanks ranks = load.get();
+                if (ranks != null) {
+                    loaded++;
+                    // A write landed while loading; leave the course to load on first use
+                    if (GENERATION.get() == generation) {
+                        COURSES.put(ranks.courseId, ranks);
+                    }
+                }
+            }
+            return loaded;
+        } catch (ExecutionException ex) {
+            throw ex.getCause() instanceof SQLException ? (SQLException) ex.getCause()
+                    : new SQLException("Could not rebuild class ranks", ex.getCause());
+        } finally {
+            loaders.shutdownNow();
+        }
+    }
+
+    /**
+     * Runs {@link #rebuildAll()} in the background.
+     */
+    public static void rebuildAllInBackground() {
+        BackgroundTasks.submit(task -> rebuildAll(), courses -> { },
+                ex -> System.err.println("Could not load class ranks: " + ex.getMessage()));
+    }
+
+    private static CourseRanks load(int courseId) throws SQLException {
+        try (Connection connection = DatabaseConfig.getReadConnection()) {
+            String name;
+            try (PreparedStatement stmt = connection.prepareStatement(Query.COURSE_WEIGHTS_BY_ID.sql())) {
+                stmt.setInt(1, courseId);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (!rs.next()) {
+                        return null;
+                    }
+                    name = rs.getString("name");
+                }
+            }
+
+            // Served by ix_grades_course_final in rank order, so the tree is built without sorting
+            List<Long> keys = new ArrayList<>();
+            Map<Integer, Integer> finals = new HashMap<>();
+            try (PreparedStatement stmt = connection.prepareStatement(Query.COURSE_FINAL_GRADES.sql())) {
+                stmt.setInt(1, courseId);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        int studentId = rs.getInt("student_id");
+                        int finalGrade = rs.getInt("final_grade");
+                        keys.add(key(studentId, finalGrade));
+                        finals.put(studentId, finalGrade);
+                    }
+                }
+            }
+            long[] sorted = new long[keys.size()];
+            for (int i = 0; i < sorted.length; i++) {
+                sorted[i] = keys.get(i);
+            }
+            LOADS.incrementAndGet();
+            return new CourseRanks(courseId, name, RankTree.fromSorted(sorted), finals);
+        }
+    }
+
+    // Ascending keys run from the highest final to the lowest, then by student id
+    private static long key(int studentId, int finalBasisPoints) {
+        return ((long) (GradingPolicy.MAX_BASIS_POINTS - finalBasisPoints) << 32) | (studentId & 0xFFFFFFFFL);
+    }
+
+    private static int studentId(long key) {
+        return (int) key;
+    }
+
+    private static int finalGrade(long key) {
+        return GradingPolicy.MAX_BASIS_POINTS - (int) (key >>> 32);
+    }
+
+    public static String getStats() {
+        return "ClassRankIndex{courses=" + COURSES.size() +
+                ", loads=" + LOADS.get() +
+                ", updates=" + UPDATES.get() +
+                ", queries=" + QUERIES.get() + '}';
+    }
+
+    /**
+     * A student's place in a course: rank 1 is the highest final grade.
+     */
+    public static class Standing {
+        private final int studentId;
+        private final int finalGrade;
+        private final int rank;
+        private final int of;
+
+        private Standing(int studentId, int finalGrade, int rank, int of) {
+            this.studentId = studentId;
+            this.finalGrade = finalGrade;
+            this.rank = rank;
+            this.of = of;
+        }
+
+        public int getStudentId() {
+            return studentId;
+        }
+
+        /**
+         * The final grade in basis points.
+         */
+        public int getFinalGrade() {
+            return finalGrade;
+        }
+
+        public int getRank() {
+            return rank;
+        }
+
+        /**
+         * The number of graded students in the course.
+         */
+        public int getOf() {
+            return of;
+        }
+
+        /**
+         * E.g. "37 of 412".
+         */
+        public String format() {
+            return rank + " of " + of;
+        }
+    }
+
+    /**
+     * One course's tree and each ranked student's final grade, guarded by the
+     * object's lock.
+     */
+    private static class CourseRanks {
+        private final int courseId;
+        private final String name;
+        private final RankTree tree;
+        private final Map<Integer, Integer> finals;
+
+        CourseRanks(int courseId, String name, RankTree tree, Map<Integer, Integer> finals) {
+            this.courseId = courseId;
+            this.name = name;
+            this.tree = tree;
+            this.finals = finals;
+        }
+
+        synchronized void put(int studentId, int finalBasisPoints) {
+            Integer old = finals.put(studentId, finalBasisPoints);
+            if (old != null) {
+                tree.remove(key(studentId, old));
+            }
+            tree.add(key(studentId, finalBasisPoints));
+        }
+
+        synchronized void remove(int studentId) {
+            Integer old = finals.remove(studentId);
+            if (old != null) {
+                tree.remove(key(studentId, old));
+            }
+        }
+
+        synchronized Standing standing(int studentId) {
+            Integer finalGrade = finals.get(studentId);
+            if (finalGrade == null) {
+                return null;
+            }
+            return new Standing(studentId, finalGrade, tree.rank(key(studentId, finalGrade)) + 1, tree.size());
+        }
+
+        synchronized Standing nth(int rank) {
+            if (rank < 1 || rank > tree.size()) {
+                return null;
+            }
+            long key = tree.get(rank - 1);
+            return new Standing(studentId(key), finalGrade(key), rank, tree.size());
+        }
+
+        synchronized List<Standing> top(int k) {
+            List<Standing> top = new ArrayList<>();
+            long[] keys = tree.first(k);
+            for (int i = 0; i < keys.length; i++) {
+                top.add(new Standing(studentId(keys[i]), finalGrade(keys[i]), i + 1, tree.size()));
+            }
+            return top;
+        }
+    }
+}
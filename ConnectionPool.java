@@ -0,0 +1,414 @@
+package com.mycompany.projectgrading;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A small bounded JDBC connection pool. Pages keep calling close() on the
+ * connections they borrow; the proxy returns the physical connection to the
+ * pool instead of tearing down the TCP session.
+ */
+public class ConnectionPool {
+    private final String name;
+    private final String url;
+    private final String username;
+    private final String password;
+    private final int minSize;
+    private final int maxSize;
+    private final long idleTimeoutMillis;
+    private final long borrowTimeoutMillis;
+    private final long validateAfterIdleMillis;
+    private final int statementCacheSize;
+
+    // Permits bound the number of borrowed connections; idle ones are reused LIFO
+    private final Semaphore permits;
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final AtomicInteger totalConnections = new AtomicInteger();
+    private final AtomicInteger activeConnections = new AtomicInteger();
+    private final ScheduledExecutorService evictor;
+    private volatile boolean closed;
+
+    // Statistics
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong borrowNanosTotal = new AtomicLong();
+    private final AtomicLong borrowNanosMax = new AtomicLong();
+    private final AtomicLong borrowTimeouts = new AtomicLong();
+    private final AtomicLong connectionsCreated = new AtomicLong();
+    private final AtomicLong connectionsEvicted = new AtomicLong();
+    private final AtomicLong validationFailures = new AtomicLong();
+
+    public ConnectionPool(String name, String url, String username, String password,
+                          int minSize, int maxSize, long idleTimeoutMillis,
+                          long borrowTimeoutMillis, long validateAfterIdleMillis,
+                          int statementCacheSize) {
+        if (minSize < 0 || maxSize < 1 || minSize > maxSize) {
+            throw new IllegalArgumentException("Invalid pool size: min=" + minSize + ", max=" + maxSize);
+        }
+        this.name = name;
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.validateAfterIdleMillis = validateAfterIdleMillis;
+        this.statementCacheSize = statementCacheSize;
+        this.permits = new Semaphore(maxSize, true);
+
+        this.evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "pool-evictor-" + name);
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1000, idleTimeoutMillis / 2);
+        evictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrows a connection, waiting up to the borrow timeout when the pool is exhausted.
+     */
+    public Connection borrow() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool '" + name + "' is closed");
+        }
+
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                borrowTimeouts.incrementAndGet();
+                throw new SQLTransientConnectionException("Timed out after " + borrowTimeoutMillis
+                        + " ms waiting for a connection from pool '" + name + "' " + getStats());
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection", ex);
+        }
+
+        try {
+            PooledConnection pooled = takeIdle();
+            if (pooled == null) {
+                pooled = openConnection();
+            }
+            pooled.borrowedAt = System.nanoTime();
+            activeConnections.incrementAndGet();
+            recordBorrow(System.nanoTime() - start);
+            return pooled.newHandle();
+        } catch (SQLException | RuntimeException ex) {
+            permits.release();
+            throw ex;
+        }
+    }
+
+    private PooledConnection takeIdle() {
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            if (isUsable(pooled)) {
+                return pooled;
+            }
+            validationFailures.incrementAndGet();
+            destroy(pooled);
+        }
+        return null;
+    }
+
+    // Validation on borrow; a connection returned moments ago is trusted without a ping
+    private boolean isUsable(PooledConnection pooled) {
+        long idleMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - pooled.returnedAt);
+        if (idleMillis < validateAfterIdleMillis) {
+            return true;
+        }
+        try {
+            return pooled.physical.isValid(2);
+        } catch (SQLException ex) {
+            return false;
+        }
+    }
+
+    private PooledConnection openConnection() throws SQLException {
+        Connection physical = DriverManager.getConnection(url, username, password);
+        totalConnections.incrementAndGet();
+        connectionsCreated.incrementAndGet();
+        return new PooledConnection(physical);
+    }
+
+    private void release(PooledConnection pooled) {
+        activeConnections.decrementAndGet();
+        QueryMetrics.recordConnectionHold(System.nanoTime() - pooled.borrowedAt);
+        boolean reusable = !closed && pooled.reset();
+        if (reusable) {
+            pooled.returnedAt = System.nanoTime();
+            idle.offerFirst(pooled);
+        } else {
+            destroy(pooled);
+        }
+        permits.release();
+    }
+
+    private void destroy(PooledConnection pooled) {
+        totalConnections.decrementAndGet();
+        pooled.statements.closeAll();
+        try {
+            pooled.physical.close();
+        } catch (SQLException ignored) {
+            // The connection is being discarded anyway
+        }
+    }
+
+    /**
+     * Closes connections idle for longer than the idle timeout, keeping at least
+     * the minimum size, then tops the pool back up to the minimum.
+     */
+    private void evictIdle() {
+        long now = System.nanoTime();
+        for (PooledConnection pooled : idle) {
+            if (totalConnections.get() <= minSize) {
+                break;
+            }
+            long idleMillis = TimeUnit.NANOSECONDS.toMillis(now - pooled.returnedAt);
+            if (idleMillis > idleTimeoutMillis && idle.remove(pooled)) {
+                connectionsEvicted.incrementAndGet();
+                destroy(pooled);
+            }
+        }
+
+        while (!closed && totalConnections.get() < minSize) {
+            try {
+                PooledConnection pooled = openConnection();
+                pooled.returnedAt = System.nanoTime();
+                idle.offerLast(pooled);
+            } catch (SQLException ex) {
+                System.err.println("Pool '" + name + "' could not open a connection: " + ex.getMessage());
+                break;
+            }
+        }
+    }
+
+    private void recordBorrow(long nanos) {
+        borrowCount.incrementAndGet();
+        borrowNanosTotal.addAndGet(nanos);
+        borrowNanosMax.accumulateAndGet(nanos, Math::max);
+    }
+
+    public Stats getStats() {
+        return new Stats(name, activeConnections.get(), idle.size(), permits.getQueueLength(),
+                totalConnections.get(), maxSize, borrowCount.get(), borrowNanosTotal.get(),
+                borrowNanosMax.get(), borrowTimeouts.get(), connectionsCreated.get(),
+                connectionsEvicted.get(), validationFailures.get());
+    }
+
+    public void close() {
+        closed = true;
+        evictor.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            destroy(pooled);
+        }
+    }
+
+    /**
+     * A physical connection owned by the pool. Each borrow gets a fresh proxy
+     * handle so that a stale reference cannot be used after close().
+     */
+    private class PooledConnection {
+        private final Connection physical;
+        private final StatementCache statements;
+        private volatile long borrowedAt;
+        private volatile long returnedAt = System.nanoTime();
+
+        PooledConnection(Connection physical) {
+            this.physical = physical;
+            this.statements = new StatementCache(physical, statementCacheSize);
+        }
+
+        Connection newHandle() {
+            return (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    new Handle(this, LeakTracker.open(LeakTracker.Kind.CONNECTION,
+                            "pool '" + name + "'", null, null)));
+        }
+
+        // Restore the defaults a page may have changed before the next borrower sees it
+        boolean reset() {
+            try {
+                if (physical.isClosed()) {
+                    return false;
+                }
+                statements.discardLeaked();
+                if (!physical.getAutoCommit()) {
+                    physical.rollback();
+                    physical.setAutoCommit(true);
+                }
+                if (physical.isReadOnly()) {
+                    physical.setReadOnly(false);
+                }
+                physical.clearWarnings();
+                return true;
+            } catch (SQLException ex) {
+                return false;
+            }
+        }
+    }
+
+    private class Handle implements InvocationHandler {
+        private final PooledConnection pooled;
+        private final LeakTracker.Resource tracking;
+        private volatile boolean released;
+
+        Handle(PooledConnection pooled, LeakTracker.Resource tracking) {
+            this.pooled = pooled;
+            this.tracking = tracking;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!released) {
+                        released = true;
+                        // Statements the page forgot go back to the cache before it is reset
+                        LeakTracker.release(tracking);
+                        release(pooled);
+                    }
+                    return null;
+                case "isClosed":
+                    return released || pooled.physical.isClosed();
+                case "unwrap":
+                    return pooled.physical.unwrap((Class<?>) args[0]);
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled[" + name + "]" + pooled.physical;
+                default:
+                    break;
+            }
+            if (released) {
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+            String methodName = method.getName();
+            if ("prepareStatement".equals(methodName) && args.length == 1) {
+                return instrument(pooled.statements.prepare((String) args[0]), (String) args[0], tracking);
+            }
+            Object result;
+            try {
+                result = method.invoke(pooled.physical, args);
+            } catch (InvocationTargetException ex) {
+                throw ex.getCause();
+            }
+            if (result instanceof Statement) {
+                boolean prepared = !"createStatement".equals(methodName);
+                return instrument((Statement) result, prepared ? (String) args[0] : null, tracking);
+            }
+            return result;
+        }
+    }
+
+    private static Statement instrument(Statement statement, String sql, LeakTracker.Resource owner)
+            throws SQLException {
+        return InstrumentedStatement.wrap(statement, sql, owner);
+    }
+
+    /**
+     * Point-in-time snapshot of the pool counters.
+     */
+    public static class Stats {
+        private final String poolName;
+        private final int active;
+        private final int idle;
+        private final int waiters;
+        private final int total;
+        private final int maxSize;
+        private final long borrows;
+        private final long borrowNanosTotal;
+        private final long borrowNanosMax;
+        private final long borrowTimeouts;
+        private final long created;
+        private final long evicted;
+        private final long validationFailures;
+
+        Stats(String poolName, int active, int idle, int waiters, int total, int maxSize,
+              long borrows, long borrowNanosTotal, long borrowNanosMax, long borrowTimeouts,
+              long created, long evicted, long validationFailures) {
+            this.poolName = poolName;
+            this.active = active;
+            this.idle = idle;
+            this.waiters = waiters;
+            this.total = total;
+            this.maxSize = maxSize;
+            this.borrows = borrows;
+            this.borrowNanosTotal = borrowNanosTotal;
+            this.borrowNanosMax = borrowNanosMax;
+            this.borrowTimeouts = borrowTimeouts;
+            this.created = created;
+            this.evicted = evicted;
+            this.validationFailures = validationFailures;
+        }
+
+        public int getActive() {
+            return active;
+        }
+
+        public int getIdle() {
+            return idle;
+        }
+
+        public int getWaiters() {
+            return waiters;
+        }
+
+        public int getTotal() {
+            return total;
+        }
+
+        public long getBorrows() {
+            return borrows;
+        }
+
+        public long getBorrowTimeouts() {
+            return borrowTimeouts;
+        }
+
+        public double getAverageBorrowMillis() {
+            return borrows == 0 ? 0 : borrowNanosTotal / 1_000_000.0 / borrows;
+        }
+
+        public double getMaxBorrowMillis() {
+            return borrowNanosMax / 1_000_000.0;
+        }
+
+        @Override
+        public String toString() {
+            return "Pool{" +
+                    "name=" + poolName +
+                    ", active=" + active +
+                    ", idle=" + idle +
+                    ", waiters=" + waiters +
+                    ", total=" + total + "/" + maxSize +
+                    ", borrows=" + borrows +
+                    ", avgBorrowMs=" + String.format("%.3f", getAverageBorrowMillis()) +
+                    ", maxBorrowMs=" + String.format("%.3f", getMaxBorrowMillis()) +
+                    ", timeouts=" + borrowTimeouts +
+                    ", created=" + created +
+                    ", evicted=" + evicted +
+                    ", validationFailures=" + validationFailures +
+                    '}';
+        }
+    }
+}
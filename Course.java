@@ -8,6 +8,9 @@ public class Course {
     private int assignmentWeight;
     private int quizWeight;
     private int examWeight;
+    private String gradingPolicy = GradingPolicy.STANDARD.getName();
+    // Bumped whenever the weights or policy change; stamped on each materialized final grade
+    private int weightsVersion = 1;
 
     // List to hold students enrolled in this course
     private ArrayList<Student> students;
@@ -72,6 +75,32 @@ public class Course {
         this.examWeight = examWeight;
     }
 
+    public String getGradingPolicy() {
+        return gradingPolicy;
+    }
+
+    public void setGradingPolicy(String gradingPolicy) {
+        this.gradingPolicy = gradingPolicy;
+    }
+
+    public GradingPolicy getPolicy() {
+        return GradingPolicy.forName(gradingPolicy);
+    }
+
+    public int getWeightsVersion() {
+        return weightsVersion;
+    }
+
+    public void setWeightsVersion(int weightsVersion) {
+        this.weightsVersion = weightsVersion;
+    }
+
+    // Final grade in basis points under this course's weights; missing scores count as 0
+    public int finalBasisPoints(int assignmentScore, int quizScore, int examScore) {
+        return GradingPolicy.finalBasisPoints(assignmentScore, quizScore, examScore,
+                assignmentWeight, quizWeight, examWeight);
+    }
+
     // Methods for managing students
     public ArrayList<Student> getStudents() {
         return students;
@@ -100,6 +129,8 @@ public class Course {
                 ", assignmentWeight=" + assignmentWeight +
                 ", quizWeight=" + quizWeight +
                 ", examWeight=" + examWeight +
+                ", gradingPolicy=" + gradingPolicy +
+                ", weightsVersion=" + weightsVersion +
                 ", students=" + students.size() +
                 '}';
     }
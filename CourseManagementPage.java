@@ -9,11 +9,34 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 public class CourseManagementPage {
+    // Course report layouts, compiled once (see ReportTemplate)
+    private static final ReportTemplate OVERALL_STATISTICS = ReportTemplate.load("course-statistics.txt", """
+            Overall Statistics:
+            \u2022 Average Assignment Score: {assignment:.2}%
+            \u2022 Average Quiz Score: {quiz:.2}%
+            \u2022 Average Exam Score: {exam:.2}%
+            \u2022 Overall Average Final Grade: {final}
+            \u2022 Final Grade Spread: {spread:.2} std. dev., {min} to {max}
+            \u2022 Pass/Fail Ratio: {passed} Passed / {failed} Failed
+            """, ReportTemplate.Format.TEXT,
+            "assignment", "quiz", "exam", "final", "spread", "min", "max", "passed", "failed");
+    private static final ReportTemplate DISTRIBUTION_ROW = ReportTemplate.load("course-distribution-row.txt",
+            "| {component:-10} | {min:-7} | {p10:-7} | {p25:-7} | {median:-7} | {p75:-7} | {p90:-7} | {max:-7} |\n",
+            ReportTemplate.Format.TEXT, "component", "min", "p10", "p25", "median", "p75", "p90", "max");
+    private static final ReportTemplate NO_GRADES_ROW = ReportTemplate.load("course-distribution-empty.txt",
+            "| {component:-10} | {note:-71} |\n", ReportTemplate.Format.TEXT, "component", "note");
+    private static final ReportTemplate CLASS_ROW = ReportTemplate.load("course-class-row.txt",
+            "| {course:-12} | {instructor:-12} | {assignment:-14.2} | {quiz:-8.2} | {exam:-8.2} | {final:-11.2} |\n",
+            ReportTemplate.Format.TEXT, "course", "instructor", "assignment", "quiz", "exam", "final");
+
     private User currentUser;
     private DefaultTableModel tableModel;
     private JPanel mainPanel;
+    private BackgroundTasks.Loader tableLoader;
 
     public CourseManagementPage(User user) {
         this.currentUser = user;
@@ -27,9 +50,11 @@ public class CourseManagementPage {
         JLabel titleLabel = new JLabel("Manage Courses", SwingConstants.CENTER);
         titleLabel.setFont(new Font("Arial", Font.BOLD, 18));
         mainPanel.add(titleLabel, BorderLayout.NORTH);
+        tableLoader = new BackgroundTasks.Loader(mainPanel, titleLabel);
 
         // Courses Table
-        tableModel = new DefaultTableModel(new String[]{"Course Name", "Grading Weights"}, 0);
+        tableModel = new DefaultTableModel(new String[]{"Course Name", "Grading Weights", "Grading Policy",
+                "Sections", "Enrolled", "Graded", "Pass / Fail"}, 0);
         JTable table = new JTable(tableModel);
         JScrollPane scrollPane = new JScrollPane(table);
         mainPanel.add(scrollPane, BorderLayout.CENTER);
@@ -60,160 +85,156 @@ public class CourseManagementPage {
 
     private void loadCourseData() {
         tableModel.setRowCount(0);
-        String query = "SELECT name, CONCAT(assignment_weight, '% Assignment, ', quiz_weight, '% Quiz, ', exam_weight, '% Exam') AS weights FROM Courses";
-
-        try (Connection connection = DatabaseConfig.getConnection();
-             PreparedStatement stmt = connection.prepareStatement(query);
-             ResultSet rs = stmt.executeQuery()) {
-
-            while (rs.next()) {
-                tableModel.addRow(new Object[]{
-                        rs.getString("name"),
-                        rs.getString("weights")
-                });
+        tableLoader.load("Loading courses...", task -> {
+            List<Object[]> rows = new ArrayList<>();
+            // Counts for every course, re-read only after a change since the last load
+            Map<Integer, CourseStatsService.Totals> totals = CourseStatsService.cachedTotals();
+            try (Connection connection = DatabaseConfig.getReadConnection();
+                 PreparedStatement stmt = connection.prepareStatement(Query.COURSE_LIST_WITH_WEIGHTS.sql());
+                 ResultSet rs = stmt.executeQuery()) {
+
+                while (rs.next()) {
+                    task.checkCancelled();
+                    CourseStatsService.Totals course = totals.get(rs.getInt("course_id"));
+                    rows.add(new Object[]{
+                            rs.getString("name"),
+                            rs.getString("weights"),
+                            rs.getString("grading_policy"),
+                            course == null ? 0 : course.getSections(),
+                            course == null ? 0 : course.getEnrolled(),
+                            course == null ? 0 : course.getGraded(),
+                            course == null ? "-" : course.getPassed() + " / " + course.getFailed()
+                    });
+                }
             }
-        } catch (SQLException ex) {
-            JOptionPane.showMessageDialog(null, "Error loading courses: " + ex.getMessage());
-        }
+            return rows;
+        }, rows -> {
+            for (Object[] row : rows) {
+                tableModel.addRow(row);
+            }
+        }, ex -> JOptionPane.showMessageDialog(null, "Error loading courses: " + ex.getMessage()));
     }
 private void generateCourseReports() {
-    try {
-        ArrayList<String[]> courses = fetchAllCourses(); // Fetch courses
+    BackgroundTasks.submit(task -> fetchAllCourses(), this::chooseCoursesForReports,
+            ex -> JOptionPane.showMessageDialog(null, "Error generating reports: " + ex.getMessage()));
+}
 
-        if (courses.isEmpty()) {
-            JOptionPane.showMessageDialog(null, "No courses available.");
-            return;
-        }
+private void chooseCoursesForReports(ArrayList<String[]> courses) {
+    if (courses.isEmpty()) {
+        JOptionPane.showMessageDialog(null, "No courses available.");
+        return;
+    }
 
-        // Allow admin to select one or multiple courses
-        JList<String> courseList = new JList<>(courses.stream().map(c -> c[1]).toArray(String[]::new));
-        courseList.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
+    // Allow admin to select one or multiple courses
+    JList<String> courseList = new JList<>(courses.stream().map(c -> c[1]).toArray(String[]::new));
+    courseList.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
 
-        JPanel panel = new JPanel(new BorderLayout());
-        panel.add(new JLabel("Select Course(s):"), BorderLayout.NORTH);
-        panel.add(new JScrollPane(courseList), BorderLayout.CENTER);
+    JPanel panel = new JPanel(new BorderLayout());
+    panel.add(new JLabel("Select Course(s):"), BorderLayout.NORTH);
+    panel.add(new JScrollPane(courseList), BorderLayout.CENTER);
+    JComboBox<ReportOutput.Kind> outputBox = new JComboBox<>(ReportOutput.Kind.values());
+    panel.add(outputBox, BorderLayout.SOUTH);
 
-        if (JOptionPane.showConfirmDialog(null, panel, "Generate Course Reports", JOptionPane.OK_CANCEL_OPTION) == JOptionPane.OK_OPTION) {
-            for (int index : courseList.getSelectedIndices()) {
-                int courseId = Integer.parseInt(courses.get(index)[0]);
-                String courseName = courses.get(index)[1];
-                generateCourseReport(courseId, courseName);
-            }
+    if (JOptionPane.showConfirmDialog(null, panel, "Generate Course Reports", JOptionPane.OK_CANCEL_OPTION) != JOptionPane.OK_OPTION) {
+        return;
+    }
 
-            JOptionPane.showMessageDialog(null, "Reports generated successfully.");
-        }
-    } catch (SQLException | IOException ex) {
-        JOptionPane.showMessageDialog(null, "Error generating reports: " + ex.getMessage());
+    List<String[]> selected = new ArrayList<>();
+    for (int index : courseList.getSelectedIndices()) {
+        selected.add(courses.get(index));
     }
+    ReportOutput.Kind outputKind = (ReportOutput.Kind) outputBox.getSelectedItem();
+    // One totals query on the snapshot decides which cached courses are current; only the others are rescanned
+    BackgroundTasks.submitWithProgress(mainPanel, "Generating course reports",
+            task -> ReportPipeline.runBatch(task, selected, course -> "Course " + course[1],
+                    CourseManagementPage::readCourseStats,
+                    (course, stats, out) -> generateCourseReport(course[1], stats, out),
+                    ReportOutput.open(outputKind, StudentManagementPage.reportTarget("Course_Reports", outputKind))),
+            summary -> JOptionPane.showMessageDialog(null, summary.format("reports")),
+            ex -> JOptionPane.showMessageDialog(null, "Error generating reports: " + ex.getMessage()));
 }
 
-private void generateCourseReport(int courseId, String courseName) throws SQLException, IOException {
-    try (Connection connection = DatabaseConfig.getConnection()) {
-        // Fetch course statistics
-        String courseStatsQuery = """
-            SELECT
-                COUNT(DISTINCT a.assignment_id) AS sections,
-                COUNT(DISTINCT e.student_id) AS total_students,
-                AVG(g.assignment_score) AS avg_assignment,
-                AVG(g.quiz_score) AS avg_quiz,
-                AVG(g.exam_score) AS avg_exam,
-                ROUND(AVG((g.assignment_score * c.assignment_weight / 100) +
-                          (g.quiz_score * c.quiz_weight / 100) +
-                          (g.exam_score * c.exam_weight / 100)), 2) AS avg_final_grade,
-                SUM(CASE WHEN g.assignment_score >= 50 AND g.quiz_score >= 50 AND g.exam_score >= 50 THEN 1 ELSE 0 END) AS total_passed,
-                SUM(CASE WHEN g.assignment_score < 50 OR g.quiz_score < 50 OR g.exam_score < 50 THEN 1 ELSE 0 END) AS total_failed
-            FROM Courses c
-            LEFT JOIN Assignments a ON c.course_id = a.course_id
-            LEFT JOIN Grades g ON c.course_id = g.course_id
-            LEFT JOIN Enrollments e ON g.student_id = e.student_id
-            WHERE c.course_id = ?
-        """;
-
-        PreparedStatement statsStmt = connection.prepareStatement(courseStatsQuery);
-        statsStmt.setInt(1, courseId);
-        ResultSet statsRs = statsStmt.executeQuery();
-
-        if (!statsRs.next()) {
-            JOptionPane.showMessageDialog(null, "No data available for course: " + courseName);
-            return;
-        }
+private static List<CourseStatsStore.CourseStats> readCourseStats(Connection snapshot, List<String[]> courses) throws SQLException {
+    Map<Integer, CourseStatsService.Totals> totals = CourseStatsService.totals(snapshot);
+    List<CourseStatsStore.CourseStats> stats = new ArrayList<>();
+    for (String[] course : courses) {
+        CourseStatsService.Totals courseTotals = totals.get(Integer.parseInt(course[0]));
+        stats.add(courseTotals == null ? null : CourseStatsStore.get(snapshot, courseTotals));
+    }
+    return stats;
+}
 
-        // Collect statistics
-        int sections = statsRs.getInt("sections");
-        int totalStudents = statsRs.getInt("total_students");
-        double avgAssignment = statsRs.getDouble("avg_assignment");
-        double avgQuiz = statsRs.getDouble("avg_quiz");
-        double avgExam = statsRs.getDouble("avg_exam");
-        double avgFinalGrade = statsRs.getDouble("avg_final_grade");
-        int totalPassed = statsRs.getInt("total_passed");
-        int totalFailed = statsRs.getInt("total_failed");
-
-        // Fetch class-level performance
-        String performanceQuery = """
-            SELECT
-                c.name AS course_name,
-                (SELECT u.name FROM Users u
-                 JOIN Assignments a ON u.user_id = a.teacher_id
-                 WHERE a.course_id = c.course_id LIMIT 1) AS instructor_name,
-                AVG(g.assignment_score) AS avg_assignment,
-                AVG(g.quiz_score) AS avg_quiz,
-                AVG(g.exam_score) AS avg_exam,
-                ROUND(AVG((g.assignment_score * c.assignment_weight / 100) +
-                          (g.quiz_score * c.quiz_weight / 100) +
-                          (g.exam_score * c.exam_weight / 100)), 2) AS final_grade
-            FROM Grades g
-            JOIN Courses c ON g.course_id = c.course_id
-            WHERE c.course_id = ?
-            GROUP BY c.course_id
-        """;
-
-        PreparedStatement performanceStmt = connection.prepareStatement(performanceQuery);
-        performanceStmt.setInt(1, courseId);
-        ResultSet performanceRs = performanceStmt.executeQuery();
-
-        // Prepare report content
-        StringBuilder reportContent = new StringBuilder();
-        reportContent.append("------------------------------------------------------\n")
-                     .append("                 COURSE PERFORMANCE REPORT\n")
-                     .append("------------------------------------------------------\n")
-                     .append("Course Name: ").append(courseName).append("\n")
-                     .append("Number of Sections: ").append(sections).append("\n")
-                     .append("Total Students: ").append(totalStudents).append("\n")
-                     .append("\n------------------------------------------------------\n")
-                     .append("Overall Statistics:\n")
-                     .append("• Average Assignment Score: ").append(String.format("%.2f%%", avgAssignment)).append("\n")
-                     .append("• Average Quiz Score: ").append(String.format("%.2f%%", avgQuiz)).append("\n")
-                     .append("• Average Exam Score: ").append(String.format("%.2f%%", avgExam)).append("\n")
-                     .append("• Overall Average Final Grade: ").append(String.format("%.2f%%", avgFinalGrade)).append("\n")
-                     .append("• Pass/Fail Ratio: ").append(totalPassed).append(" Passed / ").append(totalFailed).append(" Failed\n")
-                     .append("\n------------------------------------------------------\n")
-                     .append("Class-Level Performance:\n")
-                     .append("------------------------------------------------------\n")
-                     .append("| Course Name  | Instructor   | Avg Assignment | Avg Quiz | Avg Exam | Final Grade |\n")
-                     .append("|--------------|--------------|----------------|----------|----------|-------------|\n");
-
-        while (performanceRs.next()) {
-            String instructorName = performanceRs.getString("instructor_name") != null ? performanceRs.getString("instructor_name") : "Unassigned";
-            double avgAssgn = performanceRs.getDouble("avg_assignment");
-            double avgQz = performanceRs.getDouble("avg_quiz");
-            double avgExm = performanceRs.getDouble("avg_exam");
-            double finalGrd = performanceRs.getDouble("final_grade");
-
-            reportContent.append(String.format("| %-12s | %-12s | %-14.2f | %-8.2f | %-8.2f | %-11.2f |\n",
-                    courseName, instructorName, avgAssgn, avgQz, avgExm, finalGrd));
+// Runs on a report writer thread; returns the report's file name
+private static String generateCourseReport(String courseName, CourseStatsStore.CourseStats stats, StringBuilder reportContent) {
+    double avgAssignment = stats.getAssignment().getMean();
+    double avgQuiz = stats.getQuiz().getMean();
+    double avgExam = stats.getExam().getMean();
+    double avgFinalBasisPoints = stats.getFinalGrade().getMean();
+
+    // Prepare report content
+    reportContent.append("------------------------------------------------------\n")
+                 .append("                 COURSE PERFORMANCE REPORT\n")
+                 .append("------------------------------------------------------\n")
+                 .append("Course Name: ").append(courseName).append("\n")
+                 .append("Number of Sections: ").append(stats.getSections()).append("\n")
+                 .append("Total Students: ").append(stats.getEnrolled()).append("\n")
+                 .append("\n------------------------------------------------------\n");
+    OVERALL_STATISTICS.render(reportContent, avgAssignment, avgQuiz, avgExam,
+            GradingPolicy.formatPercent((int) Math.round(avgFinalBasisPoints)),
+            stats.getFinalGrade().getStandardDeviation() / 100.0,
+            GradingPolicy.formatPercent(stats.getFinalGrade().getMin()),
+            GradingPolicy.formatPercent(stats.getFinalGrade().getMax()),
+            stats.getPassed(), stats.getFailed());
+    reportContent.append("\n------------------------------------------------------\n")
+                 .append("Grade Distribution:\n")
+                 .append("------------------------------------------------------\n")
+                 .append("| Component  | Min     | P10     | P25     | Median  | P75     | P90     | Max     |\n")
+                 .append("|------------|---------|---------|---------|---------|---------|---------|---------|\n");
+    appendDistributionRow(reportContent, "Assignment", stats.getAssignment());
+    appendDistributionRow(reportContent, "Quiz", stats.getQuiz());
+    appendDistributionRow(reportContent, "Exam", stats.getExam());
+    appendDistributionRow(reportContent, "Final", stats.getFinalGrade());
+    if (stats.getFinalGrade().getCount() > 0) {
+        reportContent.append("\u2022 Final Grade Deciles:");
+        int[] deciles = stats.getFinalGrade().getSketch().deciles();
+        for (int i = 0; i < deciles.length; i++) {
+            reportContent.append(i == 0 ? " " : ", ").append((i + 1) * 10).append("th ")
+                         .append(GradingPolicy.formatPercent(deciles[i]));
         }
+        reportContent.append("\n");
+    }
+    reportContent.append("\n------------------------------------------------------\n")
+                 .append("Class-Level Performance:\n")
+                 .append("------------------------------------------------------\n")
+                 .append("| Course Name  | Instructor   | Avg Assignment | Avg Quiz | Avg Exam | Final Grade |\n")
+                 .append("|--------------|--------------|----------------|----------|----------|-------------|\n");
+
+    if (stats.getGraded() > 0) {
+        String instructorName = stats.getInstructorName() != null ? stats.getInstructorName() : "Unassigned";
+        CLASS_ROW.render(reportContent, courseName, instructorName, avgAssignment, avgQuiz, avgExam,
+                avgFinalBasisPoints / 100.0);
+    }
 
-        reportContent.append("------------------------------------------------------\n")
-                     .append("Date of Issue: ").append(java.time.LocalDate.now()).append("\n");
+    reportContent.append("------------------------------------------------------\n")
+                 .append("Date of Issue: ").append(java.time.LocalDate.now()).append("\n");
 
-        // Save the report as a TXT file
-        String fileName = System.getProperty("user.home") + "/Documents/" + courseName.replace(" ", "_") + "_Performance_Report.txt";
-        try (FileWriter writer = new FileWriter(new File(fileName))) {
-            writer.write(reportContent.toString());
-        }
+    return courseName.replace(" ", "_") + "_Performance_Report.txt";
+}
 
-        JOptionPane.showMessageDialog(null, "Report generated for course: " + courseName + "\nSaved at: " + fileName);
+// Percentiles come from the course's quantile sketch (see QuantileSketch for the error bound)
+private static void appendDistributionRow(StringBuilder report, String component, CourseStatsStore.Distribution distribution) {
+    if (distribution.getCount() == 0) {
+        NO_GRADES_ROW.render(report, component, "no grades");
+        return;
     }
+    DISTRIBUTION_ROW.render(report, component,
+            distribution.format(distribution.getMin()),
+            distribution.format(distribution.getPercentile(0.10)),
+            distribution.format(distribution.getPercentile(0.25)),
+            distribution.format(distribution.getMedian()),
+            distribution.format(distribution.getPercentile(0.75)),
+            distribution.format(distribution.getPercentile(0.90)),
+            distribution.format(distribution.getMax()));
 }
     
 
@@ -223,13 +244,15 @@ private void generateCourseReport(int courseId, String courseName) throws SQLExc
     JTextField quizWeightField = new JTextField();
     JTextField examWeightField = new JTextField();
     JTextField creditHoursField = new JTextField();
+    JComboBox<String> gradingPolicyField = new JComboBox<>(GradingPolicy.names());
 
     Object[] fields = {
         "Course Name:", courseNameField,
         "Assignment Weight (%):", assignmentWeightField,
         "Quiz Weight (%):", quizWeightField,
         "Exam Weight (%):", examWeightField,
-        "Credit Hours:", creditHoursField
+        "Credit Hours:", creditHoursField,
+        "Grading Policy:", gradingPolicyField
     };
 
     if (JOptionPane.showConfirmDialog(null, fields, "Add Course", JOptionPane.OK_CANCEL_OPTION) == JOptionPane.OK_OPTION) {
@@ -263,19 +286,20 @@ private void generateCourseReport(int courseId, String courseName) throws SQLExc
                 return;
             }
 
-            String query = "INSERT INTO Courses (name, assignment_weight, quiz_weight, exam_weight, credit_hours) VALUES (?, ?, ?, ?, ?)";
-            try (Connection connection = DatabaseConfig.getConnection();
-                 PreparedStatement stmt = connection.prepareStatement(query)) {
-                stmt.setString(1, courseName);
-                stmt.setInt(2, assignmentWeight);
-                stmt.setInt(3, quizWeight);
-                stmt.setInt(4, examWeight);
-                stmt.setInt(5, creditHours);
-                stmt.executeUpdate();
-                JOptionPane.showMessageDialog(null, "Course added successfully.");
-            }
-        } catch (SQLException ex) {
-            JOptionPane.showMessageDialog(null, "Error adding course: " + ex.getMessage());
+            String gradingPolicy = (String) gradingPolicyField.getSelectedItem();
+            BackgroundTasks.submit(task -> {
+                try (Connection connection = DatabaseConfig.getWriteConnection();
+                     PreparedStatement stmt = connection.prepareStatement(Query.INSERT_COURSE.sql())) {
+                    stmt.setString(1, courseName);
+                    stmt.setInt(2, assignmentWeight);
+                    stmt.setInt(3, quizWeight);
+                    stmt.setInt(4, examWeight);
+                    stmt.setInt(5, creditHours);
+                    stmt.setString(6, gradingPolicy);
+                    return stmt.executeUpdate();
+                }
+            }, added -> JOptionPane.showMessageDialog(null, "Course added successfully."),
+                    ex -> JOptionPane.showMessageDialog(null, "Error adding course: " + ex.getMessage()));
         } catch (NumberFormatException ex) {
             JOptionPane.showMessageDialog(null, "Please enter valid numbers for weights and credit hours.");
         }
@@ -295,11 +319,14 @@ private void generateCourseReport(int courseId, String courseName) throws SQLExc
     JTextField assignmentWeightField = new JTextField();
     JTextField quizWeightField = new JTextField();
     JTextField examWeightField = new JTextField();
+    JComboBox<String> gradingPolicyField = new JComboBox<>(GradingPolicy.names());
+    gradingPolicyField.setSelectedItem(GradingPolicy.forName((String) tableModel.getValueAt(selectedRow, 2)).getName());
 
     Object[] fields = {
         "Assignment Weight (%):", assignmentWeightField,
         "Quiz Weight (%):", quizWeightField,
-        "Exam Weight (%):", examWeightField
+        "Exam Weight (%):", examWeightField,
+        "Grading Policy:", gradingPolicyField
     };
 
     if (JOptionPane.showConfirmDialog(null, fields, "Edit Course", JOptionPane.OK_CANCEL_OPTION) == JOptionPane.OK_OPTION) {
@@ -321,21 +348,38 @@ private void generateCourseReport(int courseId, String courseName) throws SQLExc
                 return;
             }
 
-            String query = "UPDATE Courses SET assignment_weight = ?, quiz_weight = ?, exam_weight = ? WHERE name = ?";
-            try (Connection connection = DatabaseConfig.getConnection();
-                 PreparedStatement stmt = connection.prepareStatement(query)) {
-
-                stmt.setInt(1, assignmentWeight);
-                stmt.setInt(2, quizWeight);
-                stmt.setInt(3, examWeight);
-                stmt.setString(4, courseName);
-                stmt.executeUpdate();
+            String gradingPolicy = (String) gradingPolicyField.getSelectedItem();
+            BackgroundTasks.submit(task -> {
+                try (Connection connection = DatabaseConfig.getWriteConnection()) {
+                    // The new weights and the job that re-derives the final grades commit together
+                    connection.setAutoCommit(false);
+                    int courseId;
+                    try (PreparedStatement stmt = connection.prepareStatement(Query.UPDATE_COURSE_BY_NAME.sql())) {
+                        stmt.setInt(1, assignmentWeight);
+                        stmt.setInt(2, quizWeight);
+                        stmt.setInt(3, examWeight);
+                        stmt.setString(4, gradingPolicy);
+                        stmt.setString(5, courseName);
+                        stmt.executeUpdate();
+                    }
+                    try (PreparedStatement stmt = connection.prepareStatement(Query.COURSE_WEIGHTS_BY_NAME.sql())) {
+                        stmt.setString(1, courseName);
+                        try (ResultSet rs = stmt.executeQuery()) {
+                            courseId = rs.next() ? rs.getInt("course_id") : -1;
+                        }
+                    }
+                    GradeRecomputeJob.schedule(connection, courseId);
+                    connection.commit();
+                    // Every final grade depends on the weights and policy
+                    GradeCaches.courseChanged(courseName);
+                    return courseId;
+                }
+            }, courseId -> {
+                GradeRecomputeJob.runWithProgress(mainPanel, courseId);
 
                 JOptionPane.showMessageDialog(null, "Course updated successfully.");
                 loadCourseData();
-            }
-        } catch (SQLException ex) {
-            JOptionPane.showMessageDialog(null, "Error updating course: " + ex.getMessage());
+            }, ex -> JOptionPane.showMessageDialog(null, "Error updating course: " + ex.getMessage()));
         } catch (NumberFormatException ex) {
             JOptionPane.showMessageDialog(null, "Please enter valid numbers for weights.");
         }
@@ -358,18 +402,19 @@ private void generateCourseReport(int courseId, String courseName) throws SQLExc
 
         int confirm = JOptionPane.showConfirmDialog(null, "Are you sure you want to delete the course: " + courseName + "?", "Confirm Deletion", JOptionPane.YES_NO_OPTION);
         if (confirm == JOptionPane.YES_OPTION) {
-            String query = "DELETE FROM Courses WHERE name = ?";
-            try (Connection connection = DatabaseConfig.getConnection();
-                 PreparedStatement stmt = connection.prepareStatement(query)) {
-
-                stmt.setString(1, courseName);
-                stmt.executeUpdate();
-
+            BackgroundTasks.submit(task -> {
+                try (Connection connection = DatabaseConfig.getWriteConnection();
+                     PreparedStatement stmt = connection.prepareStatement(Query.DELETE_COURSE_BY_NAME.sql())) {
+
+                    stmt.setString(1, courseName);
+                    int deleted = stmt.executeUpdate();
+                    GradeCaches.courseChanged(courseName);
+                    return deleted;
+                }
+            }, deleted -> {
                 JOptionPane.showMessageDialog(null, "Course deleted successfully.");
                 loadCourseData();
-            } catch (SQLException ex) {
-                JOptionPane.showMessageDialog(null, "Error deleting course: " + ex.getMessage());
-            }
+            }, ex -> JOptionPane.showMessageDialog(null, "Error deleting course: " + ex.getMessage()));
         }
     }
 
@@ -383,10 +428,8 @@ private void generateCourseReport(int courseId, String courseName) throws SQLExc
     }
     private ArrayList<String[]> fetchAllCourses() throws SQLException {
     ArrayList<String[]> courses = new ArrayList<>();
-    String query = "SELECT course_id, name FROM Courses";
-
-    try (Connection connection = DatabaseConfig.getConnection();
-         PreparedStatement stmt = connection.prepareStatement(query);
+    try (Connection connection = DatabaseConfig.getReadConnection();
+         PreparedStatement stmt = connection.prepareStatement(Query.ALL_COURSES.sql());
          ResultSet rs = stmt.executeQuery()) {
 
         while (rs.next()) {
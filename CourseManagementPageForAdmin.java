@@ -5,10 +5,12 @@ import java.awt.*;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
-import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 
 public class CourseManagementPageForAdmin extends JPanel {
     private DefaultTableModel tableModel;
+    private BackgroundTasks.Loader tableLoader;
 
     public CourseManagementPageForAdmin() {
         // Set layout and background
@@ -20,6 +22,7 @@ public class CourseManagementPageForAdmin extends JPanel {
         labelTitle.setFont(new Font("Arial", Font.BOLD, 18));
         labelTitle.setBounds(50, 20, 300, 30);
         add(labelTitle);
+        tableLoader = new BackgroundTasks.Loader(this, labelTitle);
 
         // Courses Table
         tableModel = new DefaultTableModel(new String[]{"Course Name"}, 0);
@@ -56,16 +59,23 @@ public class CourseManagementPageForAdmin extends JPanel {
      */
     private void updateCourseTable() {
         tableModel.setRowCount(0); // Clear existing rows
-        try (Connection connection = DatabaseConfig.getConnection();
-             PreparedStatement stmt = connection.prepareStatement("SELECT name FROM Courses");
-             ResultSet rs = stmt.executeQuery()) {
-
-            while (rs.next()) {
-                tableModel.addRow(new Object[]{rs.getString("name")});
+        tableLoader.load("Loading courses...", task -> {
+            List<String> names = new ArrayList<>();
+            try (Connection connection = DatabaseConfig.getReadConnection();
+                 PreparedStatement stmt = connection.prepareStatement(Query.COURSE_NAMES.sql());
+                 ResultSet rs = stmt.executeQuery()) {
+
+                while (rs.next()) {
+                    task.checkCancelled();
+                    names.add(rs.getString("name"));
+                }
             }
-        } catch (SQLException ex) {
-            JOptionPane.showMessageDialog(this, "Error fetching courses: " + ex.getMessage());
-        }
+            return names;
+        }, names -> {
+            for (String name : names) {
+                tableModel.addRow(new Object[]{name});
+            }
+        }, ex -> JOptionPane.showMessageDialog(this, "Error fetching courses: " + ex.getMessage()));
     }
 
     /**
@@ -85,16 +95,18 @@ public class CourseManagementPageForAdmin extends JPanel {
                 return;
             }
 
-            try (Connection connection = DatabaseConfig.getConnection();
-                 PreparedStatement stmt = connection.prepareStatement("INSERT INTO Courses (name) VALUES (?)")) {
+            BackgroundTasks.submit(task -> {
+                try (Connection connection = DatabaseConfig.getWriteConnection();
+                     PreparedStatement stmt = connection.prepareStatement(Query.INSERT_COURSE_NAME.sql())) {
 
-                stmt.setString(1, name);
-                stmt.executeUpdate();
+                    stmt.setString(1, name);
+                    stmt.executeUpdate();
+                }
+                return null;
+            }, done -> {
                 JOptionPane.showMessageDialog(this, "Course added successfully!");
                 updateCourseTable(); // Refresh table
-            } catch (SQLException ex) {
-                JOptionPane.showMessageDialog(this, "Error adding course: " + ex.getMessage());
-            }
+            }, ex -> JOptionPane.showMessageDialog(this, "Error adding course: " + ex.getMessage()));
         }
     }
 
@@ -112,16 +124,19 @@ public class CourseManagementPageForAdmin extends JPanel {
 
         int confirm = JOptionPane.showConfirmDialog(this, "Are you sure you want to delete the course: " + courseName + "?", "Confirm Deletion", JOptionPane.YES_NO_OPTION);
         if (confirm == JOptionPane.YES_OPTION) {
-            try (Connection connection = DatabaseConfig.getConnection();
-                 PreparedStatement stmt = connection.prepareStatement("DELETE FROM Courses WHERE name = ?")) {
-
-                stmt.setString(1, courseName);
-                stmt.executeUpdate();
+            BackgroundTasks.submit(task -> {
+                try (Connection connection = DatabaseConfig.getWriteConnection();
+                     PreparedStatement stmt = connection.prepareStatement(Query.DELETE_COURSE_BY_NAME.sql())) {
+
+                    stmt.setString(1, courseName);
+                    stmt.executeUpdate();
+                    GradeCaches.courseChanged(courseName);
+                }
+                return null;
+            }, done -> {
                 JOptionPane.showMessageDialog(this, "Course deleted successfully!");
                 updateCourseTable(); // Refresh table
-            } catch (SQLException ex) {
-                JOptionPane.showMessageDialog(this, "Error deleting course: " + ex.getMessage());
-            }
+            }, ex -> JOptionPane.showMessageDialog(this, "Error deleting course: " + ex.getMessage()));
         }
     }
     
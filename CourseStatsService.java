@@ -0,0 +1,281 @@
+package com.mycompany.projectgrading;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The course figures SQL can total, for every course in one pre-aggregated
+ * query: sections, enrolled and graded counts, pass/fail counts, and each
+ * component's count, sum and sum of squares (so its mean and spread).
+ *
+ * Each source is grouped by course before it is joined to Courses, so the
+ * figures are exact however many sections, enrollments or other courses a
+ * student has, and the cost is one pass over each table instead of a product
+ * of them. Only the grades of enrolled students count, as in
+ * {@link CourseStatsStore}.
+ *
+ * Percentiles and finals need every score and stay in the store; the store's
+ * reconcile compares its cached courses against these totals and reloads only
+ * the ones that differ.
+ *
+ * Views that list every course read {@link #cachedTotals()}: the last totals
+ * read, dropped whenever the store sees a grade, enrollment or course change
+ * and refreshed by the store's reconcile. Reports and the reconcile itself read
+ * {@link #totals} directly.
+ */
+public class CourseStatsService {
+    private static final AtomicLong READS = new AtomicLong();
+    private static final AtomicLong COURSES_READ = new AtomicLong();
+    private static final AtomicLong READ_NANOS = new AtomicLong();
+    private static final AtomicLong CACHED_HITS = new AtomicLong();
+
+    // Guarded by the class lock; the generation moves on every change so a read that overlapped one is not kept
+    private static Map<Integer, Totals> cached;
+    private static long generation;
+
+    /**
+     * Totals every course, keyed by course id in id order.
+     */
+    public static Map<Integer, Totals> totals() throws SQLException {
+        try (Connection connection = DatabaseConfig.getReadConnection()) {
+            return totals(connection);
+        }
+    }
+
+    /**
+     * Totals every course on the caller's connection, e.g. a report snapshot.
+     */
+    public static Map<Integer, Totals> totals(Connection connection) throws SQLException {
+        long started = System.nanoTime();
+        Map<Integer, Totals> totals = new LinkedHashMap<>();
+        try (PreparedStatement stmt = connection.prepareStatement(Query.COURSE_STATS_TOTALS.sql());
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                Totals course = new Totals(rs);
+                totals.put(course.courseId, course);
+            }
+        }
+        READS.incrementAndGet();
+        COURSES_READ.addAndGet(totals.size());
+        READ_NANOS.addAndGet(System.nanoTime() - started);
+        return totals;
+    }
+
+    /**
+     * Totals every course like {@link #totals()}, from the cached copy when no
+     * change was seen since it was read. The map must not be modified.
+     */
+    public static Map<Integer, Totals> cachedTotals() throws SQLException {
+        long readGeneration;
+        synchronized (CourseStatsService.class) {
+            if (cached != null) {
+                CACHED_HITS.incrementAndGet();
+                return cached;
+            }
+            readGeneration = generation;
+        }
+        return keep(readGeneration, totals());
+    }
+
+    /**
+     * Reads the totals and keeps them as the cached copy. Used by the store's reconcile.
+     */
+    static Map<Integer, Totals> refreshCachedTotals() throws SQLException {
+        long readGeneration;
+        synchronized (CourseStatsService.class) {
+            readGeneration = generation;
+        }
+        return keep(readGeneration, totals());
+    }
+
+    static synchronized boolean hasCachedTotals() {
+        return cached != null;
+    }
+
+    /**
+     * Drops the cached copy, and any read still running, after a change to a
+     * course's grades, enrollments, sections or settings.
+     */
+    static synchronized void totalsChanged() {
+        generation++;
+        cached = null;
+    }
+
+    private static synchronized Map<Integer, Totals> keep(long readGeneration, Map<Integer, Totals> totals) {
+        Map<Integer, Totals> unmodifiable = Collections.unmodifiableMap(totals);
+        if (generation == readGeneration) {
+            cached = unmodifiable;
+        }
+        return unmodifiable;
+    }
+
+    public static String getStats() {
+        long reads = READS.get();
+        return "CourseStatsService{reads=" + reads +
+                ", cachedHits=" + CACHED_HITS.get() +
+                ", courses=" + COURSES_READ.get() +
+                ", meanMs=" + (reads > 0 ? READ_NANOS.get() / reads / 1_000_000 : 0) + '}';
+    }
+
+    /**
+     * One component's graded scores: how many, their sum and sum of squares.
+     */
+    public static class Component {
+        private final long count;
+        private final long sum;
+        private final long sumOfSquares;
+
+        Component(long count, long sum, long sumOfSquares) {
+            this.count = count;
+            this.sum = sum;
+            this.sumOfSquares = sumOfSquares;
+        }
+
+        private static Component read(ResultSet rs, String prefix) throws SQLException {
+            return new Component(rs.getLong(prefix + "_count"), rs.getLong(prefix + "_sum"),
+                    rs.getLong(prefix + "_squares"));
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getSum() {
+            return sum;
+        }
+
+        public long getSumOfSquares() {
+            return sumOfSquares;
+        }
+
+        public double getMean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        // Population standard deviation, as in CourseStatsStore.Distribution
+        public double getStandardDeviation() {
+            if (count == 0) {
+                return 0;
+            }
+            double mean = getMean();
+            return Math.sqrt(Math.max(0, (double) sumOfSquares / count - mean * mean));
+        }
+    }
+
+    /**
+     * One course's totals, with the weights and policy they were graded under.
+     */
+    public static class Totals {
+        private final int courseId;
+        private final String name;
+        private final int assignmentWeight;
+        private final int quizWeight;
+        private final int examWeight;
+        private final GradingPolicy policy;
+        private final int sections;
+        private final int enrolled;
+        private final int graded;
+        private final int complete;
+        private final int passed;
+        private final int failed;
+        private final Component assignment;
+        private final Component quiz;
+        private final Component exam;
+
+        private Totals(ResultSet rs) throws SQLException {
+            this.courseId = rs.getInt("course_id");
+            this.name = rs.getString("name");
+            this.assignmentWeight = rs.getInt("assignment_weight");
+            this.quizWeight = rs.getInt("quiz_weight");
+            this.examWeight = rs.getInt("exam_weight");
+            this.policy = GradingPolicy.forName(rs.getString("grading_policy"));
+            this.sections = rs.getInt("sections");
+            this.enrolled = rs.getInt("enrolled");
+            this.graded = rs.getInt("graded");
+            this.complete = rs.getInt("complete");
+            this.passed = rs.getInt("passed");
+            this.failed = rs.getInt("failed");
+            this.assignment = Component.read(rs, "assignment");
+            this.quiz = Component.read(rs, "quiz");
+            this.exam = Component.read(rs, "exam");
+        }
+
+        public int getCourseId() {
+            return courseId;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getAssignmentWeight() {
+            return assignmentWeight;
+        }
+
+        public int getQuizWeight() {
+            return quizWeight;
+        }
+
+        public int getExamWeight() {
+            return examWeight;
+        }
+
+        public GradingPolicy getPolicy() {
+            return policy;
+        }
+
+        public int getSections() {
+            return sections;
+        }
+
+        public int getEnrolled() {
+            return enrolled;
+        }
+
+        /**
+         * Enrolled students with a grade row, complete or not.
+         */
+        public int getGraded() {
+            return graded;
+        }
+
+        /**
+         * Grade rows with all three scores, i.e. the ones with a final.
+         */
+        public int getComplete() {
+            return complete;
+        }
+
+        public int getPassed() {
+            return passed;
+        }
+
+        public int getFailed() {
+            return failed;
+        }
+
+        public Component getAssignment() {
+            return assignment;
+        }
+
+        public Component getQuiz() {
+            return quiz;
+        }
+
+        public Component getExam() {
+            return exam;
+        }
+
+        @Override
+        public String toString() {
+            return "Totals{" + name + ", sections=" + sections + ", enrolled=" + enrolled + ", graded=" + graded +
+                    ", passed=" + passed + ", failed=" + failed + '}';
+        }
+    }
+}
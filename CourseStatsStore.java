@@ -0,0 +1,634 @@
+package com.mycompany.projectgrading;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-course grade statistics kept in memory and maintained incrementally, so
+ * course reports and teacher views read averages, spreads, percentiles and
+ * pass/fail counts in constant time instead of rescanning Grades.
+ *
+ * A course is loaded from the database on first use. After that every grade
+ * write applies the difference between the old and the new row, and removing
+ * an enrollment takes the student's grade out. Changes that touch every row
+ * (weights, grading policy, new enrollments, instructors) drop the course so it
+ * is reloaded on the next read. A background reconcile reloads the cached
+ * courses whose totals no longer match {@link CourseStatsService} and counts
+ * them as drifted, e.g. after writes from another client.
+ *
+ * A grade write marks itself in flight before its transaction and bumps the
+ * course's version when it starts and ends; deltas and invalidations bump it
+ * too, cached or not. A load keeps its result only if no write was in flight
+ * and the version did not move while it ran; otherwise the result may or may
+ * not include a write whose delta also arrives, so it is served once and the
+ * course is loaded again on the next read.
+ *
+ * The statistics cover the grades of the students currently enrolled.
+ *
+ * Settings: -Ddb.stats.reconcileMs sets the reconcile interval (default 600000;
+ * 0 turns it off).
+ */
+public class CourseStatsStore {
+    // A component passes at 50% or above, as in the course reports
+    private static final int PASS_SCORE = 50;
+    private static final int MAX_SCORE = 100;
+    // Finals are sketched to 0.1 percentage points: 1001 buckets per course
+    private static final int FINAL_BUCKET_WIDTH = 10;
+    private static final long RECONCILE_MS = Long.getLong("db.stats.reconcileMs", 600_000L);
+
+    private static final ConcurrentHashMap<Integer, CourseStats> COURSES = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<Integer, WriteState> WRITES = new ConcurrentHashMap<>();
+    private static final AtomicLong LOADS = new AtomicLong();
+    private static final AtomicLong DELTAS = new AtomicLong();
+    private static final AtomicLong RECONCILES = new AtomicLong();
+    private static final AtomicLong DRIFTED = new AtomicLong();
+
+    static {
+        if (RECONCILE_MS > 0) {
+            ScheduledExecutorService reconciler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "course-stats-reconcile");
+                thread.setDaemon(true);
+                return thread;
+            });
+            reconciler.scheduleWithFixedDelay(() -> {
+                try {
+                    reconcile();
+                } catch (SQLException ex) {
+                    System.err.println("Course statistics reconcile failed: " + ex.getMessage());
+                }
+            }, RECONCILE_MS, RECONCILE_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Returns a snapshot of the course's statistics, loading them on first use.
+     *
+     * @return the statistics, or null when the course does not exist
+     */
+    public static CourseStats get(int courseId) throws SQLException {
+        CourseStats stats = COURSES.get(courseId);
+        if (stats == null) {
+            long version = version(courseId);
+            CourseStats loaded = load(courseId);
+            if (loaded == null) {
+                return null;
+            }
+            stats = COURSES.putIfAbsent(courseId, loaded);
+            if (stats == null) {
+                stats = loaded;
+                // Checked after the put: a later delta finds the course cached and is applied
+                if (!settled(courseId, version)) {
+                    COURSES.remove(courseId, loaded);
+                }
+            }
+        }
+        return stats.copy();
+    }
+
+    /**
+     * Returns the course's statistics as of the caller's connection, e.g. a
+     * report snapshot: a copy of the cached course when its totals match the
+     * ones read on that connection, otherwise the course loaded on it. The
+     * loaded copy is not cached, as the snapshot may already be behind.
+     */
+    public static CourseStats get(Connection snapshot, CourseStatsService.Totals totals) throws SQLException {
+        CourseStats cached = COURSES.get(totals.getCourseId());
+        if (cached != null) {
+            CourseStats copy = cached.copy();
+            if (copy.sameTotals(totals)) {
+                return copy;
+            }
+        }
+        return load(snapshot, totals.getCourseId());
+    }
+
+    /**
+     * Marks a write to the course's grades or enrollments as in flight. Call it
+     * before the write's transaction commits and {@link #writeFinished} after the
+     * commit and the delta, in a finally block.
+     */
+    public static void writeStarted(int courseId) {
+        WriteState state = writeState(courseId);
+        state.writers.incrementAndGet();
+        state.version.incrementAndGet();
+        CourseStatsService.totalsChanged();
+    }
+
+    public static void writeFinished(int courseId) {
+        WriteState state = writeState(courseId);
+        state.version.incrementAndGet();
+        state.writers.decrementAndGet();
+        // After the commit, so cached totals read while the write was in flight are dropped
+        CourseStatsService.totalsChanged();
+    }
+
+    /**
+     * Applies a grade write to a cached course.
+     *
+     * @param before the row before the write, or null when it was inserted
+     * @param after  the row after the write, or null when it was deleted
+     */
+    public static void gradeChanged(int courseId, Scores before, Scores after) {
+        changed(courseId);
+        CourseStats stats = COURSES.get(courseId);
+        if (stats != null) {
+            stats.replace(before, after);
+            DELTAS.incrementAndGet();
+        }
+    }
+
+    /**
+     * Takes a removed enrollment out of a cached course.
+     *
+     * @param grade the student's grade row in the course, or null when ungraded
+     */
+    public static void enrollmentRemoved(int courseId, Scores grade) {
+        changed(courseId);
+        CourseStats stats = COURSES.get(courseId);
+        if (stats != null) {
+            stats.removeEnrollment(grade);
+            DELTAS.incrementAndGet();
+        }
+    }
+
+    /**
+     * Drops a course so its statistics are reloaded on the next read.
+     */
+    public static void invalidate(int courseId) {
+        changed(courseId);
+        COURSES.remove(courseId);
+    }
+
+    public static void invalidate(String courseName) {
+        // A course being loaded is not cached yet, so its id is unknown; name changes are rare
+        WRITES.values().forEach(state -> state.version.incrementAndGet());
+        CourseStatsService.totalsChanged();
+        COURSES.values().removeIf(stats -> stats.name.equals(courseName));
+    }
+
+    private static WriteState writeState(int courseId) {
+        return WRITES.computeIfAbsent(courseId, id -> new WriteState());
+    }
+
+    private static long version(int courseId) {
+        return writeState(courseId).version.get();
+    }
+
+    private static void changed(int courseId) {
+        writeState(courseId).version.incrementAndGet();
+        CourseStatsService.totalsChanged();
+    }
+
+    // Writers first: a write that ends after this check has already moved the version it reads next
+    private static boolean settled(int courseId, long version) {
+        WriteState state = writeState(courseId);
+        return state.writers.get() == 0 && state.version.get() == version;
+    }
+
+    /**
+     * Checks every cached course against {@link CourseStatsService#totals()},
+     * one query for all of them, and reloads the ones that differ.
+     *
+     * @return the number of courses whose figures had drifted from the database
+     */
+    public static int reconcile() throws SQLException {
+        int drifted = 0;
+        // Also keeps the totals that list every course current, e.g. after writes from another client
+        Map<Integer, CourseStatsService.Totals> totals = COURSES.isEmpty() && !CourseStatsService.hasCachedTotals()
+                ? Map.of() : CourseStatsService.refreshCachedTotals();
+        for (Integer courseId : new ArrayList<>(COURSES.keySet())) {
+            CourseStats cached = COURSES.get(courseId);
+            if (cached == null) {
+                continue;
+            }
+            CourseStatsService.Totals courseTotals = totals.get(courseId);
+            if (courseTotals != null && cached.sameTotals(courseTotals)) {
+                continue;
+            }
+            // Drifted, deleted, or written to since the totals were read: the reload decides
+            long version = version(courseId);
+            CourseStats fresh = load(courseId);
+            if (fresh == null) {
+                COURSES.remove(courseId, cached);
+                continue;
+            }
+            // A write landed while loading; the fresh copy may or may not include it, so try next round
+            if (!settled(courseId, version)) {
+                continue;
+            }
+            if (!cached.sameFigures(fresh)) {
+                drifted++;
+                DRIFTED.incrementAndGet();
+                System.err.println("Course statistics for " + cached.name + " had drifted from the database; reloaded");
+            }
+            // A write between the check and the replace went to the old copy only
+            if (COURSES.replace(courseId, cached, fresh) && !settled(courseId, version)) {
+                COURSES.remove(courseId, fresh);
+            }
+        }
+        RECONCILES.incrementAndGet();
+        return drifted;
+    }
+
+    private static CourseStats load(int courseId) throws SQLException {
+        try (Connection connection = DatabaseConfig.getReadConnection()) {
+            return load(connection, courseId);
+        }
+    }
+
+    private static CourseStats load(Connection connection, int courseId) throws SQLException {
+        CourseStats stats;
+        try (PreparedStatement stmt = connection.prepareStatement(Query.COURSE_STATS_SUMMARY.sql())) {
+            stmt.setInt(1, courseId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                stats = new CourseStats(courseId, rs.getString("name"), rs.getString("instructor_name"),
+                        rs.getInt("sections"), rs.getInt("enrolled"),
+                        rs.getInt("assignment_weight"), rs.getInt("quiz_weight"), rs.getInt("exam_weight"),
+                        GradingPolicy.forName(rs.getString("grading_policy")));
+            }
+        }
+
+        try (PreparedStatement stmt = connection.prepareStatement(Query.COURSE_STATS_GRADES.sql())) {
+            stmt.setInt(1, courseId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    stats.add(Scores.read(rs), 1);
+                }
+            }
+        }
+        LOADS.incrementAndGet();
+        return stats;
+    }
+
+    public static String getStats() {
+        return "CourseStatsStore{courses=" + COURSES.size() +
+                ", loads=" + LOADS.get() +
+                ", deltas=" + DELTAS.get() +
+                ", reconciles=" + RECONCILES.get() +
+                ", drifted=" + DRIFTED.get() + '}';
+    }
+
+    private static class WriteState {
+        private final AtomicLong version = new AtomicLong();
+        private final AtomicInteger writers = new AtomicInteger();
+    }
+
+    /**
+     * One Grades row; a null component has not been graded.
+     */
+    public static class Scores {
+        private final Integer assignment;
+        private final Integer quiz;
+        private final Integer exam;
+
+        public Scores(Integer assignment, Integer quiz, Integer exam) {
+            this.assignment = assignment;
+            this.quiz = quiz;
+            this.exam = exam;
+        }
+
+        /**
+         * Reads assignment_score, quiz_score and exam_score from the current row.
+         */
+        public static Scores read(ResultSet rs) throws SQLException {
+            return new Scores(nullableInt(rs, "assignment_score"), nullableInt(rs, "quiz_score"),
+                    nullableInt(rs, "exam_score"));
+        }
+
+        private static Integer nullableInt(ResultSet rs, String column) throws SQLException {
+            int value = rs.getInt(column);
+            return rs.wasNull() ? null : value;
+        }
+
+        public Integer getAssignment() {
+            return assignment;
+        }
+
+        public Integer getQuiz() {
+            return quiz;
+        }
+
+        public Integer getExam() {
+            return exam;
+        }
+
+        boolean isComplete() {
+            return assignment != null && quiz != null && exam != null;
+        }
+
+        boolean passed() {
+            return isComplete() && assignment >= PASS_SCORE && quiz >= PASS_SCORE && exam >= PASS_SCORE;
+        }
+
+        boolean failed() {
+            return (assignment != null && assignment < PASS_SCORE)
+                    || (quiz != null && quiz < PASS_SCORE)
+                    || (exam != null && exam < PASS_SCORE);
+        }
+    }
+
+    /**
+     * Count, sum and sum of squares of one measure, plus a {@link QuantileSketch}
+     * for its median, percentiles, minimum and maximum.
+     */
+    public static class Distribution {
+        private final QuantileSketch sketch;
+        private final boolean basisPoints;
+        private long count;
+        private long sum;
+        private long sumOfSquares;
+
+        private Distribution(int maxValue, int bucketWidth, boolean basisPoints) {
+            this.sketch = new QuantileSketch(maxValue, bucketWidth);
+            this.basisPoints = basisPoints;
+        }
+
+        private Distribution(Distribution other) {
+            this.sketch = other.sketch.copy();
+            this.basisPoints = other.basisPoints;
+            this.count = other.count;
+            this.sum = other.sum;
+            this.sumOfSquares = other.sumOfSquares;
+        }
+
+        private void add(int value, int sign) {
+            sketch.add(value, sign);
+            count += sign;
+            sum += (long) sign * value;
+            sumOfSquares += (long) sign * value * value;
+        }
+
+        /**
+         * Combines the same measure of several courses, e.g. every course a
+         * teacher gives; null when there are none.
+         */
+        public static Distribution merge(List<Distribution> distributions) {
+            Distribution merged = null;
+            for (Distribution distribution : distributions) {
+                if (merged == null) {
+                    merged = new Distribution(distribution);
+                } else {
+                    merged.sketch.merge(distribution.sketch);
+                    merged.count += distribution.count;
+                    merged.sum += distribution.sum;
+                    merged.sumOfSquares += distribution.sumOfSquares;
+                }
+            }
+            return merged;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getSum() {
+            return sum;
+        }
+
+        public double getMean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        // Population standard deviation
+        public double getStandardDeviation() {
+            if (count == 0) {
+                return 0;
+            }
+            double mean = getMean();
+            return Math.sqrt(Math.max(0, (double) sumOfSquares / count - mean * mean));
+        }
+
+        public int getMin() {
+            return sketch.getMin();
+        }
+
+        public int getMax() {
+            return sketch.getMax();
+        }
+
+        public int getMedian() {
+            return sketch.median();
+        }
+
+        /**
+         * @param q between 0 and 1, e.g. 0.9 for the 90th percentile
+         */
+        public int getPercentile(double q) {
+            return sketch.quantile(q);
+        }
+
+        public QuantileSketch getSketch() {
+            return sketch;
+        }
+
+        /**
+         * Formats a value of this measure: "87%" for a score, "87.35%" for a final.
+         */
+        public String format(int value) {
+            return basisPoints ? GradingPolicy.formatPercent(value) : value + "%";
+        }
+
+        private boolean sameFigures(Distribution other) {
+            return count == other.count && sum == other.sum && sumOfSquares == other.sumOfSquares;
+        }
+
+        private boolean sameTotals(CourseStatsService.Component totals) {
+            return count == totals.getCount() && sum == totals.getSum() && sumOfSquares == totals.getSumOfSquares();
+        }
+    }
+
+    /**
+     * The statistics of one course. Instances returned by {@link #get} are
+     * private snapshots.
+     */
+    public static class CourseStats {
+        private final int courseId;
+        private final String name;
+        private final String instructorName;
+        private final int sections;
+        private final int assignmentWeight;
+        private final int quizWeight;
+        private final int examWeight;
+        private final GradingPolicy policy;
+        private final Distribution assignment;
+        private final Distribution quiz;
+        private final Distribution exam;
+        // Weighted finals in basis points, for rows with all three scores
+        private final Distribution finalGrade;
+        private int enrolled;
+        private int graded;
+        private int passed;
+        private int failed;
+
+        private CourseStats(int courseId, String name, String instructorName, int sections, int enrolled,
+                            int assignmentWeight, int quizWeight, int examWeight, GradingPolicy policy) {
+            this.courseId = courseId;
+            this.name = name;
+            this.instructorName = instructorName;
+            this.sections = sections;
+            this.enrolled = enrolled;
+            this.assignmentWeight = assignmentWeight;
+            this.quizWeight = quizWeight;
+            this.examWeight = examWeight;
+            this.policy = policy;
+            this.assignment = new Distribution(MAX_SCORE, 1, false);
+            this.quiz = new Distribution(MAX_SCORE, 1, false);
+            this.exam = new Distribution(MAX_SCORE, 1, false);
+            this.finalGrade = new Distribution(GradingPolicy.MAX_BASIS_POINTS, FINAL_BUCKET_WIDTH, true);
+        }
+
+        private CourseStats(CourseStats other) {
+            this.courseId = other.courseId;
+            this.name = other.name;
+            this.instructorName = other.instructorName;
+            this.sections = other.sections;
+            this.enrolled = other.enrolled;
+            this.assignmentWeight = other.assignmentWeight;
+            this.quizWeight = other.quizWeight;
+            this.examWeight = other.examWeight;
+            this.policy = other.policy;
+            this.assignment = new Distribution(other.assignment);
+            this.quiz = new Distribution(other.quiz);
+            this.exam = new Distribution(other.exam);
+            this.finalGrade = new Distribution(other.finalGrade);
+            this.graded = other.graded;
+            this.passed = other.passed;
+            this.failed = other.failed;
+        }
+
+        private synchronized CourseStats copy() {
+            return new CourseStats(this);
+        }
+
+        private synchronized void replace(Scores before, Scores after) {
+            if (before != null) {
+                add(before, -1);
+            }
+            if (after != null) {
+                add(after, 1);
+            }
+        }
+
+        private synchronized void removeEnrollment(Scores grade) {
+            enrolled--;
+            if (grade != null) {
+                add(grade, -1);
+            }
+        }
+
+        private void add(Scores scores, int sign) {
+            graded += sign;
+            if (scores.assignment != null) {
+                assignment.add(scores.assignment, sign);
+            }
+            if (scores.quiz != null) {
+                quiz.add(scores.quiz, sign);
+            }
+            if (scores.exam != null) {
+                exam.add(scores.exam, sign);
+            }
+            if (scores.isComplete()) {
+                finalGrade.add(GradingPolicy.finalBasisPoints(scores.assignment, scores.quiz, scores.exam,
+                        assignmentWeight, quizWeight, examWeight), sign);
+            }
+            if (scores.passed()) {
+                passed += sign;
+            } else if (scores.failed()) {
+                failed += sign;
+            }
+        }
+
+        private synchronized boolean sameFigures(CourseStats other) {
+            return enrolled == other.enrolled && graded == other.graded
+                    && passed == other.passed && failed == other.failed
+                    && sections == other.sections
+                    && assignment.sameFigures(other.assignment) && quiz.sameFigures(other.quiz)
+                    && exam.sameFigures(other.exam) && finalGrade.sameFigures(other.finalGrade);
+        }
+
+        private synchronized boolean sameTotals(CourseStatsService.Totals totals) {
+            return enrolled == totals.getEnrolled() && graded == totals.getGraded()
+                    && passed == totals.getPassed() && failed == totals.getFailed()
+                    && sections == totals.getSections() && finalGrade.count == totals.getComplete()
+                    && assignmentWeight == totals.getAssignmentWeight() && quizWeight == totals.getQuizWeight()
+                    && examWeight == totals.getExamWeight() && policy == totals.getPolicy()
+                    && assignment.sameTotals(totals.getAssignment()) && quiz.sameTotals(totals.getQuiz())
+                    && exam.sameTotals(totals.getExam());
+        }
+
+        public int getCourseId() {
+            return courseId;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * The first assigned teacher, or null when the course has none.
+         */
+        public String getInstructorName() {
+            return instructorName;
+        }
+
+        public int getSections() {
+            return sections;
+        }
+
+        public int getEnrolled() {
+            return enrolled;
+        }
+
+        public int getGraded() {
+            return graded;
+        }
+
+        public int getPassed() {
+            return passed;
+        }
+
+        public int getFailed() {
+            return failed;
+        }
+
+        public GradingPolicy getPolicy() {
+            return policy;
+        }
+
+        public Distribution getAssignment() {
+            return assignment;
+        }
+
+        public Distribution getQuiz() {
+            return quiz;
+        }
+
+        public Distribution getExam() {
+            return exam;
+        }
+
+        public Distribution getFinalGrade() {
+            return finalGrade;
+        }
+
+        @Override
+        public String toString() {
+            return "CourseStats{" + name + ", enrolled=" + enrolled + ", graded=" + graded +
+                    ", passed=" + passed + ", failed=" + failed + '}';
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.mycompany.projectgrading;
+
+/**
+ * Storage engines the application can run against. The embedded modes use an
+ * in-process H2 database in MySQL compatibility mode, so the same SQL runs
+ * without a MySQL server on the machine.
+ */
+public enum DatabaseBackend {
+    MYSQL(false),
+    EMBEDDED_FILE(true),
+    EMBEDDED_MEMORY(true);
+
+    private static final String DATABASE_NAME = "student_grading_system";
+    private static final String H2_OPTIONS = ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;CASE_INSENSITIVE_IDENTIFIERS=TRUE";
+
+    private final boolean embedded;
+
+    DatabaseBackend(boolean embedded) {
+        this.embedded = embedded;
+    }
+
+    public boolean isEmbedded() {
+        return embedded;
+    }
+
+    /**
+     * Builds the JDBC URL for this backend.
+     *
+     * @param location host:port for MySQL, a directory for the embedded file mode; ignored in memory mode
+     */
+    public String jdbcUrl(String location) {
+        switch (this) {
+            case EMBEDDED_FILE:
+                return "jdbc:h2:file:" + location + "/" + DATABASE_NAME + H2_OPTIONS;
+            case EMBEDDED_MEMORY:
+                // Keep the database alive while the pool has no open connections
+                return "jdbc:h2:mem:" + DATABASE_NAME + H2_OPTIONS + ";DB_CLOSE_DELAY=-1";
+            default:
+                // useAffectedRows: a write that changes nothing, e.g. the no-op ON DUPLICATE KEY UPDATE
+                // of an existing enrollment, reports 0 as on the embedded engine instead of the matched rows
+                return "jdbc:mysql://" + location + "/" + DATABASE_NAME
+                        + "?useServerPrepStmts=true&useCursorFetch=true&useAffectedRows=true";
+        }
+    }
+
+    public String defaultLocation() {
+        switch (this) {
+            case EMBEDDED_FILE:
+                return System.getProperty("user.home") + "/.student-grading";
+            case EMBEDDED_MEMORY:
+                return "";
+            default:
+                return "localhost:3306";
+        }
+    }
+
+    /**
+     * Parses values such as "mysql", "embedded-file" or "embedded_memory".
+     */
+    public static DatabaseBackend fromName(String name) {
+        if (name == null || name.isBlank()) {
+            return MYSQL;
+        }
+        try {
+            return valueOf(name.trim().toUpperCase().replace('-', '_'));
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Unknown database backend: " + name
+                    + " (expected mysql, embedded-file or embedded-memory)");
+        }
+    }
+}
@@ -1,16 +1,147 @@
 package com.mycompany.projectgrading;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.List;
 
 public class DatabaseConfig {
 
-    private static final String URL = "jdbc:mysql://localhost:3306/student_grading_system"; 
-    private static final String USERNAME = "root"; 
-    private static final String PASSWORD = "1234"; 
+    // Backend and credentials, overridable with -Ddb.backend, -Ddb.location, -Ddb.user, -Ddb.password
+    private static final DatabaseBackend BACKEND = DatabaseBackend.fromName(System.getProperty("db.backend"));
+    private static final String URL = BACKEND.jdbcUrl(System.getProperty("db.location", BACKEND.defaultLocation()));
+    private static final String USERNAME = System.getProperty("db.user", BACKEND.isEmbedded() ? "sa" : "root");
+    private static final String PASSWORD = System.getProperty("db.password", BACKEND.isEmbedded() ? "" : "1234");
 
+    // Schema migrations run on first connection unless -Ddb.migrate=false
+    private static final boolean MIGRATE_SCHEMA = !"false".equalsIgnoreCase(System.getProperty("db.migrate"));
+
+    // Pool settings, overridable with -Ddb.pool.<name>=<value>
+    private static final int POOL_MIN_SIZE = Integer.getInteger("db.pool.minSize", 2);
+    private static final int POOL_MAX_SIZE = Integer.getInteger("db.pool.maxSize", 10);
+    private static final long POOL_IDLE_TIMEOUT_MS = Long.getLong("db.pool.idleTimeoutMs", 300_000L);
+    private static final long POOL_BORROW_TIMEOUT_MS = Long.getLong("db.pool.borrowTimeoutMs", 5_000L);
+    private static final long POOL_VALIDATE_AFTER_IDLE_MS = Long.getLong("db.pool.validateAfterIdleMs", 1_000L);
+    private static final int STATEMENT_CACHE_SIZE = Integer.getInteger("db.pool.statementCacheSize", 64);
+
+    // Optional read replica: set -Ddb.replica.location to route report and dashboard reads to it
+    private static final String REPLICA_LOCATION = System.getProperty("db.replica.location");
+    private static final long REPLICA_MAX_LAG_SECONDS = Long.getLong("db.replica.maxLagSeconds", 5L);
+    private static final long REPLICA_READ_YOUR_WRITES_MS = Long.getLong("db.replica.readYourWritesMs", 5_000L);
+    private static final long REPLICA_PROBE_INTERVAL_MS = Long.getLong("db.replica.probeIntervalMs", 2_000L);
+
+    // Set when the schema could not be migrated; every borrow then fails with it
+    private static volatile SQLException schemaFailure;
+
+    // Created on first use so that loading this class never opens a connection
+    private static class PoolHolder {
+        private static final ConnectionPool POOL = createPool();
+        private static final ReplicaRouter ROUTER = createRouter(POOL);
+    }
+
+    private static ConnectionPool createPool() {
+        ConnectionPool pool = new ConnectionPool("primary", URL, USERNAME, PASSWORD,
+                POOL_MIN_SIZE, POOL_MAX_SIZE, POOL_IDLE_TIMEOUT_MS,
+                POOL_BORROW_TIMEOUT_MS, POOL_VALIDATE_AFTER_IDLE_MS, STATEMENT_CACHE_SIZE);
+        Runtime.getRuntime().addShutdownHook(new Thread(pool::close, "pool-shutdown"));
+
+        try (Connection connection = pool.borrow()) {
+            List<String> missingIndexes = MIGRATE_SCHEMA
+                    ? SchemaMigrations.migrate(connection, BACKEND.isEmbedded())
+                    : SchemaMigrations.verifyIndexes(connection);
+            for (String index : missingIndexes) {
+                System.err.println("Missing index, lookups will scan: " + index);
+            }
+        } catch (SQLException ex) {
+            // A half-migrated schema must not be used; the pool stays closed
+            System.err.println(ex.getMessage());
+            schemaFailure = ex;
+            pool.close();
+        }
+        return pool;
+    }
+
+    private static ReplicaRouter createRouter(ConnectionPool primary) {
+        ConnectionPool replica = null;
+        if (REPLICA_LOCATION != null && !REPLICA_LOCATION.isBlank()) {
+            replica = new ConnectionPool("replica", BACKEND.jdbcUrl(REPLICA_LOCATION),
+                    System.getProperty("db.replica.user", USERNAME),
+                    System.getProperty("db.replica.password", PASSWORD),
+                    POOL_MIN_SIZE, POOL_MAX_SIZE, POOL_IDLE_TIMEOUT_MS,
+                    POOL_BORROW_TIMEOUT_MS, POOL_VALIDATE_AFTER_IDLE_MS, STATEMENT_CACHE_SIZE);
+        }
+        ReplicaRouter router = new ReplicaRouter(primary, replica, REPLICA_MAX_LAG_SECONDS,
+                REPLICA_READ_YOUR_WRITES_MS, REPLICA_PROBE_INTERVAL_MS);
+        Runtime.getRuntime().addShutdownHook(new Thread(router::close, "replica-shutdown"));
+        return router;
+    }
+
+    /**
+     * Borrows a pooled connection to the primary. Closing it returns it to the pool.
+     *
+     * @deprecated use {@link #getWriteConnection()} for changes and
+     * {@link #getReadConnection()} for reads; this is the write path, so it also
+     * starts the read-your-writes window
+     */
+    @Deprecated
     public static Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(URL, USERNAME, PASSWORD);
+        return getWriteConnection();
+    }
+
+    /**
+     * Borrows a primary connection for grade, enrollment and course changes.
+     * Reads issued shortly afterwards stay on the primary so they see the change.
+     */
+    public static Connection getWriteConnection() throws SQLException {
+        return router().getWriteConnection();
+    }
+
+    /**
+     * Borrows a read-only connection for reports and dashboards, served by the
+     * replica when one is configured, healthy and caught up.
+     */
+    public static Connection getReadConnection() throws SQLException {
+        return router().getReadConnection();
+    }
+
+    /**
+     * Connects and brings the schema up to date, if that has not happened yet.
+     *
+     * @throws SQLException when the schema could not be migrated; the database must not be used
+     */
+    public static void checkSchema() throws SQLException {
+        pool();
+    }
+
+    private static ConnectionPool pool() throws SQLException {
+        ConnectionPool pool = PoolHolder.POOL;
+        if (schemaFailure != null) {
+            throw new SQLException(schemaFailure.getMessage(), schemaFailure.getSQLState(), schemaFailure);
+        }
+        return pool;
+    }
+
+    private static ReplicaRouter router() throws SQLException {
+        pool();
+        return PoolHolder.ROUTER;
+    }
+
+    public static DatabaseBackend getBackend() {
+        return BACKEND;
+    }
+
+    public static ConnectionPool.Stats getPoolStats() {
+        return PoolHolder.POOL.getStats();
+    }
+
+    public static String getRoutingStats() {
+        return PoolHolder.ROUTER.toString();
+    }
+
+    public static String getStatementCacheStats() {
+        return StatementCache.getStats();
+    }
+
+    public static String getLeakStats() {
+        return LeakTracker.getStats();
     }
 }
\ No newline at end of file
@@ -0,0 +1,50 @@
+package com.mycompany.projectgrading;
+
+/**
+ * The in-memory figures derived from grades: course statistics, student GPAs
+ * and class ranks. Code that writes grades or changes a course notifies them
+ * all through here, so a new cache only has to be added in one place.
+ */
+public class GradeCaches {
+
+    /**
+     * Marks a grade write to the course as in flight, so no statistics loaded
+     * while it runs are kept. Call it before the write commits and
+     * {@link #gradeWriteFinished} after {@link #gradeChanged}, in a finally block.
+     */
+    public static void gradeWriteStarted(int courseId) {
+        CourseStatsStore.writeStarted(courseId);
+    }
+
+    public static void gradeWriteFinished(int courseId) {
+        CourseStatsStore.writeFinished(courseId);
+    }
+
+    /**
+     * Applies one student's grade write to every cache.
+     *
+     * @param before the scores before the write, or null when the row was inserted
+     */
+    public static void gradeChanged(Course course, int studentId, CourseStatsStore.Scores before,
+                                    CourseStatsStore.Scores after, int finalBasisPoints) {
+        CourseStatsStore.gradeChanged(course.getCourseId(), before, after);
+        StudentGpaCache.gradeChanged(studentId, course.getCourseId(), finalBasisPoints, course.getPolicy());
+        ClassRankIndex.gradeChanged(course.getCourseId(), studentId, finalBasisPoints);
+    }
+
+    /**
+     * Drops everything derived from a course whose grades, weights or policy
+     * changed in bulk, or that was deleted; it is reloaded on the next read.
+     */
+    public static void courseChanged(int courseId) {
+        CourseStatsStore.invalidate(courseId);
+        StudentGpaCache.courseChanged(courseId);
+        ClassRankIndex.invalidate(courseId);
+    }
+
+    public static void courseChanged(String courseName) {
+        CourseStatsStore.invalidate(courseName);
+        StudentGpaCache.courseChanged(courseName);
+        ClassRankIndex.invalidate(courseName);
+    }
+}
@@ -0,0 +1,442 @@
+package com.mycompany.projectgrading;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Curves a course's grades. A curve is a straight line applied to every
+ * complete grade's three scores, new = slope * old + shift (in percentage
+ * points, clamped to 0-100), so the final grade moves by the same line and
+ * stays derivable from the scores when weights change later.
+ *
+ * {@link #preview} reads the scores once and runs two fork/join passes over
+ * them: one for the mean, spread and top final grade that fix the line, one
+ * that curves every row and counts letters before and after. {@link #apply}
+ * writes the previewed scores in one batched transaction together with an
+ * audit record of the curve and every replaced score, and fails without
+ * writing anything if a grade changed since the preview.
+ */
+public class GradeCurve {
+    // Rows per fork/join leaf
+    private static final int LEAF_SIZE = 1024;
+
+    public enum Method {
+        Z_SCORE("Z-score to target mean and spread"),
+        SCALE_TO_MEAN("Scale to target mean"),
+        TOP_SCORE("Anchor top score at 100%");
+
+        private final String label;
+
+        Method(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    /**
+     * Computes a curve without writing anything.
+     *
+     * @param targetMean      the mean final grade in percent, for Z_SCORE and SCALE_TO_MEAN
+     * @param targetDeviation the standard deviation in percentage points, for Z_SCORE
+     * @throws IllegalArgumentException when the course has no grades the method can curve
+     */
+    public static Preview preview(int courseId, Method method, double targetMean, double targetDeviation)
+            throws SQLException {
+        long started = System.nanoTime();
+        Course course;
+        Rows rows;
+        try (Connection connection = DatabaseConfig.getReadConnection()) {
+            course = GradeMaterializer.fetchCourse(connection, courseId);
+            if (course == null) {
+                throw new IllegalArgumentException("Course not found.");
+            }
+            rows = readRows(connection, courseId);
+        }
+        if (rows.size == 0) {
+            throw new IllegalArgumentException("No complete grades to curve in " + course.getName() + ".");
+        }
+
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        Moments moments = pool.invoke(new MomentsTask(course, rows, 0, rows.size));
+        double mean = moments.sum / 100.0 / rows.size;
+        double deviation = Math.sqrt(Math.max(0, moments.sumOfSquares / 10_000.0 / rows.size - mean * mean));
+
+        double slope;
+        double shift;
+        switch (method) {
+            case Z_SCORE:
+                if (deviation == 0) {
+                    throw new IllegalArgumentException("Every final grade is the same; a z-score curve needs a spread.");
+                }
+                slope = targetDeviation / deviation;
+                shift = targetMean - slope * mean;
+                break;
+            case SCALE_TO_MEAN:
+                if (mean == 0) {
+                    throw new IllegalArgumentException("The mean final grade is 0; it cannot be scaled.");
+                }
+                slope = targetMean / mean;
+                shift = 0;
+                break;
+            default:
+                if (moments.max == 0) {
+                    throw new IllegalArgumentException("The top final grade is 0; it cannot be anchored.");
+                }
+                slope = 10_000.0 / moments.max;
+                shift = 0;
+                break;
+        }
+
+        Preview preview = new Preview(course, method, slope, shift, rows);
+        pool.invoke(new CurveTask(preview, 0, rows.size));
+        preview.meanBefore = mean;
+        preview.elapsedMs = (System.nanoTime() - started) / 1_000_000;
+        return preview;
+    }
+
+    /**
+     * Writes a previewed curve, its audit record and a notification per curved
+     * student in one transaction.
+     *
+     * @param appliedBy the teacher's user id
+     * @return the number of grades changed
+     * @throws SQLException when a grade or the course's weights changed since the preview;
+     *                      nothing is written then
+     */
+    public static int apply(Preview preview, int appliedBy) throws SQLException {
+        Course course = preview.course;
+        Rows rows = preview.rows;
+        int changed = 0;
+        for (int i = 0; i < rows.size; i++) {
+            if (preview.isChanged(i)) {
+                changed++;
+            }
+        }
+        if (changed == 0) {
+            return 0;
+        }
+
+        try (Connection connection = DatabaseConfig.getWriteConnection()) {
+            connection.setAutoCommit(false);
+            Course current = GradeMaterializer.fetchCourse(connection, course.getCourseId());
+            if (current == null || current.getWeightsVersion() != course.getWeightsVersion()) {
+                throw new SQLException("The course's weights changed since the preview; preview the curve again.");
+            }
+
+            int curveId;
+            try (PreparedStatement stmt = connection.prepareStatement(Query.INSERT_GRADE_CURVE.sql(),
+                    Statement.RETURN_GENERATED_KEYS)) {
+                stmt.setInt(1, course.getCourseId());
+                stmt.setString(2, preview.method.name());
+                stmt.setDouble(3, preview.slope);
+                stmt.setDouble(4, preview.shift);
+                stmt.setInt(5, changed);
+                stmt.setInt(6, appliedBy);
+                stmt.executeUpdate();
+                try (ResultSet keys = stmt.getGeneratedKeys()) {
+                    if (!keys.next()) {
+                        throw new SQLException("No id was generated for the curve.");
+                    }
+                    curveId = keys.getInt(1);
+                }
+            }
+
+            try (PreparedStatement update = connection.prepareStatement(Query.UPDATE_CURVED_GRADE.sql());
+                 PreparedStatement audit = connection.prepareStatement(Query.INSERT_GRADE_CURVE_CHANGE.sql());
+                 PreparedStatement notify = connection.prepareStatement(Query.INSERT_NOTIFICATION.sql())) {
+                String message = course.getName() + " grades were curved.";
+                for (int i = 0; i < rows.size; i++) {
+                    if (!preview.isChanged(i)) {
+                        continue;
+                    }
+                    int finalGrade = preview.curvedFinals[i];
+                    update.setInt(1, preview.curvedAssignment[i]);
+                    update.setInt(2, preview.curvedQuiz[i]);
+                    update.setInt(3, preview.curvedExam[i]);
+                    update.setInt(4, finalGrade);
+                    update.setString(5, course.getPolicy().letter(finalGrade));
+                    update.setInt(6, course.getWeightsVersion());
+                    update.setInt(7, rows.studentIds[i]);
+                    update.setInt(8, course.getCourseId());
+                    update.setInt(9, rows.assignment[i]);
+                    update.setInt(10, rows.quiz[i]);
+                    update.setInt(11, rows.exam[i]);
+                    update.addBatch();
+
+                    audit.setInt(1, curveId);
+                    audit.setInt(2, rows.studentIds[i]);
+                    audit.setInt(3, rows.assignment[i]);
+                    audit.setInt(4, rows.quiz[i]);
+                    audit.setInt(5, rows.exam[i]);
+                    audit.setInt(6, preview.curvedAssignment[i]);
+                    audit.setInt(7, preview.curvedQuiz[i]);
+                    audit.setInt(8, preview.curvedExam[i]);
+                    audit.addBatch();
+
+                    notify.setInt(1, rows.studentIds[i]);
+                    notify.setString(2, message);
+                    notify.addBatch();
+                }
+
+                for (int count : update.executeBatch()) {
+                    // SUCCESS_NO_INFO (-2) still means the row was written
+                    if (count == 0) {
+                        connection.rollback();
+                        throw new SQLException("Some grades changed since the preview; preview the curve again.");
+                    }
+                }
+                audit.executeBatch();
+                notify.executeBatch();
+            }
+            connection.commit();
+        }
+
+        // Every final grade in the course may have moved
+        GradeCaches.courseChanged(course.getCourseId());
+        return changed;
+    }
+
+    private static Rows readRows(Connection connection, int courseId) throws SQLException {
+        Rows rows = new Rows();
+        try (PreparedStatement stmt = connection.prepareStatement(Query.GRADES_FOR_CURVE.sql())) {
+            stmt.setInt(1, courseId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    rows.add(rs.getInt("student_id"), rs.getInt("assignment_score"),
+                            rs.getInt("quiz_score"), rs.getInt("exam_score"));
+                }
+            }
+        }
+        return rows;
+    }
+
+    private static int curve(int score, double slope, double shift) {
+        return (int) Math.max(0, Math.min(100, Math.round(slope * score + shift)));
+    }
+
+    /**
+     * A computed curve: the line, every curved grade and the letter counts
+     * before and after.
+     */
+    public static class Preview {
+        private final Course course;
+        private final Method method;
+        private final double slope;
+        private final double shift;
+        private final Rows rows;
+        private final int[] curvedAssignment;
+        private final int[] curvedQuiz;
+        private final int[] curvedExam;
+        private final int[] curvedFinals;
+        private final Map<String, Integer> lettersBefore = new LinkedHashMap<>();
+        private final Map<String, Integer> lettersAfter = new LinkedHashMap<>();
+        private long curvedFinalSum;
+        private double meanBefore;
+        private long elapsedMs;
+
+        private Preview(Course course, Method method, double slope, double shift, Rows rows) {
+            this.course = course;
+            this.method = method;
+            this.slope = slope;
+            this.shift = shift;
+            this.rows = rows;
+            this.curvedAssignment = new int[rows.size];
+            this.curvedQuiz = new int[rows.size];
+            this.curvedExam = new int[rows.size];
+            this.curvedFinals = new int[rows.size];
+            for (String letter : course.getPolicy().getLetters()) {
+                lettersBefore.put(letter, 0);
+                lettersAfter.put(letter, 0);
+            }
+        }
+
+        private boolean isChanged(int i) {
+            return curvedAssignment[i] != rows.assignment[i] || curvedQuiz[i] != rows.quiz[i]
+                    || curvedExam[i] != rows.exam[i];
+        }
+
+        private synchronized void addCounts(Map<String, Integer> before, Map<String, Integer> after, long finalSum) {
+            before.forEach((letter, count) -> lettersBefore.merge(letter, count, Integer::sum));
+            after.forEach((letter, count) -> lettersAfter.merge(letter, count, Integer::sum));
+            curvedFinalSum += finalSum;
+        }
+
+        public Course getCourse() {
+            return course;
+        }
+
+        public Method getMethod() {
+            return method;
+        }
+
+        public double getSlope() {
+            return slope;
+        }
+
+        /**
+         * The shift in percentage points.
+         */
+        public double getShift() {
+            return shift;
+        }
+
+        public int getStudents() {
+            return rows.size;
+        }
+
+        public double getMeanBefore() {
+            return meanBefore;
+        }
+
+        public double getMeanAfter() {
+            return curvedFinalSum / 100.0 / rows.size;
+        }
+
+        /**
+         * Students per letter, best letter first.
+         */
+        public Map<String, Integer> getLettersBefore() {
+            return new LinkedHashMap<>(lettersBefore);
+        }
+
+        public Map<String, Integer> getLettersAfter() {
+            return new LinkedHashMap<>(lettersAfter);
+        }
+
+        public long getElapsedMs() {
+            return elapsedMs;
+        }
+    }
+
+    /**
+     * The complete grades of a course as parallel arrays, in student id order.
+     */
+    private static class Rows {
+        private int size;
+        private int[] studentIds = new int[64];
+        private int[] assignment = new int[64];
+        private int[] quiz = new int[64];
+        private int[] exam = new int[64];
+
+        void add(int studentId, int assignmentScore, int quizScore, int examScore) {
+            if (size == studentIds.length) {
+                int capacity = size * 2;
+                studentIds = Arrays.copyOf(studentIds, capacity);
+                assignment = Arrays.copyOf(assignment, capacity);
+                quiz = Arrays.copyOf(quiz, capacity);
+                exam = Arrays.copyOf(exam, capacity);
+            }
+            studentIds[size] = studentId;
+            assignment[size] = assignmentScore;
+            quiz[size] = quizScore;
+            exam[size] = examScore;
+            size++;
+        }
+    }
+
+    /**
+     * Sum, sum of squares and maximum of the final grades in basis points.
+     */
+    private static class Moments {
+        private long sum;
+        private double sumOfSquares;
+        private int max;
+    }
+
+    private static class MomentsTask extends RecursiveTask<Moments> {
+        private static final long serialVersionUID = 1L;
+
+        private final Course course;
+        private final Rows rows;
+        private final int from;
+        private final int to;
+
+        MomentsTask(Course course, Rows rows, int from, int to) {
+            this.course = course;
+            this.rows = rows;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Moments compute() {
+            if (to - from <= LEAF_SIZE) {
+                Moments moments = new Moments();
+                for (int i = from; i < to; i++) {
+                    int finalGrade = course.finalBasisPoints(rows.assignment[i], rows.quiz[i], rows.exam[i]);
+                    moments.sum += finalGrade;
+                    moments.sumOfSquares += (double) finalGrade * finalGrade;
+                    moments.max = Math.max(moments.max, finalGrade);
+                }
+                return moments;
+            }
+            int mid = (from + to) >>> 1;
+            MomentsTask left = new MomentsTask(course, rows, from, mid);
+            left.fork();
+            Moments right = new MomentsTask(course, rows, mid, to).compute();
+            Moments moments = left.join();
+            moments.sum += right.sum;
+            moments.sumOfSquares += right.sumOfSquares;
+            moments.max = Math.max(moments.max, right.max);
+            return moments;
+        }
+    }
+
+    // Curves rows [from, to) into the preview's arrays and adds their letter counts
+    private static class CurveTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Preview preview;
+        private final int from;
+        private final int to;
+
+        CurveTask(Preview preview, int from, int to) {
+            this.preview = preview;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > LEAF_SIZE) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new CurveTask(preview, from, mid), new CurveTask(preview, mid, to));
+                return;
+            }
+            Course course = preview.course;
+            GradingPolicy policy = course.getPolicy();
+            Rows rows = preview.rows;
+            Map<String, Integer> before = new LinkedHashMap<>();
+            Map<String, Integer> after = new LinkedHashMap<>();
+            long finalSum = 0;
+            for (int i = from; i < to; i++) {
+                int a = curve(rows.assignment[i], preview.slope, preview.shift);
+                int q = curve(rows.quiz[i], preview.slope, preview.shift);
+                int e = curve(rows.exam[i], preview.slope, preview.shift);
+                preview.curvedAssignment[i] = a;
+                preview.curvedQuiz[i] = q;
+                preview.curvedExam[i] = e;
+                int curvedFinal = course.finalBasisPoints(a, q, e);
+                preview.curvedFinals[i] = curvedFinal;
+                finalSum += curvedFinal;
+                before.merge(policy.letter(course.finalBasisPoints(rows.assignment[i], rows.quiz[i], rows.exam[i])),
+                        1, Integer::sum);
+                after.merge(policy.letter(curvedFinal), 1, Integer::sum);
+            }
+            preview.addCounts(before, after, finalSum);
+        }
+    }
+}
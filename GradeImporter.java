@@ -0,0 +1,366 @@
+package com.mycompany.projectgrading;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Imports a course's grades from a CSV or TSV file with one row per student:
+ * student id, assignment, quiz and exam score. A header row naming the columns
+ * (student_id, assignment, quiz, exam, in any order) is optional; without one
+ * the columns are taken in that order. The delimiter is a tab when the first
+ * line has one, a comma otherwise.
+ *
+ * The file is streamed in chunks of -Ddb.import.chunkSize rows (default 500).
+ * Each chunk is validated in parallel (scores 0-100, known student, enrolled
+ * in the course, not repeated in the file) and its valid rows are written,
+ * with a notification per student, as JDBC batches in one transaction. Rows
+ * that fail validation are skipped and listed in the result; rows of chunks
+ * already committed stay imported when a later chunk fails or the import is
+ * cancelled.
+ */
+public class GradeImporter {
+    static final int CHUNK_SIZE = Integer.getInteger("db.import.chunkSize", 500);
+
+    private static final String[] COLUMNS = {"student_id", "assignment", "quiz", "exam"};
+
+    /**
+     * Imports the file into the course.
+     *
+     * @param task the running task, for progress and cancellation; may be null
+     * @throws IllegalArgumentException when the course does not exist or the header is malformed
+     */
+    public static Result importFile(BackgroundTasks.Task task, Path file, int courseId)
+            throws SQLException, IOException {
+        long started = System.nanoTime();
+        Course course;
+        Set<Integer> students = new HashSet<>();
+        Set<Integer> enrolled = new HashSet<>();
+        try (Connection connection = DatabaseConfig.getReadConnection()) {
+            course = GradeMaterializer.fetchCourse(connection, courseId);
+            if (course == null) {
+                throw new IllegalArgumentException("Course not found.");
+            }
+            readIds(connection, Query.ALL_STUDENTS, null, students);
+            readIds(connection, Query.ENROLLED_STUDENT_IDS, courseId, enrolled);
+        }
+
+        Result result = new Result(file);
+        long fileSize = Math.max(1, Files.size(file));
+        long[] bytesRead = new long[1];
+        // Counts bytes as the reader consumes them, for the progress bar
+        InputStream counting = new FilterInputStream(Files.newInputStream(file)) {
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                int read = super.read(buffer, offset, length);
+                if (read > 0) {
+                    bytesRead[0] += read;
+                }
+                return read;
+            }
+        };
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(counting, StandardCharsets.UTF_8))) {
+            String line = reader.readLine();
+            int lineNumber = 1;
+            if (line != null && line.startsWith("\uFEFF")) {
+                line = line.substring(1); // Byte order mark written by spreadsheet programs
+            }
+            String delimiter = line != null && line.indexOf('\t') >= 0 ? "\t" : ",";
+            int[] order = {0, 1, 2, 3};
+            if (line != null && isHeader(line, delimiter)) {
+                order = columnOrder(line, delimiter);
+                line = reader.readLine();
+                lineNumber++;
+            }
+
+            Set<Integer> seen = new HashSet<>();
+            List<String> lines = new ArrayList<>(CHUNK_SIZE);
+            List<Integer> lineNumbers = new ArrayList<>(CHUNK_SIZE);
+            while (line != null) {
+                if (!line.isBlank()) {
+                    lines.add(line);
+                    lineNumbers.add(lineNumber);
+                }
+                line = reader.readLine();
+                lineNumber++;
+                if (lines.size() == CHUNK_SIZE || (line == null && !lines.isEmpty())) {
+                    if (task != null) {
+                        task.checkCancelled();
+                    }
+                    importChunk(course, lines, lineNumbers, delimiter, order, students, enrolled, seen, result);
+                    lines.clear();
+                    lineNumbers.clear();
+                    if (task != null) {
+                        task.setProgress((int) (bytesRead[0] * 1000 / fileSize), 1000,
+                                result.imported + " rows imported, " + result.errors.size() + " errors");
+                    }
+                }
+            }
+        }
+
+        result.elapsedMs = Math.max(1, (System.nanoTime() - started) / 1_000_000);
+        return result;
+    }
+
+    // Validates one chunk in parallel, then writes its valid rows in one transaction
+    private static void importChunk(Course course, List<String> lines, List<Integer> lineNumbers, String delimiter, int[] order,
+                                    Set<Integer> students, Set<Integer> enrolled, Set<Integer> seen, Result result)
+            throws SQLException {
+        List<Row> rows = IntStream.range(0, lines.size()).parallel()
+                .mapToObj(i -> parse(lines.get(i), lineNumbers.get(i), delimiter, order, students, enrolled))
+                .collect(Collectors.toList());
+
+        List<Row> valid = new ArrayList<>(rows.size());
+        for (Row row : rows) {
+            result.rowsRead++;
+            if (row.error != null) {
+                result.errors.add(new RowError(row.lineNumber, row.error));
+            } else if (!seen.add(row.studentId)) {
+                result.errors.add(new RowError(row.lineNumber, "Student " + row.studentId + " appears more than once"));
+            } else {
+                valid.add(row);
+            }
+        }
+        if (valid.isEmpty()) {
+            return;
+        }
+
+        try (Connection connection = DatabaseConfig.getWriteConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement upsert = connection.prepareStatement(Query.UPSERT_GRADE.sql());
+                 PreparedStatement notify = connection.prepareStatement(Query.INSERT_NOTIFICATION.sql())) {
+                String message = course.getName() + " grade is added.";
+                for (Row row : valid) {
+                    int finalGrade = course.finalBasisPoints(row.assignment, row.quiz, row.exam);
+                    String letterGrade = course.getPolicy().letter(finalGrade);
+                    upsert.setInt(1, row.studentId);
+                    upsert.setInt(2, course.getCourseId());
+                    upsert.setInt(3, row.assignment);
+                    upsert.setInt(4, row.quiz);
+                    upsert.setInt(5, row.exam);
+                    upsert.setInt(6, finalGrade);
+                    upsert.setString(7, letterGrade);
+                    upsert.setInt(8, course.getWeightsVersion());
+                    upsert.setInt(9, row.assignment);
+                    upsert.setInt(10, row.quiz);
+                    upsert.setInt(11, row.exam);
+                    upsert.setInt(12, finalGrade);
+                    upsert.setString(13, letterGrade);
+                    upsert.setInt(14, course.getWeightsVersion());
+                    upsert.addBatch();
+
+                    notify.setInt(1, row.studentId);
+                    notify.setString(2, message);
+                    notify.addBatch();
+                }
+                upsert.executeBatch();
+                notify.executeBatch();
+            }
+            connection.commit();
+        }
+        result.imported += valid.size();
+        // Every figure derived from the course's grades may have moved, even if a later chunk fails
+        GradeCaches.courseChanged(course.getCourseId());
+    }
+
+    private static Row parse(String line, int lineNumber, String delimiter, int[] order,
+                             Set<Integer> students, Set<Integer> enrolled) {
+        String[] cells = line.split(delimiter, -1);
+        if (cells.length < COLUMNS.length) {
+            return Row.error(lineNumber, "Expected " + COLUMNS.length + " columns, found " + cells.length);
+        }
+        int[] values = new int[COLUMNS.length];
+        for (int column = 0; column < COLUMNS.length; column++) {
+            String cell = unquote(cells[order[column]]);
+            try {
+                values[column] = Integer.parseInt(cell);
+            } catch (NumberFormatException ex) {
+                return Row.error(lineNumber, "Invalid " + COLUMNS[column] + ": '" + cell + "'");
+            }
+            if (column > 0 && (values[column] < 0 || values[column] > 100)) {
+                return Row.error(lineNumber, COLUMNS[column] + " score " + values[column] + " is not between 0 and 100");
+            }
+        }
+        if (!students.contains(values[0])) {
+            return Row.error(lineNumber, "Unknown student id " + values[0]);
+        }
+        if (!enrolled.contains(values[0])) {
+            return Row.error(lineNumber, "Student " + values[0] + " is not enrolled in the course");
+        }
+        return new Row(lineNumber, values[0], values[1], values[2], values[3], null);
+    }
+
+    private static boolean isHeader(String line, String delimiter) {
+        String first = unquote(line.split(delimiter, -1)[0]);
+        return !first.isEmpty() && !Character.isDigit(first.charAt(0));
+    }
+
+    // Maps each expected column to its position in the header
+    private static int[] columnOrder(String header, String delimiter) {
+        String[] names = header.split(delimiter, -1);
+        int[] order = new int[COLUMNS.length];
+        for (int column = 0; column < COLUMNS.length; column++) {
+            order[column] = -1;
+            for (int i = 0; i < names.length; i++) {
+                String name = unquote(names[i]).toLowerCase(Locale.ROOT).replace(' ', '_');
+                if (name.equals(COLUMNS[column]) || name.equals(COLUMNS[column] + "_score")) {
+                    order[column] = i;
+                }
+            }
+            if (order[column] == -1) {
+                throw new IllegalArgumentException("The header has no '" + COLUMNS[column] + "' column");
+            }
+        }
+        return order;
+    }
+
+    static String unquote(String cell) {
+        String trimmed = cell.trim();
+        if (trimmed.length() >= 2 && trimmed.startsWith("\"") && trimmed.endsWith("\"")) {
+            trimmed = trimmed.substring(1, trimmed.length() - 1).trim();
+        }
+        return trimmed;
+    }
+
+    private static void readIds(Connection connection, Query query, Integer courseId, Set<Integer> ids)
+            throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(query.sql())) {
+            if (courseId != null) {
+                stmt.setInt(1, courseId);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getInt("student_id"));
+                }
+            }
+        }
+    }
+
+    /**
+     * One parsed line: the grade, or why it was rejected.
+     */
+    private static class Row {
+        private final int lineNumber;
+        private final int studentId;
+        private final int assignment;
+        private final int quiz;
+        private final int exam;
+        private final String error;
+
+        Row(int lineNumber, int studentId, int assignment, int quiz, int exam, String error) {
+            this.lineNumber = lineNumber;
+            this.studentId = studentId;
+            this.assignment = assignment;
+            this.quiz = quiz;
+            this.exam = exam;
+            this.error = error;
+        }
+
+        static Row error(int lineNumber, String error) {
+            return new Row(lineNumber, 0, 0, 0, 0, error);
+        }
+    }
+
+    /**
+     * A rejected line of the file.
+     */
+    public static class RowError {
+        private final int lineNumber;
+        private final String message;
+
+        RowError(int lineNumber, String message) {
+            this.lineNumber = lineNumber;
+            this.message = message;
+        }
+
+        public int getLineNumber() {
+            return lineNumber;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            return "Line " + lineNumber + ": " + message;
+        }
+    }
+
+    /**
+     * What an import did: rows read and imported, the rejected lines and the throughput.
+     */
+    public static class Result {
+        private final Path file;
+        private final List<RowError> errors = new ArrayList<>();
+        private int rowsRead;
+        private int imported;
+        private long elapsedMs;
+        private Path errorReport;
+
+        Result(Path file) {
+            this.file = file;
+        }
+
+        public int getRowsRead() {
+            return rowsRead;
+        }
+
+        public int getImported() {
+            return imported;
+        }
+
+        public List<RowError> getErrors() {
+            return errors;
+        }
+
+        public long getElapsedMs() {
+            return elapsedMs;
+        }
+
+        public long getRowsPerSecond() {
+            return rowsRead * 1000L / elapsedMs;
+        }
+
+        /**
+         * The file last written by {@link #writeErrorReport}, or null.
+         */
+        public Path getErrorReport() {
+            return errorReport;
+        }
+
+        /**
+         * Writes the rejected lines, one per line, to the given file.
+         */
+        public void writeErrorReport(Path report) throws IOException {
+            errorReport = report;
+            try (BufferedWriter writer = Files.newBufferedWriter(report, StandardCharsets.UTF_8)) {
+                writer.write("Grade import of " + file.getFileName() + ": " + imported + " of " + rowsRead
+                        + " rows imported, " + errors.size() + " rejected");
+                writer.newLine();
+                for (RowError error : errors) {
+                    writer.write(error.toString());
+                    writer.newLine();
+                }
+            }
+        }
+    }
+}
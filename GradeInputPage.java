@@ -3,15 +3,23 @@ package com.mycompany.projectgrading;
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 class GradeInputPage extends JFrame {
+    private static final int TOP_STUDENTS = 10;
+
     private ArrayList<Course> courses;
     private DefaultTableModel tableModel;
     private JComboBox<String> courseSelector;
     private JComboBox<String> gradingScaleSelector;
     private JTable tableStudents;
+    private BackgroundTasks.Loader tableLoader;
     private User currentUser;
 
     public GradeInputPage(ArrayList<Course> courses, User currentUser) {
@@ -80,7 +88,7 @@ class GradeInputPage extends JFrame {
 
         // Students Table
         tableModel = new DefaultTableModel(
-                new String[]{"Student ID", "Student Name", "Assignment", "Quiz", "Exam", "Final Grade"}, 0
+                new String[]{"Student ID", "Student Name", "Assignment", "Quiz", "Exam", "Final Grade", "Class Rank"}, 0
         ) {
             @Override
             public boolean isCellEditable(int row, int column) {
@@ -92,9 +100,18 @@ class GradeInputPage extends JFrame {
         scrollPane.setBounds(50, 120, 500, 300);
         leftPanel.add(scrollPane);
 
+        // Shows "Loading..." while the table is fetched in the background
+        JLabel labelStatus = new JLabel();
+        labelStatus.setFont(new Font("Arial", Font.ITALIC, 12));
+        labelStatus.setBounds(50, 422, 500, 20);
+        leftPanel.add(labelStatus);
+        tableLoader = new BackgroundTasks.Loader(leftPanel, labelStatus);
+
         // Action Buttons
         leftPanel.add(createStyledButton("Add Grade", 50, 450, e -> addGrade((String) courseSelector.getSelectedItem())));
         leftPanel.add(createStyledButton("Edit Grade", 220, 450, e -> editGrade((String) courseSelector.getSelectedItem())));
+        leftPanel.add(createStyledButton("Top Students", 390, 450, e -> showTopStudents((String) courseSelector.getSelectedItem())));
+        leftPanel.add(createStyledButton("Import Grades", 50, 490, e -> importGrades((String) courseSelector.getSelectedItem())));
 
         return leftPanel;
     }
@@ -151,53 +168,140 @@ class GradeInputPage extends JFrame {
     }
 
     private void updateStudentTable(String courseName) {
+        // Clear at once so the grade buttons never act on the previous course's rows
         tableModel.setRowCount(0);
+        boolean showPercentage = "Percentage".equals(gradingScaleSelector.getSelectedItem());
 
-        String query = "SELECT s.student_id, s.name, g.assignment_score, g.quiz_score, g.exam_score " +
-                "FROM Students s " +
-                "LEFT JOIN Grades g ON s.student_id = g.student_id " +
-                "AND g.course_id = (SELECT course_id FROM Courses WHERE name = ?) " +
-                "WHERE s.student_id IN (SELECT student_id FROM Enrollments " +
-                "WHERE course_id = (SELECT course_id FROM Courses WHERE name = ?))";
+        tableLoader.load("Loading students of " + courseName + "...",
+                task -> fetchStudentRows(task, courseName, showPercentage),
+                rows -> {
+                    for (Object[] row : rows) {
+                        tableModel.addRow(row);
+                    }
+                },
+                ex -> JOptionPane.showMessageDialog(this, "Error fetching student grades: " + ex.getMessage()));
+    }
 
-        try (Connection connection = DatabaseConfig.getConnection();
-             PreparedStatement stmt = connection.prepareStatement(query)) {
+    // Runs on a worker thread; builds the table rows without touching Swing
+    private List<Object[]> fetchStudentRows(BackgroundTasks.Task task, String courseName, boolean showPercentage)
+            throws SQLException {
+        List<Object[]> rows = new ArrayList<>();
+        Course course = findCourse(courseName);
+        try (Connection connection = DatabaseConfig.getReadConnection()) {
+            try (PreparedStatement stmt = connection.prepareStatement(Query.GRADES_FOR_COURSE.sql())) {
+                stmt.setString(1, courseName);
+                stmt.setString(2, courseName);
+
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        task.checkCancelled();
+                        int studentId = rs.getInt("student_id");
+                        String studentName = rs.getString("name");
+                        int assignmentScore = rs.getInt("assignment_score");
+                        int quizScore = rs.getInt("quiz_score");
+                        int examScore = rs.getInt("exam_score");
+
+                        // Materialized on write; null until the student is graded
+                        int finalBasisPoints = rs.getInt("final_grade");
+                        String gradeDisplay = rs.wasNull() ? "Not Entered"
+                                : showPercentage ? GradingPolicy.formatPercent(finalBasisPoints)
+                                : rs.getString("letter_grade");
+                        ClassRankIndex.Standing standing = course == null ? null
+                                : ClassRankIndex.standing(course.getCourseId(), studentId);
+
+                        rows.add(new Object[]{
+                                studentId, studentName,
+                                assignmentScore > 0 ? assignmentScore : "Not Entered",
+                                quizScore > 0 ? quizScore : "Not Entered",
+                                examScore > 0 ? examScore : "Not Entered",
+                                gradeDisplay,
+                                standing != null ? standing.format() : "-"
+                        });
+                    }
+                }
+            }
+        }
+        return rows;
+    }
 
-            stmt.setString(1, courseName);
-            stmt.setString(2, courseName);
+    private Course findCourse(String courseName) {
+        for (Course course : courses) {
+            if (course.getName().equals(courseName)) {
+                return course;
+            }
+        }
+        return null;
+    }
 
-            ResultSet rs = stmt.executeQuery();
-            int[] weights = getCourseWeights(courseName);
-            int assignmentWeight = weights[0];
-            int quizWeight = weights[1];
-            int examWeight = weights[2];
-
-            while (rs.next()) {
-                int studentId = rs.getInt("student_id");
-                String studentName = rs.getString("name");
-                int assignmentScore = rs.getInt("assignment_score");
-                int quizScore = rs.getInt("quiz_score");
-                int examScore = rs.getInt("exam_score");
-
-                double finalGrade = (assignmentScore * assignmentWeight / 100.0) +
-                        (quizScore * quizWeight / 100.0) +
-                        (examScore * examWeight / 100.0);
-
-                String gradeDisplay = gradingScaleSelector.getSelectedItem().equals("Percentage")
-                        ? String.format("%.2f%%", finalGrade)
-                        : convertToLetterGrade(finalGrade);
-
-                tableModel.addRow(new Object[]{
-                        studentId, studentName,
-                        assignmentScore > 0 ? assignmentScore : "Not Entered",
-                        quizScore > 0 ? quizScore : "Not Entered",
-                        examScore > 0 ? examScore : "Not Entered",
-                        gradeDisplay
-                });
+    private void showTopStudents(String courseName) {
+        Course course = findCourse(courseName);
+        if (course == null) {
+            JOptionPane.showMessageDialog(this, "Please select a course.");
+            return;
+        }
+        // Names come from the table, which lists every enrolled student
+        Map<Integer, String> names = new HashMap<>();
+        for (int row = 0; row < tableModel.getRowCount(); row++) {
+            names.put((Integer) tableModel.getValueAt(row, 0), (String) tableModel.getValueAt(row, 1));
+        }
+
+        BackgroundTasks.submit(task -> ClassRankIndex.top(course.getCourseId(), TOP_STUDENTS), top -> {
+            if (top.isEmpty()) {
+                JOptionPane.showMessageDialog(this, "No graded students in " + courseName + " yet.");
+                return;
             }
-        } catch (SQLException ex) {
-            JOptionPane.showMessageDialog(this, "Error fetching student grades: " + ex.getMessage());
+            StringBuilder list = new StringBuilder("Top students in " + courseName + ":\n\n");
+            for (ClassRankIndex.Standing standing : top) {
+                list.append(standing.getRank()).append(". ")
+                        .append(names.getOrDefault(standing.getStudentId(), "Student " + standing.getStudentId()))
+                        .append(" - ").append(GradingPolicy.formatPercent(standing.getFinalGrade())).append("\n");
+            }
+            JOptionPane.showMessageDialog(this, list.toString());
+        }, ex -> JOptionPane.showMessageDialog(this, "Error loading class ranks: " + ex.getMessage()));
+    }
+
+    /**
+     * Imports a CSV or TSV file of grades into the course, then reports the
+     * rejected rows and the throughput.
+     */
+    private void importGrades(String courseName) {
+        Course course = findCourse(courseName);
+        if (course == null) {
+            JOptionPane.showMessageDialog(this, "Please select a course.");
+            return;
+        }
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle("Import grades into " + courseName);
+        chooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter("CSV or TSV files", "csv", "tsv", "txt"));
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
         }
+        Path file = chooser.getSelectedFile().toPath();
+
+        BackgroundTasks.submitWithProgress(this, "Importing grades into " + courseName, task -> {
+            GradeImporter.Result result = GradeImporter.importFile(task, file, course.getCourseId());
+            if (!result.getErrors().isEmpty()) {
+                result.writeErrorReport(Paths.get(System.getProperty("user.home"), "Documents",
+                        file.getFileName() + "_errors.txt"));
+            }
+            return result;
+        }, result -> {
+            StringBuilder message = new StringBuilder()
+                    .append(result.getImported()).append(" of ").append(result.getRowsRead()).append(" rows imported in ")
+                    .append(result.getElapsedMs()).append(" ms (").append(result.getRowsPerSecond()).append(" rows/sec).");
+            if (!result.getErrors().isEmpty()) {
+                message.append("\n").append(result.getErrors().size()).append(" rows were rejected, e.g.:");
+                for (GradeImporter.RowError error : result.getErrors().subList(0, Math.min(5, result.getErrors().size()))) {
+                    message.append("\n").append(error);
+                }
+                message.append("\nFull error report: ").append(result.getErrorReport());
+            }
+            JOptionPane.showMessageDialog(this, message.toString());
+            updateStudentTable(courseName);
+        }, ex -> {
+            JOptionPane.showMessageDialog(this, "Error importing grades: " + ex.getMessage());
+            updateStudentTable(courseName); // Chunks committed before the failure are kept
+        });
     }
 
     private void addGrade(String courseName) {
@@ -209,75 +313,87 @@ class GradeInputPage extends JFrame {
 
     int studentId = (int) tableModel.getValueAt(selectedRow, 0);
 
-    try (Connection connection = DatabaseConfig.getConnection()) {
-        // Check if the grade already exists
-        String checkGradeQuery = "SELECT COUNT(*) FROM Grades WHERE student_id = ? AND course_id = (SELECT course_id FROM Courses WHERE name = ?)";
-        try (PreparedStatement checkStmt = connection.prepareStatement(checkGradeQuery)) {
-            checkStmt.setInt(1, studentId);
-            checkStmt.setString(2, courseName);
-            ResultSet rs = checkStmt.executeQuery();
-            if (rs.next() && rs.getInt(1) > 0) {
-                JOptionPane.showMessageDialog(this, "Grade already exists for this student. Please use the Edit option to update the grade.");
-                return;
-            }
+    // Check if the grade already exists; no connection is held while the dialog is open
+    BackgroundTasks.submit(task -> {
+        try (Connection connection = DatabaseConfig.getReadConnection()) {
+            return fetchGradeRow(connection, studentId, courseName);
+        }
+    }, existing -> {
+        if (existing == null) {
+            JOptionPane.showMessageDialog(this, "Course not found.");
+            return;
+        }
+        if (existing.scores != null) {
+            JOptionPane.showMessageDialog(this, "Grade already exists for this student. Please use the Edit option to update the grade.");
+            return;
         }
 
         // Proceed with adding a new grade
-        JTextField assignmentScoreField = new JTextField();
-        JTextField quizScoreField = new JTextField();
-        JTextField examScoreField = new JTextField();
-
-        Object[] gradeInputFields = {
-            "Assignment Score:", assignmentScoreField,
-            "Quiz Score:", quizScoreField,
-            "Exam Score:", examScoreField
-        };
-
-        if (JOptionPane.showConfirmDialog(this, gradeInputFields, "Add Grades", JOptionPane.OK_CANCEL_OPTION) == JOptionPane.OK_OPTION) {
-            try {
-                int assignmentScore = Integer.parseInt(assignmentScoreField.getText().trim());
-                int quizScore = Integer.parseInt(quizScoreField.getText().trim());
-                int examScore = Integer.parseInt(examScoreField.getText().trim());
-
-                if (assignmentScore < 0 || assignmentScore > 100 || 
-                    quizScore < 0 || quizScore > 100 || 
-                    examScore < 0 || examScore > 100) {
-                    JOptionPane.showMessageDialog(this, "Scores must be between 0 and 100.");
-                    return;
+        int[] scores = askForScores("Add Grades", "", "", "");
+        if (scores == null) {
+            return;
+        }
+        BackgroundTasks.submit(task -> {
+            try (Connection connection = DatabaseConfig.getWriteConnection()) {
+                connection.setAutoCommit(false);
+                // Read again: another user may have graded the student since the check
+                GradeRow current = lockGradeRow(connection, studentId, courseName);
+                if (current == null || current.scores != null) {
+                    return current;
                 }
+                Course course = current.course;
+                int finalGrade = course.finalBasisPoints(scores[0], scores[1], scores[2]);
+                String letterGrade = course.getPolicy().letter(finalGrade);
 
-                String insertGradeQuery = "INSERT INTO Grades (student_id, course_id, assignment_score, quiz_score, exam_score) " +
-                                          "VALUES (?, (SELECT course_id FROM Courses WHERE name = ?), ?, ?, ?) " +
-                                          "ON DUPLICATE KEY UPDATE assignment_score = ?, quiz_score = ?, exam_score = ?";
-                try (PreparedStatement stmt = connection.prepareStatement(insertGradeQuery)) {
+                GradeCaches.gradeWriteStarted(course.getCourseId());
+                try (PreparedStatement stmt = connection.prepareStatement(Query.UPSERT_GRADE.sql())) {
                     stmt.setInt(1, studentId);
-                    stmt.setString(2, courseName);
-                    stmt.setInt(3, assignmentScore);
-                    stmt.setInt(4, quizScore);
-                    stmt.setInt(5, examScore);
-                    stmt.setInt(6, assignmentScore);
-                    stmt.setInt(7, quizScore);
-                    stmt.setInt(8, examScore);
-                    stmt.executeUpdate();
+                    stmt.setInt(2, course.getCourseId());
+                    stmt.setInt(3, scores[0]);
+                    stmt.setInt(4, scores[1]);
+                    stmt.setInt(5, scores[2]);
+                    stmt.setInt(6, finalGrade);
+                    stmt.setString(7, letterGrade);
+                    stmt.setInt(8, course.getWeightsVersion());
+                    stmt.setInt(9, scores[0]);
+                    stmt.setInt(10, scores[1]);
+                    stmt.setInt(11, scores[2]);
+                    stmt.setInt(12, finalGrade);
+                    stmt.setString(13, letterGrade);
+                    stmt.setInt(14, course.getWeightsVersion());
+                    int inserted = stmt.executeUpdate();
 
                     // Add a notification for the student
-                    String notificationQuery = "INSERT INTO Notifications (student_id, message) VALUES (?, ?)";
-                    try (PreparedStatement notificationStmt = connection.prepareStatement(notificationQuery)) {
+                    try (PreparedStatement notificationStmt = connection.prepareStatement(Query.INSERT_NOTIFICATION.sql())) {
                         notificationStmt.setInt(1, studentId);
                         notificationStmt.setString(2, courseName + " grade is added.");
                         notificationStmt.executeUpdate();
                     }
-
-                    JOptionPane.showMessageDialog(this, "Grade added successfully.");
-                    updateStudentTable(courseName); // Refresh the table
+                    connection.commit();
+
+                    if (inserted == 1) {
+                        GradeCaches.gradeChanged(course, studentId, null,
+                                new CourseStatsStore.Scores(scores[0], scores[1], scores[2]), finalGrade);
+                    } else {
+                        // A row inserted since the locked read became an update; its old scores are unknown
+                        GradeCaches.courseChanged(course.getCourseId());
+                    }
+                } finally {
+                    GradeCaches.gradeWriteFinished(course.getCourseId());
                 }
-            } catch (NumberFormatException ex) {
-                JOptionPane.showMessageDialog(this, "Please enter valid numbers for the scores.");
+                return current;
             }
-        }
-    } catch (SQLException ex) {
-        JOptionPane.showMessageDialog(this, "Error adding grades: " + ex.getMessage());
-    }
+        }, current -> {
+            if (current == null) {
+                JOptionPane.showMessageDialog(this, "Course not found.");
+            } else if (current.scores != null) {
+                JOptionPane.showMessageDialog(this, "Grade already exists for this student. Please use the Edit option to update the grade.");
+            } else {
+                JOptionPane.showMessageDialog(this, "Grade added successfully.");
+                updateStudentTable(courseName); // Refresh the table
+            }
+        }, ex -> JOptionPane.showMessageDialog(this, "Error adding grades: " + ex.getMessage()));
+    }, ex -> JOptionPane.showMessageDialog(this, "Error adding grades: " + ex.getMessage()));
 }
 
 
@@ -290,17 +406,83 @@ private void editGrade(String courseName) {
     }
 
     int studentId = (int) tableModel.getValueAt(selectedRow, 0);
-    JTextField assignmentScoreField = new JTextField(String.valueOf(tableModel.getValueAt(selectedRow, 2)));
-    JTextField quizScoreField = new JTextField(String.valueOf(tableModel.getValueAt(selectedRow, 3)));
-    JTextField examScoreField = new JTextField(String.valueOf(tableModel.getValueAt(selectedRow, 4)));
+    int[] scores = askForScores("Edit Grades", String.valueOf(tableModel.getValueAt(selectedRow, 2)),
+            String.valueOf(tableModel.getValueAt(selectedRow, 3)), String.valueOf(tableModel.getValueAt(selectedRow, 4)));
+    if (scores == null) {
+        return;
+    }
 
-    Object[] gradeInputFields = {
-        "Assignment Score:", assignmentScoreField,
-        "Quiz Score:", quizScoreField,
-        "Exam Score:", examScoreField
-    };
+    BackgroundTasks.submit(task -> {
+        try (Connection connection = DatabaseConfig.getWriteConnection()) {
+            connection.setAutoCommit(false);
+            GradeRow current = lockGradeRow(connection, studentId, courseName);
+            if (current == null) {
+                return null;
+            }
+            Course course = current.course;
+            int finalGrade = course.finalBasisPoints(scores[0], scores[1], scores[2]);
+
+            GradeCaches.gradeWriteStarted(course.getCourseId());
+            try (PreparedStatement stmt = connection.prepareStatement(Query.UPDATE_GRADE.sql())) {
+                stmt.setInt(1, scores[0]);
+                stmt.setInt(2, scores[1]);
+                stmt.setInt(3, scores[2]);
+                stmt.setInt(4, finalGrade);
+                stmt.setString(5, course.getPolicy().letter(finalGrade));
+                stmt.setInt(6, course.getWeightsVersion());
+                stmt.setInt(7, studentId);
+                stmt.setInt(8, course.getCourseId());
+                int updated = stmt.executeUpdate();
 
-    if (JOptionPane.showConfirmDialog(this, gradeInputFields, "Edit Grades", JOptionPane.OK_CANCEL_OPTION) == JOptionPane.OK_OPTION) {
+                // Add a notification for the student
+                try (PreparedStatement notificationStmt = connection.prepareStatement(Query.INSERT_NOTIFICATION.sql())) {
+                    notificationStmt.setInt(1, studentId);
+                    notificationStmt.setString(2, courseName + " grade is edited.");
+                    notificationStmt.executeUpdate();
+                }
+                connection.commit();
+
+                if (updated > 0 && current.scores != null) {
+                    GradeCaches.gradeChanged(course, studentId, current.scores,
+                            new CourseStatsStore.Scores(scores[0], scores[1], scores[2]), finalGrade);
+                } else if (updated > 0) {
+                    // Updated a row inserted since the locked read; its old scores are unknown
+                    GradeCaches.courseChanged(course.getCourseId());
+                }
+            } finally {
+                GradeCaches.gradeWriteFinished(course.getCourseId());
+            }
+            return current;
+        }
+    }, current -> {
+        if (current == null) {
+            JOptionPane.showMessageDialog(this, "Course not found.");
+            return;
+        }
+        JOptionPane.showMessageDialog(this, "Grade updated successfully.");
+        updateStudentTable(courseName); // Refresh the table
+    }, ex -> JOptionPane.showMessageDialog(this, "Error updating grades: " + ex.getMessage()));
+}
+
+    /**
+     * Asks for the three component scores.
+     *
+     * @return assignment, quiz and exam score, or null when cancelled or invalid (already reported)
+     */
+    private int[] askForScores(String title, String assignment, String quiz, String exam) {
+        JTextField assignmentScoreField = new JTextField(assignment);
+        JTextField quizScoreField = new JTextField(quiz);
+        JTextField examScoreField = new JTextField(exam);
+
+        Object[] gradeInputFields = {
+            "Assignment Score:", assignmentScoreField,
+            "Quiz Score:", quizScoreField,
+            "Exam Score:", examScoreField
+        };
+
+        if (JOptionPane.showConfirmDialog(this, gradeInputFields, title, JOptionPane.OK_CANCEL_OPTION) != JOptionPane.OK_OPTION) {
+            return null;
+        }
         try {
             int assignmentScore = Integer.parseInt(assignmentScoreField.getText().trim());
             int quizScore = Integer.parseInt(quizScoreField.getText().trim());
@@ -310,83 +492,62 @@ private void editGrade(String courseName) {
                 quizScore < 0 || quizScore > 100 || 
                 examScore < 0 || examScore > 100) {
                 JOptionPane.showMessageDialog(this, "Scores must be between 0 and 100.");
-                return;
-            }
-
-            try (Connection connection = DatabaseConfig.getConnection();
-                 PreparedStatement stmt = connection.prepareStatement(
-                     "UPDATE Grades SET assignment_score = ?, quiz_score = ?, exam_score = ? " +
-                     "WHERE student_id = ? AND course_id = (SELECT course_id FROM Courses WHERE name = ?)")) {
-
-                stmt.setInt(1, assignmentScore);
-                stmt.setInt(2, quizScore);
-                stmt.setInt(3, examScore);
-                stmt.setInt(4, studentId);
-                stmt.setString(5, courseName);
-                stmt.executeUpdate();
-
-                // Add a notification for the student
-                String notificationQuery = "INSERT INTO Notifications (student_id, message) VALUES (?, ?)";
-                try (PreparedStatement notificationStmt = connection.prepareStatement(notificationQuery)) {
-                    notificationStmt.setInt(1, studentId);
-                    notificationStmt.setString(2, courseName + " grade is edited.");
-                    notificationStmt.executeUpdate();
-                }
-
-                JOptionPane.showMessageDialog(this, "Grade updated successfully.");
-                updateStudentTable(courseName); // Refresh the table
+                return null;
             }
+            return new int[]{assignmentScore, quizScore, examScore};
         } catch (NumberFormatException ex) {
             JOptionPane.showMessageDialog(this, "Please enter valid numbers for the scores.");
-        } catch (SQLException ex) {
-            JOptionPane.showMessageDialog(this, "Error updating grades: " + ex.getMessage());
+            return null;
         }
     }
-}
-
-
-
-    
-
-    private int[] getCourseWeights(String courseName) {
-    String query = "SELECT assignment_weight, quiz_weight, exam_weight FROM Courses WHERE name = ?";
-    try (Connection connection = DatabaseConfig.getConnection();
-         PreparedStatement stmt = connection.prepareStatement(query)) {
-
-        stmt.setString(1, courseName); // Set the course name parameter
-        ResultSet rs = stmt.executeQuery();
-
-        if (rs.next()) {
-            int assignmentWeight = rs.getInt("assignment_weight");
-            int quizWeight = rs.getInt("quiz_weight");
-            int examWeight = rs.getInt("exam_weight");
 
-            // Debugging output
-            System.out.println("Fetched Weights - Assignment: " + assignmentWeight + "%, Quiz: " + quizWeight + "%, Exam: " + examWeight + "%");
+    /**
+     * A course with its weights and the student's grade row in it; scores is
+     * null when the student has no row yet.
+     */
+    private static class GradeRow {
+        private final Course course;
+        private final CourseStatsStore.Scores scores;
 
-            return new int[]{assignmentWeight, quizWeight, examWeight};
-        } else {
-            JOptionPane.showMessageDialog(this, "No course found with name: " + courseName);
+        GradeRow(Course course, CourseStatsStore.Scores scores) {
+            this.course = course;
+            this.scores = scores;
         }
-    } catch (SQLException ex) {
-        JOptionPane.showMessageDialog(this, "Error fetching course weights: " + ex.getMessage());
-        ex.printStackTrace();
     }
 
-    // Return default weights if fetching fails
-    return new int[]{0, 0, 0};
-}
-
+    // fetchGradeRow inside a write's transaction, with the grade row locked until it commits, so the
+    // old scores the statistics delta starts from are the ones the write replaces
+    private GradeRow lockGradeRow(Connection connection, int studentId, String courseName) throws SQLException {
+        GradeRow row = fetchGradeRow(connection, studentId, courseName);
+        if (row == null) {
+            return null;
+        }
+        try (PreparedStatement stmt = connection.prepareStatement(Query.GRADE_ROW_FOR_UPDATE.sql())) {
+            stmt.setInt(1, studentId);
+            stmt.setInt(2, row.course.getCourseId());
+            try (ResultSet rs = stmt.executeQuery()) {
+                return new GradeRow(row.course, rs.next() ? CourseStatsStore.Scores.read(rs) : null);
+            }
+        }
+    }
 
-    private String convertToLetterGrade(double finalGrade) {
-        if (finalGrade >= 95) return "A+";
-        if (finalGrade >= 90) return "A";
-        if (finalGrade >= 85) return "B+";
-        if (finalGrade >= 80) return "B";
-        if (finalGrade >= 75) return "C+";
-        if (finalGrade >= 70) return "C";
-        if (finalGrade >= 65) return "D+";
-        if (finalGrade >= 60) return "D";
-        return "F";
+    // Read before a write: the weights for the materialized grade and the old row
+    // for the course statistics; null for an unknown course
+    private GradeRow fetchGradeRow(Connection connection, int studentId, String courseName) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(Query.GRADE_IN_COURSE.sql())) {
+            stmt.setInt(1, studentId);
+            stmt.setString(2, courseName);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                Course course = new Course(rs.getInt("course_id"), courseName,
+                        rs.getInt("assignment_weight"), rs.getInt("quiz_weight"), rs.getInt("exam_weight"));
+                course.setGradingPolicy(rs.getString("grading_policy"));
+                course.setWeightsVersion(rs.getInt("weights_version"));
+                rs.getInt("graded");
+                return new GradeRow(course, rs.wasNull() ? null : CourseStatsStore.Scores.read(rs));
+            }
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,159 @@
+package com.mycompany.projectgrading;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the materialized final_grade (basis points), letter_grade and
+ * weights_version columns of Grades in step with the scores and the course's
+ * weights and policy, so reads fetch them instead of recomputing.
+ *
+ * Grade writes store all three directly. Changing a course's weights or policy
+ * bumps Courses.weights_version, and every row stamped with another version is
+ * stale until {@link GradeRecomputeJob} has rewritten it.
+ */
+public class GradeMaterializer {
+    static final int CHUNK_SIZE = Integer.getInteger("db.recompute.chunkSize", 500);
+
+    /**
+     * Loads a course's weights, policy and version.
+     *
+     * @return the course, or null when it does not exist
+     */
+    public static Course fetchCourse(Connection connection, int courseId) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(Query.COURSE_WEIGHTS_BY_ID.sql())) {
+            stmt.setInt(1, courseId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                Course course = new Course(courseId, rs.getString("name"),
+                        rs.getInt("assignment_weight"), rs.getInt("quiz_weight"), rs.getInt("exam_weight"));
+                course.setGradingPolicy(rs.getString("grading_policy"));
+                course.setWeightsVersion(rs.getInt("weights_version"));
+                return course;
+            }
+        }
+    }
+
+    /**
+     * Rewrites the final grade and letter of every row of the course that was
+     * computed with other weights, chunk by chunk on the caller's connection.
+     * A row whose scores change meanwhile is left to the write that changed it.
+     *
+     * @return the number of rows rewritten
+     */
+    public static int recomputeCourse(Connection connection, int courseId) throws SQLException {
+        Course course = fetchCourse(connection, courseId);
+        if (course == null) {
+            return 0;
+        }
+        int rewritten = 0;
+        Chunk chunk = recomputeChunk(connection, course, 0, CHUNK_SIZE);
+        while (chunk.scanned > 0) {
+            rewritten += chunk.rewritten;
+            chunk = recomputeChunk(connection, course, chunk.lastStudentId, CHUNK_SIZE);
+        }
+        return rewritten;
+    }
+
+    /**
+     * Counts the course's rows computed with weights other than the given version.
+     */
+    public static int countStale(Connection connection, int courseId, int weightsVersion) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(Query.COUNT_STALE_GRADES.sql())) {
+            stmt.setInt(1, courseId);
+            stmt.setInt(2, weightsVersion);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+    }
+
+    /**
+     * Rewrites up to limit stale rows with a student id above afterStudentId,
+     * in student id order, as one batch.
+     */
+    static Chunk recomputeChunk(Connection connection, Course course, int afterStudentId, int limit)
+            throws SQLException {
+        List<int[]> stale = new ArrayList<>();
+        try (PreparedStatement stmt = connection.prepareStatement(Query.STALE_GRADES_FOR_COURSE.sql())) {
+            stmt.setInt(1, course.getCourseId());
+            stmt.setInt(2, course.getWeightsVersion());
+            stmt.setInt(3, afterStudentId);
+            stmt.setInt(4, limit);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    stale.add(new int[]{rs.getInt("student_id"), scoreOrMissing(rs, "assignment_score"),
+                            scoreOrMissing(rs, "quiz_score"), scoreOrMissing(rs, "exam_score")});
+                }
+            }
+        }
+        if (stale.isEmpty()) {
+            return new Chunk(0, 0, afterStudentId);
+        }
+
+        int rewritten = 0;
+        try (PreparedStatement stmt = connection.prepareStatement(Query.UPDATE_FINAL_GRADE.sql())) {
+            for (int[] row : stale) {
+                int finalGrade = course.finalBasisPoints(Math.max(0, row[1]), Math.max(0, row[2]), Math.max(0, row[3]));
+                stmt.setInt(1, finalGrade);
+                stmt.setString(2, course.getPolicy().letter(finalGrade));
+                stmt.setInt(3, course.getWeightsVersion());
+                stmt.setInt(4, row[0]);
+                stmt.setInt(5, course.getCourseId());
+                stmt.setInt(6, row[1]);
+                stmt.setInt(7, row[2]);
+                stmt.setInt(8, row[3]);
+                stmt.addBatch();
+            }
+            for (int count : stmt.executeBatch()) {
+                // SUCCESS_NO_INFO (-2) still means the row was written
+                rewritten += count == Statement.SUCCESS_NO_INFO ? 1 : Math.max(0, count);
+            }
+        }
+        return new Chunk(stale.size(), rewritten, stale.get(stale.size() - 1)[0]);
+    }
+
+    /**
+     * What one chunk did: rows read, rows rewritten and the last student id read.
+     */
+    static class Chunk {
+        final int scanned;
+        final int rewritten;
+        final int lastStudentId;
+
+        Chunk(int scanned, int rewritten, int lastStudentId) {
+            this.scanned = scanned;
+            this.rewritten = rewritten;
+            this.lastStudentId = lastStudentId;
+        }
+    }
+
+    /**
+     * Computes the columns for every existing grade; used by the migration that adds them.
+     */
+    static void backfill(Connection connection) throws SQLException {
+        List<Integer> courseIds = new ArrayList<>();
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT DISTINCT course_id FROM Grades")) {
+            while (rs.next()) {
+                courseIds.add(rs.getInt(1));
+            }
+        }
+        for (int courseId : courseIds) {
+            recomputeCourse(connection, courseId);
+        }
+    }
+
+    // -1 marks a missing score, matching the COALESCE in UPDATE_FINAL_GRADE
+    private static int scoreOrMissing(ResultSet rs, String column) throws SQLException {
+        int score = rs.getInt(column);
+        return rs.wasNull() ? -1 : score;
+    }
+}
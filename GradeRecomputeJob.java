@@ -0,0 +1,205 @@
+package com.mycompany.projectgrading;
+
+import javax.swing.JOptionPane;
+import java.awt.Component;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Re-derives a course's materialized final grades after its weights or policy
+ * change, in chunks of -Ddb.recompute.chunkSize rows (default 500) with one
+ * short transaction each, so a large course never holds locks on Grades for
+ * long and the UI stays responsive.
+ *
+ * The job's position is checkpointed in grade_recompute_jobs in the same
+ * transaction as each chunk. A job interrupted by a crash or a cancelled
+ * progress dialog resumes from its checkpoint at the next start, and a newer
+ * weight change resets it to start over with the newer weights.
+ */
+public class GradeRecomputeJob {
+    // Rows skipped because their scores changed mid-chunk are retried by another pass
+    private static final int MAX_PASSES = 3;
+    private static final Set<Integer> RUNNING = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Records a job for the course's current weights. Call on the connection and
+     * in the transaction that changed the weights, so both commit together.
+     */
+    public static void schedule(Connection connection, int courseId) throws SQLException {
+        Course course = GradeMaterializer.fetchCourse(connection, courseId);
+        if (course == null) {
+            return;
+        }
+        try (PreparedStatement stmt = connection.prepareStatement(Query.UPSERT_RECOMPUTE_JOB.sql())) {
+            stmt.setInt(1, courseId);
+            stmt.setInt(2, course.getWeightsVersion());
+            stmt.setInt(3, course.getWeightsVersion());
+            stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Runs a scheduled job behind a progress dialog. Cancelling the dialog stops
+     * the job after the current chunk; it resumes at the next start.
+     */
+    public static void runWithProgress(Component parent, int courseId) {
+        BackgroundTasks.submitWithProgress(parent, "Recomputing final grades",
+                task -> run(task, courseId),
+                rows -> { },
+                ex -> JOptionPane.showMessageDialog(parent,
+                        "Final grades could not be recomputed: " + ex.getMessage()
+                                + "\nThe recompute resumes the next time the application starts."));
+    }
+
+    /**
+     * Resumes every job left unfinished by a previous run, in the background.
+     */
+    public static void resumePending() {
+        BackgroundTasks.submit(task -> {
+            List<Integer> courseIds = new ArrayList<>();
+            try (Connection connection = DatabaseConfig.getWriteConnection();
+                 PreparedStatement stmt = connection.prepareStatement(Query.PENDING_RECOMPUTE_JOBS.sql());
+                 ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    courseIds.add(rs.getInt("course_id"));
+                }
+            }
+            int rows = 0;
+            for (int courseId : courseIds) {
+                rows += run(task, courseId);
+            }
+            return rows;
+        }, rows -> { }, ex -> System.err.println("Could not resume grade recompute jobs: " + ex.getMessage()));
+    }
+
+    /**
+     * Runs the course's job until no job is left for it, including one
+     * scheduled by a weight change made while it ran.
+     *
+     * @return the number of rows rewritten; 0 when another thread is already running it
+     */
+    public static int run(BackgroundTasks.Task task, int courseId) throws SQLException {
+        if (!RUNNING.add(courseId)) {
+            return 0;
+        }
+        try {
+            int rewritten = 0;
+            Checkpoint checkpoint = readCheckpoint(courseId);
+            while (checkpoint != null) {
+                rewritten += runPass(task, courseId, checkpoint);
+                checkpoint = readCheckpoint(courseId);
+            }
+            return rewritten;
+        } finally {
+            RUNNING.remove(courseId);
+            // Statistics and GPAs computed with the old weights are dropped even after a partial run
+            GradeCaches.courseChanged(courseId);
+        }
+    }
+
+    // Returns when the job is finished or was reset by a newer weight change
+    private static int runPass(BackgroundTasks.Task task, int courseId, Checkpoint checkpoint) throws SQLException {
+        Course course;
+        int remaining;
+        try (Connection connection = DatabaseConfig.getWriteConnection()) {
+            course = GradeMaterializer.fetchCourse(connection, courseId);
+            if (course == null) {
+                return 0; // The course was deleted and its job with it
+            }
+            if (course.getWeightsVersion() != checkpoint.weightsVersion) {
+                // Weights changed without scheduling (e.g. by an older client); restart for the current ones
+                schedule(connection, courseId);
+                return 0;
+            }
+            remaining = GradeMaterializer.countStale(connection, courseId, checkpoint.weightsVersion);
+        }
+
+        int total = checkpoint.rowsDone + remaining;
+        int done = checkpoint.rowsDone;
+        int afterStudentId = checkpoint.lastStudentId;
+        int passes = 1;
+        int rewritten = 0;
+        while (true) {
+            if (task != null) {
+                task.checkCancelled();
+            }
+            try (Connection connection = DatabaseConfig.getWriteConnection()) {
+                connection.setAutoCommit(false);
+                GradeMaterializer.Chunk chunk = GradeMaterializer.recomputeChunk(connection, course,
+                        afterStudentId, GradeMaterializer.CHUNK_SIZE);
+
+                if (chunk.scanned == 0) {
+                    if (passes < MAX_PASSES && afterStudentId > 0
+                            && GradeMaterializer.countStale(connection, courseId, course.getWeightsVersion()) > 0) {
+                        afterStudentId = 0;
+                        passes++;
+                        continue;
+                    }
+                    try (PreparedStatement stmt = connection.prepareStatement(Query.DELETE_RECOMPUTE_JOB.sql())) {
+                        stmt.setInt(1, courseId);
+                        stmt.setInt(2, course.getWeightsVersion());
+                        stmt.executeUpdate();
+                    }
+                    connection.commit();
+                    return rewritten;
+                }
+
+                try (PreparedStatement stmt = connection.prepareStatement(Query.UPDATE_RECOMPUTE_CHECKPOINT.sql())) {
+                    stmt.setInt(1, chunk.lastStudentId);
+                    stmt.setInt(2, chunk.rewritten);
+                    stmt.setInt(3, courseId);
+                    stmt.setInt(4, course.getWeightsVersion());
+                    if (stmt.executeUpdate() == 0) {
+                        // The weights changed again; this chunk used the old ones
+                        connection.rollback();
+                        return rewritten;
+                    }
+                }
+                connection.commit();
+
+                afterStudentId = chunk.lastStudentId;
+                done += chunk.rewritten;
+                rewritten += chunk.rewritten;
+                if (task != null) {
+                    task.setProgress(Math.min(done, total), total,
+                            course.getName() + ": " + done + " of " + total + " grades");
+                }
+            }
+        }
+    }
+
+    private static Checkpoint readCheckpoint(int courseId) throws SQLException {
+        try (Connection connection = DatabaseConfig.getWriteConnection();
+             PreparedStatement stmt = connection.prepareStatement(Query.RECOMPUTE_JOB_BY_COURSE.sql())) {
+            stmt.setInt(1, courseId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                return new Checkpoint(rs.getInt("weights_version"), rs.getInt("last_student_id"),
+                        rs.getInt("rows_done"));
+            }
+        }
+    }
+
+    /**
+     * A job's saved position.
+     */
+    private static class Checkpoint {
+        private final int weightsVersion;
+        private final int lastStudentId;
+        private final int rowsDone;
+
+        Checkpoint(int weightsVersion, int lastStudentId, int rowsDone) {
+            this.weightsVersion = weightsVersion;
+            this.lastStudentId = lastStudentId;
+            this.rowsDone = rowsDone;
+        }
+    }
+}
@@ -0,0 +1,329 @@
+package com.mycompany.projectgrading;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exports the whole gradebook, one row per enrollment with its course, student,
+ * component scores and final grade, to CSV or JSON lines, optionally gzipped.
+ *
+ * Memory stays constant whatever the row count: the query runs on a
+ * forward-only, read-only statement with a fetch size, so the driver holds one
+ * batch of rows at a time (MySQL streams it through a server-side cursor), and
+ * each row is formatted into one reused buffer and encoded into a fixed
+ * ByteBuffer that is written to the file channel whenever it fills.
+ *
+ * Settings: -Ddb.export.fetchSize sets the rows fetched per round trip
+ * (default 1000) and -Ddb.export.bufferKb the output buffer (default 64).
+ */
+public class GradebookExporter {
+    private static final int FETCH_SIZE = Integer.getInteger("db.export.fetchSize", 1000);
+    private static final int BUFFER_BYTES = Integer.getInteger("db.export.bufferKb", 64) * 1024;
+    private static final String[] COLUMNS = {"course_id", "course_name", "grading_policy", "student_id",
+            "student_name", "email", "assignment_score", "quiz_score", "exam_score", "final_percent", "letter_grade"};
+
+    public enum Format {
+        CSV("csv"),
+        JSON_LINES("jsonl");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        @Override
+        public String toString() {
+            return this == CSV ? "CSV" : "JSON lines";
+        }
+    }
+
+    /**
+     * Writes the gradebook to the file, replacing it. A failed or cancelled
+     * export deletes the partial file.
+     *
+     * @param task the running task, for progress and cancellation; may be null
+     */
+    public static Result export(BackgroundTasks.Task task, Path target, Format format, boolean gzip)
+            throws SQLException, IOException {
+        long started = System.nanoTime();
+        boolean complete = false;
+        try (FileChannel file = FileChannel.open(target, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            WritableByteChannel channel = gzip
+                    ? Channels.newChannel(new GZIPOutputStream(Channels.newOutputStream(file), BUFFER_BYTES))
+                    : file;
+            Result result;
+            try (ChannelWriter out = new ChannelWriter(channel)) {
+                result = write(task, out, format);
+            }
+            result.bytes = Files.size(target);
+            result.elapsedMs = Math.max(1, (System.nanoTime() - started) / 1_000_000);
+            complete = true;
+            return result;
+        } finally {
+            if (!complete) {
+                Files.deleteIfExists(target);
+            }
+        }
+    }
+
+    private static Result write(BackgroundTasks.Task task, ChannelWriter out, Format format)
+            throws SQLException, IOException {
+        Result result = new Result();
+        try (Connection connection = DatabaseConfig.getReadConnection()) {
+            int total;
+            try (PreparedStatement stmt = connection.prepareStatement(Query.COUNT_ENROLLMENTS.sql());
+                 ResultSet rs = stmt.executeQuery()) {
+                total = rs.next() ? rs.getInt(1) : 0;
+            }
+
+            if (format == Format.CSV) {
+                out.append(String.join(",", COLUMNS)).append('\n');
+            }
+            // Not cached: the statement's fetch size and cursor are specific to the export
+            try (PreparedStatement stmt = connection.prepareStatement(Query.EXPORT_GRADEBOOK.sql(),
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                stmt.setFetchSize(FETCH_SIZE);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    Object[] values = new Object[COLUMNS.length];
+                    while (rs.next()) {
+                        values[0] = rs.getInt("course_id");
+                        values[1] = rs.getString("course_name");
+                        values[2] = rs.getString("grading_policy");
+                        values[3] = rs.getInt("student_id");
+                        values[4] = rs.getString("student_name");
+                        values[5] = rs.getString("email");
+                        values[6] = nullableInt(rs, "assignment_score");
+                        values[7] = nullableInt(rs, "quiz_score");
+                        values[8] = nullableInt(rs, "exam_score");
+                        Integer finalGrade = nullableInt(rs, "final_grade");
+                        values[9] = finalGrade == null ? null : new Percent(finalGrade);
+                        values[10] = rs.getString("letter_grade");
+                        if (format == Format.CSV) {
+                            appendCsv(out, values);
+                        } else {
+                            appendJson(out, values);
+                        }
+                        result.rows++;
+
+                        if (result.rows % FETCH_SIZE == 0 && task != null) {
+                            task.checkCancelled();
+                            task.setProgress((int) Math.min(result.rows, total), Math.max(total, 1),
+                                    result.rows + " of " + total + " rows");
+                        }
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private static Integer nullableInt(ResultSet rs, String column) throws SQLException {
+        int value = rs.getInt(column);
+        return rs.wasNull() ? null : value;
+    }
+
+    private static void appendCsv(ChannelWriter out, Object[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                out.append(',');
+            }
+            Object value = values[i];
+            if (value instanceof String) {
+                String text = (String) value;
+                if (text.indexOf(',') >= 0 || text.indexOf('"') >= 0 || text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0) {
+                    out.append('"').append(text.replace("\"", "\"\"")).append('"');
+                } else {
+                    out.append(text);
+                }
+            } else if (value != null) {
+                out.append(value.toString());
+            }
+        }
+        out.append('\n');
+    }
+
+    private static void appendJson(ChannelWriter out, Object[] values) throws IOException {
+        out.append('{');
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                out.append(',');
+            }
+            out.append('"').append(COLUMNS[i]).append("\":");
+            Object value = values[i];
+            if (value == null) {
+                out.append("null");
+            } else if (value instanceof String) {
+                appendJsonString(out, (String) value);
+            } else {
+                out.append(value.toString());
+            }
+        }
+        out.append("}\n");
+    }
+
+    private static void appendJsonString(ChannelWriter out, String text) throws IOException {
+        out.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        out.append('"');
+    }
+
+    /**
+     * A final grade in basis points, written as a percentage with two decimals
+     * and no sign, e.g. 87.50.
+     */
+    private static class Percent {
+        private final int basisPoints;
+
+        Percent(int basisPoints) {
+            this.basisPoints = basisPoints;
+        }
+
+        @Override
+        public String toString() {
+            int fraction = basisPoints % 100;
+            return basisPoints / 100 + (fraction < 10 ? ".0" : ".") + fraction;
+        }
+    }
+
+    /**
+     * Collects characters in a reused CharBuffer and encodes them as UTF-8 into a
+     * fixed ByteBuffer, writing it to the channel each time it fills.
+     */
+    static class ChannelWriter implements AutoCloseable {
+        private final WritableByteChannel channel;
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+        private final CharBuffer chars = CharBuffer.allocate(8192);
+        private final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_BYTES);
+
+        ChannelWriter(WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        ChannelWriter append(char c) throws IOException {
+            if (!chars.hasRemaining()) {
+                encode(false);
+            }
+            chars.put(c);
+            return this;
+        }
+
+        ChannelWriter append(CharSequence text) throws IOException {
+            for (int i = 0; i < text.length(); i++) {
+                append(text.charAt(i));
+            }
+            return this;
+        }
+
+        // Moves the pending characters into the byte buffer, draining it to the channel as needed
+        private void encode(boolean endOfInput) throws IOException {
+            chars.flip();
+            while (true) {
+                CoderResult result = encoder.encode(chars, bytes, endOfInput);
+                if (result.isOverflow()) {
+                    drain();
+                } else if (result.isUnderflow()) {
+                    break;
+                } else {
+                    result.throwException();
+                }
+            }
+            // A surrogate pair split across flushes stays for the next round
+            chars.compact();
+        }
+
+        private void drain() throws IOException {
+            bytes.flip();
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            bytes.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                encode(true);
+                while (encoder.flush(bytes).isOverflow()) {
+                    drain();
+                }
+                drain();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * What an export wrote.
+     */
+    public static class Result {
+        private long rows;
+        private long bytes;
+        private long elapsedMs;
+
+        public long getRows() {
+            return rows;
+        }
+
+        /**
+         * The size of the written file, after compression.
+         */
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getElapsedMs() {
+            return elapsedMs;
+        }
+
+        public long getRowsPerSecond() {
+            return rows * 1000 / elapsedMs;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.mycompany.projectgrading;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The one place where final grades are computed and converted to letters and
+ * grade points.
+ *
+ * Scores are whole percentages and weights whole percents, so a final grade is
+ * exact in basis points (hundredths of a percent): score * weight summed over
+ * the components, 0 to 10000. Each policy compiles its letter boundaries into a
+ * table with one entry per basis point, so a conversion is an array read rather
+ * than a chain of comparisons.
+ */
+public final class GradingPolicy {
+    public static final int MAX_BASIS_POINTS = 10_000;
+
+    public static final GradingPolicy STANDARD = new GradingPolicy("standard", true,
+            new String[]{"A+", "A", "B+", "B", "C+", "C", "D+", "D", "F"},
+            new int[]{9500, 9000, 8500, 8000, 7500, 7000, 6500, 6000, 0},
+            new int[]{500, 451, 401, 351, 301, 251, 201, 101, 0});
+
+    public static final GradingPolicy FOUR_POINT = new GradingPolicy("four-point", true,
+            new String[]{"A", "A-", "B+", "B", "B-", "C+", "C", "C-", "D+", "D", "F"},
+            new int[]{9300, 9000, 8700, 8300, 8000, 7700, 7300, 7000, 6700, 6000, 0},
+            new int[]{400, 370, 330, 300, 270, 230, 200, 170, 130, 100, 0});
+
+    // Pass/fail courses carry credit but do not count toward the GPA
+    public static final GradingPolicy PASS_FAIL = new GradingPolicy("pass-fail", false,
+            new String[]{"P", "F"},
+            new int[]{6000, 0},
+            new int[]{0, 0});
+
+    private static final Map<String, GradingPolicy> BY_NAME = new LinkedHashMap<>();
+
+    static {
+        for (GradingPolicy policy : new GradingPolicy[]{STANDARD, FOUR_POINT, PASS_FAIL}) {
+            BY_NAME.put(policy.name, policy);
+        }
+    }
+
+    private final String name;
+    private final boolean countsTowardGpa;
+    private final String[] letters;
+    private final int[] gradePoints;
+    // Index into letters/gradePoints for every basis point 0..10000
+    private final byte[] bandByBasisPoints = new byte[MAX_BASIS_POINTS + 1];
+
+    /**
+     * @param letters     letters from best to worst
+     * @param lowerBounds the lowest basis-point score of each letter, descending, ending at 0
+     * @param gradePoints grade points of each letter in hundredths
+     */
+    private GradingPolicy(String name, boolean countsTowardGpa, String[] letters, int[] lowerBounds, int[] gradePoints) {
+        if (letters.length != lowerBounds.length || letters.length != gradePoints.length
+                || lowerBounds[lowerBounds.length - 1] != 0) {
+            throw new IllegalArgumentException("Malformed grading policy: " + name);
+        }
+        this.name = name;
+        this.countsTowardGpa = countsTowardGpa;
+        this.letters = letters;
+        this.gradePoints = gradePoints;
+
+        int band = 0;
+        for (int basisPoints = MAX_BASIS_POINTS; basisPoints >= 0; basisPoints--) {
+            while (basisPoints < lowerBounds[band]) {
+                band++;
+            }
+            bandByBasisPoints[basisPoints] = (byte) band;
+        }
+    }
+
+    /**
+     * Returns the policy with the given name, or the standard policy for an
+     * unknown or missing name.
+     */
+    public static GradingPolicy forName(String name) {
+        GradingPolicy policy = name == null ? null : BY_NAME.get(name);
+        return policy != null ? policy : STANDARD;
+    }
+
+    public static String[] names() {
+        return BY_NAME.keySet().toArray(new String[0]);
+    }
+
+    /**
+     * Weighted final grade in basis points. Missing scores count as 0.
+     */
+    public static int finalBasisPoints(int assignmentScore, int quizScore, int examScore,
+                                       int assignmentWeight, int quizWeight, int examWeight) {
+        return assignmentScore * assignmentWeight + quizScore * quizWeight + examScore * examWeight;
+    }
+
+    /**
+     * Formats basis points as a percentage with two decimals, e.g. 8735 as "87.35%".
+     */
+    public static String formatPercent(int basisPoints) {
+        int value = Math.abs(basisPoints);
+        int fraction = value % 100;
+        return (basisPoints < 0 ? "-" : "") + value / 100 + (fraction < 10 ? ".0" : ".") + fraction + "%";
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean countsTowardGpa() {
+        return countsTowardGpa;
+    }
+
+    /**
+     * The policy's letters from best to worst.
+     */
+    public String[] getLetters() {
+        return letters.clone();
+    }
+
+    public String letter(int basisPoints) {
+        return letters[bandByBasisPoints[clamp(basisPoints)]];
+    }
+
+    /**
+     * Grade points in hundredths, e.g. 351 for 3.51.
+     */
+    public int gradePointHundredths(int basisPoints) {
+        return gradePoints[bandByBasisPoints[clamp(basisPoints)]];
+    }
+
+    public double gradePoint(int basisPoints) {
+        return gradePointHundredths(basisPoints) / 100.0;
+    }
+
+    private static int clamp(int basisPoints) {
+        return Math.max(0, Math.min(MAX_BASIS_POINTS, basisPoints));
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
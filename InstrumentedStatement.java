@@ -0,0 +1,217 @@
+package com.mycompany.projectgrading;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.Arrays;
+
+/**
+ * Wraps a statement handed out by the pool so each execution is timed and its
+ * row count recorded in {@link QueryMetrics}. Bound parameters are remembered
+ * so that a slow execution can be logged with the values that made it slow.
+ * The statement and its result sets are also registered with {@link LeakTracker}.
+ *
+ * Registered queries get the timeout of their {@link Query.QueryClass}, and an
+ * execution on a background task is cancelled on the server when the task is.
+ */
+class InstrumentedStatement implements InvocationHandler {
+    private final Statement target;
+    private final String preparedSql;
+    private final LeakTracker.Resource tracking;
+    private Object[] parameters = new Object[0];
+
+    private InstrumentedStatement(Statement target, String preparedSql, LeakTracker.Resource tracking) {
+        this.target = target;
+        this.preparedSql = preparedSql;
+        this.tracking = tracking;
+    }
+
+    /**
+     * @param preparedSql the SQL the statement was prepared with, or null for a plain Statement
+     * @param connection  the leak-tracking record of the owning connection, or null
+     */
+    static Statement wrap(Statement target, String preparedSql, LeakTracker.Resource connection)
+            throws SQLException {
+        // Cached statements keep their settings, so the timeout is applied on every checkout
+        target.setQueryTimeout(Query.timeoutSecondsFor(preparedSql));
+        Class<?> type = target instanceof CallableStatement ? CallableStatement.class
+                : target instanceof PreparedStatement ? PreparedStatement.class
+                : Statement.class;
+        LeakTracker.Resource tracking = LeakTracker.open(LeakTracker.Kind.STATEMENT,
+                describe(preparedSql), target, connection);
+        return (Statement) Proxy.newProxyInstance(
+                Statement.class.getClassLoader(),
+                new Class<?>[]{type},
+                new InstrumentedStatement(target, preparedSql, tracking));
+    }
+
+    private static String describe(String sql) {
+        if (sql == null) {
+            return "statement";
+        }
+        return QueryMetrics.describe(sql);
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        String name = method.getName();
+        if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer
+                && method.getDeclaringClass() != Statement.class) {
+            rememberParameter((Integer) args[0], name.equals("setNull") ? null : args[1]);
+        } else if (name.equals("clearParameters")) {
+            Arrays.fill(parameters, null);
+        } else if (name.equals("unwrap")) {
+            return target.unwrap((Class<?>) args[0]);
+        } else if (name.equals("equals")) {
+            return proxy == args[0];
+        } else if (name.equals("hashCode")) {
+            return System.identityHashCode(proxy);
+        } else if (name.equals("close")) {
+            LeakTracker.closed(tracking);
+        }
+
+        if (!name.startsWith("execute")) {
+            Object result = invokeTarget(method, args);
+            if (result instanceof ResultSet) {
+                return RowCounter.wrap((ResultSet) result, preparedSql, tracking);
+            }
+            return result;
+        }
+
+        String sql = preparedSql != null ? preparedSql
+                : (args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : "<unknown>");
+        BackgroundTasks.Task task = BackgroundTasks.currentTask();
+        if (task != null) {
+            task.statementStarted(target);
+        }
+        long start = System.nanoTime();
+        boolean failed = true;
+        Object result = null;
+        try {
+            result = invokeTarget(method, args);
+            failed = false;
+        } catch (SQLException ex) {
+            // A cancelled task's statement usually fails with a timeout-style error too
+            if (task != null && task.isCancelled()) {
+                QueryMetrics.recordCancellation(sql);
+            } else if (ex instanceof SQLTimeoutException) {
+                QueryMetrics.recordTimeout(sql);
+            }
+            throw ex;
+        } finally {
+            if (task != null) {
+                task.statementFinished(target);
+            }
+            if (QueryMetrics.isEnabled()) {
+                long elapsed = System.nanoTime() - start;
+                QueryMetrics.recordExecution(sql, elapsed, affectedRows(result), failed);
+                if (QueryMetrics.isSlow(elapsed)) {
+                    QueryMetrics.logSlowQuery(sql, parameters.clone(), elapsed, target.getConnection());
+                }
+            }
+        }
+        if (result instanceof ResultSet) {
+            return RowCounter.wrap((ResultSet) result, sql, tracking);
+        }
+        return result;
+    }
+
+    private Object invokeTarget(Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    private void rememberParameter(int index, Object value) {
+        if (index > parameters.length) {
+            parameters = Arrays.copyOf(parameters, Math.max(index, parameters.length * 2));
+        }
+        parameters[index - 1] = value;
+    }
+
+    private static long affectedRows(Object result) {
+        if (result instanceof Integer) {
+            return Math.max(0, (Integer) result);
+        }
+        if (result instanceof Long) {
+            return Math.max(0, (Long) result);
+        }
+        if (result instanceof int[]) {
+            long total = 0;
+            for (int count : (int[]) result) {
+                total += Math.max(0, count);
+            }
+            return total;
+        }
+        return 0;
+    }
+
+    /**
+     * Counts the rows a caller actually reads from a result set and tells the
+     * leak tracker when it is closed.
+     */
+    private static class RowCounter implements InvocationHandler {
+        private final ResultSet target;
+        private final QueryMetrics.StatementStats stats;
+        private final LeakTracker.Resource tracking;
+
+        private RowCounter(ResultSet target, QueryMetrics.StatementStats stats, LeakTracker.Resource tracking) {
+            this.target = target;
+            this.stats = stats;
+            this.tracking = tracking;
+        }
+
+        /**
+         * @param sql the statement's SQL, or null when its rows should not be counted
+         */
+        static ResultSet wrap(ResultSet target, String sql, LeakTracker.Resource statement) {
+            QueryMetrics.StatementStats stats = sql != null && QueryMetrics.isEnabled()
+                    ? QueryMetrics.statsFor(sql) : null;
+            LeakTracker.Resource tracking = LeakTracker.open(LeakTracker.Kind.RESULT_SET,
+                    describe(sql), target, statement);
+            if (stats == null && tracking == null) {
+                return target;
+            }
+            return (ResultSet) Proxy.newProxyInstance(
+                    ResultSet.class.getClassLoader(),
+                    new Class<?>[]{ResultSet.class},
+                    new RowCounter(target, stats, tracking));
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "unwrap":
+                    return target.unwrap((Class<?>) args[0]);
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "close":
+                    LeakTracker.closed(tracking);
+                    break;
+                default:
+                    break;
+            }
+            Object result;
+            try {
+                result = method.invoke(target, args);
+            } catch (InvocationTargetException ex) {
+                throw ex.getCause();
+            }
+            if (stats != null && method.getName().equals("next") && Boolean.TRUE.equals(result)) {
+                stats.addRows(1);
+            }
+            return result;
+        }
+    }
+}
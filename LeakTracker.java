@@ -0,0 +1,278 @@
+package com.mycompany.projectgrading;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Tracks every connection, statement and result set handed out by the pool and
+ * reports the ones that are never closed: anything still open when its
+ * connection goes back to the pool (which is then closed on the page's behalf),
+ * and anything open for longer than the age threshold.
+ *
+ * Settings: -Ddb.leakDetection=off|on|stacks (default on). "on" records the page
+ * method that opened each resource, which is cheap enough to leave enabled;
+ * "stacks" records the full allocation stack. -Ddb.leakThresholdMs sets the age
+ * after which a resource is reported as long-lived (default 60000).
+ */
+public class LeakTracker {
+
+    public enum Kind {
+        CONNECTION("connection"), STATEMENT("statement"), RESULT_SET("resultSet");
+
+        private final String label;
+
+        Kind(String label) {
+            this.label = label;
+        }
+    }
+
+    private enum Mode {
+        OFF, ON, STACKS
+    }
+
+    private static final Mode MODE = parseMode(System.getProperty("db.leakDetection"));
+    private static final long THRESHOLD_NANOS = Long.getLong("db.leakThresholdMs", 60_000L) * 1_000_000L;
+
+    // The JDBC plumbing; the first frame outside these is the code that opened the resource
+    private static final Set<String> INFRASTRUCTURE = Set.of(
+            LeakTracker.class.getName(), ConnectionPool.class.getName(),
+            StatementCache.class.getName(), InstrumentedStatement.class.getName(),
+            DatabaseConfig.class.getName(), ReplicaRouter.class.getName());
+
+    private static final Set<Resource> OPEN = ConcurrentHashMap.newKeySet();
+    private static final AtomicLongArray OPENED = new AtomicLongArray(Kind.values().length);
+    private static final AtomicLongArray LEAKED = new AtomicLongArray(Kind.values().length);
+    private static final AtomicLong LONG_LIVED = new AtomicLong();
+
+    static {
+        if (MODE != Mode.OFF) {
+            ScheduledExecutorService scanner = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "leak-tracker");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long period = Math.max(1_000L, THRESHOLD_NANOS / 2_000_000L);
+            scanner.scheduleWithFixedDelay(LeakTracker::reportLongLived, period, period, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static Mode parseMode(String value) {
+        if (value == null || value.isBlank()) {
+            return Mode.ON;
+        }
+        try {
+            return Mode.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException ex) {
+            System.err.println("Unknown db.leakDetection '" + value + "', using 'on'");
+            return Mode.ON;
+        }
+    }
+
+    public static boolean isEnabled() {
+        return MODE != Mode.OFF;
+    }
+
+    /**
+     * Starts tracking a resource.
+     *
+     * @param target what to close if the resource outlives its connection, or null to only report it
+     * @param owner  the resource this one was created from, or null for a connection
+     * @return the tracking record, or null when tracking is off
+     */
+    static Resource open(Kind kind, String description, AutoCloseable target, Resource owner) {
+        if (MODE == Mode.OFF) {
+            return null;
+        }
+        Resource resource = new Resource(kind, description, target, owner);
+        if (owner != null) {
+            owner.addChild(resource);
+        }
+        OPEN.add(resource);
+        OPENED.incrementAndGet(kind.ordinal());
+        return resource;
+    }
+
+    /**
+     * Marks a resource as closed by its user; its children are closed with it.
+     */
+    static void closed(Resource resource) {
+        if (resource != null) {
+            resource.markClosed();
+        }
+    }
+
+    /**
+     * Called when a connection goes back to the pool: reports and closes every
+     * statement and result set opened on it that the page did not close.
+     */
+    static void release(Resource connection) {
+        if (connection == null) {
+            return;
+        }
+        for (Resource child : connection.takeChildren()) {
+            reclaim(child);
+        }
+        connection.markClosed();
+    }
+
+    private static void reclaim(Resource resource) {
+        for (Resource child : resource.takeChildren()) {
+            reclaim(child);
+        }
+        if (resource.closed) {
+            return;
+        }
+        LEAKED.incrementAndGet(resource.kind.ordinal());
+        report(resource, "still open when its connection was returned to the pool");
+        if (resource.target != null) {
+            try {
+                resource.target.close();
+            } catch (Exception ignored) {
+                // Already unusable; it is being discarded
+            }
+        }
+        resource.markClosed();
+    }
+
+    private static void reportLongLived() {
+        long now = System.nanoTime();
+        for (Resource resource : OPEN) {
+            if (!resource.reportedLongLived && now - resource.openedAt > THRESHOLD_NANOS) {
+                resource.reportedLongLived = true;
+                LONG_LIVED.incrementAndGet();
+                report(resource, "open for " + TimeUnit.NANOSECONDS.toSeconds(now - resource.openedAt) + " s");
+            }
+        }
+    }
+
+    private static void report(Resource resource, String problem) {
+        StringBuilder message = new StringBuilder("Possible JDBC leak: ")
+                .append(resource.kind.label)
+                .append(" [").append(resource.description).append("] ")
+                .append(problem)
+                .append(", opened by ").append(resource.openedBy)
+                .append(" on thread ").append(resource.thread);
+        if (resource.allocation != null) {
+            for (StackTraceElement frame : resource.allocation.getStackTrace()) {
+                message.append("\n\tat ").append(frame);
+            }
+        }
+        System.err.println(message);
+    }
+
+    // The first caller outside the pool and proxy classes
+    private static String callerFrame() {
+        return StackWalker.getInstance().walk(frames -> frames
+                .filter(frame -> frame.getClassName().startsWith("com.mycompany.projectgrading.")
+                        && !INFRASTRUCTURE.contains(outerClassName(frame.getClassName())))
+                .findFirst()
+                .map(frame -> frame.getClassName() + "." + frame.getMethodName() + ":" + frame.getLineNumber())
+                .orElse("unknown"));
+    }
+
+    private static String outerClassName(String className) {
+        int nested = className.indexOf('$');
+        return nested < 0 ? className : className.substring(0, nested);
+    }
+
+    public static long getOpenCount(Kind kind) {
+        long count = 0;
+        for (Resource resource : OPEN) {
+            if (resource.kind == kind) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public static long getLeakedCount(Kind kind) {
+        return LEAKED.get(kind.ordinal());
+    }
+
+    public static long getLongLivedCount() {
+        return LONG_LIVED.get();
+    }
+
+    public static String getStats() {
+        if (MODE == Mode.OFF) {
+            return "LeakTracker{off}";
+        }
+        StringBuilder text = new StringBuilder("LeakTracker{mode=").append(MODE.name().toLowerCase(Locale.ROOT));
+        for (Kind kind : Kind.values()) {
+            String label = kind.label;
+            text.append(", ").append(label).append("Opened=").append(OPENED.get(kind.ordinal()))
+                .append(", ").append(label).append("Open=").append(getOpenCount(kind))
+                .append(", ").append(label).append("Leaked=").append(LEAKED.get(kind.ordinal()));
+        }
+        return text.append(", longLived=").append(LONG_LIVED.get()).append('}').toString();
+    }
+
+    /**
+     * One tracked resource.
+     */
+    static class Resource {
+        private final Kind kind;
+        private final String description;
+        private final AutoCloseable target;
+        private final long openedAt = System.nanoTime();
+        private final String thread = Thread.currentThread().getName();
+        private final String openedBy;
+        private final Throwable allocation;
+        private final Resource owner;
+        // Open children only; each removes itself when closed
+        private Set<Resource> children;
+        private volatile boolean closed;
+        private volatile boolean reportedLongLived;
+
+        private Resource(Kind kind, String description, AutoCloseable target, Resource owner) {
+            this.kind = kind;
+            this.description = description;
+            this.target = target;
+            this.owner = owner;
+            this.openedBy = callerFrame();
+            this.allocation = MODE == Mode.STACKS ? new Throwable("Allocation stack") : null;
+        }
+
+        private synchronized void addChild(Resource child) {
+            if (children == null) {
+                children = new LinkedHashSet<>();
+            }
+            children.add(child);
+        }
+
+        private synchronized void removeChild(Resource child) {
+            if (children != null) {
+                children.remove(child);
+            }
+        }
+
+        private synchronized List<Resource> takeChildren() {
+            List<Resource> taken = children == null ? List.of() : new ArrayList<>(children);
+            children = null;
+            return taken;
+        }
+
+        private void markClosed() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            OPEN.remove(this);
+            if (owner != null) {
+                owner.removeChild(this);
+            }
+            for (Resource child : takeChildren()) {
+                child.markClosed();
+            }
+        }
+    }
+}
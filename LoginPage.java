@@ -138,18 +138,36 @@ public class LoginPage extends JFrame {
     }
 
     public static void main(String[] args) {
-        new LoginPage().setVisible(true);
-        try (Connection conn = DatabaseConfig.getConnection()) {
+        // A schema that could not be migrated must not be used
+        try {
+            DatabaseConfig.checkSchema();
+        } catch (SQLException e) {
+            JOptionPane.showMessageDialog(null, "The database could not be prepared:\n" + e.getMessage(),
+                    "Startup Error", JOptionPane.ERROR_MESSAGE);
+            System.exit(1);
+        }
+        // Prepare every registered query up front so a bad one fails here, not on first click
+        try {
+            java.util.List<String> failures = Query.validateAll();
+            if (!failures.isEmpty()) {
+                failures.forEach(System.err::println);
+                JOptionPane.showMessageDialog(null, "Invalid queries found at startup:\n" + String.join("\n", failures),
+                        "Startup Error", JOptionPane.ERROR_MESSAGE);
+                System.exit(1);
+            }
             System.out.println("Connected to the database!");
+            // Finish any grade recompute a previous run left behind
+            GradeRecomputeJob.resumePending();
+            ClassRankIndex.rebuildAllInBackground();
         } catch (SQLException e) {
             e.printStackTrace();
         }
+        new LoginPage().setVisible(true);
     }
 
     private User authenticateUser(String email, String password) throws SQLException {
-        String query = "SELECT user_id, name, email, role FROM Users WHERE email = ? AND password = ?";
-        try (Connection connection = DatabaseConfig.getConnection();
-             PreparedStatement stmt = connection.prepareStatement(query)) {
+        try (Connection connection = DatabaseConfig.getReadConnection();
+             PreparedStatement stmt = connection.prepareStatement(Query.AUTHENTICATE_USER.sql())) {
 
             stmt.setString(1, email);
             stmt.setString(2, password);
@@ -0,0 +1,152 @@
+package com.mycompany.projectgrading;
+
+import java.util.List;
+
+/**
+ * Mergeable quantile sketch for a bounded integer measure such as a score
+ * (0-100) or a final grade in basis points (0-10000).
+ *
+ * Values are counted in fixed-width buckets, so memory is bounded by the
+ * domain, not the number of grades, and two sketches with the same layout
+ * merge by adding their counts. That holds across sections, courses and terms.
+ * Unlike sampling sketches it also supports removal, which a grade edit needs.
+ *
+ * Error bound: ranks are exact. A reported value is the lower bound of its
+ * bucket, so it is at most bucketWidth - 1 below the exact value. With width 1
+ * (scores) quantiles are exact; with width 10 (finals in basis points) they are
+ * within 0.1 percentage points.
+ *
+ * Not thread-safe; {@link CourseStatsStore} guards and snapshots its sketches.
+ */
+public class QuantileSketch {
+    private final int maxValue;
+    private final int bucketWidth;
+    private final long[] counts;
+    private long count;
+
+    public QuantileSketch(int maxValue, int bucketWidth) {
+        if (maxValue < 0 || bucketWidth < 1) {
+            throw new IllegalArgumentException("Invalid sketch layout: max " + maxValue + ", width " + bucketWidth);
+        }
+        this.maxValue = maxValue;
+        this.bucketWidth = bucketWidth;
+        this.counts = new long[maxValue / bucketWidth + 1];
+    }
+
+    public QuantileSketch copy() {
+        QuantileSketch copy = new QuantileSketch(maxValue, bucketWidth);
+        System.arraycopy(counts, 0, copy.counts, 0, counts.length);
+        copy.count = count;
+        return copy;
+    }
+
+    public void add(int value) {
+        add(value, 1);
+    }
+
+    public void remove(int value) {
+        add(value, -1);
+    }
+
+    // Values outside the domain are clamped to its ends
+    void add(int value, int sign) {
+        counts[Math.max(0, Math.min(maxValue, value)) / bucketWidth] += sign;
+        count += sign;
+    }
+
+    /**
+     * Adds another sketch's counts to this one.
+     *
+     * @throws IllegalArgumentException when the layouts differ
+     */
+    public void merge(QuantileSketch other) {
+        if (other.maxValue != maxValue || other.bucketWidth != bucketWidth) {
+            throw new IllegalArgumentException("Cannot merge sketches with different layouts");
+        }
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        count += other.count;
+    }
+
+    /**
+     * Merges sketches of the same layout into a new one; null when there are none.
+     */
+    public static QuantileSketch mergeAll(List<QuantileSketch> sketches) {
+        QuantileSketch merged = null;
+        for (QuantileSketch sketch : sketches) {
+            if (merged == null) {
+                merged = sketch.copy();
+            } else {
+                merged.merge(sketch);
+            }
+        }
+        return merged;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public int getBucketWidth() {
+        return bucketWidth;
+    }
+
+    /**
+     * The largest amount by which a reported value can be below the exact one.
+     */
+    public int getMaxError() {
+        return bucketWidth - 1;
+    }
+
+    /**
+     * Nearest-rank quantile: the smallest value with at least q of the values at
+     * or below it. Returns 0 for an empty sketch.
+     *
+     * @param q between 0 and 1
+     */
+    public int quantile(double q) {
+        if (count <= 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(Math.max(0, Math.min(1, q)) * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return i * bucketWidth;
+            }
+        }
+        return maxValue;
+    }
+
+    public int median() {
+        return quantile(0.5);
+    }
+
+    /**
+     * The 10th to 90th percentiles.
+     */
+    public int[] deciles() {
+        int[] deciles = new int[9];
+        for (int i = 0; i < deciles.length; i++) {
+            deciles[i] = quantile((i + 1) / 10.0);
+        }
+        return deciles;
+    }
+
+    public int getMin() {
+        return quantile(0);
+    }
+
+    public int getMax() {
+        return quantile(1);
+    }
+
+    /**
+     * Counts per bucket; bucket i holds values from i * width up to the next bucket.
+     */
+    public long[] getBucketCounts() {
+        return counts.clone();
+    }
+}
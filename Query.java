@@ -0,0 +1,357 @@
+package com.mycompany.projectgrading;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Central registry of the named SQL statements used by the pages. Keeping the
+ * text in one place means every call site sends byte-identical SQL, so the
+ * per-connection statement cache prepares each query only once. Each query also
+ * belongs to a class that sets its timeout budget.
+ */
+public enum Query {
+    // Authentication and registration
+    AUTHENTICATE_USER("SELECT user_id, name, email, role FROM Users WHERE email = ? AND password = ?"),
+    INSERT_USER("INSERT INTO Users (name, email, password, role) VALUES (?, ?, ?, ?)"),
+    INSERT_STUDENT("INSERT INTO Students (student_id, name, email) VALUES (?, ?, ?)"),
+
+    // Courses
+    ALL_COURSES("SELECT course_id, name FROM Courses"),
+    COURSE_NAMES("SELECT name FROM Courses"),
+    COURSE_LIST_WITH_WEIGHTS("SELECT course_id, name, CONCAT(assignment_weight, '% Assignment, ', quiz_weight, '% Quiz, ', exam_weight, '% Exam') AS weights, " +
+            "grading_policy FROM Courses"),
+    COURSE_WEIGHTS_BY_NAME("SELECT course_id, assignment_weight, quiz_weight, exam_weight, grading_policy, weights_version " +
+            "FROM Courses WHERE name = ?"),
+    COURSE_WEIGHTS_BY_ID("SELECT name, assignment_weight, quiz_weight, exam_weight, grading_policy, weights_version " +
+            "FROM Courses WHERE course_id = ?"),
+    INSERT_COURSE("INSERT INTO Courses (name, assignment_weight, quiz_weight, exam_weight, credit_hours, grading_policy) VALUES (?, ?, ?, ?, ?, ?)"),
+    INSERT_COURSE_NAME("INSERT INTO Courses (name) VALUES (?)"),
+    UPDATE_COURSE_WEIGHTS("UPDATE Courses SET assignment_weight = ?, quiz_weight = ?, exam_weight = ?, " +
+            "weights_version = weights_version + 1 WHERE course_id = ?"),
+    UPDATE_COURSE_BY_NAME("UPDATE Courses SET assignment_weight = ?, quiz_weight = ?, exam_weight = ?, grading_policy = ?, " +
+            "weights_version = weights_version + 1 WHERE name = ?"),
+    DELETE_COURSE_BY_NAME("DELETE FROM Courses WHERE name = ?"),
+    TEACHER_COURSES("SELECT c.course_id, c.name, c.assignment_weight, c.quiz_weight, c.exam_weight, c.grading_policy " +
+            "FROM Courses c " +
+            "JOIN Assignments a ON c.course_id = a.course_id " +
+            "WHERE a.teacher_id = ?"),
+
+    // Course statistics (see CourseStatsStore)
+    COURSE_STATS_SUMMARY(QueryClass.REPORT, """
+            SELECT
+                c.name, c.assignment_weight, c.quiz_weight, c.exam_weight, c.grading_policy,
+                (SELECT COUNT(*) FROM Assignments a WHERE a.course_id = c.course_id) AS sections,
+                (SELECT COUNT(*) FROM Enrollments e WHERE e.course_id = c.course_id) AS enrolled,
+                (SELECT u.name FROM Users u
+                 JOIN Assignments a ON u.user_id = a.teacher_id
+                 WHERE a.course_id = c.course_id LIMIT 1) AS instructor_name
+            FROM Courses c
+            WHERE c.course_id = ?
+            """),
+    // Every course's figures in one statement: each source is grouped by course on
+    // its own before the join, so a course row never multiplies by its sections,
+    // enrollments or grades. Only grades of enrolled students count.
+    COURSE_STATS_TOTALS(QueryClass.REPORT, """
+            SELECT
+                c.course_id, c.name, c.assignment_weight, c.quiz_weight, c.exam_weight, c.grading_policy,
+                COALESCE(a.sections, 0) AS sections,
+                COALESCE(e.enrolled, 0) AS enrolled,
+                COALESCE(g.graded, 0) AS graded,
+                COALESCE(g.complete, 0) AS complete,
+                COALESCE(g.passed, 0) AS passed,
+                COALESCE(g.failed, 0) AS failed,
+                COALESCE(g.assignment_count, 0) AS assignment_count,
+                COALESCE(g.assignment_sum, 0) AS assignment_sum,
+                COALESCE(g.assignment_squares, 0) AS assignment_squares,
+                COALESCE(g.quiz_count, 0) AS quiz_count,
+                COALESCE(g.quiz_sum, 0) AS quiz_sum,
+                COALESCE(g.quiz_squares, 0) AS quiz_squares,
+                COALESCE(g.exam_count, 0) AS exam_count,
+                COALESCE(g.exam_sum, 0) AS exam_sum,
+                COALESCE(g.exam_squares, 0) AS exam_squares
+            FROM Courses c
+            LEFT JOIN (SELECT course_id, COUNT(*) AS sections
+                       FROM Assignments GROUP BY course_id) a ON a.course_id = c.course_id
+            LEFT JOIN (SELECT course_id, COUNT(*) AS enrolled
+                       FROM Enrollments GROUP BY course_id) e ON e.course_id = c.course_id
+            LEFT JOIN (SELECT gr.course_id,
+                              COUNT(*) AS graded,
+                              SUM(CASE WHEN gr.assignment_score IS NOT NULL AND gr.quiz_score IS NOT NULL
+                                        AND gr.exam_score IS NOT NULL THEN 1 ELSE 0 END) AS complete,
+                              SUM(CASE WHEN gr.assignment_score >= 50 AND gr.quiz_score >= 50
+                                        AND gr.exam_score >= 50 THEN 1 ELSE 0 END) AS passed,
+                              SUM(CASE WHEN gr.assignment_score < 50 OR gr.quiz_score < 50
+                                        OR gr.exam_score < 50 THEN 1 ELSE 0 END) AS failed,
+                              COUNT(gr.assignment_score) AS assignment_count,
+                              SUM(gr.assignment_score) AS assignment_sum,
+                              SUM(gr.assignment_score * gr.assignment_score) AS assignment_squares,
+                              COUNT(gr.quiz_score) AS quiz_count,
+                              SUM(gr.quiz_score) AS quiz_sum,
+                              SUM(gr.quiz_score * gr.quiz_score) AS quiz_squares,
+                              COUNT(gr.exam_score) AS exam_count,
+                              SUM(gr.exam_score) AS exam_sum,
+                              SUM(gr.exam_score * gr.exam_score) AS exam_squares
+                       FROM Grades gr
+                       JOIN Enrollments en ON en.course_id = gr.course_id AND en.student_id = gr.student_id
+                       GROUP BY gr.course_id) g ON g.course_id = c.course_id
+            ORDER BY c.course_id
+            """),
+    // Enrolled students' finals in rank order: highest first, ties by student id
+    COURSE_FINAL_GRADES(QueryClass.REPORT, """
+            SELECT g.student_id, g.final_grade
+            FROM Grades g
+            JOIN Enrollments e ON e.course_id = g.course_id AND e.student_id = g.student_id
+            WHERE g.course_id = ? AND g.final_grade IS NOT NULL
+            ORDER BY g.final_grade DESC, g.student_id
+            """),
+    COURSE_STATS_GRADES(QueryClass.REPORT, """
+            SELECT g.assignment_score, g.quiz_score, g.exam_score
+            FROM Grades g
+            JOIN Enrollments e ON e.course_id = g.course_id AND e.student_id = g.student_id
+            WHERE g.course_id = ?
+            """),
+
+    // Students and enrollments
+    ALL_STUDENTS("SELECT student_id, name FROM Students"),
+    STUDENT_LIST_WITH_COURSES("SELECT s.student_id, s.name, s.email, " +
+            "(SELECT GROUP_CONCAT(c.name SEPARATOR ', ') " +
+            " FROM Enrollments e JOIN Courses c ON e.course_id = c.course_id WHERE e.student_id = s.student_id) AS courses " +
+            "FROM Students s"),
+    STUDENT_ID_BY_NAME("SELECT student_id FROM Students WHERE name = ?"),
+    STUDENT_EMAIL_EXISTS("SELECT COUNT(*) FROM Students WHERE email = ?"),
+    UPDATE_STUDENT_BY_EMAIL("UPDATE Students SET name = ?, email = ? WHERE email = ?"),
+    ENROLLED_STUDENT_IDS("SELECT student_id FROM Enrollments WHERE course_id = ?"),
+    // Leaves an existing enrollment as it is (see BulkEnrollment)
+    INSERT_ENROLLMENT_IF_ABSENT("INSERT INTO Enrollments (student_id, course_id) VALUES (?, ?) " +
+            "ON DUPLICATE KEY UPDATE student_id = student_id"),
+    DELETE_ENROLLMENT_BY_COURSE_NAME("DELETE FROM Enrollments " +
+            "WHERE student_id = ? AND course_id = (SELECT course_id FROM Courses WHERE name = ?)"),
+    // Transcripts of a range of students in one pass, in student order (see StudentManagementPage)
+    // One chunk of COHORT_CHUNK_SIZE selected students; a shorter chunk repeats its last id
+    COHORT_TRANSCRIPTS(QueryClass.REPORT, """
+            SELECT e.student_id, c.course_id, c.name AS course_name, c.credit_hours, c.grading_policy,
+                   g.assignment_score, g.quiz_score, g.exam_score, g.final_grade, g.letter_grade
+            FROM Enrollments e
+            JOIN Courses c ON c.course_id = e.course_id
+            LEFT JOIN Grades g ON g.student_id = e.student_id AND g.course_id = e.course_id
+            WHERE e.student_id IN (""" + String.join(", ", java.util.Collections.nCopies(Query.COHORT_CHUNK_SIZE, "?")) + """
+            )
+            ORDER BY e.student_id, e.course_id
+            """),
+    STUDENT_COURSE_GRADES("SELECT c.course_id, c.name AS course_name, g.assignment_score, g.quiz_score, g.exam_score, g.letter_grade " +
+            "FROM Enrollments e " +
+            "JOIN Courses c ON e.course_id = c.course_id " +
+            "JOIN Grades g ON e.student_id = g.student_id AND e.course_id = g.course_id " +
+            "WHERE e.student_id = ?"),
+    // One row per enrollment; final_grade is null until the course is graded
+    STUDENT_GPA_COURSES("SELECT e.student_id, e.course_id, c.name AS course_name, c.credit_hours, c.grading_policy, g.final_grade " +
+            "FROM Enrollments e " +
+            "JOIN Courses c ON e.course_id = c.course_id " +
+            "LEFT JOIN Grades g ON g.student_id = e.student_id AND g.course_id = e.course_id " +
+            "WHERE e.student_id = ?"),
+    ALL_STUDENT_GPA_COURSES(QueryClass.REPORT, "SELECT e.student_id, e.course_id, c.name AS course_name, c.credit_hours, c.grading_policy, g.final_grade " +
+            "FROM Enrollments e " +
+            "JOIN Courses c ON e.course_id = c.course_id " +
+            "LEFT JOIN Grades g ON g.student_id = e.student_id AND g.course_id = e.course_id"),
+
+    // Grades
+    GRADES_FOR_COURSE("SELECT s.student_id, s.name, g.assignment_score, g.quiz_score, g.exam_score, g.final_grade, g.letter_grade " +
+            "FROM Students s " +
+            "LEFT JOIN Grades g ON s.student_id = g.student_id " +
+            "AND g.course_id = (SELECT course_id FROM Courses WHERE name = ?) " +
+            "WHERE s.student_id IN (SELECT student_id FROM Enrollments " +
+            "WHERE course_id = (SELECT course_id FROM Courses WHERE name = ?))"),
+    // The course and the student's current row (null scores and graded when there is none)
+    GRADE_IN_COURSE("SELECT c.course_id, c.assignment_weight, c.quiz_weight, c.exam_weight, c.grading_policy, c.weights_version, " +
+            "g.student_id AS graded, g.assignment_score, g.quiz_score, g.exam_score " +
+            "FROM Courses c " +
+            "LEFT JOIN Grades g ON g.course_id = c.course_id AND g.student_id = ? " +
+            "WHERE c.name = ?"),
+    // Taken inside the write's transaction, so a concurrent write to the row waits and then reads these scores
+    GRADE_ROW_FOR_UPDATE("SELECT assignment_score, quiz_score, exam_score FROM Grades " +
+            "WHERE student_id = ? AND course_id = ? FOR UPDATE"),
+    // Writes carry the computed final grade, its letter and the weights version they were computed with
+    UPSERT_GRADE("INSERT INTO Grades (student_id, course_id, assignment_score, quiz_score, exam_score, " +
+            "final_grade, letter_grade, weights_version) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE assignment_score = ?, quiz_score = ?, exam_score = ?, " +
+            "final_grade = ?, letter_grade = ?, weights_version = ?"),
+    UPDATE_GRADE("UPDATE Grades SET assignment_score = ?, quiz_score = ?, exam_score = ?, " +
+            "final_grade = ?, letter_grade = ?, weights_version = ? " +
+            "WHERE student_id = ? AND course_id = ?"),
+    // Keyset chunks of the rows computed with other weights
+    STALE_GRADES_FOR_COURSE("SELECT student_id, assignment_score, quiz_score, exam_score FROM Grades " +
+            "WHERE course_id = ? AND (weights_version IS NULL OR weights_version <> ?) AND student_id > ? " +
+            "ORDER BY student_id LIMIT ?"),
+    COUNT_STALE_GRADES("SELECT COUNT(*) FROM Grades " +
+            "WHERE course_id = ? AND (weights_version IS NULL OR weights_version <> ?)"),
+    // Only if the scores are still the ones the grade was computed from (-1 stands for null)
+    UPDATE_FINAL_GRADE("UPDATE Grades SET final_grade = ?, letter_grade = ?, weights_version = ? " +
+            "WHERE student_id = ? AND course_id = ? " +
+            "AND COALESCE(assignment_score, -1) = ? AND COALESCE(quiz_score, -1) = ? AND COALESCE(exam_score, -1) = ?"),
+
+    // Grade recompute jobs (see GradeRecomputeJob)
+    UPSERT_RECOMPUTE_JOB("INSERT INTO grade_recompute_jobs (course_id, weights_version, last_student_id, rows_done) " +
+            "VALUES (?, ?, 0, 0) " +
+            "ON DUPLICATE KEY UPDATE weights_version = ?, last_student_id = 0, rows_done = 0"),
+    RECOMPUTE_JOB_BY_COURSE("SELECT weights_version, last_student_id, rows_done FROM grade_recompute_jobs WHERE course_id = ?"),
+    PENDING_RECOMPUTE_JOBS("SELECT course_id FROM grade_recompute_jobs"),
+    // Both only touch the job for the weights it was started with; a newer weight change resets it
+    UPDATE_RECOMPUTE_CHECKPOINT("UPDATE grade_recompute_jobs SET last_student_id = ?, rows_done = rows_done + ?, " +
+            "updated_at = CURRENT_TIMESTAMP WHERE course_id = ? AND weights_version = ?"),
+    DELETE_RECOMPUTE_JOB("DELETE FROM grade_recompute_jobs WHERE course_id = ? AND weights_version = ?"),
+
+    // Grade curves (see GradeCurve)
+    GRADES_FOR_CURVE(QueryClass.REPORT, """
+            SELECT g.student_id, g.assignment_score, g.quiz_score, g.exam_score
+            FROM Grades g
+            JOIN Enrollments e ON e.course_id = g.course_id AND e.student_id = g.student_id
+            WHERE g.course_id = ?
+              AND g.assignment_score IS NOT NULL AND g.quiz_score IS NOT NULL AND g.exam_score IS NOT NULL
+            ORDER BY g.student_id
+            """),
+    INSERT_GRADE_CURVE("INSERT INTO grade_curves (course_id, method, slope, shift, students, applied_by) VALUES (?, ?, ?, ?, ?, ?)"),
+    INSERT_GRADE_CURVE_CHANGE("INSERT INTO grade_curve_changes (curve_id, student_id, " +
+            "old_assignment_score, old_quiz_score, old_exam_score, new_assignment_score, new_quiz_score, new_exam_score) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?)"),
+    // Only if the scores are still the previewed ones
+    UPDATE_CURVED_GRADE("UPDATE Grades SET assignment_score = ?, quiz_score = ?, exam_score = ?, " +
+            "final_grade = ?, letter_grade = ?, weights_version = ? " +
+            "WHERE student_id = ? AND course_id = ? AND assignment_score = ? AND quiz_score = ? AND exam_score = ?"),
+
+    // Gradebook export (see GradebookExporter): every enrollment in course and student order
+    COUNT_ENROLLMENTS(QueryClass.REPORT, "SELECT COUNT(*) FROM Enrollments"),
+    EXPORT_GRADEBOOK(QueryClass.EXPORT, """
+            SELECT c.course_id, c.name AS course_name, c.grading_policy,
+                   s.student_id, s.name AS student_name, s.email,
+                   g.assignment_score, g.quiz_score, g.exam_score, g.final_grade, g.letter_grade
+            FROM Enrollments e
+            JOIN Courses c ON c.course_id = e.course_id
+            JOIN Students s ON s.student_id = e.student_id
+            LEFT JOIN Grades g ON g.course_id = e.course_id AND g.student_id = e.student_id
+            ORDER BY e.course_id, e.student_id
+            """),
+
+    // Notifications
+    INSERT_NOTIFICATION("INSERT INTO Notifications (student_id, message) VALUES (?, ?)"),
+    STUDENT_NOTIFICATIONS("SELECT message FROM Notifications WHERE student_id = ?"),
+    RECENT_NOTIFICATIONS("SELECT message FROM Notifications WHERE student_id = ? ORDER BY created_at DESC LIMIT 10"),
+
+    // Teachers
+    ALL_TEACHERS("SELECT user_id, name FROM Users WHERE role = 'Teacher'"),
+    TEACHER_LIST_WITH_COURSES("SELECT t.name, t.email, " +
+            "(SELECT GROUP_CONCAT(c.name SEPARATOR ', ') FROM Assignments a " +
+            "JOIN Courses c ON a.course_id = c.course_id WHERE a.teacher_id = t.user_id) AS courses " +
+            "FROM Users t WHERE t.role = 'Teacher'"),
+    TEACHER_EMAIL_EXISTS("SELECT COUNT(*) FROM Users WHERE email = ? AND role = 'Teacher'"),
+    // Instructor names per course, read once per report batch instead of per transcript row
+    COURSE_INSTRUCTORS("SELECT a.course_id, u.name FROM Assignments a JOIN Users u ON u.user_id = a.teacher_id " +
+            "ORDER BY a.course_id, a.teacher_id"),
+    // The courses whose cached instructor name a change to this teacher makes stale
+    TEACHER_COURSE_IDS_BY_EMAIL("SELECT a.course_id FROM Assignments a JOIN Users u ON u.user_id = a.teacher_id " +
+            "WHERE u.email = ?"),
+    COURSE_ASSIGNMENT_EXISTS("SELECT COUNT(*) FROM Assignments WHERE course_id = ?"),
+    INSERT_ASSIGNMENT("INSERT INTO Assignments (teacher_id, course_id) VALUES (?, ?)"),
+    UPDATE_USER_BY_EMAIL("UPDATE Users SET name = ?, email = ? WHERE email = ?"),
+    DELETE_USER_BY_EMAIL("DELETE FROM Users WHERE email = ?");
+
+    /**
+     * Timeout budget for a group of queries, overridable with
+     * -Ddb.timeout.<name>Seconds (0 means no limit).
+     */
+    public enum QueryClass {
+        // Lookups behind a click; anything slower is a bad plan
+        INTERACTIVE("interactive", 5),
+        // Aggregations over a whole course or transcript
+        REPORT("report", 60),
+        // Streamed exports, which run as long as the table is large; 0 means no timeout
+        EXPORT("export", 0);
+
+        private final int timeoutSeconds;
+
+        QueryClass(String name, int defaultSeconds) {
+            this.timeoutSeconds = Integer.getInteger("db.timeout." + name + "Seconds", defaultSeconds);
+        }
+
+        public int getTimeoutSeconds() {
+            return timeoutSeconds;
+        }
+    }
+
+    /**
+     * Student ids bound per {@link #COHORT_TRANSCRIPTS} query.
+     */
+    public static final int COHORT_CHUNK_SIZE = 100;
+
+    private static final Map<String, Query> BY_SQL = new HashMap<>();
+
+    static {
+        for (Query query : values()) {
+            BY_SQL.put(query.sql, query);
+        }
+    }
+
+    private final QueryClass queryClass;
+    private final String sql;
+
+    Query(String sql) {
+        this(QueryClass.INTERACTIVE, sql);
+    }
+
+    Query(QueryClass queryClass, String sql) {
+        this.queryClass = queryClass;
+        this.sql = sql;
+    }
+
+    public String sql() {
+        return sql;
+    }
+
+    public QueryClass queryClass() {
+        return queryClass;
+    }
+
+    /**
+     * Returns the timeout in seconds for the given SQL text; 0 (no limit) for
+     * ad-hoc SQL such as schema migrations.
+     */
+    public static int timeoutSecondsFor(String sql) {
+        Query query = sql == null ? null : BY_SQL.get(sql);
+        return query != null ? query.queryClass.getTimeoutSeconds() : 0;
+    }
+
+    /**
+     * Returns the registered name for the given SQL text, or null for ad-hoc SQL.
+     */
+    public static String nameOf(String sql) {
+        Query query = BY_SQL.get(sql);
+        return query != null ? query.name() : null;
+    }
+
+    /**
+     * Prepares every registered query once so that a typo or a schema mismatch
+     * fails at startup instead of on the first click. Preparing on a pooled
+     * connection also warms its statement cache.
+     *
+     * @return a description of each query that failed to prepare; empty when all are valid
+     */
+    public static List<String> validateAll() throws SQLException {
+        List<String> failures = new ArrayList<>();
+        try (Connection connection = DatabaseConfig.getWriteConnection()) {
+            for (Query query : values()) {
+                try (PreparedStatement stmt = connection.prepareStatement(query.sql)) {
+                    // Forces a server round trip for drivers that prepare lazily
+                    stmt.getParameterMetaData();
+                } catch (SQLException ex) {
+                    failures.add(query.name() + ": " + ex.getMessage());
+                }
+            }
+        }
+        return failures;
+    }
+}
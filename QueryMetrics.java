@@ -0,0 +1,406 @@
+package com.mycompany.projectgrading;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Per-statement latency histograms, row counts and connection hold times for
+ * everything that goes through the pool, plus a slow-query log.
+ *
+ * Settings: -Ddb.metrics=false turns collection off, -Ddb.slowQueryMs sets the
+ * slow-query threshold (default 500), -Ddb.slowQueryLog names the log file,
+ * -Ddb.slowQueryExplain=true appends the EXPLAIN plan of each slow statement,
+ * and -Ddb.metrics.dumpFile writes the report there when the JVM exits.
+ */
+public class QueryMetrics {
+    private static final boolean ENABLED = !"false".equalsIgnoreCase(System.getProperty("db.metrics"));
+    private static final long SLOW_QUERY_NANOS = Long.getLong("db.slowQueryMs", 500L) * 1_000_000L;
+    private static final boolean EXPLAIN_SLOW_QUERIES = Boolean.getBoolean("db.slowQueryExplain");
+    private static final Path SLOW_QUERY_LOG = Paths.get(System.getProperty("db.slowQueryLog",
+            System.getProperty("user.home") + "/student-grading-slow-queries.log"));
+
+    // Upper bounds of the latency buckets in microseconds; the last bucket is open-ended
+    private static final long[] BUCKET_BOUNDS_MICROS = {
+        100, 250, 500, 1_000, 2_500, 5_000, 10_000, 25_000, 50_000,
+        100_000, 250_000, 500_000, 1_000_000, 2_500_000, 5_000_000, 10_000_000
+    };
+
+    private static final ConcurrentHashMap<String, StatementStats> STATEMENTS = new ConcurrentHashMap<>();
+    private static final Histogram CONNECTION_HOLD = new Histogram();
+    private static final AtomicLong SLOW_QUERIES = new AtomicLong();
+    private static final AtomicLong TIMED_OUT = new AtomicLong();
+    private static final AtomicLong CANCELLED = new AtomicLong();
+
+    static {
+        String dumpFile = System.getProperty("db.metrics.dumpFile");
+        if (ENABLED && dumpFile != null) {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    dump(Paths.get(dumpFile));
+                } catch (IOException ex) {
+                    System.err.println("Could not write query metrics: " + ex.getMessage());
+                }
+            }, "query-metrics-dump"));
+        }
+    }
+
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    static StatementStats statsFor(String sql) {
+        return STATEMENTS.computeIfAbsent(sql, StatementStats::new);
+    }
+
+    static void recordExecution(String sql, long nanos, long rows, boolean failed) {
+        StatementStats stats = statsFor(sql);
+        stats.latency.record(nanos);
+        stats.rows.addAndGet(rows);
+        if (failed) {
+            stats.errors.incrementAndGet();
+        }
+    }
+
+    static void recordTimeout(String sql) {
+        TIMED_OUT.incrementAndGet();
+        statsFor(sql).timeouts.incrementAndGet();
+    }
+
+    static void recordCancellation(String sql) {
+        CANCELLED.incrementAndGet();
+        statsFor(sql).cancellations.incrementAndGet();
+    }
+
+    static void recordConnectionHold(long nanos) {
+        if (ENABLED) {
+            CONNECTION_HOLD.record(nanos);
+        }
+    }
+
+    static boolean isSlow(long nanos) {
+        return nanos >= SLOW_QUERY_NANOS;
+    }
+
+    /**
+     * Appends a slow statement to the slow-query log, with its bound parameters
+     * and, when enabled, the plan the server chose for it.
+     */
+    static void logSlowQuery(String sql, Object[] parameters, long nanos, Connection connection) {
+        SLOW_QUERIES.incrementAndGet();
+        StringBuilder entry = new StringBuilder();
+        entry.append(LocalDateTime.now())
+             .append(" elapsed=").append(nanos / 1_000_000).append("ms")
+             .append(" query=").append(describe(sql)).append('\n')
+             .append("  sql: ").append(sql.replaceAll("\\s+", " ").trim()).append('\n')
+             .append("  params: ").append(Arrays.toString(parameters)).append('\n');
+
+        if (EXPLAIN_SLOW_QUERIES && connection != null && isExplainable(sql)) {
+            entry.append(explain(sql, parameters, connection));
+        }
+
+        SlowQueryLog.append(entry.toString());
+    }
+
+    /**
+     * One appending writer on its own thread, so a slow statement's thread never
+     * waits on the file or on other threads' entries.
+     */
+    private static class SlowQueryLog {
+        private static final ExecutorService WRITER = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "slow-query-log");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Only used on the writer thread; reopened after a failed write
+        private static BufferedWriter writer;
+
+        static {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                WRITER.shutdown();
+                try {
+                    WRITER.awaitTermination(2, TimeUnit.SECONDS);
+                } catch (InterruptedException ignored) {
+                    // Exiting anyway
+                }
+            }, "slow-query-log-flush"));
+        }
+
+        static void append(String entry) {
+            try {
+                WRITER.execute(() -> write(entry));
+            } catch (RejectedExecutionException ex) {
+                System.err.print(entry); // Shutting down
+            }
+        }
+
+        private static void write(String entry) {
+            try {
+                if (writer == null) {
+                    writer = Files.newBufferedWriter(SLOW_QUERY_LOG, StandardCharsets.UTF_8,
+                            StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                }
+                writer.write(entry);
+                writer.flush();
+            } catch (IOException ex) {
+                System.err.print(entry);
+                try {
+                    if (writer != null) {
+                        writer.close();
+                    }
+                } catch (IOException ignored) {
+                    // Reopened on the next entry
+                }
+                writer = null;
+            }
+        }
+    }
+
+    private static boolean isExplainable(String sql) {
+        String head = sql.stripLeading().toUpperCase();
+        return head.startsWith("SELECT") || head.startsWith("UPDATE")
+                || head.startsWith("DELETE") || head.startsWith("INSERT");
+    }
+
+    private static String explain(String sql, Object[] parameters, Connection connection) {
+        StringBuilder plan = new StringBuilder("  plan:\n");
+        try (PreparedStatement stmt = connection.prepareStatement("EXPLAIN " + sql)) {
+            for (int i = 0; i < parameters.length; i++) {
+                stmt.setObject(i + 1, parameters[i]);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                ResultSetMetaData meta = rs.getMetaData();
+                while (rs.next()) {
+                    plan.append("   ");
+                    for (int column = 1; column <= meta.getColumnCount(); column++) {
+                        plan.append(' ').append(meta.getColumnLabel(column)).append('=').append(rs.getString(column));
+                    }
+                    plan.append('\n');
+                }
+            }
+        } catch (SQLException ex) {
+            plan.append("    EXPLAIN failed: ").append(ex.getMessage()).append('\n');
+        }
+        return plan.toString();
+    }
+
+    /**
+     * The registered query name, or the statement itself on one line, cut at
+     * 60 characters, so unregistered statements stay apart in reports and logs.
+     */
+    static String describe(String sql) {
+        String name = Query.nameOf(sql);
+        if (name != null) {
+            return name;
+        }
+        String flat = sql.replaceAll("\\s+", " ").trim();
+        return flat.length() > 60 ? flat.substring(0, 60) + "..." : flat;
+    }
+
+    /**
+     * Returns the collected statistics for one SQL text, or null if it has not run.
+     */
+    public static StatementStats getStats(String sql) {
+        return STATEMENTS.get(sql);
+    }
+
+    /**
+     * Returns all statement statistics, slowest total time first.
+     */
+    public static List<StatementStats> getAllStats() {
+        List<StatementStats> all = new ArrayList<>(STATEMENTS.values());
+        all.sort(Comparator.comparingLong((StatementStats s) -> s.latency.totalNanos.get()).reversed());
+        return all;
+    }
+
+    public static long getSlowQueryCount() {
+        return SLOW_QUERIES.get();
+    }
+
+    public static long getTimedOutCount() {
+        return TIMED_OUT.get();
+    }
+
+    public static long getCancelledCount() {
+        return CANCELLED.get();
+    }
+
+    /**
+     * Renders every counter as a plain-text report.
+     */
+    public static String report() {
+        StringWriter out = new StringWriter();
+        PrintWriter writer = new PrintWriter(out);
+        writer.println("Query metrics at " + LocalDateTime.now());
+        writer.println("Slow queries (>= " + SLOW_QUERY_NANOS / 1_000_000 + " ms): " + SLOW_QUERIES.get());
+        writer.println("Timed-out statements: " + TIMED_OUT.get() + ", cancelled statements: " + CANCELLED.get());
+        writer.println("Connection hold time: " + CONNECTION_HOLD.summary());
+        writer.println("Resource tracking: " + LeakTracker.getStats());
+        writer.println("Course statistics: " + CourseStatsStore.getStats());
+        writer.println("Course totals: " + CourseStatsService.getStats());
+        writer.println("Student GPAs: " + StudentGpaCache.getStats());
+        writer.println("Class ranks: " + ClassRankIndex.getStats());
+        writer.println("Report templates: " + ReportTemplate.getStats());
+        writer.println();
+        for (StatementStats stats : getAllStats()) {
+            writer.println(stats);
+            writer.println("  histogram: " + stats.latency.buckets());
+        }
+        writer.flush();
+        return out.toString();
+    }
+
+    public static void dump(Path file) throws IOException {
+        Files.writeString(file, report(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Counters for one distinct SQL text.
+     */
+    public static class StatementStats {
+        private final String sql;
+        private final Histogram latency = new Histogram();
+        private final AtomicLong rows = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+        private final AtomicLong timeouts = new AtomicLong();
+        private final AtomicLong cancellations = new AtomicLong();
+
+        StatementStats(String sql) {
+            this.sql = sql;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public long getExecutions() {
+            return latency.count.get();
+        }
+
+        public long getRows() {
+            return rows.get();
+        }
+
+        public long getErrors() {
+            return errors.get();
+        }
+
+        public long getTimeouts() {
+            return timeouts.get();
+        }
+
+        public long getCancellations() {
+            return cancellations.get();
+        }
+
+        void addRows(long count) {
+            rows.addAndGet(count);
+        }
+
+        public double getMeanMillis() {
+            return latency.meanMillis();
+        }
+
+        public double getPercentileMillis(double percentile) {
+            return latency.percentileMillis(percentile);
+        }
+
+        @Override
+        public String toString() {
+            return describe(sql) + ": executions=" + getExecutions() +
+                    ", rows=" + rows.get() +
+                    ", errors=" + errors.get() +
+                    ", timeouts=" + timeouts.get() +
+                    ", cancelled=" + cancellations.get() +
+                    ", " + latency.summary();
+        }
+    }
+
+    /**
+     * Fixed-bucket latency histogram; recording is lock-free.
+     */
+    static class Histogram {
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKET_BOUNDS_MICROS.length + 1);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        void record(long nanos) {
+            long micros = nanos / 1_000;
+            int bucket = 0;
+            while (bucket < BUCKET_BOUNDS_MICROS.length && micros > BUCKET_BOUNDS_MICROS[bucket]) {
+                bucket++;
+            }
+            counts.incrementAndGet(bucket);
+            count.incrementAndGet();
+            totalNanos.addAndGet(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        double meanMillis() {
+            long n = count.get();
+            return n == 0 ? 0 : totalNanos.get() / 1_000_000.0 / n;
+        }
+
+        // Upper bound of the bucket holding the requested percentile
+        double percentileMillis(double percentile) {
+            long n = count.get();
+            if (n == 0) {
+                return 0;
+            }
+            long target = (long) Math.ceil(n * percentile / 100.0);
+            long seen = 0;
+            for (int i = 0; i < BUCKET_BOUNDS_MICROS.length; i++) {
+                seen += counts.get(i);
+                if (seen >= target) {
+                    return BUCKET_BOUNDS_MICROS[i] / 1_000.0;
+                }
+            }
+            return maxNanos.get() / 1_000_000.0;
+        }
+
+        String summary() {
+            return String.format("count=%d, mean=%.3fms, p50<=%.3fms, p95<=%.3fms, p99<=%.3fms, max=%.3fms",
+                    count.get(), meanMillis(), percentileMillis(50), percentileMillis(95),
+                    percentileMillis(99), maxNanos.get() / 1_000_000.0);
+        }
+
+        String buckets() {
+            StringBuilder text = new StringBuilder();
+            for (int i = 0; i < counts.length(); i++) {
+                long n = counts.get(i);
+                if (n == 0) {
+                    continue;
+                }
+                text.append(i < BUCKET_BOUNDS_MICROS.length
+                        ? "<=" + BUCKET_BOUNDS_MICROS[i] / 1_000.0 + "ms"
+                        : ">" + BUCKET_BOUNDS_MICROS[BUCKET_BOUNDS_MICROS.length - 1] / 1_000.0 + "ms")
+                    .append(':').append(n).append(' ');
+            }
+            return text.toString().trim();
+        }
+    }
+}
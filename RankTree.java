@@ -0,0 +1,236 @@
+package com.mycompany.projectgrading;
+
+/**
+ * Order-statistic tree over distinct long keys: an AVL tree whose nodes also
+ * count their subtree, so add, remove, rank-of-key and key-at-rank all take
+ * O(log n), and the first k keys take O(log n + k).
+ *
+ * Not thread-safe; {@link ClassRankIndex} guards its trees.
+ */
+public class RankTree {
+    private Node root;
+
+    /**
+     * Builds a perfectly balanced tree in O(n).
+     *
+     * @param sortedKeys distinct keys in ascending order
+     * @throws IllegalArgumentException when the keys are not strictly ascending
+     */
+    public static RankTree fromSorted(long[] sortedKeys) {
+        for (int i = 1; i < sortedKeys.length; i++) {
+            if (sortedKeys[i - 1] >= sortedKeys[i]) {
+                throw new IllegalArgumentException("Keys are not strictly ascending at index " + i);
+            }
+        }
+        RankTree tree = new RankTree();
+        tree.root = build(sortedKeys, 0, sortedKeys.length - 1);
+        return tree;
+    }
+
+    private static Node build(long[] keys, int from, int to) {
+        if (from > to) {
+            return null;
+        }
+        int mid = (from + to) >>> 1;
+        Node node = new Node(keys[mid]);
+        node.left = build(keys, from, mid - 1);
+        node.right = build(keys, mid + 1, to);
+        update(node);
+        return node;
+    }
+
+    public int size() {
+        return size(root);
+    }
+
+    public boolean contains(long key) {
+        Node node = root;
+        while (node != null) {
+            if (key == node.key) {
+                return true;
+            }
+            node = key < node.key ? node.left : node.right;
+        }
+        return false;
+    }
+
+    /**
+     * @return false when the key was already present
+     */
+    public boolean add(long key) {
+        int before = size();
+        root = insert(root, key);
+        return size() != before;
+    }
+
+    /**
+     * @return false when the key was not present
+     */
+    public boolean remove(long key) {
+        int before = size();
+        root = delete(root, key);
+        return size() != before;
+    }
+
+    /**
+     * The number of keys smaller than the given one, whether or not it is present.
+     */
+    public int rank(long key) {
+        int rank = 0;
+        Node node = root;
+        while (node != null) {
+            if (key <= node.key) {
+                node = node.left;
+            } else {
+                rank += size(node.left) + 1;
+                node = node.right;
+            }
+        }
+        return rank;
+    }
+
+    /**
+     * The key with the given number of smaller keys.
+     *
+     * @throws IndexOutOfBoundsException when index is not below size()
+     */
+    public long get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index " + index + " of " + size());
+        }
+        Node node = root;
+        while (true) {
+            int leftSize = size(node.left);
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index == leftSize) {
+                return node.key;
+            } else {
+                index -= leftSize + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    /**
+     * The smallest k keys in ascending order (fewer when the tree is smaller).
+     */
+    public long[] first(int k) {
+        long[] keys = new long[Math.max(0, Math.min(k, size()))];
+        collect(root, keys, 0);
+        return keys;
+    }
+
+    // In-order walk that stops once the array is full; returns the next free slot
+    private static int collect(Node node, long[] keys, int next) {
+        if (node == null || next == keys.length) {
+            return next;
+        }
+        next = collect(node.left, keys, next);
+        if (next < keys.length) {
+            keys[next++] = node.key;
+        }
+        return collect(node.right, keys, next);
+    }
+
+    private static Node insert(Node node, long key) {
+        if (node == null) {
+            return new Node(key);
+        }
+        if (key < node.key) {
+            node.left = insert(node.left, key);
+        } else if (key > node.key) {
+            node.right = insert(node.right, key);
+        } else {
+            return node;
+        }
+        return balance(node);
+    }
+
+    private static Node delete(Node node, long key) {
+        if (node == null) {
+            return null;
+        }
+        if (key < node.key) {
+            node.left = delete(node.left, key);
+        } else if (key > node.key) {
+            node.right = delete(node.right, key);
+        } else {
+            if (node.left == null) {
+                return node.right;
+            }
+            if (node.right == null) {
+                return node.left;
+            }
+            // Replace with the smallest key of the right subtree
+            Node successor = node.right;
+            while (successor.left != null) {
+                successor = successor.left;
+            }
+            node.key = successor.key;
+            node.right = delete(node.right, successor.key);
+        }
+        return balance(node);
+    }
+
+    private static Node balance(Node node) {
+        update(node);
+        int skew = height(node.left) - height(node.right);
+        if (skew > 1) {
+            if (height(node.left.left) < height(node.left.right)) {
+                node.left = rotateLeft(node.left);
+            }
+            return rotateRight(node);
+        }
+        if (skew < -1) {
+            if (height(node.right.right) < height(node.right.left)) {
+                node.right = rotateRight(node.right);
+            }
+            return rotateLeft(node);
+        }
+        return node;
+    }
+
+    private static Node rotateRight(Node node) {
+        Node left = node.left;
+        node.left = left.right;
+        left.right = node;
+        update(node);
+        update(left);
+        return left;
+    }
+
+    private static Node rotateLeft(Node node) {
+        Node right = node.right;
+        node.right = right.left;
+        right.left = node;
+        update(node);
+        update(right);
+        return right;
+    }
+
+    private static void update(Node node) {
+        node.height = Math.max(height(node.left), height(node.right)) + 1;
+        node.size = size(node.left) + size(node.right) + 1;
+    }
+
+    private static int height(Node node) {
+        return node == null ? 0 : node.height;
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static class Node {
+        private long key;
+        private int height = 1;
+        private int size = 1;
+        private Node left;
+        private Node right;
+
+        Node(long key) {
+            this.key = key;
+        }
+    }
+}
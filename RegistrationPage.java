@@ -156,11 +156,8 @@ class RegistrationPage extends JFrame {
     }
 
     private void registerUser(String name, String email, String password, String role) throws SQLException {
-        String query = "INSERT INTO Users (name, email, password, role) VALUES (?, ?, ?, ?)";
-        String studentQuery = "INSERT INTO Students (student_id, name, email) VALUES (?, ?, ?)";
-
-        try (Connection connection = DatabaseConfig.getConnection();
-             PreparedStatement stmt = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
+        try (Connection connection = DatabaseConfig.getWriteConnection();
+             PreparedStatement stmt = connection.prepareStatement(Query.INSERT_USER.sql(), Statement.RETURN_GENERATED_KEYS)) {
 
             stmt.setString(1, name);
             stmt.setString(2, email);
@@ -171,7 +168,7 @@ class RegistrationPage extends JFrame {
             ResultSet rs = stmt.getGeneratedKeys();
             if (rs.next() && "Student".equalsIgnoreCase(role)) {
                 int userId = rs.getInt(1);
-                try (PreparedStatement studentStmt = connection.prepareStatement(studentQuery)) {
+                try (PreparedStatement studentStmt = connection.prepareStatement(Query.INSERT_STUDENT.sql())) {
                     studentStmt.setInt(1, userId);
                     studentStmt.setString(2, name);
                     studentStmt.setString(3, email);
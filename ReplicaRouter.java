@@ -0,0 +1,171 @@
+package com.mycompany.projectgrading;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Routes read-only work to a replica pool and everything else to the primary.
+ * Reads fall back to the primary when the replica is unreachable, lags by more
+ * than the allowed bound, or this client wrote recently enough that the
+ * replica may not have the change yet (read-your-writes).
+ */
+public class ReplicaRouter {
+    private final ConnectionPool primary;
+    private final ConnectionPool replica;
+    private final long maxLagSeconds;
+    private final long readYourWritesMillis;
+    private final ScheduledExecutorService prober;
+
+    private volatile boolean replicaHealthy;
+    private volatile long replicaLagSeconds = -1;
+    private volatile long lastWriteMillis;
+    // Only the probe thread touches these; an unreadable status is reported once until it recovers
+    private String statusError;
+    private boolean statusErrorReported;
+
+    private final AtomicLong replicaReads = new AtomicLong();
+    private final AtomicLong primaryReads = new AtomicLong();
+    private final AtomicLong writes = new AtomicLong();
+
+    /**
+     * @param replica the replica pool, or null to send every read to the primary
+     */
+    public ReplicaRouter(ConnectionPool primary, ConnectionPool replica, long maxLagSeconds,
+                         long readYourWritesMillis, long probeIntervalMillis) {
+        this.primary = primary;
+        this.replica = replica;
+        this.maxLagSeconds = maxLagSeconds;
+        this.readYourWritesMillis = readYourWritesMillis;
+
+        if (replica == null) {
+            this.prober = null;
+            return;
+        }
+        this.prober = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "replica-lag-probe");
+            thread.setDaemon(true);
+            return thread;
+        });
+        prober.scheduleWithFixedDelay(this::probe, 0, probeIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrows a connection for statements that modify data, and opens the
+     * read-your-writes window so follow-up reads also see the primary.
+     */
+    public Connection getWriteConnection() throws SQLException {
+        writes.incrementAndGet();
+        lastWriteMillis = System.currentTimeMillis();
+        return primary.borrow();
+    }
+
+    /**
+     * Borrows a read-only connection, from the replica when it is safe to do so.
+     */
+    public Connection getReadConnection() throws SQLException {
+        if (shouldReadFromReplica()) {
+            Connection connection = null;
+            try {
+                connection = replica.borrow();
+                connection.setReadOnly(true);
+                replicaReads.incrementAndGet();
+                return connection;
+            } catch (SQLException ex) {
+                // Replica pool exhausted or down; the primary can still serve the read
+                replicaHealthy = false;
+                if (connection != null) {
+                    try {
+                        connection.close();
+                    } catch (SQLException ignored) {
+                        // Already failing over to the primary
+                    }
+                }
+            }
+        }
+        primaryReads.incrementAndGet();
+        return primary.borrow();
+    }
+
+    private boolean shouldReadFromReplica() {
+        if (replica == null || !replicaHealthy) {
+            return false;
+        }
+        return System.currentTimeMillis() - lastWriteMillis > readYourWritesMillis;
+    }
+
+    private void probe() {
+        try (Connection connection = replica.borrow()) {
+            long lag = measureLagSeconds(connection);
+            replicaLagSeconds = lag;
+            replicaHealthy = lag >= 0 && lag <= maxLagSeconds;
+        } catch (SQLException ex) {
+            replicaLagSeconds = -1;
+            replicaHealthy = false;
+        }
+    }
+
+    /**
+     * Returns the replication delay in seconds, 0 for a standalone instance, or
+     * -1 when replication is stopped or its status cannot be read (e.g. the
+     * account lacks REPLICATION CLIENT), so an unverifiable replica is never used.
+     */
+    private long measureLagSeconds(Connection connection) {
+        String[][] probes = {
+            {"SHOW REPLICA STATUS", "Seconds_Behind_Source"},
+            {"SHOW SLAVE STATUS", "Seconds_Behind_Master"}
+        };
+        for (String[] probe : probes) {
+            try (Statement stmt = connection.createStatement();
+                 ResultSet rs = stmt.executeQuery(probe[0])) {
+                if (!rs.next()) {
+                    return 0;
+                }
+                long lag = rs.getLong(probe[1]);
+                statusErrorReported = false;
+                return rs.wasNull() ? -1 : lag;
+            } catch (SQLException ex) {
+                // Older server or a non-MySQL engine; try the next form
+                statusError = ex.getMessage();
+            }
+        }
+        if (!statusErrorReported) {
+            statusErrorReported = true;
+            System.err.println("Cannot read the replica's replication status, reading from the primary: " + statusError);
+        }
+        return -1;
+    }
+
+    public boolean hasReplica() {
+        return replica != null;
+    }
+
+    public ConnectionPool.Stats getReplicaPoolStats() {
+        return replica == null ? null : replica.getStats();
+    }
+
+    public void close() {
+        if (prober != null) {
+            prober.shutdownNow();
+        }
+        if (replica != null) {
+            replica.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ReplicaRouter{" +
+                "replica=" + (replica == null ? "none" : (replicaHealthy ? "healthy" : "unavailable")) +
+                ", lagSeconds=" + replicaLagSeconds +
+                ", replicaReads=" + replicaReads.get() +
+                ", primaryReads=" + primaryReads.get() +
+                ", writes=" + writes.get() +
+                '}';
+    }
+}
@@ -0,0 +1,336 @@
+package com.mycompany.projectgrading;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Where a batch of reports goes: one file each in a folder, or every report
+ * streamed into a single ZIP or tar.gz archive as it is rendered.
+ *
+ * An archive is written through one buffered file channel; each report is
+ * encoded straight from the renderer's buffer into the archive, so nothing is
+ * written to disk but the archive and memory stays at one output buffer plus
+ * the reports being rendered. Writes are serialized, so report writer threads
+ * may call {@link #write} concurrently. {@link #finish()} appends a
+ * manifest.csv listing every entry with its report and size.
+ *
+ * Settings: -Ddb.report.bundleBufferKb sets the archive's output buffer
+ * (default 64).
+ */
+public abstract class ReportOutput {
+    private static final int BUFFER_BYTES = Integer.getInteger("db.report.bundleBufferKb", 64) * 1024;
+
+    public enum Kind {
+        FILES("Separate files", null),
+        ZIP("ZIP archive", "zip"),
+        TAR_GZ("tar.gz archive", "tar.gz");
+
+        private final String label;
+        private final String extension;
+
+        Kind(String label, String extension) {
+            this.label = label;
+            this.extension = extension;
+        }
+
+        /**
+         * The archive's file extension; null for separate files.
+         */
+        public String getExtension() {
+            return extension;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    /**
+     * Opens the output: for FILES, target is the folder; otherwise it is the
+     * archive file, which is replaced.
+     */
+    public static ReportOutput open(Kind kind, Path target) throws IOException {
+        switch (kind) {
+            case ZIP:
+                return new ZipBundle(target);
+            case TAR_GZ:
+                return new TarGzBundle(target);
+            default:
+                return new Folder(target);
+        }
+    }
+
+    /**
+     * Writes one report.
+     *
+     * @param label the report, for the manifest
+     * @param name the file name within the folder or archive
+     * @return where the report was written
+     */
+    public abstract String write(String label, String name, CharSequence content) throws IOException;
+
+    /**
+     * Completes the output after the last report.
+     */
+    public abstract void finish() throws IOException;
+
+    /**
+     * Gives up on the output: an archive is closed and deleted; files already
+     * written to a folder stay.
+     */
+    public abstract void abort();
+
+    /**
+     * The folder or archive, for the summary.
+     */
+    public abstract Path getLocation();
+
+    /**
+     * One file per report.
+     */
+    private static class Folder extends ReportOutput {
+        private final Path folder;
+
+        Folder(Path folder) throws IOException {
+            this.folder = Files.createDirectories(folder);
+        }
+
+        @Override
+        public String write(String label, String name, CharSequence content) throws IOException {
+            Path file = folder.resolve(name);
+            try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                writer.append(content);
+            }
+            return file.toString();
+        }
+
+        @Override
+        public void finish() {
+        }
+
+        @Override
+        public void abort() {
+        }
+
+        @Override
+        public Path getLocation() {
+            return folder;
+        }
+    }
+
+    /**
+     * An archive streamed through one buffered channel, with the manifest
+     * collected as entries are added.
+     */
+    private abstract static class Bundle extends ReportOutput {
+        private final Path archive;
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+        private final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_BYTES);
+        private final StringBuilder manifest = new StringBuilder("entry,report,bytes\n");
+        private final ReportTemplate manifestRow = ReportTemplate.compile("manifest.csv", "{entry},{report},{bytes}\n",
+                ReportTemplate.Format.CSV, "entry", "report", "bytes");
+        // The archive format's stream, on top of the buffered file channel
+        protected final OutputStream out;
+
+        Bundle(Path archive, OutputStream out) {
+            this.archive = archive;
+            this.out = out;
+        }
+
+        static OutputStream openChannel(Path archive) throws IOException {
+            Files.createDirectories(archive.toAbsolutePath().getParent());
+            FileChannel channel = FileChannel.open(archive, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            return new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_BYTES);
+        }
+
+        @Override
+        public synchronized String write(String label, String name, CharSequence content) throws IOException {
+            long size = utf8Length(content);
+            startEntry(name, size);
+            encode(content);
+            endEntry(size);
+            manifestRow.render(manifest, name, label, size);
+            return archive + "!/" + name;
+        }
+
+        @Override
+        public synchronized void finish() throws IOException {
+            try {
+                long size = utf8Length(manifest);
+                startEntry("manifest.csv", size);
+                encode(manifest);
+                endEntry(size);
+                finishArchive();
+            } finally {
+                out.close();
+            }
+        }
+
+        @Override
+        public synchronized void abort() {
+            try {
+                out.close();
+            } catch (IOException ignored) {
+                // Deleted below either way
+            }
+            try {
+                Files.deleteIfExists(archive);
+            } catch (IOException ex) {
+                System.err.println("Could not delete incomplete report bundle " + archive + ": " + ex.getMessage());
+            }
+        }
+
+        @Override
+        public Path getLocation() {
+            return archive;
+        }
+
+        protected abstract void startEntry(String name, long size) throws IOException;
+
+        protected abstract void endEntry(long size) throws IOException;
+
+        protected abstract void finishArchive() throws IOException;
+
+        // Encodes through the fixed buffer, so a report never exists as one byte array
+        private void encode(CharSequence content) throws IOException {
+            CharBuffer chars = CharBuffer.wrap(content);
+            encoder.reset();
+            while (true) {
+                CoderResult result = encoder.encode(chars, bytes, true);
+                drain();
+                if (result.isUnderflow()) {
+                    break;
+                }
+                if (result.isError()) {
+                    result.throwException();
+                }
+            }
+            while (encoder.flush(bytes).isOverflow()) {
+                drain();
+            }
+            drain();
+        }
+
+        private void drain() throws IOException {
+            out.write(bytes.array(), 0, bytes.position());
+            bytes.clear();
+        }
+
+        // Tar headers carry the size up front; counting is cheaper than encoding twice
+        private static long utf8Length(CharSequence text) {
+            long length = 0;
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c < 0x80) {
+                    length++;
+                } else if (c < 0x800) {
+                    length += 2;
+                } else if (Character.isHighSurrogate(c) && i + 1 < text.length()
+                        && Character.isLowSurrogate(text.charAt(i + 1))) {
+                    length += 4;
+                    i++;
+                } else {
+                    length += 3;
+                }
+            }
+            return length;
+        }
+    }
+
+    private static class ZipBundle extends Bundle {
+        ZipBundle(Path archive) throws IOException {
+            super(archive, new ZipOutputStream(openChannel(archive), StandardCharsets.UTF_8));
+        }
+
+        @Override
+        protected void startEntry(String name, long size) throws IOException {
+            ((ZipOutputStream) out).putNextEntry(new ZipEntry(name));
+        }
+
+        @Override
+        protected void endEntry(long size) throws IOException {
+            ((ZipOutputStream) out).closeEntry();
+        }
+
+        @Override
+        protected void finishArchive() throws IOException {
+            ((ZipOutputStream) out).finish();
+        }
+    }
+
+    private static class TarGzBundle extends Bundle {
+        TarGzBundle(Path archive) throws IOException {
+            super(archive, new GZIPOutputStream(openChannel(archive), BUFFER_BYTES));
+        }
+
+        @Override
+        protected void startEntry(String name, long size) throws IOException {
+            out.write(tarHeader(name, size));
+        }
+
+        @Override
+        protected void endEntry(long size) throws IOException {
+            out.write(new byte[(int) ((512 - size % 512) % 512)]);
+        }
+
+        @Override
+        protected void finishArchive() throws IOException {
+            out.write(new byte[1024]); // Two empty blocks end the archive
+            ((GZIPOutputStream) out).finish();
+        }
+
+        // A ustar header for a regular file
+        private static byte[] tarHeader(String name, long size) {
+            byte[] header = new byte[512];
+            byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+            if (nameBytes.length > 100) {
+                throw new IllegalArgumentException("Entry name too long for tar: " + name);
+            }
+            System.arraycopy(nameBytes, 0, header, 0, nameBytes.length);
+            putOctal(header, 100, 8, 0644);
+            putOctal(header, 108, 8, 0);
+            putOctal(header, 116, 8, 0);
+            putOctal(header, 124, 12, size);
+            putOctal(header, 136, 12, System.currentTimeMillis() / 1000);
+            header[156] = '0';
+            System.arraycopy("ustar\u000000".getBytes(StandardCharsets.US_ASCII), 0, header, 257, 8);
+            // The checksum is computed with its own field as spaces
+            for (int i = 148; i < 156; i++) {
+                header[i] = ' ';
+            }
+            long checksum = 0;
+            for (byte b : header) {
+                checksum += b & 0xFF;
+            }
+            putOctal(header, 148, 7, checksum);
+            return header;
+        }
+
+        // Zero-padded octal digits followed by a NUL
+        private static void putOctal(byte[] header, int offset, int length, long value) {
+            int digits = length - 1;
+            for (int i = digits - 1; i >= 0; i--) {
+                header[offset + i] = (byte) ('0' + (value & 7));
+                value >>>= 3;
+            }
+            header[offset + digits] = 0;
+        }
+    }
+}
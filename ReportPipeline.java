@@ -0,0 +1,352 @@
+package com.mycompany.projectgrading;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Generates a batch of reports in two phases. First every report's data is
+ * read on one connection inside a single read-only, repeatable-read
+ * transaction, so all reports of a batch describe the same moment even while
+ * grades are being entered. Then the reports are rendered and handed to a
+ * {@link ReportOutput} (a folder, or one streamed archive) on a pool of
+ * -Ddb.report.concurrency threads (default 4), which never touch the
+ * database. Readers that stream a whole batch in one query use
+ * -Ddb.report.fetchSize rows per round trip (default 1000).
+ *
+ * One report failing does not stop the others; the {@link Summary} lists each
+ * failure with its reason, and the time spent reading, writing and in total.
+ */
+public class ReportPipeline {
+    static final int CONCURRENCY = Integer.getInteger("db.report.concurrency", 4);
+    static final int FETCH_SIZE = Integer.getInteger("db.report.fetchSize", 1000);
+    private static final AtomicInteger THREAD_IDS = new AtomicInteger();
+
+    /**
+     * Reads one report's data from the snapshot connection.
+     *
+     * @return the data, or null when there is nothing to report
+     */
+    public interface Reader<T, D> {
+        D read(Connection snapshot, T item) throws Exception;
+    }
+
+    /**
+     * Renders one report into the buffer.
+     *
+     * @return the report's file name, e.g. Student_42_Report.txt
+     */
+    public interface Renderer<T, D> {
+        String render(T item, D data, StringBuilder out) throws Exception;
+    }
+
+    /**
+     * Reads the data of every report in one go, e.g. in a single query.
+     *
+     * @return one entry per item, in the same order; null where there is nothing to report
+     */
+    public interface BatchReader<T, D> {
+        List<D> readAll(Connection snapshot, List<T> items) throws Exception;
+    }
+
+    /**
+     * Reads, then writes, a report per item. A failed read fails only its report.
+     *
+     * @param task the running task, for progress and cancellation; may be null
+     * @param label names an item in progress notes and failures
+     */
+    public static <T, D> Summary run(BackgroundTasks.Task task, List<T> items, Function<T, String> label,
+                                     Reader<T, D> reader, Renderer<T, D> renderer, ReportOutput output) throws Exception {
+        return execute(task, items, label, (snapshot, summary, data) -> {
+            for (int i = 0; i < items.size(); i++) {
+                if (task != null) {
+                    task.checkCancelled();
+                    task.setProgress(i, items.size() * 2, "Reading " + label.apply(items.get(i)));
+                }
+                try {
+                    data.set(i, reader.read(snapshot, items.get(i)));
+                } catch (CancellationException ex) {
+                    throw ex;
+                } catch (Exception ex) {
+                    summary.failures.add(new Failure(label.apply(items.get(i)), ex));
+                }
+            }
+        }, renderer, output);
+    }
+
+    /**
+     * Reads every report's data with one call, then writes a report per item.
+     * A failed read fails the batch.
+     *
+     * @param task the running task, for progress and cancellation; may be null
+     * @param label names an item in progress notes and failures
+     */
+    public static <T, D> Summary runBatch(BackgroundTasks.Task task, List<T> items, Function<T, String> label,
+                                          BatchReader<T, D> reader, Renderer<T, D> renderer, ReportOutput output)
+            throws Exception {
+        return execute(task, items, label, (snapshot, summary, data) -> {
+            if (task != null) {
+                task.setProgress(0, items.size() * 2, "Reading " + items.size() + " reports");
+            }
+            List<D> read = reader.readAll(snapshot, items);
+            for (int i = 0; i < items.size(); i++) {
+                data.set(i, read.get(i));
+            }
+        }, renderer, output);
+    }
+
+    private interface ReadPhase<D> {
+        void read(Connection snapshot, Summary summary, List<D> data) throws Exception;
+    }
+
+    private static <T, D> Summary execute(BackgroundTasks.Task task, List<T> items, Function<T, String> label,
+                                          ReadPhase<D> readPhase, Renderer<T, D> renderer, ReportOutput output)
+            throws Exception {
+        boolean complete = false;
+        try {
+            Summary summary = generate(task, items, label, readPhase, renderer, output);
+            output.finish();
+            complete = true;
+            return summary;
+        } finally {
+            if (!complete) {
+                output.abort();
+            }
+        }
+    }
+
+    private static <T, D> Summary generate(BackgroundTasks.Task task, List<T> items, Function<T, String> label,
+                                           ReadPhase<D> readPhase, Renderer<T, D> renderer, ReportOutput output)
+            throws Exception {
+        long started = System.nanoTime();
+        Summary summary = new Summary(items.size(), output.getLocation());
+        int total = items.size() * 2;
+
+        List<D> data = new ArrayList<>(Collections.nCopies(items.size(), null));
+        try (Connection snapshot = DatabaseConfig.getReadConnection()) {
+            int isolation = snapshot.getTransactionIsolation();
+            snapshot.setReadOnly(true);
+            snapshot.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+            snapshot.setAutoCommit(false);
+            try {
+                readPhase.read(snapshot, summary, data);
+                snapshot.commit();
+            } finally {
+                // The pool resets auto-commit and read-only, but not the isolation level
+                snapshot.setAutoCommit(true);
+                snapshot.setTransactionIsolation(isolation);
+            }
+        }
+        summary.readMs = (System.nanoTime() - started) / 1_000_000;
+
+        long writeStarted = System.nanoTime();
+        ExecutorService writers = Executors.newFixedThreadPool(Math.max(1, CONCURRENCY), r -> {
+            Thread thread = new Thread(r, "report-writer-" + THREAD_IDS.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            CompletionService<Written> completed = new ExecutorCompletionService<>(writers);
+            int submitted = 0;
+            for (int i = 0; i < items.size(); i++) {
+                T item = items.get(i);
+                D itemData = data.get(i);
+                if (itemData == null) {
+                    continue; // Failed to read, or nothing to report
+                }
+                completed.submit(() -> {
+                    long reportStarted = System.nanoTime();
+                    if (task != null && task.isCancelled()) {
+                        return new Written(label.apply(item), null, null, 0);
+                    }
+                    try {
+                        // Rendered into this thread's buffer and copied straight to the output
+                        StringBuilder content = ReportTemplate.buffer();
+                        String name = renderer.render(item, itemData, content);
+                        String file = output.write(label.apply(item), name, content);
+                        return new Written(label.apply(item), file, null, (System.nanoTime() - reportStarted) / 1_000_000);
+                    } catch (Exception ex) {
+                        return new Written(label.apply(item), null, ex, (System.nanoTime() - reportStarted) / 1_000_000);
+                    }
+                });
+                submitted++;
+            }
+            summary.empty = items.size() - summary.failures.size() - submitted;
+
+            for (int done = 0; done < submitted; done++) {
+                Written written;
+                try {
+                    written = completed.take().get();
+                } catch (ExecutionException ex) {
+                    // Writers return their failures in Written, so anything here is unexpected
+                    Throwable cause = ex.getCause();
+                    if (cause instanceof Exception) {
+                        throw (Exception) cause;
+                    }
+                    if (cause instanceof Error) {
+                        throw (Error) cause;
+                    }
+                    throw ex;
+                }
+                if (task != null) {
+                    task.checkCancelled();
+                    task.setProgress(items.size() + done + 1, total, (done + 1) + " of " + submitted + " reports written");
+                }
+                if (written.error != null) {
+                    summary.failures.add(new Failure(written.label, written.error));
+                } else {
+                    summary.files.add(written.file);
+                    summary.slowestMs = Math.max(summary.slowestMs, written.elapsedMs);
+                    if (summary.slowestMs == written.elapsedMs) {
+                        summary.slowest = written.label;
+                    }
+                }
+            }
+        } finally {
+            writers.shutdownNow();
+        }
+        summary.writeMs = (System.nanoTime() - writeStarted) / 1_000_000;
+        summary.elapsedMs = Math.max(1, (System.nanoTime() - started) / 1_000_000);
+        return summary;
+    }
+
+    private static class Written {
+        private final String label;
+        private final String file;
+        private final Exception error;
+        private final long elapsedMs;
+
+        Written(String label, String file, Exception error, long elapsedMs) {
+            this.label = label;
+            this.file = file;
+            this.error = error;
+            this.elapsedMs = elapsedMs;
+        }
+    }
+
+    /**
+     * A report that could not be read or written.
+     */
+    public static class Failure {
+        private final String label;
+        private final Exception error;
+
+        Failure(String label, Exception error) {
+            this.label = label;
+            this.error = error;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public Exception getError() {
+            return error;
+        }
+
+        @Override
+        public String toString() {
+            return label + ": " + error.getMessage();
+        }
+    }
+
+    /**
+     * What a batch did: the files written, the failures, how many items had
+     * nothing to report, and where the time went.
+     */
+    public static class Summary {
+        private final int requested;
+        private final Path location;
+        private final List<String> files = new ArrayList<>();
+        private final List<Failure> failures = new ArrayList<>();
+        private int empty;
+        private long readMs;
+        private long writeMs;
+        private long elapsedMs;
+        private long slowestMs;
+        private String slowest;
+
+        Summary(int requested, Path location) {
+            this.requested = requested;
+            this.location = location;
+        }
+
+        public int getRequested() {
+            return requested;
+        }
+
+        /**
+         * The folder or archive the reports went to.
+         */
+        public Path getLocation() {
+            return location;
+        }
+
+        /**
+         * Where each report was written; entries of an archive read archive!/name.
+         */
+        public List<String> getFiles() {
+            return files;
+        }
+
+        public List<Failure> getFailures() {
+            return failures;
+        }
+
+        /**
+         * Items skipped because they had nothing to report.
+         */
+        public int getEmpty() {
+            return empty;
+        }
+
+        public long getReadMs() {
+            return readMs;
+        }
+
+        public long getWriteMs() {
+            return writeMs;
+        }
+
+        public long getElapsedMs() {
+            return elapsedMs;
+        }
+
+        /**
+         * A summary for a dialog: counts, timing, the output folder and up to
+         * five failures.
+         */
+        public String format(String kind) {
+            StringBuilder text = new StringBuilder()
+                    .append(files.size()).append(" of ").append(requested).append(' ').append(kind).append(" written in ")
+                    .append(elapsedMs).append(" ms (reading ").append(readMs).append(" ms, writing ").append(writeMs)
+                    .append(" ms on ").append(Math.max(1, CONCURRENCY)).append(" threads).");
+            if (slowest != null) {
+                text.append("\nSlowest: ").append(slowest).append(", ").append(slowestMs).append(" ms.");
+            }
+            if (!files.isEmpty()) {
+                text.append("\nSaved to: ").append(location);
+            }
+            if (empty > 0) {
+                text.append("\n").append(empty).append(" had no data.");
+            }
+            if (!failures.isEmpty()) {
+                text.append("\n").append(failures.size()).append(" failed:");
+                for (Failure failure : failures.subList(0, Math.min(5, failures.size()))) {
+                    text.append("\n").append(failure);
+                }
+            }
+            return text.toString();
+        }
+    }
+}
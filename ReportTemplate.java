@@ -0,0 +1,348 @@
+package com.mycompany.projectgrading;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A report layout compiled once into a render plan. The source is text with
+ * placeholders naming the values of a row:
+ * <ul>
+ *   <li>{@code {name}} the value as is</li>
+ *   <li>{@code {name:-13}} padded on the right to 13 characters, like %-13s</li>
+ *   <li>{@code {name:8}} padded on the left to 8 characters, like %8s</li>
+ *   <li>{@code {name:.2}} or {@code {name:-8.2}} a number with two decimals</li>
+ *   <li>{@code {{} and {@code }}} literal braces</li>
+ * </ul>
+ * Compiling resolves every name to its position in the row, so rendering
+ * only walks the plan and appends: numbers are written digit by digit and
+ * padding is added in place, without String.format. Values are escaped for
+ * the template's format (quoted for CSV, entity-escaped for HTML).
+ *
+ * Rendering appends to a caller's StringBuilder; {@link #buffer()} hands each
+ * thread one reused buffer for a whole report. Every render is timed and the
+ * totals appear in the query metrics report as a per-row cost.
+ *
+ * Settings: -Ddb.report.templateDir names a folder whose files override the
+ * built-in layouts by name, e.g. transcript-row.html.
+ */
+public class ReportTemplate {
+    private static final String TEMPLATE_DIR = System.getProperty("db.report.templateDir");
+    private static final ThreadLocal<StringBuilder> BUFFERS = ThreadLocal.withInitial(() -> new StringBuilder(8192));
+    private static final long[] POWERS_OF_TEN = {1, 10, 100, 1000, 10_000, 100_000, 1_000_000};
+    private static final String SPACES = " ".repeat(128);
+
+    private static final AtomicLong RENDERS = new AtomicLong();
+    private static final AtomicLong RENDER_NANOS = new AtomicLong();
+
+    public enum Format {
+        TEXT("txt"),
+        CSV("csv"),
+        HTML("html");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        private void appendEscaped(StringBuilder out, CharSequence text) {
+            switch (this) {
+                case CSV:
+                    if (!needsQuotes(text)) {
+                        out.append(text);
+                        return;
+                    }
+                    out.append('"');
+                    for (int i = 0; i < text.length(); i++) {
+                        char c = text.charAt(i);
+                        out.append(c);
+                        if (c == '"') {
+                            out.append('"');
+                        }
+                    }
+                    out.append('"');
+                    return;
+                case HTML:
+                    for (int i = 0; i < text.length(); i++) {
+                        char c = text.charAt(i);
+                        switch (c) {
+                            case '&': out.append("&amp;"); break;
+                            case '<': out.append("&lt;"); break;
+                            case '>': out.append("&gt;"); break;
+                            case '"': out.append("&quot;"); break;
+                            case '\'': out.append("&#39;"); break;
+                            default: out.append(c);
+                        }
+                    }
+                    return;
+                default:
+                    out.append(text);
+            }
+        }
+
+        private static boolean needsQuotes(CharSequence text) {
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private final String name;
+    private final Format format;
+    private final Segment[] plan;
+    private final int fieldCount;
+
+    private ReportTemplate(String name, Format format, Segment[] plan, int fieldCount) {
+        this.name = name;
+        this.format = format;
+        this.plan = plan;
+        this.fieldCount = fieldCount;
+    }
+
+    /**
+     * Compiles a layout whose placeholders name the given fields; a row passed
+     * to {@link #render} holds their values in this order.
+     *
+     * @throws IllegalArgumentException when the source names an unknown field or is malformed
+     */
+    public static ReportTemplate compile(String name, String source, Format format, String... fields) {
+        List<String> fieldNames = Arrays.asList(fields);
+        List<Segment> plan = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int i = 0;
+        while (i < source.length()) {
+            char c = source.charAt(i);
+            if ((c == '{' || c == '}') && i + 1 < source.length() && source.charAt(i + 1) == c) {
+                literal.append(c);
+                i += 2;
+                continue;
+            }
+            if (c == '}') {
+                throw new IllegalArgumentException(name + ": unmatched '}' at " + i);
+            }
+            if (c != '{') {
+                literal.append(c);
+                i++;
+                continue;
+            }
+            int end = source.indexOf('}', i);
+            if (end < 0) {
+                throw new IllegalArgumentException(name + ": unclosed '{' at " + i);
+            }
+            if (literal.length() > 0) {
+                plan.add(new Segment(literal.toString()));
+                literal.setLength(0);
+            }
+            plan.add(parseField(name, source.substring(i + 1, end), fieldNames));
+            i = end + 1;
+        }
+        if (literal.length() > 0) {
+            plan.add(new Segment(literal.toString()));
+        }
+        return new ReportTemplate(name, format, plan.toArray(new Segment[0]), fields.length);
+    }
+
+    // name[:[-]width][.decimals]
+    private static Segment parseField(String template, String spec, List<String> fieldNames) {
+        int colon = spec.indexOf(':');
+        String field = colon < 0 ? spec.trim() : spec.substring(0, colon).trim();
+        int index = fieldNames.indexOf(field);
+        if (index < 0) {
+            throw new IllegalArgumentException(template + ": unknown field '" + field + "'");
+        }
+        boolean leftAlign = false;
+        int width = 0;
+        int decimals = -1;
+        if (colon >= 0) {
+            String layout = spec.substring(colon + 1).trim();
+            if (layout.startsWith("-")) {
+                leftAlign = true;
+                layout = layout.substring(1);
+            }
+            int dot = layout.indexOf('.');
+            try {
+                if (dot >= 0) {
+                    decimals = Integer.parseInt(layout.substring(dot + 1));
+                    layout = layout.substring(0, dot);
+                }
+                width = layout.isEmpty() ? 0 : Integer.parseInt(layout);
+            } catch (NumberFormatException ex) {
+                throw new IllegalArgumentException(template + ": invalid layout '" + spec + "'");
+            }
+            if (decimals >= POWERS_OF_TEN.length) {
+                throw new IllegalArgumentException(template + ": at most " + (POWERS_OF_TEN.length - 1) + " decimals");
+            }
+        }
+        return new Segment(index, width, leftAlign, decimals);
+    }
+
+    /**
+     * Compiles the built-in layout, or the file of the same name in
+     * -Ddb.report.templateDir when there is one.
+     */
+    public static ReportTemplate load(String name, String builtIn, Format format, String... fields) {
+        String source = builtIn;
+        if (TEMPLATE_DIR != null) {
+            Path file = Paths.get(TEMPLATE_DIR, name);
+            if (Files.isRegularFile(file)) {
+                try {
+                    source = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+                } catch (IOException ex) {
+                    System.err.println("Could not read report template " + file + ", using the built-in one: " + ex.getMessage());
+                }
+            }
+        }
+        return compile(name, source, format, fields);
+    }
+
+    /**
+     * This thread's reusable buffer, emptied.
+     */
+    public static StringBuilder buffer() {
+        StringBuilder buffer = BUFFERS.get();
+        buffer.setLength(0);
+        return buffer;
+    }
+
+    /**
+     * Appends the template rendered with one row of values.
+     *
+     * @throws IllegalArgumentException when the row has the wrong number of values
+     */
+    public void render(StringBuilder out, Object... row) {
+        if (row.length != fieldCount) {
+            throw new IllegalArgumentException(name + " expects " + fieldCount + " values, got " + row.length);
+        }
+        long started = System.nanoTime();
+        for (Segment segment : plan) {
+            if (segment.literal != null) {
+                out.append(segment.literal);
+                continue;
+            }
+            int start = out.length();
+            appendValue(out, row[segment.field], segment.decimals);
+            int padding = segment.width - (out.length() - start);
+            if (padding > 0) {
+                if (segment.leftAlign) {
+                    appendSpaces(out, padding);
+                } else if (padding <= SPACES.length()) {
+                    out.insert(start, SPACES, 0, padding);
+                } else {
+                    out.insert(start, " ".repeat(padding));
+                }
+            }
+        }
+        RENDER_NANOS.addAndGet(System.nanoTime() - started);
+        RENDERS.incrementAndGet();
+    }
+
+    private void appendValue(StringBuilder out, Object value, int decimals) {
+        if (value == null) {
+            return;
+        }
+        if (value instanceof Integer || value instanceof Long) {
+            long number = ((Number) value).longValue();
+            if (decimals > 0) {
+                appendFixed(out, number * POWERS_OF_TEN[decimals], decimals);
+            } else {
+                out.append(number);
+            }
+        } else if (value instanceof Double || value instanceof Float) {
+            double number = ((Number) value).doubleValue();
+            int places = decimals >= 0 ? decimals : 2;
+            if (Double.isNaN(number) || Double.isInfinite(number)) {
+                out.append(number);
+            } else {
+                // Rounds the shortest decimal form half up, as String.format does: 2.675 prints 2.68
+                if (Math.copySign(1.0, number) < 0) {
+                    out.append('-');
+                }
+                out.append(BigDecimal.valueOf(Math.abs(number)).setScale(places, RoundingMode.HALF_UP).toPlainString());
+            }
+        } else {
+            format.appendEscaped(out, value instanceof CharSequence ? (CharSequence) value : value.toString());
+        }
+    }
+
+    // A number scaled by 10^decimals, e.g. 8750 with 2 decimals is 87.50
+    private static void appendFixed(StringBuilder out, long scaled, int decimals) {
+        if (scaled < 0) {
+            out.append('-');
+            scaled = -scaled;
+        }
+        out.append(scaled / POWERS_OF_TEN[decimals]);
+        if (decimals > 0) {
+            out.append('.');
+            long fraction = scaled % POWERS_OF_TEN[decimals];
+            for (int digit = decimals - 1; digit > 0 && fraction < POWERS_OF_TEN[digit]; digit--) {
+                out.append('0');
+            }
+            out.append(fraction);
+        }
+    }
+
+    private static void appendSpaces(StringBuilder out, int count) {
+        for (; count > SPACES.length(); count -= SPACES.length()) {
+            out.append(SPACES);
+        }
+        out.append(SPACES, 0, count);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Format getFormat() {
+        return format;
+    }
+
+    public static String getStats() {
+        long renders = RENDERS.get();
+        return "ReportTemplate{rows=" + renders +
+                ", meanNsPerRow=" + (renders > 0 ? RENDER_NANOS.get() / renders : 0) + '}';
+    }
+
+    /**
+     * A literal run of text, or a field with its padding and decimals.
+     */
+    private static class Segment {
+        private final String literal;
+        private final int field;
+        private final int width;
+        private final boolean leftAlign;
+        private final int decimals;
+
+        Segment(String literal) {
+            this(literal, -1, 0, false, -1);
+        }
+
+        Segment(int field, int width, boolean leftAlign, int decimals) {
+            this(null, field, width, leftAlign, decimals);
+        }
+
+        private Segment(String literal, int field, int width, boolean leftAlign, int decimals) {
+            this.literal = literal;
+            this.field = field;
+            this.width = width;
+            this.leftAlign = leftAlign;
+            this.decimals = decimals;
+        }
+    }
+}
@@ -0,0 +1,560 @@
+package com.mycompany.projectgrading;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Versioned schema migrations. Each migration runs once and is recorded in the
+ * schema_version table; on every start the pending ones are applied in order
+ * and the indexes the hot queries depend on are verified.
+ *
+ * The DDL sticks to syntax that MySQL and the embedded engine (H2 in MySQL mode)
+ * both accept. Every step checks the catalog before it adds a column or an
+ * index, since MySQL has no ADD COLUMN IF NOT EXISTS or CREATE INDEX IF NOT
+ * EXISTS. MySQL commits each DDL statement on its own, so a migration that
+ * failed halfway is simply run again from the start.
+ *
+ * Clients sharing a MySQL database migrate one at a time: the first to start
+ * holds a named lock (GET_LOCK) while it migrates, and the others wait up to
+ * -Ddb.migrate.lockTimeoutSeconds (default 60) and then find nothing pending.
+ * A failed migration is thrown to the caller, which must not use the database.
+ */
+public class SchemaMigrations {
+
+    /**
+     * One schema change.
+     */
+    private interface Step {
+        void apply(Connection connection) throws SQLException;
+    }
+
+    private static class Migration {
+        private final int version;
+        private final String description;
+        private final Step step;
+
+        Migration(int version, String description, Step step) {
+            this.version = version;
+            this.description = description;
+            this.step = step;
+        }
+    }
+
+    /**
+     * An index the application relies on: the table and its leading columns.
+     */
+    private static class RequiredIndex {
+        private final String name;
+        private final String table;
+        private final boolean unique;
+        private final List<String> columns;
+
+        RequiredIndex(String name, String table, boolean unique, String... columns) {
+            this.name = name;
+            this.table = table;
+            this.unique = unique;
+            this.columns = Arrays.asList(columns);
+        }
+
+        String ddl() {
+            return "CREATE " + (unique ? "UNIQUE " : "") + "INDEX " + name + " ON " + table
+                    + " (" + String.join(", ", columns) + ")";
+        }
+
+        @Override
+        public String toString() {
+            return name + " ON " + table + columns;
+        }
+    }
+
+    private static final String[] BASELINE_TABLES = {
+        "CREATE TABLE IF NOT EXISTS Users (" +
+        "  user_id INT AUTO_INCREMENT PRIMARY KEY," +
+        "  name VARCHAR(100) NOT NULL," +
+        "  email VARCHAR(150) NOT NULL UNIQUE," +
+        "  password VARCHAR(255) NOT NULL," +
+        "  role VARCHAR(20) NOT NULL" +
+        ")",
+
+        // A student's id is the user_id of their Users row (see RegistrationPage)
+        "CREATE TABLE IF NOT EXISTS Students (" +
+        "  student_id INT PRIMARY KEY," +
+        "  name VARCHAR(100) NOT NULL," +
+        "  email VARCHAR(150) NOT NULL UNIQUE," +
+        "  FOREIGN KEY (student_id) REFERENCES Users(user_id) ON DELETE CASCADE" +
+        ")",
+
+        "CREATE TABLE IF NOT EXISTS Courses (" +
+        "  course_id INT AUTO_INCREMENT PRIMARY KEY," +
+        "  name VARCHAR(100) NOT NULL," +
+        "  assignment_weight INT NOT NULL DEFAULT 0," +
+        "  quiz_weight INT NOT NULL DEFAULT 0," +
+        "  exam_weight INT NOT NULL DEFAULT 0," +
+        "  credit_hours INT NOT NULL DEFAULT 3" +
+        ")",
+
+        "CREATE TABLE IF NOT EXISTS Enrollments (" +
+        "  student_id INT NOT NULL," +
+        "  course_id INT NOT NULL," +
+        "  PRIMARY KEY (student_id, course_id)," +
+        "  FOREIGN KEY (student_id) REFERENCES Students(student_id) ON DELETE CASCADE," +
+        "  FOREIGN KEY (course_id) REFERENCES Courses(course_id) ON DELETE CASCADE" +
+        ")",
+
+        // The composite key is what ON DUPLICATE KEY UPDATE in GradeInputPage relies on
+        "CREATE TABLE IF NOT EXISTS Grades (" +
+        "  student_id INT NOT NULL," +
+        "  course_id INT NOT NULL," +
+        "  assignment_score INT," +
+        "  quiz_score INT," +
+        "  exam_score INT," +
+        "  PRIMARY KEY (student_id, course_id)," +
+        "  FOREIGN KEY (student_id) REFERENCES Students(student_id) ON DELETE CASCADE," +
+        "  FOREIGN KEY (course_id) REFERENCES Courses(course_id) ON DELETE CASCADE" +
+        ")",
+
+        "CREATE TABLE IF NOT EXISTS Assignments (" +
+        "  assignment_id INT AUTO_INCREMENT PRIMARY KEY," +
+        "  teacher_id INT NOT NULL," +
+        "  course_id INT NOT NULL," +
+        "  FOREIGN KEY (teacher_id) REFERENCES Users(user_id) ON DELETE CASCADE," +
+        "  FOREIGN KEY (course_id) REFERENCES Courses(course_id) ON DELETE CASCADE" +
+        ")",
+
+        "CREATE TABLE IF NOT EXISTS Notifications (" +
+        "  notification_id INT AUTO_INCREMENT PRIMARY KEY," +
+        "  student_id INT NOT NULL," +
+        "  message VARCHAR(255) NOT NULL," +
+        "  created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP," +
+        "  FOREIGN KEY (student_id) REFERENCES Students(student_id) ON DELETE CASCADE" +
+        ")"
+    };
+
+    // Access paths of the hot queries: course lookup by name, per-student and
+    // per-course grade/enrollment lookups, and a student's newest notifications
+    private static final RequiredIndex[] HOT_PATH_INDEXES = {
+        new RequiredIndex("ux_courses_name", "Courses", true, "name"),
+        new RequiredIndex("ux_grades_student_course", "Grades", true, "student_id", "course_id"),
+        new RequiredIndex("ix_grades_course_student", "Grades", false, "course_id", "student_id"),
+        new RequiredIndex("ux_enrollments_student_course", "Enrollments", true, "student_id", "course_id"),
+        new RequiredIndex("ix_enrollments_course_student", "Enrollments", false, "course_id", "student_id"),
+        new RequiredIndex("ix_notifications_student_created", "Notifications", false, "student_id", "created_at"),
+        new RequiredIndex("ix_assignments_course", "Assignments", false, "course_id"),
+        new RequiredIndex("ix_assignments_teacher", "Assignments", false, "teacher_id")
+    };
+
+    // Ranking and sorting a course by its materialized final grades
+    private static final RequiredIndex[] FINAL_GRADE_INDEXES = {
+        new RequiredIndex("ix_grades_course_final", "Grades", false, "course_id", "final_grade")
+    };
+
+    private static final List<Migration> MIGRATIONS = List.of(
+        new Migration(1, "Baseline tables", SchemaMigrations::createBaselineTables),
+        new Migration(2, "Hot-path indexes", connection -> {
+            renameDuplicateCourses(connection); // ux_courses_name would fail on them
+            removeDuplicateRows(connection, "Enrollments", "student_id", "course_id");
+            removeDuplicateRows(connection, "Grades", "student_id", "course_id");
+            createIndexes(connection, HOT_PATH_INDEXES);
+        }),
+        new Migration(3, "Per-course grading policy", connection -> addColumn(connection,
+                "Courses", "grading_policy", "VARCHAR(30) NOT NULL DEFAULT 'standard'")),
+        new Migration(4, "Materialized final and letter grades", SchemaMigrations::materializeFinalGrades),
+        new Migration(5, "Grade recompute checkpoints", connection -> execute(connection,
+                "CREATE TABLE IF NOT EXISTS grade_recompute_jobs (" +
+                "  course_id INT PRIMARY KEY," +
+                "  weights_version INT NOT NULL," +
+                "  last_student_id INT NOT NULL DEFAULT 0," +
+                "  rows_done INT NOT NULL DEFAULT 0," +
+                "  updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP," +
+                "  FOREIGN KEY (course_id) REFERENCES Courses(course_id) ON DELETE CASCADE" +
+                ")")),
+        new Migration(6, "Grade curve audit", connection -> execute(connection,
+                "CREATE TABLE IF NOT EXISTS grade_curves (" +
+                "  curve_id INT AUTO_INCREMENT PRIMARY KEY," +
+                "  course_id INT NOT NULL," +
+                "  method VARCHAR(30) NOT NULL," +
+                "  slope DOUBLE NOT NULL," +
+                "  shift DOUBLE NOT NULL," +
+                "  students INT NOT NULL," +
+                "  applied_by INT," +
+                "  applied_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP," +
+                "  FOREIGN KEY (course_id) REFERENCES Courses(course_id) ON DELETE CASCADE" +
+                ")",
+                // The scores each curve replaced, so a curve can be reviewed or reverted
+                "CREATE TABLE IF NOT EXISTS grade_curve_changes (" +
+                "  curve_id INT NOT NULL," +
+                "  student_id INT NOT NULL," +
+                "  old_assignment_score INT NOT NULL," +
+                "  old_quiz_score INT NOT NULL," +
+                "  old_exam_score INT NOT NULL," +
+                "  new_assignment_score INT NOT NULL," +
+                "  new_quiz_score INT NOT NULL," +
+                "  new_exam_score INT NOT NULL," +
+                "  PRIMARY KEY (curve_id, student_id)," +
+                "  FOREIGN KEY (curve_id) REFERENCES grade_curves(curve_id) ON DELETE CASCADE" +
+                ")")),
+        // Migration 2 took any index on the columns for a unique one, so older tables may still lack the keys
+        new Migration(7, "Unique course, enrollment and grade keys", connection -> {
+            renameDuplicateCourses(connection);
+            removeDuplicateRows(connection, "Enrollments", "student_id", "course_id");
+            removeDuplicateRows(connection, "Grades", "student_id", "course_id");
+            createIndexes(connection, Arrays.stream(HOT_PATH_INDEXES).filter(index -> index.unique)
+                    .toArray(RequiredIndex[]::new));
+        })
+    );
+
+    // Administrator for a fresh embedded database, which otherwise has no way to log in;
+    // created only when -Ddb.adminPassword is given, so no default password exists
+    private static final String ADMIN_EMAIL = System.getProperty("db.adminEmail", "admin@localhost");
+    private static final String ADMIN_PASSWORD = System.getProperty("db.adminPassword");
+
+    private static final String LOCK_NAME = "student_grading_system.schema";
+    private static final int LOCK_TIMEOUT_SECONDS = Integer.getInteger("db.migrate.lockTimeoutSeconds", 60);
+
+    /**
+     * Applies every pending migration, then checks the required indexes.
+     *
+     * @return the indexes that are still missing afterwards; empty when the schema is complete
+     */
+    public static List<String> migrate(Connection connection, boolean seedAdmin) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS schema_version (" +
+                    "  version INT PRIMARY KEY," +
+                    "  description VARCHAR(200) NOT NULL," +
+                    "  applied_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP" +
+                    ")");
+        }
+
+        boolean locked = lock(connection);
+        try {
+            // Read after taking the lock, so migrations another client just applied are skipped
+            int current = currentVersion(connection);
+            for (Migration migration : MIGRATIONS) {
+                if (migration.version <= current) {
+                    continue;
+                }
+                try {
+                    migration.step.apply(connection);
+                    try (PreparedStatement stmt = connection.prepareStatement(
+                            "INSERT INTO schema_version (version, description) VALUES (?, ?)")) {
+                        stmt.setInt(1, migration.version);
+                        stmt.setString(2, migration.description);
+                        stmt.executeUpdate();
+                    }
+                } catch (SQLException ex) {
+                    throw new SQLException("Schema migration " + migration.version + " (" + migration.description
+                            + ") failed: " + ex.getMessage(), ex.getSQLState(), ex);
+                }
+            }
+        } finally {
+            if (locked) {
+                unlock(connection);
+            }
+        }
+
+        if (seedAdmin) {
+            seedDefaultAdmin(connection);
+        }
+        return verifyIndexes(connection);
+    }
+
+    public static int currentVersion(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT MAX(version) FROM schema_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    public static int latestVersion() {
+        return MIGRATIONS.get(MIGRATIONS.size() - 1).version;
+    }
+
+    /**
+     * Lists every required index that has no matching index in the catalog.
+     */
+    public static List<String> verifyIndexes(Connection connection) throws SQLException {
+        List<String> missing = new ArrayList<>();
+        DatabaseMetaData meta = connection.getMetaData();
+        for (RequiredIndex[] indexes : new RequiredIndex[][]{HOT_PATH_INDEXES, FINAL_GRADE_INDEXES}) {
+            for (RequiredIndex index : indexes) {
+                if (!hasIndex(meta, index)) {
+                    missing.add(index.toString());
+                }
+            }
+        }
+        return missing;
+    }
+
+    private static void createBaselineTables(Connection connection) throws SQLException {
+        execute(connection, BASELINE_TABLES);
+    }
+
+    private static void materializeFinalGrades(Connection connection) throws SQLException {
+        addColumn(connection, "Courses", "weights_version", "INT NOT NULL DEFAULT 1");
+        addColumn(connection, "Grades", "final_grade", "INT");
+        addColumn(connection, "Grades", "letter_grade", "VARCHAR(2)");
+        addColumn(connection, "Grades", "weights_version", "INT");
+        // Recomputes every row, so rerunning it after a failure is harmless
+        GradeMaterializer.backfill(connection);
+        createIndexes(connection, FINAL_GRADE_INDEXES);
+    }
+
+    // The named lock only exists on MySQL; the embedded engine belongs to this
+    // process, which migrates once, so there is nobody to wait for
+    private static boolean lock(Connection connection) throws SQLException {
+        if (!isMySql(connection)) {
+            return false;
+        }
+        try (PreparedStatement stmt = connection.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+            stmt.setString(1, LOCK_NAME);
+            stmt.setInt(2, LOCK_TIMEOUT_SECONDS);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next() || rs.getInt(1) != 1) {
+                    throw new SQLException("Another client has been migrating the schema for more than "
+                            + LOCK_TIMEOUT_SECONDS + " seconds");
+                }
+            }
+        }
+        return true;
+    }
+
+    private static void unlock(Connection connection) {
+        try (PreparedStatement stmt = connection.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            stmt.setString(1, LOCK_NAME);
+            stmt.executeQuery().close();
+        } catch (SQLException ex) {
+            // Released anyway when the session ends
+            System.err.println("Could not release the schema migration lock: " + ex.getMessage());
+        }
+    }
+
+    private static boolean isMySql(Connection connection) throws SQLException {
+        return connection.getMetaData().getDatabaseProductName().toLowerCase(Locale.ROOT).contains("mysql");
+    }
+
+    // Keeps the lowest id's name and appends the id to the others, e.g. "Math (#12)"
+    private static void renameDuplicateCourses(Connection connection) throws SQLException {
+        Map<Integer, String> renames = new LinkedHashMap<>();
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT c.course_id, c.name FROM Courses c " +
+                     "WHERE EXISTS (SELECT 1 FROM Courses d WHERE d.name = c.name AND d.course_id < c.course_id) " +
+                     "ORDER BY c.course_id")) {
+            while (rs.next()) {
+                String suffix = " (#" + rs.getInt(1) + ")";
+                String name = rs.getString(2);
+                renames.put(rs.getInt(1), name.substring(0, Math.min(name.length(), 100 - suffix.length())) + suffix);
+            }
+        }
+        try (PreparedStatement stmt = connection.prepareStatement("UPDATE Courses SET name = ? WHERE course_id = ?")) {
+            for (Map.Entry<Integer, String> rename : renames.entrySet()) {
+                stmt.setString(1, rename.getValue());
+                stmt.setInt(2, rename.getKey());
+                stmt.executeUpdate();
+                System.err.println("Renamed duplicate course " + rename.getKey() + " to '" + rename.getValue()
+                        + "' so course names can be unique");
+            }
+        }
+    }
+
+    /**
+     * Leaves one row per key, so a unique index on the key can be created. Of
+     * each duplicated key the row with the most columns filled in is kept (a
+     * graded row over an empty one); the table has no row id, so the key's rows
+     * are deleted and the kept one is inserted again, in one transaction.
+     */
+    private static void removeDuplicateRows(Connection connection, String table, String... key) throws SQLException {
+        String keyColumns = String.join(", ", key);
+        String keyMatch = String.join(" = ? AND ", key) + " = ?";
+        List<Object[]> duplicated = new ArrayList<>();
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT " + keyColumns + " FROM " + table +
+                     " GROUP BY " + keyColumns + " HAVING COUNT(*) > 1")) {
+            while (rs.next()) {
+                Object[] values = new Object[key.length];
+                for (int i = 0; i < key.length; i++) {
+                    values[i] = rs.getObject(i + 1);
+                }
+                duplicated.add(values);
+            }
+        }
+        if (duplicated.isEmpty()) {
+            return;
+        }
+
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try (PreparedStatement select = connection.prepareStatement("SELECT * FROM " + table + " WHERE " + keyMatch);
+             PreparedStatement delete = connection.prepareStatement("DELETE FROM " + table + " WHERE " + keyMatch)) {
+            for (Object[] values : duplicated) {
+                for (int i = 0; i < values.length; i++) {
+                    select.setObject(i + 1, values[i]);
+                    delete.setObject(i + 1, values[i]);
+                }
+                List<String> columns = new ArrayList<>();
+                Object[] kept = null;
+                int keptFilled = -1;
+                try (ResultSet rs = select.executeQuery()) {
+                    int count = rs.getMetaData().getColumnCount();
+                    for (int i = 1; i <= count; i++) {
+                        columns.add(rs.getMetaData().getColumnName(i));
+                    }
+                    while (rs.next()) {
+                        Object[] row = new Object[count];
+                        int filled = 0;
+                        for (int i = 0; i < count; i++) {
+                            row[i] = rs.getObject(i + 1);
+                            if (row[i] != null) {
+                                filled++;
+                            }
+                        }
+                        if (filled > keptFilled) {
+                            kept = row;
+                            keptFilled = filled;
+                        }
+                    }
+                }
+                int removed = delete.executeUpdate() - 1;
+                try (PreparedStatement insert = connection.prepareStatement("INSERT INTO " + table +
+                        " (" + String.join(", ", columns) + ") VALUES (" +
+                        String.join(", ", Collections.nCopies(columns.size(), "?")) + ")")) {
+                    for (int i = 0; i < kept.length; i++) {
+                        insert.setObject(i + 1, kept[i]);
+                    }
+                    insert.executeUpdate();
+                }
+                System.err.println("Removed " + removed + " duplicate " + table + " row(s) for " + keyColumns
+                        + " = " + Arrays.toString(values) + " so they can be unique");
+            }
+            connection.commit();
+        } catch (SQLException ex) {
+            connection.rollback();
+            throw ex;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    private static void addColumn(Connection connection, String table, String column, String definition)
+            throws SQLException {
+        if (!hasColumn(connection.getMetaData(), table, column)) {
+            execute(connection, "ALTER TABLE " + table + " ADD COLUMN " + column + " " + definition);
+        }
+    }
+
+    private static boolean hasColumn(DatabaseMetaData meta, String table, String column) throws SQLException {
+        String catalog = meta.getConnection().getCatalog();
+        // Identifier case depends on the engine, as in indexColumns
+        for (String candidate : new String[]{table, table.toLowerCase(Locale.ROOT), table.toUpperCase(Locale.ROOT)}) {
+            try (ResultSet rs = meta.getColumns(catalog, null, candidate, null)) {
+                while (rs.next()) {
+                    if (column.equalsIgnoreCase(rs.getString("COLUMN_NAME"))) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private static void execute(Connection connection, String... statements) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            for (String sql : statements) {
+                stmt.execute(sql);
+            }
+        }
+    }
+
+    private static void createIndexes(Connection connection, RequiredIndex[] indexes) throws SQLException {
+        DatabaseMetaData meta = connection.getMetaData();
+        try (Statement stmt = connection.createStatement()) {
+            for (RequiredIndex index : indexes) {
+                if (!hasIndex(meta, index)) {
+                    stmt.execute(index.ddl());
+                }
+            }
+        }
+    }
+
+    // True when some index (or the primary key) starts with the required columns, in order. A unique
+    // requirement needs a unique index on exactly those columns: a longer one does not keep them unique
+    private static boolean hasIndex(DatabaseMetaData meta, RequiredIndex required) throws SQLException {
+        for (List<String> columns : indexColumns(meta, required.table, required.unique).values()) {
+            if (required.unique ? columns.equals(lowerCase(required.columns))
+                    : columns.size() >= required.columns.size()
+                            && columns.subList(0, required.columns.size()).equals(lowerCase(required.columns))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Map<String, List<String>> indexColumns(DatabaseMetaData meta, String table, boolean uniqueOnly)
+            throws SQLException {
+        Map<String, List<String>> indexes = new LinkedHashMap<>();
+        String catalog = meta.getConnection().getCatalog();
+        // Identifier case depends on the engine: MySQL keeps it, the embedded engine lowercases it
+        for (String candidate : new String[]{table, table.toLowerCase(Locale.ROOT), table.toUpperCase(Locale.ROOT)}) {
+            try (ResultSet rs = meta.getIndexInfo(catalog, null, candidate, uniqueOnly, false)) {
+                while (rs.next()) {
+                    String indexName = rs.getString("INDEX_NAME");
+                    String column = rs.getString("COLUMN_NAME");
+                    // Not every driver filters on the unique argument
+                    if (indexName == null || column == null || (uniqueOnly && rs.getBoolean("NON_UNIQUE"))) {
+                        continue;
+                    }
+                    List<String> columns = indexes.computeIfAbsent(indexName, k -> new ArrayList<>());
+                    int position = rs.getShort("ORDINAL_POSITION");
+                    while (columns.size() < position) {
+                        columns.add(null);
+                    }
+                    columns.set(position - 1, column.toLowerCase(Locale.ROOT));
+                }
+            }
+            if (!indexes.isEmpty()) {
+                break;
+            }
+        }
+        return indexes;
+    }
+
+    private static List<String> lowerCase(List<String> values) {
+        List<String> lowered = new ArrayList<>(values.size());
+        for (String value : values) {
+            lowered.add(value.toLowerCase(Locale.ROOT));
+        }
+        return lowered;
+    }
+
+    private static void seedDefaultAdmin(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM Users")) {
+            if (rs.next() && rs.getInt(1) > 0) {
+                return;
+            }
+        }
+
+        if (ADMIN_PASSWORD == null || ADMIN_PASSWORD.isBlank()) {
+            System.err.println("The database has no accounts; restart with -Ddb.adminPassword=<password> "
+                    + "to create the administrator " + ADMIN_EMAIL);
+            return;
+        }
+        try (PreparedStatement stmt = connection.prepareStatement(Query.INSERT_USER.sql())) {
+            stmt.setString(1, "Administrator");
+            stmt.setString(2, ADMIN_EMAIL);
+            stmt.setString(3, ADMIN_PASSWORD);
+            stmt.setString(4, "Admin");
+            stmt.executeUpdate();
+        }
+    }
+}
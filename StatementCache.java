@@ -0,0 +1,238 @@
+package com.mycompany.projectgrading;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LRU cache of prepared statements for one pooled connection. A page that calls
+ * prepareStatement(sql) with SQL it has used before on the same physical
+ * connection gets the already-prepared statement back; close() closes the open
+ * result set and resets the parameters, fetch size and row limit, so nothing a
+ * borrower set carries over to the next one.
+ */
+class StatementCache {
+    // Counters across every pooled connection
+    private static final AtomicLong HITS = new AtomicLong();
+    private static final AtomicLong MISSES = new AtomicLong();
+    private static final AtomicLong EVICTIONS = new AtomicLong();
+
+    private final Connection physical;
+    private final int maxSize;
+    private final LinkedHashMap<String, CachedStatement> statements;
+
+    StatementCache(Connection physical, int maxSize) {
+        this.physical = physical;
+        this.maxSize = maxSize;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Returns a logical handle to a prepared statement for the given SQL.
+     */
+    synchronized PreparedStatement prepare(String sql) throws SQLException {
+        if (maxSize <= 0) {
+            return physical.prepareStatement(sql);
+        }
+
+        CachedStatement cached = statements.get(sql);
+        if (cached != null && !cached.inUse) {
+            HITS.incrementAndGet();
+            cached.inUse = true;
+            return cached.newHandle();
+        }
+
+        MISSES.incrementAndGet();
+        PreparedStatement statement = physical.prepareStatement(sql);
+        if (cached != null) {
+            // Same SQL is already open on this connection (nested use); don't cache the second copy
+            return statement;
+        }
+
+        try {
+            cached = new CachedStatement(statement);
+        } catch (SQLException ex) {
+            statement.close();
+            throw ex;
+        }
+        cached.inUse = true;
+        statements.put(sql, cached);
+        evictOverflow();
+        return cached.newHandle();
+    }
+
+    private void evictOverflow() {
+        Iterator<CachedStatement> iterator = statements.values().iterator();
+        while (statements.size() > maxSize && iterator.hasNext()) {
+            CachedStatement eldest = iterator.next();
+            if (eldest.inUse) {
+                continue;
+            }
+            iterator.remove();
+            EVICTIONS.incrementAndGet();
+            eldest.closePhysical();
+        }
+    }
+
+    /**
+     * Closes every cached statement; used when the physical connection is discarded.
+     */
+    synchronized void closeAll() {
+        for (CachedStatement cached : statements.values()) {
+            cached.closePhysical();
+        }
+        statements.clear();
+    }
+
+    /**
+     * Drops statements a page never closed; called when the connection goes back to the pool.
+     */
+    synchronized void discardLeaked() {
+        Iterator<CachedStatement> iterator = statements.values().iterator();
+        while (iterator.hasNext()) {
+            CachedStatement cached = iterator.next();
+            if (cached.inUse) {
+                iterator.remove();
+                cached.closePhysical();
+            }
+        }
+    }
+
+    synchronized int size() {
+        return statements.size();
+    }
+
+    private synchronized void giveBack(CachedStatement cached) {
+        cached.inUse = false;
+        if (!statements.containsValue(cached)) {
+            cached.closePhysical();
+        }
+    }
+
+    static long getHits() {
+        return HITS.get();
+    }
+
+    static long getMisses() {
+        return MISSES.get();
+    }
+
+    static String getStats() {
+        long hits = HITS.get();
+        long misses = MISSES.get();
+        long lookups = hits + misses;
+        double hitRate = lookups == 0 ? 0 : hits * 100.0 / lookups;
+        return "StatementCache{hits=" + hits + ", misses=" + misses
+                + ", evictions=" + EVICTIONS.get()
+                + ", hitRate=" + String.format("%.1f%%", hitRate) + '}';
+    }
+
+    private class CachedStatement {
+        private final PreparedStatement statement;
+        // The driver's defaults, restored when a borrower gives the statement back
+        private final int defaultFetchSize;
+        private final int defaultMaxRows;
+        private boolean inUse;
+
+        CachedStatement(PreparedStatement statement) throws SQLException {
+            this.statement = statement;
+            this.defaultFetchSize = statement.getFetchSize();
+            this.defaultMaxRows = statement.getMaxRows();
+        }
+
+        PreparedStatement newHandle() {
+            return (PreparedStatement) Proxy.newProxyInstance(
+                    PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class},
+                    new Handle(this));
+        }
+
+        void closePhysical() {
+            try {
+                statement.close();
+            } catch (SQLException ignored) {
+                // Statement is being discarded
+            }
+        }
+    }
+
+    private class Handle implements InvocationHandler {
+        private final CachedStatement cached;
+        private final List<ResultSet> openResults = new ArrayList<>(1);
+        private boolean closed;
+
+        Handle(CachedStatement cached) {
+            this.cached = cached;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        recycle();
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || cached.statement.isClosed();
+                case "unwrap":
+                    return cached.statement.unwrap((Class<?>) args[0]);
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Cached" + cached.statement;
+                default:
+                    break;
+            }
+            if (closed) {
+                throw new SQLException("Statement is closed");
+            }
+
+            Object result;
+            try {
+                result = method.invoke(cached.statement, args);
+            } catch (InvocationTargetException ex) {
+                throw ex.getCause();
+            }
+            if (result instanceof ResultSet) {
+                openResults.add((ResultSet) result);
+            }
+            return result;
+        }
+
+        // Leave the physical statement ready for the next borrower
+        private void recycle() {
+            try {
+                for (ResultSet rs : openResults) {
+                    rs.close();
+                }
+                openResults.clear();
+                cached.statement.clearParameters();
+                cached.statement.clearBatch();
+                cached.statement.clearWarnings();
+                // Row limit first: some drivers reject a fetch size above it
+                cached.statement.setMaxRows(cached.defaultMaxRows);
+                cached.statement.setFetchSize(cached.defaultFetchSize);
+                giveBack(cached);
+            } catch (SQLException ex) {
+                synchronized (StatementCache.this) {
+                    statements.values().remove(cached);
+                }
+                cached.closePhysical();
+            }
+        }
+    }
+}
@@ -46,23 +46,14 @@ public class Student {
         this.examScore = examScore;
     }
 
-    // Method to calculate the final grade with course-specific weights
+    // Final grade in basis points (8735 = 87.35%) with course-specific weights
     public int calculateFinalGrade(int assignmentWeight, int quizWeight, int examWeight) {
-        return (int) (assignmentScore * (assignmentWeight / 100.0) +
-                      quizScore * (quizWeight / 100.0) +
-                      examScore * (examWeight / 100.0));
+        return GradingPolicy.finalBasisPoints(assignmentScore, quizScore, examScore,
+                assignmentWeight, quizWeight, examWeight);
     }
 
-    // Method to convert a percentage grade to a letter grade
-    public String convertToLetterGrade(int percentage) {
-        if (percentage >= 95) return "A+";
-        if (percentage >= 90) return "A";
-        if (percentage >= 85) return "B+";
-        if (percentage >= 80) return "B";
-        if (percentage >= 75) return "C+";
-        if (percentage >= 70) return "C";
-        if (percentage >= 65) return "D+";
-        if (percentage >= 60) return "D";
-        return "F";
+    // Letter grade for a final grade in basis points under the given policy
+    public String convertToLetterGrade(GradingPolicy policy, int finalBasisPoints) {
+        return policy.letter(finalBasisPoints);
     }
 }
\ No newline at end of file
@@ -4,6 +4,8 @@ package com.mycompany.projectgrading;
 import javax.swing.*;
 import java.awt.*;
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
 import javax.swing.table.DefaultTableModel;
 
 public class StudentDashboard extends JFrame {
@@ -41,49 +43,66 @@ public class StudentDashboard extends JFrame {
     JTable tableCourses = new JTable();
     JScrollPane scrollPane = new JScrollPane(tableCourses);
 
+    JLabel labelGpa = new JLabel(" ");
+    labelGpa.setFont(new Font("Arial", Font.PLAIN, 14));
+    labelGpa.setHorizontalAlignment(SwingConstants.CENTER);
+
     leftPanel.add(labelTitle, BorderLayout.NORTH);
     leftPanel.add(scrollPane, BorderLayout.CENTER);
+    leftPanel.add(labelGpa, BorderLayout.SOUTH);
 
     // Fetch and populate courses and grades
-    populateCoursesAndGrades(tableCourses);
+    populateCoursesAndGrades(new BackgroundTasks.Loader(leftPanel, labelTitle), tableCourses);
+    loadGpa(labelGpa);
 
     return leftPanel;
 }
-private void populateCoursesAndGrades(JTable tableCourses) {
+private void populateCoursesAndGrades(BackgroundTasks.Loader loader, JTable tableCourses) {
     DefaultTableModel tableModel = new DefaultTableModel(
-        new String[]{"Course Name", "Assignment", "Quiz", "Exam", "Final Grade"}, 0);
+        new String[]{"Course Name", "Assignment", "Quiz", "Exam", "Final Grade", "Class Rank"}, 0);
     tableCourses.setModel(tableModel);
 
-    try (Connection connection = DatabaseConfig.getConnection();
-         PreparedStatement stmt = connection.prepareStatement(
-             "SELECT c.name AS course_name, g.assignment_score, g.quiz_score, g.exam_score, " +
-             "       (g.assignment_score * c.assignment_weight / 100 + " +
-             "        g.quiz_score * c.quiz_weight / 100 + " +
-             "        g.exam_score * c.exam_weight / 100) AS final_score " +
-             "FROM Enrollments e " +
-             "JOIN Courses c ON e.course_id = c.course_id " +
-             "JOIN Grades g ON e.student_id = g.student_id AND e.course_id = g.course_id " +
-             "WHERE e.student_id = ?")) {
-
-        stmt.setInt(1, currentUser.getId()); // Use currentUser ID
-        ResultSet rs = stmt.executeQuery();
-
-        while (rs.next()) {
-            String courseName = rs.getString("course_name");
-            int assignmentScore = rs.getInt("assignment_score");
-            int quizScore = rs.getInt("quiz_score");
-            int examScore = rs.getInt("exam_score");
-            int finalScore = rs.getInt("final_score");
+    loader.load("Loading your courses and grades...",
+        task -> fetchCoursesAndGrades(task),
+        rows -> {
+            for (Object[] row : rows) {
+                tableModel.addRow(row);
+            }
+        },
+        ex -> JOptionPane.showMessageDialog(this, "Error fetching courses and grades: " + ex.getMessage()));
+}
 
-            // Create a Student instance to use convertToLetterGrade
-            Student student = new Student(currentUser.getName(), assignmentScore, quizScore, examScore);
-            String letterGrade = student.convertToLetterGrade(finalScore);
+// Runs on a worker thread
+private List<Object[]> fetchCoursesAndGrades(BackgroundTasks.Task task) throws SQLException {
+    List<Object[]> rows = new ArrayList<>();
+    try (Connection connection = DatabaseConfig.getReadConnection();
+         PreparedStatement stmt = connection.prepareStatement(Query.STUDENT_COURSE_GRADES.sql())) {
 
-            tableModel.addRow(new Object[]{courseName, assignmentScore, quizScore, examScore, letterGrade});
+        stmt.setInt(1, currentUser.getId()); // Use currentUser ID
+        try (ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                task.checkCancelled();
+                String courseName = rs.getString("course_name");
+                int assignmentScore = rs.getInt("assignment_score");
+                int quizScore = rs.getInt("quiz_score");
+                int examScore = rs.getInt("exam_score");
+                String letterGrade = rs.getString("letter_grade"); // Materialized on write
+                ClassRankIndex.Standing standing = ClassRankIndex.standing(rs.getInt("course_id"), currentUser.getId());
+
+                rows.add(new Object[]{courseName, assignmentScore, quizScore, examScore, letterGrade,
+                        standing != null ? standing.format() : "-"});
+            }
         }
-    } catch (SQLException ex) {
-        JOptionPane.showMessageDialog(this, "Error fetching courses and grades: " + ex.getMessage());
     }
+    return rows;
+}
+
+// GPA and credits come from the per-student cache
+private void loadGpa(JLabel labelGpa) {
+    BackgroundTasks.submit(task -> StudentGpaCache.get(currentUser.getId()),
+        gpa -> labelGpa.setText("GPA: " + gpa.format() + "   Credits: " + gpa.getCreditHours()
+                + "   Courses: " + gpa.getCourses()),
+        ex -> labelGpa.setText("Error loading GPA: " + ex.getMessage()));
 }
 
 private JPanel createRightPanel() {
@@ -136,18 +155,17 @@ private JPanel createNotificationPanel(int studentId) {
     notificationPanel.add(title);
 
     // Fetch notifications from the database
-    String query = "SELECT message FROM Notifications WHERE student_id = ? ORDER BY created_at DESC LIMIT 10";
-    try (Connection connection = DatabaseConfig.getConnection();
-         PreparedStatement stmt = connection.prepareStatement(query)) {
+    try (Connection connection = DatabaseConfig.getReadConnection();
+         PreparedStatement stmt = connection.prepareStatement(Query.RECENT_NOTIFICATIONS.sql())) {
 
         stmt.setInt(1, studentId);
-        ResultSet rs = stmt.executeQuery();
-
-        while (rs.next()) {
-            JLabel notification = new JLabel("- " + rs.getString("message"));
-            notification.setFont(new Font("Arial", Font.PLAIN, 14));
-            notification.setAlignmentX(Component.LEFT_ALIGNMENT);
-            notificationPanel.add(notification);
+        try (ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                JLabel notification = new JLabel("- " + rs.getString("message"));
+                notification.setFont(new Font("Arial", Font.PLAIN, 14));
+                notification.setAlignmentX(Component.LEFT_ALIGNMENT);
+                notificationPanel.add(notification);
+            }
         }
     } catch (SQLException ex) {
         JLabel error = new JLabel("Error loading notifications.");
@@ -159,28 +177,29 @@ private JPanel createNotificationPanel(int studentId) {
     return notificationPanel;
 }
 private void loadNotifications(JTextArea notificationsArea) {
-    String query = "SELECT message FROM Notifications WHERE student_id = ?";
-    StringBuilder notifications = new StringBuilder();
+    notificationsArea.setText("Loading notifications...");
 
-    try (Connection connection = DatabaseConfig.getConnection();
-         PreparedStatement stmt = connection.prepareStatement(query)) {
+    BackgroundTasks.Loader loader = new BackgroundTasks.Loader(notificationsArea, null);
+    loader.load("Loading notifications...", task -> {
+        StringBuilder notifications = new StringBuilder();
 
-        stmt.setInt(1, currentUser.getId()); // Fetch notifications for the logged-in student
-        ResultSet rs = stmt.executeQuery();
+        try (Connection connection = DatabaseConfig.getReadConnection();
+             PreparedStatement stmt = connection.prepareStatement(Query.STUDENT_NOTIFICATIONS.sql())) {
 
-        while (rs.next()) {
-            notifications.append("- ").append(rs.getString("message")).append("\n");
+            stmt.setInt(1, currentUser.getId()); // Fetch notifications for the logged-in student
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    notifications.append("- ").append(rs.getString("message")).append("\n");
+                }
+            }
         }
 
         if (notifications.length() == 0) {
             notifications.append("No notifications.");
         }
-
-        notificationsArea.setText(notifications.toString());
-    } catch (SQLException ex) {
-        notificationsArea.setText("Error loading notifications: " + ex.getMessage());
-    }
+        return notifications.toString();
+    },
+    notificationsArea::setText,
+    ex -> notificationsArea.setText("Error loading notifications: " + ex.getMessage()));
 }
-
-
 }
\ No newline at end of file
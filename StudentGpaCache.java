@@ -0,0 +1,409 @@
+package com.mycompany.projectgrading;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-student GPA and credit hours kept in memory, so transcripts, the student
+ * dashboard and the admin student list read them in constant time instead of
+ * joining every enrollment, grade and course.
+ *
+ * A student is loaded on first use. Each cached student keeps one entry per
+ * enrolled course (credit hours, whether the course counts toward the GPA and
+ * its grade points), and the totals are updated from those entries: a grade
+ * write replaces one course's grade points and removing an enrollment drops its
+ * entry. A new enrollment drops the student, and a change to a course's credit
+ * hours, weights or policy drops only the students enrolled in it; they are
+ * reloaded on the next read. A background reconcile reloads the cached students
+ * and counts the ones that had drifted, as {@link CourseStatsStore} does.
+ *
+ * Settings: -Ddb.gpa.reconcileMs sets the reconcile interval (default 600000;
+ * 0 turns it off).
+ */
+public class StudentGpaCache {
+    private static final long RECONCILE_MS = Long.getLong("db.gpa.reconcileMs", 600_000L);
+
+    private static final ConcurrentHashMap<Integer, Record> STUDENTS = new ConcurrentHashMap<>();
+    // Bumped by every change so a load that raced with one is not cached
+    private static final AtomicLong GENERATION = new AtomicLong();
+    private static final AtomicLong HITS = new AtomicLong();
+    private static final AtomicLong MISSES = new AtomicLong();
+    private static final AtomicLong LOADS = new AtomicLong();
+    private static final AtomicLong DELTAS = new AtomicLong();
+    private static final AtomicLong INVALIDATIONS = new AtomicLong();
+    private static final AtomicLong RECONCILES = new AtomicLong();
+    private static final AtomicLong DRIFTED = new AtomicLong();
+
+    static {
+        if (RECONCILE_MS > 0) {
+            ScheduledExecutorService reconciler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "student-gpa-reconcile");
+                thread.setDaemon(true);
+                return thread;
+            });
+            reconciler.scheduleWithFixedDelay(() -> {
+                try {
+                    reconcile();
+                } catch (SQLException ex) {
+                    System.err.println("Student GPA reconcile failed: " + ex.getMessage());
+                }
+            }, RECONCILE_MS, RECONCILE_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Returns the student's GPA summary, loading it on first use. A student
+     * with no enrollments gets an empty summary.
+     */
+    public static Gpa get(int studentId) throws SQLException {
+        Record record = STUDENTS.get(studentId);
+        if (record != null) {
+            HITS.incrementAndGet();
+            return record.summary();
+        }
+        MISSES.incrementAndGet();
+        long generation = GENERATION.get();
+        Map<Integer, Record> loaded = load(studentId);
+        record = loaded.getOrDefault(studentId, new Record());
+        cache(studentId, record, generation);
+        return record.summary();
+    }
+
+    /**
+     * Returns the summaries of several students, e.g. for a listing. When any of
+     * them is not cached, all students are loaded with one query.
+     */
+    public static Map<Integer, Gpa> getAll(Collection<Integer> studentIds) throws SQLException {
+        Map<Integer, Gpa> summaries = new LinkedHashMap<>();
+        Map<Integer, Record> loaded = null;
+        long generation = GENERATION.get();
+        for (int studentId : studentIds) {
+            Record record = STUDENTS.get(studentId);
+            if (record != null) {
+                HITS.incrementAndGet();
+            } else {
+                MISSES.incrementAndGet();
+                if (loaded == null) {
+                    loaded = load(null);
+                }
+                record = loaded.getOrDefault(studentId, new Record());
+                cache(studentId, record, generation);
+            }
+            summaries.put(studentId, record.summary());
+        }
+        return summaries;
+    }
+
+    private static void cache(int studentId, Record record, long generation) {
+        if (GENERATION.get() == generation) {
+            STUDENTS.putIfAbsent(studentId, record);
+        }
+    }
+
+    /**
+     * Applies a grade write to a cached student.
+     *
+     * @param finalBasisPoints the new materialized final grade
+     * @param policy           the course's grading policy
+     */
+    public static void gradeChanged(int studentId, int courseId, int finalBasisPoints, GradingPolicy policy) {
+        GENERATION.incrementAndGet();
+        Record record = STUDENTS.get(studentId);
+        if (record != null && record.setGrade(courseId, policy, finalBasisPoints)) {
+            DELTAS.incrementAndGet();
+        } else if (record != null) {
+            invalidate(studentId); // Enrolled since it was loaded
+        }
+    }
+
+    /**
+     * Drops a student who was enrolled in a course; the course's credit hours
+     * and policy are read on the next load.
+     */
+    public static void enrollmentAdded(int studentId) {
+        invalidate(studentId);
+    }
+
+    /**
+     * Takes a removed enrollment out of a cached student.
+     */
+    public static void enrollmentRemoved(int studentId, int courseId) {
+        GENERATION.incrementAndGet();
+        Record record = STUDENTS.get(studentId);
+        if (record != null) {
+            record.remove(courseId);
+            DELTAS.incrementAndGet();
+        }
+    }
+
+    /**
+     * Drops the students enrolled in a course whose credit hours, weights,
+     * policy or final grades changed, or that was deleted.
+     */
+    public static void courseChanged(int courseId) {
+        GENERATION.incrementAndGet();
+        STUDENTS.values().removeIf(record -> record.hasCourse(courseId) && countInvalidation());
+    }
+
+    public static void courseChanged(String courseName) {
+        GENERATION.incrementAndGet();
+        STUDENTS.values().removeIf(record -> record.hasCourse(courseName) && countInvalidation());
+    }
+
+    /**
+     * Drops a student so the summary is reloaded on the next read.
+     */
+    public static void invalidate(int studentId) {
+        GENERATION.incrementAndGet();
+        if (STUDENTS.remove(studentId) != null) {
+            INVALIDATIONS.incrementAndGet();
+        }
+    }
+
+    private static boolean countInvalidation() {
+        INVALIDATIONS.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Reloads every cached student and replaces the in-memory figures.
+     *
+     * @return the number of students whose figures had drifted from the database
+     */
+    public static int reconcile() throws SQLException {
+        if (STUDENTS.isEmpty()) {
+            RECONCILES.incrementAndGet();
+            return 0;
+        }
+        Map<Integer, Long> deltasBefore = new HashMap<>();
+        STUDENTS.forEach((studentId, record) -> deltasBefore.put(studentId, record.deltaCount()));
+        Map<Integer, Record> fresh = load(null);
+
+        int drifted = 0;
+        for (Map.Entry<Integer, Long> entry : deltasBefore.entrySet()) {
+            int studentId = entry.getKey();
+            Record cached = STUDENTS.get(studentId);
+            // Dropped meanwhile, or a write landed while loading; try next round
+            if (cached == null || cached.deltaCount() != entry.getValue()) {
+                continue;
+            }
+            Record reloaded = fresh.getOrDefault(studentId, new Record());
+            if (!cached.summary().sameFigures(reloaded.summary())) {
+                drifted++;
+                DRIFTED.incrementAndGet();
+                System.err.println("GPA of student " + studentId + " had drifted from the database; reloaded");
+            }
+            STUDENTS.replace(studentId, cached, reloaded);
+        }
+        RECONCILES.incrementAndGet();
+        return drifted;
+    }
+
+    // Loads one student, or every student with an enrollment when studentId is null
+    private static Map<Integer, Record> load(Integer studentId) throws SQLException {
+        Map<Integer, Record> records = new HashMap<>();
+        Query query = studentId == null ? Query.ALL_STUDENT_GPA_COURSES : Query.STUDENT_GPA_COURSES;
+        try (Connection connection = DatabaseConfig.getReadConnection();
+             PreparedStatement stmt = connection.prepareStatement(query.sql())) {
+            if (studentId != null) {
+                stmt.setInt(1, studentId);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    GradingPolicy policy = GradingPolicy.forName(rs.getString("grading_policy"));
+                    // An ungraded course counts as 0, as on the transcript
+                    int finalBasisPoints = rs.getInt("final_grade");
+                    records.computeIfAbsent(rs.getInt("student_id"), id -> new Record())
+                            .put(rs.getInt("course_id"), rs.getString("course_name"),
+                                    rs.getInt("credit_hours"), policy, finalBasisPoints);
+                }
+            }
+        }
+        LOADS.incrementAndGet();
+        return records;
+    }
+
+    public static String getStats() {
+        long hits = HITS.get();
+        long lookups = hits + MISSES.get();
+        long oldestMs = 0;
+        long now = System.nanoTime();
+        for (Record record : STUDENTS.values()) {
+            oldestMs = Math.max(oldestMs, TimeUnit.NANOSECONDS.toMillis(now - record.loadedAt));
+        }
+        return "StudentGpaCache{students=" + STUDENTS.size() +
+                ", hits=" + hits +
+                ", misses=" + MISSES.get() +
+                ", hitRate=" + (lookups == 0 ? "n/a" : String.format("%.1f%%", hits * 100.0 / lookups)) +
+                ", loads=" + LOADS.get() +
+                ", deltas=" + DELTAS.get() +
+                ", invalidations=" + INVALIDATIONS.get() +
+                ", oldestEntryMs=" + oldestMs +
+                ", reconciles=" + RECONCILES.get() +
+                ", drifted=" + DRIFTED.get() + '}';
+    }
+
+    /**
+     * A student's totals: courses, credit hours, and quality points (grade
+     * points in hundredths times credit hours) over the courses that count
+     * toward the GPA.
+     */
+    public static class Gpa {
+        private final int courses;
+        private final int creditHours;
+        private final int gpaCreditHours;
+        private final long qualityPoints;
+
+        private Gpa(int courses, int creditHours, int gpaCreditHours, long qualityPoints) {
+            this.courses = courses;
+            this.creditHours = creditHours;
+            this.gpaCreditHours = gpaCreditHours;
+            this.qualityPoints = qualityPoints;
+        }
+
+        public int getCourses() {
+            return courses;
+        }
+
+        public int getCreditHours() {
+            return creditHours;
+        }
+
+        public int getGpaCreditHours() {
+            return gpaCreditHours;
+        }
+
+        public double getGpa() {
+            return gpaCreditHours > 0 ? qualityPoints / 100.0 / gpaCreditHours : 0;
+        }
+
+        /**
+         * The GPA to two decimals, e.g. "3.25".
+         */
+        public String format() {
+            return String.format("%.2f", getGpa());
+        }
+
+        private boolean sameFigures(Gpa other) {
+            return courses == other.courses && creditHours == other.creditHours
+                    && gpaCreditHours == other.gpaCreditHours && qualityPoints == other.qualityPoints;
+        }
+    }
+
+    /**
+     * Totals built from enrollments read elsewhere, such as a cohort transcript
+     * pass; nothing is cached.
+     */
+    static class Accumulator {
+        private final Record record = new Record();
+
+        void add(int courseId, String courseName, int creditHours, GradingPolicy policy, int finalBasisPoints) {
+            record.put(courseId, courseName, creditHours, policy, finalBasisPoints);
+        }
+
+        Gpa finish() {
+            return record.summary();
+        }
+    }
+
+    /**
+     * A cached student's per-course entries and running totals, guarded by the
+     * record's lock.
+     */
+    private static class Record {
+        private final Map<Integer, Entry> courses = new HashMap<>();
+        private final long loadedAt = System.nanoTime();
+        private int creditHours;
+        private int gpaCreditHours;
+        private long qualityPoints;
+        private long deltas;
+
+        synchronized void put(int courseId, String courseName, int credits, GradingPolicy policy, int finalBasisPoints) {
+            Entry entry = new Entry(courseName, credits, policy.countsTowardGpa(),
+                    policy.gradePointHundredths(finalBasisPoints));
+            apply(courses.put(courseId, entry), -1);
+            apply(entry, 1);
+        }
+
+        // Returns false when the course is not among the cached enrollments
+        synchronized boolean setGrade(int courseId, GradingPolicy policy, int finalBasisPoints) {
+            Entry old = courses.get(courseId);
+            if (old == null) {
+                return false;
+            }
+            Entry entry = new Entry(old.courseName, old.creditHours, policy.countsTowardGpa(),
+                    policy.gradePointHundredths(finalBasisPoints));
+            courses.put(courseId, entry);
+            apply(old, -1);
+            apply(entry, 1);
+            deltas++;
+            return true;
+        }
+
+        synchronized void remove(int courseId) {
+            apply(courses.remove(courseId), -1);
+            deltas++;
+        }
+
+        private void apply(Entry entry, int sign) {
+            if (entry == null) {
+                return;
+            }
+            creditHours += sign * entry.creditHours;
+            if (entry.countsTowardGpa) {
+                gpaCreditHours += sign * entry.creditHours;
+                qualityPoints += sign * (long) entry.gradePoints * entry.creditHours;
+            }
+        }
+
+        synchronized boolean hasCourse(int courseId) {
+            return courses.containsKey(courseId);
+        }
+
+        synchronized boolean hasCourse(String courseName) {
+            for (Entry entry : courses.values()) {
+                if (entry.courseName.equals(courseName)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        synchronized long deltaCount() {
+            return deltas;
+        }
+
+        synchronized Gpa summary() {
+            return new Gpa(courses.size(), creditHours, gpaCreditHours, qualityPoints);
+        }
+    }
+
+    /**
+     * One enrolled course's contribution.
+     */
+    private static class Entry {
+        private final String courseName;
+        private final int creditHours;
+        private final boolean countsTowardGpa;
+        // Hundredths
+        private final int gradePoints;
+
+        Entry(String courseName, int creditHours, boolean countsTowardGpa, int gradePoints) {
+            this.courseName = courseName;
+            this.creditHours = creditHours;
+            this.countsTowardGpa = countsTowardGpa;
+            this.gradePoints = gradePoints;
+        }
+    }
+}
@@ -3,16 +3,18 @@ package com.mycompany.projectgrading;
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
-import java.io.BufferedWriter;
-import java.io.FileWriter;
-import java.io.IOException;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 public class StudentManagementPage {
     private User currentUser;
     private DefaultTableModel tableModel;
     private JPanel mainPanel;
+    private BackgroundTasks.Loader tableLoader;
 
     public StudentManagementPage(User user) {
         this.currentUser = user;
@@ -26,9 +28,10 @@ public class StudentManagementPage {
         JLabel titleLabel = new JLabel("Manage Students", SwingConstants.CENTER);
         titleLabel.setFont(new Font("Arial", Font.BOLD, 18));
         mainPanel.add(titleLabel, BorderLayout.NORTH);
+        tableLoader = new BackgroundTasks.Loader(mainPanel, titleLabel);
 
         // Students Table
-        tableModel = new DefaultTableModel(new String[]{"Student Name", "Email", "Enrolled Courses"}, 0);
+        tableModel = new DefaultTableModel(new String[]{"Student Name", "Email", "Enrolled Courses", "Credits", "GPA"}, 0);
         JTable table = new JTable(tableModel);
         JScrollPane scrollPane = new JScrollPane(table);
         mainPanel.add(scrollPane, BorderLayout.CENTER);
@@ -36,6 +39,7 @@ public class StudentManagementPage {
         // Button Panel
         JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.CENTER, 20, 10));
         buttonPanel.add(createButton("Enroll Courses", e -> enrollStudentToCourses()));
+        buttonPanel.add(createButton("Import Roster", e -> importRoster()));
         buttonPanel.add(createButton("Edit Student", e -> editStudent(table)));
         buttonPanel.add(createButton("Remove Enrollment", e -> removeEnrollment(table)));
         buttonPanel.add(createButton("Generate Report", e -> generateStudentReports()));
@@ -52,165 +56,296 @@ public class StudentManagementPage {
 
     private void loadStudentData() {
         tableModel.setRowCount(0);
-        String query = "SELECT s.name, s.email, " +
-                "(SELECT GROUP_CONCAT(c.name SEPARATOR ', ') " +
-                " FROM Enrollments e JOIN Courses c ON e.course_id = c.course_id WHERE e.student_id = s.student_id) AS courses " +
-                "FROM Students s";
-
-        try (Connection connection = DatabaseConfig.getConnection();
-             PreparedStatement stmt = connection.prepareStatement(query);
-             ResultSet rs = stmt.executeQuery()) {
+        tableLoader.load("Loading students...", task -> {
+            List<Object[]> rows = new ArrayList<>();
+            List<Integer> studentIds = new ArrayList<>();
+            try (Connection connection = DatabaseConfig.getReadConnection();
+                 PreparedStatement stmt = connection.prepareStatement(Query.STUDENT_LIST_WITH_COURSES.sql());
+                 ResultSet rs = stmt.executeQuery()) {
+
+                while (rs.next()) {
+                    task.checkCancelled();
+                    studentIds.add(rs.getInt("student_id"));
+                    rows.add(new Object[]{
+                            rs.getString("name"),
+                            rs.getString("email"),
+                            rs.getString("courses") != null ? rs.getString("courses") : "Not Enrolled",
+                            null,
+                            null
+                    });
+                }
+            }
 
-            while (rs.next()) {
-                tableModel.addRow(new Object[]{
-                        rs.getString("name"),
-                        rs.getString("email"),
-                        rs.getString("courses") != null ? rs.getString("courses") : "Not Enrolled"
-                });
+            // Cached totals; any missing students are loaded together
+            Map<Integer, StudentGpaCache.Gpa> gpas = StudentGpaCache.getAll(studentIds);
+            for (int i = 0; i < rows.size(); i++) {
+                StudentGpaCache.Gpa gpa = gpas.get(studentIds.get(i));
+                rows.get(i)[3] = gpa.getCreditHours();
+                rows.get(i)[4] = gpa.getCourses() > 0 ? gpa.format() : "-";
             }
-        } catch (SQLException ex) {
-            JOptionPane.showMessageDialog(null, "Error loading students: " + ex.getMessage());
-        }
+            return rows;
+        }, rows -> {
+            for (Object[] row : rows) {
+                tableModel.addRow(row);
+            }
+        }, ex -> JOptionPane.showMessageDialog(null, "Error loading students: " + ex.getMessage()));
     }
 
     private void generateStudentReports() {
-        try {
-            ArrayList<String[]> students = fetchAllStudents();
+        BackgroundTasks.submit(task -> fetchAllStudents(), this::chooseStudentsForReports,
+                ex -> JOptionPane.showMessageDialog(null, "Error generating reports: " + ex.getMessage()));
+    }
 
-            if (students.isEmpty()) {
-                JOptionPane.showMessageDialog(null, "No students available.");
-                return;
-            }
+    private void chooseStudentsForReports(ArrayList<String[]> students) {
+        if (students.isEmpty()) {
+            JOptionPane.showMessageDialog(null, "No students available.");
+            return;
+        }
+
+        JList<String> studentList = new JList<>(students.stream().map(s -> s[1]).toArray(String[]::new));
+        studentList.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
+
+        JComboBox<ReportTemplate.Format> formatBox = new JComboBox<>(ReportTemplate.Format.values());
 
-            JList<String> studentList = new JList<>(students.stream().map(s -> s[1]).toArray(String[]::new));
-            studentList.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.add(new JLabel("Select Student(s):"), BorderLayout.NORTH);
+        panel.add(new JScrollPane(studentList), BorderLayout.CENTER);
+        JComboBox<ReportOutput.Kind> outputBox = new JComboBox<>(ReportOutput.Kind.values());
+        JPanel options = new JPanel(new GridLayout(1, 2, 10, 0));
+        options.add(formatBox);
+        options.add(outputBox);
+        panel.add(options, BorderLayout.SOUTH);
+
+        if (JOptionPane.showConfirmDialog(null, panel, "Generate Reports", JOptionPane.OK_CANCEL_OPTION) != JOptionPane.OK_OPTION) {
+            return;
+        }
+
+        List<String[]> selected = new ArrayList<>();
+        for (int index : studentList.getSelectedIndices()) {
+            selected.add(students.get(index));
+        }
+        ReportTemplate.Format format = (ReportTemplate.Format) formatBox.getSelectedItem();
+        ReportOutput.Kind outputKind = (ReportOutput.Kind) outputBox.getSelectedItem();
+        BackgroundTasks.submitWithProgress(mainPanel, "Generating student reports",
+                task -> ReportPipeline.runBatch(task, selected, student -> "Student " + student[1],
+                        StudentManagementPage::readTranscripts,
+                        (student, transcript, out) -> renderStudentReport(Integer.parseInt(student[0]), transcript, format, out),
+                        ReportOutput.open(outputKind, reportTarget("Student_Reports", outputKind))),
+                summary -> JOptionPane.showMessageDialog(null, summary.format("reports")),
+                ex -> JOptionPane.showMessageDialog(null, "Error generating reports: " + ex.getMessage()));
+    }
+
+    // Runs inside the report snapshot: one query per chunk of selected ids in student order, split into
+    // transcripts as it streams, with GPAs totalled on the way and instructor names from one lookup
+    private static List<Transcript> readTranscripts(Connection snapshot, List<String[]> students) throws SQLException {
+        Map<Integer, Transcript> byStudent = new HashMap<>();
+        for (String[] student : students) {
+            byStudent.put(Integer.parseInt(student[0]), new Transcript());
+        }
+        List<Transcript> transcripts = new ArrayList<>();
+        if (byStudent.isEmpty()) {
+            return transcripts;
+        }
 
-            JPanel panel = new JPanel(new BorderLayout());
-            panel.add(new JLabel("Select Student(s):"), BorderLayout.NORTH);
-            panel.add(new JScrollPane(studentList), BorderLayout.CENTER);
+        Map<Integer, String> instructors = new HashMap<>();
+        try (PreparedStatement stmt = snapshot.prepareStatement(Query.COURSE_INSTRUCTORS.sql());
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                instructors.putIfAbsent(rs.getInt("course_id"), rs.getString("name"));
+            }
+        }
 
-            if (JOptionPane.showConfirmDialog(null, panel, "Generate Reports", JOptionPane.OK_CANCEL_OPTION) == JOptionPane.OK_OPTION) {
-                for (int index : studentList.getSelectedIndices()) {
-                    int studentId = Integer.parseInt(students.get(index)[0]);
-                    generateStudentReport(studentId);
+        // Not cached: the statement's fetch size and cursor are specific to the batch
+        List<Integer> studentIds = new ArrayList<>(byStudent.keySet());
+        Collections.sort(studentIds);
+        try (PreparedStatement stmt = snapshot.prepareStatement(Query.COHORT_TRANSCRIPTS.sql(),
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            stmt.setFetchSize(ReportPipeline.FETCH_SIZE);
+            for (int from = 0; from < studentIds.size(); from += Query.COHORT_CHUNK_SIZE) {
+                List<Integer> chunk = studentIds.subList(from, Math.min(from + Query.COHORT_CHUNK_SIZE, studentIds.size()));
+                for (int i = 0; i < Query.COHORT_CHUNK_SIZE; i++) {
+                    stmt.setInt(i + 1, chunk.get(Math.min(i, chunk.size() - 1)));
                 }
+                readTranscriptRows(stmt, byStudent, instructors);
+            }
+        }
 
-                JOptionPane.showMessageDialog(null, "Reports generated successfully.");
+        for (String[] student : students) {
+            Transcript transcript = byStudent.get(Integer.parseInt(student[0]));
+            if (transcript.gpa == null) {
+                transcript.gpa = new StudentGpaCache.Accumulator().finish(); // Not enrolled anywhere
             }
-        } catch (SQLException | IOException ex) {
-            JOptionPane.showMessageDialog(null, "Error generating reports: " + ex.getMessage());
+            transcripts.add(transcript);
         }
+        return transcripts;
     }
 
-    private void generateStudentReport(int studentId) throws SQLException, IOException {
-    String query = "SELECT s.name AS student_name, s.email AS email, " +
-            "c.name AS course_name, c.credit_hours, " +
-            "(SELECT u.name FROM Users u JOIN Assignments a ON u.user_id = a.teacher_id WHERE a.course_id = c.course_id LIMIT 1) AS instructor_name, " +
-            "g.assignment_score, g.quiz_score, g.exam_score, " +
-            "ROUND((g.assignment_score * c.assignment_weight / 100 + g.quiz_score * c.quiz_weight / 100 + g.exam_score * c.exam_weight / 100), 2) AS final_grade " +
-            "FROM Students s " +
-            "JOIN Enrollments e ON s.student_id = e.student_id " +
-            "JOIN Courses c ON e.course_id = c.course_id " +
-            "LEFT JOIN Grades g ON g.course_id = c.course_id AND g.student_id = s.student_id " +
-            "WHERE s.student_id = ?";
-
-    try (Connection connection = DatabaseConfig.getConnection();
-         PreparedStatement stmt = connection.prepareStatement(query)) {
-
-        stmt.setInt(1, studentId);
-        ResultSet rs = stmt.executeQuery();
-
-        StringBuilder reportContent = new StringBuilder();
-        reportContent.append("------------------------------------------------------\n")
-                .append("                 STUDENT TRANSCRIPT\n")
-                .append("------------------------------------------------------\n")
-                .append("Student ID: ").append(studentId).append("\n\n")
-                .append("| Course Name   | Credit Hours | Instructor   | Assignment | Quiz | Exam | Final Grade |\n")
-                .append("------------------------------------------------------\n");
-
-        int totalCreditHours = 0;
-        double totalQualityPoints = 0;
-        int totalCourses = 0;
-
-        while (rs.next()) {
-            String courseName = rs.getString("course_name");
-            int creditHours = rs.getInt("credit_hours");
-            String instructorName = rs.getString("instructor_name") != null ? rs.getString("instructor_name") : "Unassigned";
-            int assignmentScore = rs.getInt("assignment_score");
-            int quizScore = rs.getInt("quiz_score");
-            int examScore = rs.getInt("exam_score");
-            double finalGrade = rs.getDouble("final_grade");
-
-            // Compute letter grade
-            String letterGrade = getLetterGrade(finalGrade);
-
-            // Compute quality points
-            double gradePoint = getGradePoint(finalGrade); // Convert percentage to grade point
-            double qualityPoints = gradePoint * creditHours;
-
-            totalCreditHours += creditHours;
-            totalQualityPoints += qualityPoints;
-            totalCourses++;
-
-            reportContent.append(String.format("| %-13s | %-12d | %-12s | %-10d | %-4d | %-4d | %-10s |\n",
-                    courseName, creditHours, instructorName, assignmentScore, quizScore, examScore, letterGrade));
+    // Streams one chunk's rows, which arrive grouped by student, into their transcripts
+    private static void readTranscriptRows(PreparedStatement stmt, Map<Integer, Transcript> byStudent,
+                                           Map<Integer, String> instructors) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery()) {
+            int currentId = Integer.MIN_VALUE;
+            Transcript current = null;
+            StudentGpaCache.Accumulator gpa = null;
+            while (rs.next()) {
+                int studentId = rs.getInt("student_id");
+                if (studentId != currentId) {
+                    if (current != null) {
+                        current.gpa = gpa.finish();
+                    }
+                    currentId = studentId;
+                    current = byStudent.get(studentId);
+                    gpa = new StudentGpaCache.Accumulator();
+                }
+                int courseId = rs.getInt("course_id");
+                String courseName = rs.getString("course_name");
+                int creditHours = rs.getInt("credit_hours");
+                GradingPolicy policy = GradingPolicy.forName(rs.getString("grading_policy"));
+                // Materialized on write; an ungraded course counts as 0
+                int finalGrade = rs.getInt("final_grade");
+                String letterGrade = rs.wasNull() ? policy.letter(0) : rs.getString("letter_grade");
+                // Pass/fail courses earn credit without affecting the GPA
+                gpa.add(courseId, courseName, creditHours, policy, finalGrade);
+                String instructorName = instructors.get(courseId);
+                current.rows.add(new Object[]{
+                        courseName,
+                        creditHours,
+                        instructorName != null ? instructorName : "Unassigned",
+                        rs.getInt("assignment_score"),
+                        rs.getInt("quiz_score"),
+                        rs.getInt("exam_score"),
+                        letterGrade
+                });
+            }
+            if (current != null) {
+                current.gpa = gpa.finish();
+            }
         }
+    }
 
-        // GPA Calculation
-        double gpa = totalCreditHours > 0 ? totalQualityPoints / totalCreditHours : 0;
-
-        reportContent.append("------------------------------------------------------\n")
-                .append("Academic Summary:\n")
-                .append("• Total Courses: ").append(totalCourses).append("\n")
-                .append("• GPA: ").append(String.format("%.2f", gpa)).append("\n")
-                .append("• Total Credits: ").append(totalCreditHours).append("\n")
-                .append("• Status: Active\n")
-                .append("------------------------------------------------------\n")
-                .append("Date of Issue: ").append(java.time.LocalDate.now()).append("\n");
-
-        // Save report to a file
-        String fileName = System.getProperty("user.home") + "/Documents/Student_" + studentId + "_Report.txt";
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(fileName))) {
-            writer.write(reportContent.toString());
+    // Runs on a report writer thread; returns the transcript's file name
+    private static String renderStudentReport(int studentId, Transcript transcript, ReportTemplate.Format format,
+                                              StringBuilder reportContent) {
+        TranscriptLayout layout = TranscriptLayout.forFormat(format);
+        layout.header.render(reportContent, studentId);
+        for (Object[] row : transcript.rows) {
+            layout.row.render(reportContent, row);
         }
+        StudentGpaCache.Gpa gpa = transcript.gpa;
+        layout.summary.render(reportContent, gpa.getCourses(), gpa.getGpa(), gpa.getCreditHours(),
+                java.time.LocalDate.now().toString());
 
-        JOptionPane.showMessageDialog(null, "Report saved to: " + fileName);
+        return "Student_" + studentId + "_Report." + format.getExtension();
     }
-}
 
-private String getLetterGrade(double percentage) {
-    if (percentage >= 95) return "A+";
-        if (percentage >= 90) return "A";
-        if (percentage >= 85) return "B+";
-        if (percentage >= 80) return "B";
-        if (percentage >= 75) return "C+";
-        if (percentage >= 70) return "C";
-        if (percentage >= 65) return "D+";
-        if (percentage >= 60) return "D";
-        return "F";
-}
+    /**
+     * ~/Documents for separate files, or a new archive there named after the
+     * batch and the time, e.g. Student_Reports_20250114-093000.zip.
+     */
+    static java.nio.file.Path reportTarget(String batchName, ReportOutput.Kind kind) {
+        java.nio.file.Path documents = java.nio.file.Paths.get(System.getProperty("user.home"), "Documents");
+        if (kind.getExtension() == null) {
+            return documents;
+        }
+        String stamp = java.time.LocalDateTime.now().format(java.time.format.DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+        return documents.resolve(batchName + "_" + stamp + "." + kind.getExtension());
+    }
 
+    /**
+     * The transcript in one format: a header with the student id, a line per
+     * course and the academic summary, each compiled once.
+     */
+    private static class TranscriptLayout {
+        private static final String[] HEADER_FIELDS = {"student_id"};
+        private static final String[] ROW_FIELDS = {"course", "credits", "instructor", "assignment", "quiz", "exam", "letter"};
+        private static final String[] SUMMARY_FIELDS = {"courses", "gpa", "credits", "date"};
+
+        private static final String TEXT_HEADER = """
+                ------------------------------------------------------
+                                 STUDENT TRANSCRIPT
+                ------------------------------------------------------
+                Student ID: {student_id}
+
+                | Course Name   | Credit Hours | Instructor   | Assignment | Quiz | Exam | Final Grade |
+                ------------------------------------------------------
+                """;
+        private static final String TEXT_ROW =
+                "| {course:-13} | {credits:-12} | {instructor:-12} | {assignment:-10} | {quiz:-4} | {exam:-4} | {letter:-10} |\n";
+        private static final String TEXT_SUMMARY = """
+                ------------------------------------------------------
+                Academic Summary:
+                \u2022 Total Courses: {courses}
+                \u2022 GPA: {gpa:.2}
+                \u2022 Total Credits: {credits}
+                \u2022 Status: Active
+                ------------------------------------------------------
+                Date of Issue: {date}
+                """;
+
+        private static final String CSV_HEADER = "course,credit_hours,instructor,assignment,quiz,exam,final_grade\n";
+        private static final String CSV_ROW = "{course},{credits},{instructor},{assignment},{quiz},{exam},{letter}\n";
+        private static final String CSV_SUMMARY = "";
+
+        private static final String HTML_HEADER = """
+                <!DOCTYPE html>
+                <html><head><meta charset="utf-8"><title>Student Transcript {student_id}</title></head>
+                <body>
+                <h1>Student Transcript</h1>
+                <p>Student ID: {student_id}</p>
+                <table border="1">
+                <tr><th>Course Name</th><th>Credit Hours</th><th>Instructor</th><th>Assignment</th><th>Quiz</th><th>Exam</th><th>Final Grade</th></tr>
+                """;
+        private static final String HTML_ROW = "<tr><td>{course}</td><td>{credits}</td><td>{instructor}</td>"
+                + "<td>{assignment}</td><td>{quiz}</td><td>{exam}</td><td>{letter}</td></tr>\n";
+        private static final String HTML_SUMMARY = """
+                </table>
+                <h2>Academic Summary</h2>
+                <ul>
+                <li>Total Courses: {courses}</li>
+                <li>GPA: {gpa:.2}</li>
+                <li>Total Credits: {credits}</li>
+                <li>Status: Active</li>
+                </ul>
+                <p>Date of Issue: {date}</p>
+                </body></html>
+                """;
+
+        private static final Map<ReportTemplate.Format, TranscriptLayout> LAYOUTS = new java.util.EnumMap<>(ReportTemplate.Format.class);
+
+        static {
+            LAYOUTS.put(ReportTemplate.Format.TEXT, new TranscriptLayout(ReportTemplate.Format.TEXT, TEXT_HEADER, TEXT_ROW, TEXT_SUMMARY));
+            LAYOUTS.put(ReportTemplate.Format.CSV, new TranscriptLayout(ReportTemplate.Format.CSV, CSV_HEADER, CSV_ROW, CSV_SUMMARY));
+            LAYOUTS.put(ReportTemplate.Format.HTML, new TranscriptLayout(ReportTemplate.Format.HTML, HTML_HEADER, HTML_ROW, HTML_SUMMARY));
+        }
 
-// Helper Method to Map Final Grade Percentage to Grade Point
-private double getGradePoint(double finalGrade) {
-    if (finalGrade >= 95) return 5.0; // A
-    if (finalGrade >= 90) return 4.51; // A
-    if (finalGrade >= 85) return 4.01; // A-
-    if (finalGrade >= 80) return 3.51; // B+
-    if (finalGrade >= 75) return 3.01; // B
-    if (finalGrade >= 70) return 2.51; // B-
-    if (finalGrade >= 65) return 2.01; // C+
-    if (finalGrade >= 60) return 1.01; // C
-    return 0.0; // F
-}
+        private final ReportTemplate header;
+        private final ReportTemplate row;
+        private final ReportTemplate summary;
 
+        private TranscriptLayout(ReportTemplate.Format format, String header, String row, String summary) {
+            String extension = "." + format.getExtension();
+            this.header = ReportTemplate.load("transcript-header" + extension, header, format, HEADER_FIELDS);
+            this.row = ReportTemplate.load("transcript-row" + extension, row, format, ROW_FIELDS);
+            this.summary = ReportTemplate.load("transcript-summary" + extension, summary, format, SUMMARY_FIELDS);
+        }
+
+        static TranscriptLayout forFormat(ReportTemplate.Format format) {
+            return LAYOUTS.get(format);
+        }
+    }
+
+    /**
+     * One student's transcript rows and totals, read inside the report snapshot.
+     */
+    private static class Transcript {
+        private final List<Object[]> rows = new ArrayList<>();
+        private StudentGpaCache.Gpa gpa;
+    }
 
     private ArrayList<String[]> fetchAllStudents() throws SQLException {
         ArrayList<String[]> students = new ArrayList<>();
-        String query = "SELECT student_id, name FROM Students";
-
-        try (Connection connection = DatabaseConfig.getConnection();
-             PreparedStatement stmt = connection.prepareStatement(query);
+        try (Connection connection = DatabaseConfig.getReadConnection();
+             PreparedStatement stmt = connection.prepareStatement(Query.ALL_STUDENTS.sql());
              ResultSet rs = stmt.executeQuery()) {
 
             while (rs.next()) {
@@ -222,81 +357,90 @@ private double getGradePoint(double finalGrade) {
     }
 
     private void enrollStudentToCourses() {
-    try {
-        ArrayList<String[]> students = fetchAllStudents();
-        ArrayList<String[]> courses = fetchAllCourses();
+        BackgroundTasks.submit(task -> List.of(fetchAllStudents(), fetchAllCourses()),
+                lists -> chooseEnrollments(lists.get(0), lists.get(1)),
+                ex -> JOptionPane.showMessageDialog(null, "Error enrolling student: " + ex.getMessage()));
+    }
 
+    private void chooseEnrollments(ArrayList<String[]> students, ArrayList<String[]> courses) {
         if (students.isEmpty() || courses.isEmpty()) {
             JOptionPane.showMessageDialog(null, "Students or courses unavailable.");
             return;
         }
 
-        JComboBox<String> studentComboBox = new JComboBox<>(students.stream().map(s -> s[1]).toArray(String[]::new));
+        JList<String> studentList = new JList<>(students.stream().map(s -> s[1]).toArray(String[]::new));
+        studentList.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
         JList<String> courseList = new JList<>(courses.stream().map(c -> c[1]).toArray(String[]::new));
         courseList.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
 
+        JPanel lists = new JPanel(new GridLayout(1, 2, 10, 0));
+        lists.add(new JScrollPane(studentList));
+        lists.add(new JScrollPane(courseList));
         JPanel panel = new JPanel(new BorderLayout());
-        panel.add(new JLabel("Select Student:"), BorderLayout.NORTH);
-        panel.add(studentComboBox, BorderLayout.CENTER);
-        panel.add(new JScrollPane(courseList), BorderLayout.SOUTH);
-
-        if (JOptionPane.showConfirmDialog(null, panel, "Enroll Student to Courses", JOptionPane.OK_CANCEL_OPTION) == JOptionPane.OK_OPTION) {
-            int studentId = Integer.parseInt(students.get(studentComboBox.getSelectedIndex())[0]);
-            boolean enrolledAnyCourse = false;
+        panel.add(new JLabel("Select Students and Courses:"), BorderLayout.NORTH);
+        panel.add(lists, BorderLayout.CENTER);
 
+        if (JOptionPane.showConfirmDialog(null, panel, "Enroll Students to Courses", JOptionPane.OK_CANCEL_OPTION) == JOptionPane.OK_OPTION) {
+            List<Integer> studentIds = new ArrayList<>();
+            for (int studentIndex : studentList.getSelectedIndices()) {
+                studentIds.add(Integer.parseInt(students.get(studentIndex)[0]));
+            }
+            List<Integer> courseIds = new ArrayList<>();
             for (int courseIndex : courseList.getSelectedIndices()) {
-                int courseId = Integer.parseInt(courses.get(courseIndex)[0]);
-                if (assignStudentToCourse(studentId, courseId)) {
-                    enrolledAnyCourse = true; // Mark that at least one enrollment occurred
-                }
+                courseIds.add(Integer.parseInt(courses.get(courseIndex)[0]));
             }
-
-            if (enrolledAnyCourse) {
-                JOptionPane.showMessageDialog(null, "Student enrolled successfully.");
-                loadStudentData(); // Refresh table
-            } else {
-                JOptionPane.showMessageDialog(null, "No new courses were enrolled. The student is already enrolled in the selected courses.");
+            if (studentIds.isEmpty() || courseIds.isEmpty()) {
+                JOptionPane.showMessageDialog(null, "Select at least one student and one course.");
+                return;
             }
+
+            BackgroundTasks.submitWithProgress(mainPanel, "Enrolling students",
+                    task -> BulkEnrollment.enroll(task, studentIds, courseIds), result -> {
+                if (result.getAdded() > 0) {
+                    JOptionPane.showMessageDialog(null, "Students enrolled: " + result.format() + ".");
+                    loadStudentData(); // Refresh table
+                } else {
+                    JOptionPane.showMessageDialog(null, "No new courses were enrolled. The selected students are already enrolled in the selected courses.");
+                }
+            }, ex -> {
+                JOptionPane.showMessageDialog(null, "Error enrolling students: " + ex.getMessage());
+                loadStudentData(); // Batches committed before the failure are kept
+            });
         }
-    } catch (SQLException ex) {
-        JOptionPane.showMessageDialog(null, "Error enrolling student: " + ex.getMessage());
     }
-}
-
 
-    private boolean assignStudentToCourse(int studentId, int courseId) throws SQLException {
-    String checkQuery = "SELECT COUNT(*) FROM Enrollments WHERE student_id = ? AND course_id = ?";
-    try (Connection connection = DatabaseConfig.getConnection();
-         PreparedStatement checkStmt = connection.prepareStatement(checkQuery)) {
-
-        checkStmt.setInt(1, studentId);
-        checkStmt.setInt(2, courseId);
-        ResultSet rs = checkStmt.executeQuery();
-
-        if (rs.next() && rs.getInt(1) > 0) {
-            return false; // Student is already enrolled
+    private void importRoster() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle("Import roster");
+        chooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter("CSV or TSV files", "csv", "tsv", "txt"));
+        if (chooser.showOpenDialog(mainPanel) != JFileChooser.APPROVE_OPTION) {
+            return;
         }
+        java.nio.file.Path file = chooser.getSelectedFile().toPath();
+
+        BackgroundTasks.submitWithProgress(mainPanel, "Importing roster " + file.getFileName(),
+                task -> BulkEnrollment.importRoster(task, file), result -> {
+            StringBuilder message = new StringBuilder()
+                    .append(result.getRowsRead()).append(" roster rows read in ").append(result.getElapsedMs()).append(" ms: ")
+                    .append(result.format()).append(".");
+            if (!result.getErrors().isEmpty()) {
+                message.append("\n").append(result.getErrors().size()).append(" rows were rejected, e.g.:");
+                for (GradeImporter.RowError error : result.getErrors().subList(0, Math.min(5, result.getErrors().size()))) {
+                    message.append("\n").append(error);
+                }
+            }
+            JOptionPane.showMessageDialog(null, message.toString());
+            loadStudentData();
+        }, ex -> {
+            JOptionPane.showMessageDialog(null, "Error importing roster: " + ex.getMessage());
+            loadStudentData(); // Batches committed before the failure are kept
+        });
     }
 
-    String query = "INSERT INTO Enrollments (student_id, course_id) VALUES (?, ?)";
-    try (Connection connection = DatabaseConfig.getConnection();
-         PreparedStatement stmt = connection.prepareStatement(query)) {
-
-        stmt.setInt(1, studentId);
-        stmt.setInt(2, courseId);
-        stmt.executeUpdate();
-        return true; // Enrollment successful
-    }
-}
-
-
-
     private ArrayList<String[]> fetchAllCourses() throws SQLException {
         ArrayList<String[]> courses = new ArrayList<>();
-        String query = "SELECT course_id, name FROM Courses";
-
-        try (Connection connection = DatabaseConfig.getConnection();
-             PreparedStatement stmt = connection.prepareStatement(query);
+        try (Connection connection = DatabaseConfig.getReadConnection();
+             PreparedStatement stmt = connection.prepareStatement(Query.ALL_COURSES.sql());
              ResultSet rs = stmt.executeQuery()) {
 
             while (rs.next()) {
@@ -306,10 +450,9 @@ private double getGradePoint(double finalGrade) {
 
         return courses;
     }
-    private boolean emailExists(String email) throws SQLException {
-    String query = "SELECT COUNT(*) FROM Students WHERE email = ?";
-    try (Connection connection = DatabaseConfig.getConnection();
-         PreparedStatement stmt = connection.prepareStatement(query)) {
+    // Checked on the connection that makes the change, so a lagging replica cannot hide a taken email
+    private boolean emailExists(Connection connection, String email) throws SQLException {
+    try (PreparedStatement stmt = connection.prepareStatement(Query.STUDENT_EMAIL_EXISTS.sql())) {
 
         stmt.setString(1, email);
         try (ResultSet rs = stmt.executeQuery()) {
@@ -348,29 +491,31 @@ private double getGradePoint(double finalGrade) {
             return;
         }
 
-        try {
-            // Check if the new email already exists for another student
-            if (!newEmail.equals(currentEmail) && emailExists(newEmail)) {
-                JOptionPane.showMessageDialog(null, "The email \"" + newEmail + "\" is already in use.", "Error", JOptionPane.ERROR_MESSAGE);
-                return;
-            }
-
-            // Update the student's details in the database
-            String query = "UPDATE Students SET name = ?, email = ? WHERE email = ?";
-            try (Connection connection = DatabaseConfig.getConnection();
-                 PreparedStatement stmt = connection.prepareStatement(query)) {
+        BackgroundTasks.submit(task -> {
+            try (Connection connection = DatabaseConfig.getWriteConnection()) {
+                // Check if the new email already exists for another student
+                if (!newEmail.equals(currentEmail) && emailExists(connection, newEmail)) {
+                    return false;
+                }
 
-                stmt.setString(1, newName);
-                stmt.setString(2, newEmail);
-                stmt.setString(3, currentEmail);
-                stmt.executeUpdate();
+                // Update the student's details in the database
+                try (PreparedStatement stmt = connection.prepareStatement(Query.UPDATE_STUDENT_BY_EMAIL.sql())) {
 
-                JOptionPane.showMessageDialog(null, "Student updated successfully.");
-                loadStudentData();
+                    stmt.setString(1, newName);
+                    stmt.setString(2, newEmail);
+                    stmt.setString(3, currentEmail);
+                    stmt.executeUpdate();
+                }
             }
-        } catch (SQLException ex) {
-            JOptionPane.showMessageDialog(null, "Error editing student: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-        }
+            return true;
+        }, updated -> {
+            if (!updated) {
+                JOptionPane.showMessageDialog(null, "The email \"" + newEmail + "\" is already in use.", "Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            JOptionPane.showMessageDialog(null, "Student updated successfully.");
+            loadStudentData();
+        }, ex -> JOptionPane.showMessageDialog(null, "Error editing student: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE));
     }
 }
 
@@ -408,40 +553,70 @@ private double getGradePoint(double finalGrade) {
             return;
         }
 
-        try (Connection connection = DatabaseConfig.getConnection()) {
-            // Fetch the student ID
-            String studentQuery = "SELECT student_id FROM Students WHERE name = ?";
-            int studentId = -1;
+        BackgroundTasks.submit(task -> {
+            try (Connection connection = DatabaseConfig.getWriteConnection()) {
+                connection.setAutoCommit(false);
+                // Fetch the student ID
+                int studentId;
+
+                try (PreparedStatement studentStmt = connection.prepareStatement(Query.STUDENT_ID_BY_NAME.sql())) {
+                    studentStmt.setString(1, studentName);
+                    try (ResultSet rs = studentStmt.executeQuery()) {
+                        if (!rs.next()) {
+                            return "Student not found.";
+                        }
+                        studentId = rs.getInt("student_id");
+                    }
+                }
 
-            try (PreparedStatement studentStmt = connection.prepareStatement(studentQuery)) {
-                studentStmt.setString(1, studentName);
-                ResultSet rs = studentStmt.executeQuery();
-                if (rs.next()) {
-                    studentId = rs.getInt("student_id");
-                } else {
-                    JOptionPane.showMessageDialog(null, "Student not found.");
-                    return;
+                // The student's grade leaves the course statistics with the enrollment
+                int courseId;
+                try (PreparedStatement courseStmt = connection.prepareStatement(Query.GRADE_IN_COURSE.sql())) {
+                    courseStmt.setInt(1, studentId);
+                    courseStmt.setString(2, selectedCourse);
+                    try (ResultSet rs = courseStmt.executeQuery()) {
+                        if (!rs.next()) {
+                            return "Failed to remove enrollment. Please ensure the course exists.";
+                        }
+                        courseId = rs.getInt("course_id");
+                    }
+                }
+                // Locked until the delete commits, so a concurrent grade edit cannot change what is taken out
+                CourseStatsStore.Scores grade;
+                try (PreparedStatement gradeStmt = connection.prepareStatement(Query.GRADE_ROW_FOR_UPDATE.sql())) {
+                    gradeStmt.setInt(1, studentId);
+                    gradeStmt.setInt(2, courseId);
+                    try (ResultSet rs = gradeStmt.executeQuery()) {
+                        grade = rs.next() ? CourseStatsStore.Scores.read(rs) : null;
+                    }
                 }
-            }
 
-            // Delete the enrollment
-            String deleteQuery = "DELETE FROM Enrollments " +
-                                 "WHERE student_id = ? AND course_id = (SELECT course_id FROM Courses WHERE name = ?)";
-            try (PreparedStatement deleteStmt = connection.prepareStatement(deleteQuery)) {
-                deleteStmt.setInt(1, studentId);
-                deleteStmt.setString(2, selectedCourse);
-
-                int rowsAffected = deleteStmt.executeUpdate();
-                if (rowsAffected > 0) {
-                    JOptionPane.showMessageDialog(null, "Enrollment removed successfully.");
-                    loadStudentData(); // Refresh the table to reflect changes
-                } else {
-                    JOptionPane.showMessageDialog(null, "Failed to remove enrollment. Please ensure the course exists.");
+                // Delete the enrollment
+                GradeCaches.gradeWriteStarted(courseId);
+                try (PreparedStatement deleteStmt = connection.prepareStatement(Query.DELETE_ENROLLMENT_BY_COURSE_NAME.sql())) {
+                    deleteStmt.setInt(1, studentId);
+                    deleteStmt.setString(2, selectedCourse);
+
+                    if (deleteStmt.executeUpdate() == 0) {
+                        return "Failed to remove enrollment. Please ensure the course exists.";
+                    }
+                    connection.commit();
+                    CourseStatsStore.enrollmentRemoved(courseId, grade);
+                    StudentGpaCache.enrollmentRemoved(studentId, courseId);
+                    ClassRankIndex.enrollmentRemoved(courseId, studentId);
+                    return null;
+                } finally {
+                    GradeCaches.gradeWriteFinished(courseId);
                 }
             }
-        } catch (SQLException ex) {
-            JOptionPane.showMessageDialog(null, "Error removing enrollment: " + ex.getMessage());
-        }
+        }, failure -> {
+            if (failure != null) {
+                JOptionPane.showMessageDialog(null, failure);
+                return;
+            }
+            JOptionPane.showMessageDialog(null, "Enrollment removed successfully.");
+            loadStudentData(); // Refresh the table to reflect changes
+        }, ex -> JOptionPane.showMessageDialog(null, "Error removing enrollment: " + ex.getMessage()));
     }
 }
 
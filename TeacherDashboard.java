@@ -5,12 +5,15 @@ import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 class TeacherDashboard extends JFrame {
     private DefaultTableModel tableModel;
     private JTable courseTable; // Table to display courses and weights
     private ArrayList<Course> courses; // List of courses assigned to the teacher
     private User currentUser; // Logged-in teacher
+    private BackgroundTasks.Loader statsLoader; // Fills in the statistics columns
 
     public TeacherDashboard(User currentUser) {
         this.currentUser = currentUser;
@@ -34,7 +37,6 @@ class TeacherDashboard extends JFrame {
 
         // Load courses assigned to the teacher and populate the table
         loadTeacherCourses();
-        updateCourseTable();
     }
 
     /**
@@ -47,13 +49,15 @@ class TeacherDashboard extends JFrame {
         leftPanel.setPreferredSize(new Dimension(600, 600));
 
         // Table: Display courses assigned to the teacher
-        tableModel = new DefaultTableModel(new String[]{"Course Name", "Assignment Weight", "Quiz Weight", "Exam Weight"}, 0) {
+        tableModel = new DefaultTableModel(new String[]{"Course Name", "Assignment Weight", "Quiz Weight", "Exam Weight",
+                "Enrolled", "Class Average", "Passed / Failed"}, 0) {
             @Override
             public boolean isCellEditable(int row, int column) {
                 return false; // Make cells non-editable
             }
         };
         courseTable = new JTable(tableModel);
+        statsLoader = new BackgroundTasks.Loader(courseTable, null);
         JScrollPane scrollPane = new JScrollPane(courseTable);
         leftPanel.add(scrollPane, BorderLayout.CENTER);
 
@@ -62,6 +66,12 @@ class TeacherDashboard extends JFrame {
         JButton buttonEditWeights = new JButton("Edit Weights");
         buttonEditWeights.addActionListener(e -> openEditWeightsDialog());
         buttonPanel.add(buttonEditWeights);
+        JButton buttonDistribution = new JButton("Grade Distribution");
+        buttonDistribution.addActionListener(e -> showGradeDistribution());
+        buttonPanel.add(buttonDistribution);
+        JButton buttonCurve = new JButton("Curve Grades");
+        buttonCurve.addActionListener(e -> openCurveDialog());
+        buttonPanel.add(buttonCurve);
         leftPanel.add(buttonPanel, BorderLayout.SOUTH);
 
         return leftPanel;
@@ -97,33 +107,35 @@ class TeacherDashboard extends JFrame {
     }
 
     /**
-     * Loads courses assigned to the teacher from the database.
+     * Loads courses assigned to the teacher from the database, then fills the table.
      */
     private void loadTeacherCourses() {
         courses = new ArrayList<>();
-        String query = "SELECT c.course_id, c.name, c.assignment_weight, c.quiz_weight, c.exam_weight " +
-                       "FROM Courses c " +
-                       "JOIN Assignments a ON c.course_id = a.course_id " +
-                       "WHERE a.teacher_id = ?";
-
-        try (Connection connection = DatabaseConfig.getConnection();
-             PreparedStatement stmt = connection.prepareStatement(query)) {
-
-            stmt.setInt(1, currentUser.getId()); // Get teacher ID
-            ResultSet rs = stmt.executeQuery();
-
-            while (rs.next()) {
-                courses.add(new Course(
-                    rs.getInt("course_id"),
-                    rs.getString("name"),
-                    rs.getInt("assignment_weight"),
-                    rs.getInt("quiz_weight"),
-                    rs.getInt("exam_weight")
-                ));
+        BackgroundTasks.submit(task -> {
+            ArrayList<Course> loaded = new ArrayList<>();
+            try (Connection connection = DatabaseConfig.getReadConnection();
+                 PreparedStatement stmt = connection.prepareStatement(Query.TEACHER_COURSES.sql())) {
+
+                stmt.setInt(1, currentUser.getId()); // Get teacher ID
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        Course course = new Course(
+                            rs.getInt("course_id"),
+                            rs.getString("name"),
+                            rs.getInt("assignment_weight"),
+                            rs.getInt("quiz_weight"),
+                            rs.getInt("exam_weight")
+                        );
+                        course.setGradingPolicy(rs.getString("grading_policy"));
+                        loaded.add(course);
+                    }
+                }
             }
-        } catch (SQLException ex) {
-            JOptionPane.showMessageDialog(this, "Error loading courses: " + ex.getMessage());
-        }
+            return loaded;
+        }, loaded -> {
+            courses = loaded;
+            updateCourseTable();
+        }, ex -> JOptionPane.showMessageDialog(this, "Error loading courses: " + ex.getMessage()));
     }
 
     /**
@@ -136,10 +148,203 @@ class TeacherDashboard extends JFrame {
                 course.getName(),
                 course.getAssignmentWeight() + "%",
                 course.getQuizWeight() + "%",
-                course.getExamWeight() + "%"
+                course.getExamWeight() + "%",
+                "", "", ""
             });
         }
+        loadCourseStats();
+    }
+
+    /**
+     * Fills in the statistics columns from the course statistics store.
+     */
+    private void loadCourseStats() {
+        List<Course> shown = new ArrayList<>(courses);
+        statsLoader.load("Loading statistics...", task -> {
+            List<CourseStatsStore.CourseStats> stats = new ArrayList<>();
+            for (Course course : shown) {
+                task.checkCancelled();
+                stats.add(CourseStatsStore.get(course.getCourseId()));
+            }
+            return stats;
+        }, stats -> {
+            for (int row = 0; row < stats.size() && row < tableModel.getRowCount(); row++) {
+                CourseStatsStore.CourseStats courseStats = stats.get(row);
+                if (courseStats == null) {
+                    continue;
+                }
+                tableModel.setValueAt(courseStats.getEnrolled(), row, 4);
+                tableModel.setValueAt(courseStats.getFinalGrade().getCount() > 0
+                        ? GradingPolicy.formatPercent((int) Math.round(courseStats.getFinalGrade().getMean())) : "-", row, 5);
+                tableModel.setValueAt(courseStats.getPassed() + " / " + courseStats.getFailed(), row, 6);
+            }
+        }, ex -> JOptionPane.showMessageDialog(this, "Error loading course statistics: " + ex.getMessage()));
+    }
+    /**
+     * Shows percentiles per component for the selected course, or for all of the
+     * teacher's courses combined when none is selected.
+     */
+    private void showGradeDistribution() {
+        int selectedRow = courseTable.getSelectedRow();
+        List<Course> chosen = selectedRow == -1 ? new ArrayList<>(courses) : List.of(courses.get(selectedRow));
+        if (chosen.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "No courses assigned.");
+            return;
+        }
+        String title = selectedRow == -1 ? "All my courses" : chosen.get(0).getName();
+
+        BackgroundTasks.submit(task -> {
+            List<CourseStatsStore.CourseStats> stats = new ArrayList<>();
+            for (Course course : chosen) {
+                task.checkCancelled();
+                CourseStatsStore.CourseStats courseStats = CourseStatsStore.get(course.getCourseId());
+                if (courseStats != null) {
+                    stats.add(courseStats);
+                }
+            }
+            return stats;
+        }, stats -> showDistributionDialog(title, stats),
+           ex -> JOptionPane.showMessageDialog(this, "Error loading grade distribution: " + ex.getMessage()));
+    }
+
+    private void showDistributionDialog(String title, List<CourseStatsStore.CourseStats> stats) {
+        if (stats.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "No grade data available.");
+            return;
+        }
+        List<CourseStatsStore.Distribution> assignments = new ArrayList<>();
+        List<CourseStatsStore.Distribution> quizzes = new ArrayList<>();
+        List<CourseStatsStore.Distribution> exams = new ArrayList<>();
+        List<CourseStatsStore.Distribution> finals = new ArrayList<>();
+        for (CourseStatsStore.CourseStats courseStats : stats) {
+            assignments.add(courseStats.getAssignment());
+            quizzes.add(courseStats.getQuiz());
+            exams.add(courseStats.getExam());
+            finals.add(courseStats.getFinalGrade());
+        }
+
+        DefaultTableModel model = new DefaultTableModel(new String[]{
+            "Component", "Graded", "Min", "P10", "P25", "Median", "P75", "P90", "Max"}, 0);
+        addDistributionRow(model, "Assignment", CourseStatsStore.Distribution.merge(assignments));
+        addDistributionRow(model, "Quiz", CourseStatsStore.Distribution.merge(quizzes));
+        addDistributionRow(model, "Exam", CourseStatsStore.Distribution.merge(exams));
+        CourseStatsStore.Distribution finalGrades = CourseStatsStore.Distribution.merge(finals);
+        addDistributionRow(model, "Final", finalGrades);
+
+        JTable table = new JTable(model);
+        table.setEnabled(false);
+        JScrollPane scrollPane = new JScrollPane(table);
+        scrollPane.setPreferredSize(new Dimension(620, 110));
+
+        StringBuilder deciles = new StringBuilder("Final grade deciles:");
+        if (finalGrades.getCount() == 0) {
+            deciles.append(" no complete grades");
+        } else {
+            int[] values = finalGrades.getSketch().deciles();
+            for (int i = 0; i < values.length; i++) {
+                deciles.append(i == 0 ? " " : ", ").append(finalGrades.format(values[i]));
+            }
+        }
+
+        JPanel panel = new JPanel(new BorderLayout(0, 8));
+        panel.add(scrollPane, BorderLayout.CENTER);
+        panel.add(new JLabel(deciles.toString()), BorderLayout.SOUTH);
+        JOptionPane.showMessageDialog(this, panel, "Grade Distribution - " + title, JOptionPane.PLAIN_MESSAGE);
+    }
+
+    private void addDistributionRow(DefaultTableModel model, String component, CourseStatsStore.Distribution distribution) {
+        if (distribution.getCount() == 0) {
+            model.addRow(new Object[]{component, 0, "-", "-", "-", "-", "-", "-", "-"});
+            return;
+        }
+        model.addRow(new Object[]{
+            component,
+            distribution.getCount(),
+            distribution.format(distribution.getMin()),
+            distribution.format(distribution.getPercentile(0.10)),
+            distribution.format(distribution.getPercentile(0.25)),
+            distribution.format(distribution.getMedian()),
+            distribution.format(distribution.getPercentile(0.75)),
+            distribution.format(distribution.getPercentile(0.90)),
+            distribution.format(distribution.getMax())
+        });
     }
+
+    /**
+     * Asks for a curve for the selected course, previews its letter distribution
+     * and applies it once confirmed.
+     */
+    private void openCurveDialog() {
+        int selectedRow = courseTable.getSelectedRow();
+        if (selectedRow == -1) {
+            JOptionPane.showMessageDialog(this, "Please select a course to curve.", "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        Course selectedCourse = courses.get(selectedRow);
+
+        JComboBox<GradeCurve.Method> methodSelector = new JComboBox<>(GradeCurve.Method.values());
+        JTextField targetMeanField = new JTextField("75");
+        JTextField targetDeviationField = new JTextField("10");
+        Object[] fields = {
+            "Curve:", methodSelector,
+            "Target Mean (%):", targetMeanField,
+            "Target Spread (std. dev., points):", targetDeviationField
+        };
+        if (JOptionPane.showConfirmDialog(this, fields, "Curve Grades - " + selectedCourse.getName(),
+                JOptionPane.OK_CANCEL_OPTION) != JOptionPane.OK_OPTION) {
+            return;
+        }
+
+        GradeCurve.Method method = (GradeCurve.Method) methodSelector.getSelectedItem();
+        double targetMean;
+        double targetDeviation;
+        try {
+            targetMean = Double.parseDouble(targetMeanField.getText().trim());
+            targetDeviation = Double.parseDouble(targetDeviationField.getText().trim());
+        } catch (NumberFormatException ex) {
+            JOptionPane.showMessageDialog(this, "Please enter valid numbers for the target mean and spread.", "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        if (targetMean <= 0 || targetMean > 100 || targetDeviation <= 0 || targetDeviation > 50) {
+            JOptionPane.showMessageDialog(this, "The target mean must be between 0 and 100 and the spread between 0 and 50.",
+                    "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        BackgroundTasks.submit(task -> GradeCurve.preview(selectedCourse.getCourseId(), method, targetMean, targetDeviation),
+                this::confirmCurve,
+                ex -> JOptionPane.showMessageDialog(this, "Error previewing the curve: " + ex.getMessage()));
+    }
+
+    private void confirmCurve(GradeCurve.Preview preview) {
+        DefaultTableModel model = new DefaultTableModel(new String[]{"Letter", "Before", "After"}, 0);
+        Map<String, Integer> after = preview.getLettersAfter();
+        preview.getLettersBefore().forEach((letter, count) -> model.addRow(new Object[]{letter, count, after.get(letter)}));
+        JTable table = new JTable(model);
+        table.setEnabled(false);
+        JScrollPane scrollPane = new JScrollPane(table);
+        scrollPane.setPreferredSize(new Dimension(300, 200));
+
+        JPanel panel = new JPanel(new BorderLayout(0, 8));
+        panel.add(new JLabel(String.format("<html>%s: new score = %.3f \u00d7 score %+.2f<br>"
+                        + "Mean final grade %.2f%% \u2192 %.2f%% over %d students (previewed in %d ms)</html>",
+                preview.getMethod(), preview.getSlope(), preview.getShift(), preview.getMeanBefore(),
+                preview.getMeanAfter(), preview.getStudents(), preview.getElapsedMs())), BorderLayout.NORTH);
+        panel.add(scrollPane, BorderLayout.CENTER);
+        panel.add(new JLabel("Apply this curve? Students are notified."), BorderLayout.SOUTH);
+
+        if (JOptionPane.showConfirmDialog(this, panel, "Curve Preview - " + preview.getCourse().getName(),
+                JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE) != JOptionPane.OK_OPTION) {
+            return;
+        }
+        BackgroundTasks.submitWithProgress(this, "Applying curve", task -> GradeCurve.apply(preview, currentUser.getId()),
+                changed -> {
+                    loadCourseStats();
+                    JOptionPane.showMessageDialog(this, "Curve applied to " + changed + " grade(s).");
+                },
+                ex -> JOptionPane.showMessageDialog(this, "Error applying the curve: " + ex.getMessage()));
+    }
+
     private void validateWeights(int assignmentWeight, int quizWeight, int examWeight) throws IllegalArgumentException {
     if (assignmentWeight < 0 || assignmentWeight > 100 ||
         quizWeight < 0 || quizWeight > 100 ||
@@ -183,15 +388,20 @@ class TeacherDashboard extends JFrame {
             validateWeights(assignmentWeight, quizWeight, examWeight);
 
             // Update weights in the database
-            updateCourseWeights(selectedCourse.getCourseId(), assignmentWeight, quizWeight, examWeight);
-
-            // Update weights locally and refresh the table
-            selectedCourse.setAssignmentWeight(assignmentWeight);
-            selectedCourse.setQuizWeight(quizWeight);
-            selectedCourse.setExamWeight(examWeight);
-            updateCourseTable();
-
-            JOptionPane.showMessageDialog(this, "Weights updated successfully.");
+            BackgroundTasks.submit(task -> {
+                updateCourseWeights(selectedCourse.getCourseId(), assignmentWeight, quizWeight, examWeight);
+                return null;
+            }, done -> {
+                GradeRecomputeJob.runWithProgress(this, selectedCourse.getCourseId());
+
+                // Update weights locally and refresh the table
+                selectedCourse.setAssignmentWeight(assignmentWeight);
+                selectedCourse.setQuizWeight(quizWeight);
+                selectedCourse.setExamWeight(examWeight);
+                updateCourseTable();
+
+                JOptionPane.showMessageDialog(this, "Weights updated successfully.");
+            }, ex -> JOptionPane.showMessageDialog(this, "Error updating weights: " + ex.getMessage()));
         } catch (NumberFormatException ex) {
             JOptionPane.showMessageDialog(this, "Please enter valid numbers for the weights.", "Error", JOptionPane.ERROR_MESSAGE);
         } catch (IllegalArgumentException ex) {
@@ -203,19 +413,21 @@ class TeacherDashboard extends JFrame {
     /**
      * Updates course weights in the database.
      */
-    private void updateCourseWeights(int courseId, int assignmentWeight, int quizWeight, int examWeight) {
-        String query = "UPDATE Courses SET assignment_weight = ?, quiz_weight = ?, exam_weight = ? WHERE course_id = ?";
-
-        try (Connection connection = DatabaseConfig.getConnection();
-             PreparedStatement stmt = connection.prepareStatement(query)) {
-
-            stmt.setInt(1, assignmentWeight);
-            stmt.setInt(2, quizWeight);
-            stmt.setInt(3, examWeight);
-            stmt.setInt(4, courseId);
-            stmt.executeUpdate();
-        } catch (SQLException ex) {
-            JOptionPane.showMessageDialog(this, "Error updating weights: " + ex.getMessage());
+    private void updateCourseWeights(int courseId, int assignmentWeight, int quizWeight, int examWeight) throws SQLException {
+        try (Connection connection = DatabaseConfig.getWriteConnection()) {
+            // The new weights and the job that re-derives the final grades commit together
+            connection.setAutoCommit(false);
+            try (PreparedStatement stmt = connection.prepareStatement(Query.UPDATE_COURSE_WEIGHTS.sql())) {
+                stmt.setInt(1, assignmentWeight);
+                stmt.setInt(2, quizWeight);
+                stmt.setInt(3, examWeight);
+                stmt.setInt(4, courseId);
+                stmt.executeUpdate();
+            }
+            GradeRecomputeJob.schedule(connection, courseId);
+            connection.commit();
+            // Every final grade depends on the weights
+            GradeCaches.courseChanged(courseId);
         }
     }
 
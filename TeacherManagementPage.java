@@ -8,11 +8,13 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.List;
 
 public class TeacherManagementPage {
     private User currentUser;
     private DefaultTableModel tableModel;
     private JPanel mainPanel;
+    private BackgroundTasks.Loader tableLoader;
 
     public TeacherManagementPage(User user) {
         this.currentUser = user;
@@ -26,6 +28,7 @@ public class TeacherManagementPage {
         JLabel titleLabel = new JLabel("Manage Teachers", SwingConstants.CENTER);
         titleLabel.setFont(new Font("Arial", Font.BOLD, 18));
         mainPanel.add(titleLabel, BorderLayout.NORTH);
+        tableLoader = new BackgroundTasks.Loader(mainPanel, titleLabel);
 
         // Teachers Table
         tableModel = new DefaultTableModel(new String[]{"Teacher Name", "Email", "Assigned Courses"}, 0);
@@ -54,32 +57,36 @@ public class TeacherManagementPage {
 
     private void loadTeacherData() {
         tableModel.setRowCount(0);
-        String query = "SELECT t.name, t.email, " +
-                       "(SELECT GROUP_CONCAT(c.name SEPARATOR ', ') FROM Assignments a " +
-                       "JOIN Courses c ON a.course_id = c.course_id WHERE a.teacher_id = t.user_id) AS courses " +
-                       "FROM Users t WHERE t.role = 'Teacher'";
-
-        try (Connection connection = DatabaseConfig.getConnection();
-             PreparedStatement stmt = connection.prepareStatement(query);
-             ResultSet rs = stmt.executeQuery()) {
-
-            while (rs.next()) {
-                tableModel.addRow(new Object[]{
-                        rs.getString("name"),
-                        rs.getString("email"),
-                        rs.getString("courses") != null ? rs.getString("courses") : "Not Assigned"
-                });
+        tableLoader.load("Loading teachers...", task -> {
+            List<Object[]> rows = new ArrayList<>();
+            try (Connection connection = DatabaseConfig.getReadConnection();
+                 PreparedStatement stmt = connection.prepareStatement(Query.TEACHER_LIST_WITH_COURSES.sql());
+                 ResultSet rs = stmt.executeQuery()) {
+
+                while (rs.next()) {
+                    task.checkCancelled();
+                    rows.add(new Object[]{
+                            rs.getString("name"),
+                            rs.getString("email"),
+                            rs.getString("courses") != null ? rs.getString("courses") : "Not Assigned"
+                    });
+                }
             }
-        } catch (SQLException ex) {
-            JOptionPane.showMessageDialog(null, "Error loading teachers: " + ex.getMessage());
-        }
+            return rows;
+        }, rows -> {
+            for (Object[] row : rows) {
+                tableModel.addRow(row);
+            }
+        }, ex -> JOptionPane.showMessageDialog(null, "Error loading teachers: " + ex.getMessage()));
     }
 
     private void assignCoursesToTeacher() {
-    try {
-        ArrayList<String[]> teachers = fetchAllTeachers();
-        ArrayList<String[]> courses = fetchAllCourses();
+        BackgroundTasks.submit(task -> List.of(fetchAllTeachers(), fetchAllCourses()),
+                lists -> chooseAssignments(lists.get(0), lists.get(1)),
+                ex -> JOptionPane.showMessageDialog(null, "Error assigning courses: " + ex.getMessage()));
+    }
 
+    private void chooseAssignments(ArrayList<String[]> teachers, ArrayList<String[]> courses) {
         if (teachers.isEmpty()) {
             JOptionPane.showMessageDialog(null, "No teachers available.");
             return;
@@ -101,79 +108,68 @@ public class TeacherManagementPage {
 
         if (JOptionPane.showConfirmDialog(null, panel, "Assign Courses to Teacher", JOptionPane.OK_CANCEL_OPTION) == JOptionPane.OK_OPTION) {
             int teacherId = Integer.parseInt(teachers.get(teacherComboBox.getSelectedIndex())[0]);
-            boolean anyAssigned = false; // Track if any course was successfully assigned
-
+            List<String[]> selected = new ArrayList<>();
             for (int index : courseList.getSelectedIndices()) {
-                int courseId = Integer.parseInt(courses.get(index)[0]);
-                if (assignTeacherToCourse(teacherId, courseId)) {
-                    anyAssigned = true; // Mark as successfully assigned
-                }
+                selected.add(courses.get(index));
             }
 
-            if (anyAssigned) {
-                JOptionPane.showMessageDialog(null, "Courses assigned to teacher successfully.");
-            }
-
-            loadTeacherData(); // Refresh the table
-        }
-    } catch (SQLException ex) {
-        JOptionPane.showMessageDialog(null, "Error assigning courses: " + ex.getMessage());
-    }
-}
-
-    
-    private boolean isCourseAlreadyAssigned(int courseId) throws SQLException {
-    String query = "SELECT COUNT(*) FROM Assignments WHERE course_id = ?";
-    try (Connection connection = DatabaseConfig.getConnection();
-         PreparedStatement stmt = connection.prepareStatement(query)) {
+            BackgroundTasks.submit(task -> {
+                // Names of the courses that already had a teacher
+                List<String> alreadyAssigned = new ArrayList<>();
+                for (String[] course : selected) {
+                    if (!assignTeacherToCourse(teacherId, Integer.parseInt(course[0]))) {
+                        alreadyAssigned.add(course[1]);
+                    }
+                }
+                return alreadyAssigned;
+            }, alreadyAssigned -> {
+                if (!alreadyAssigned.isEmpty()) {
+                    JOptionPane.showMessageDialog(null, "Already assigned to a teacher: " + String.join(", ", alreadyAssigned) + ".");
+                }
+                if (alreadyAssigned.size() < selected.size()) {
+                    JOptionPane.showMessageDialog(null, "Courses assigned to teacher successfully.");
+                }
 
-        stmt.setInt(1, courseId);
-        try (ResultSet rs = stmt.executeQuery()) {
-            if (rs.next()) {
-                return rs.getInt(1) > 0; // Returns true if the course is already assigned
-            }
+                loadTeacherData(); // Refresh the table
+            }, ex -> {
+                JOptionPane.showMessageDialog(null, "Error assigning courses: " + ex.getMessage());
+                loadTeacherData();
+            });
         }
     }
-    return false; // Returns false if the course is not assigned
-}
 
-                  
+    /**
+     * Assigns the course unless it already has a teacher. Runs off the EDT.
+     *
+     * @return false when the course was already assigned
+     */
     private boolean assignTeacherToCourse(int teacherId, int courseId) throws SQLException {
-    String checkQuery = "SELECT COUNT(*) FROM Assignments WHERE course_id = ?";
-    String insertQuery = "INSERT INTO Assignments (teacher_id, course_id) VALUES (?, ?)";
-
-    try (Connection connection = DatabaseConfig.getConnection();
-         PreparedStatement checkStmt = connection.prepareStatement(checkQuery)) {
-
-        // Check if the course is already assigned to a teacher
-        checkStmt.setInt(1, courseId);
-        try (ResultSet rs = checkStmt.executeQuery()) {
-            if (rs.next() && rs.getInt(1) > 0) {
-                JOptionPane.showMessageDialog(null, "This course is already assigned to a teacher.");
-                return false; // Return false to indicate the assignment was not successful
+        try (Connection connection = DatabaseConfig.getWriteConnection();
+             PreparedStatement checkStmt = connection.prepareStatement(Query.COURSE_ASSIGNMENT_EXISTS.sql())) {
+
+            // Check if the course is already assigned to a teacher
+            checkStmt.setInt(1, courseId);
+            try (ResultSet rs = checkStmt.executeQuery()) {
+                if (rs.next() && rs.getInt(1) > 0) {
+                    return false;
+                }
             }
-        }
 
-        // Assign the course to the teacher
-        try (PreparedStatement insertStmt = connection.prepareStatement(insertQuery)) {
-            insertStmt.setInt(1, teacherId);
-            insertStmt.setInt(2, courseId);
-            insertStmt.executeUpdate();
-            return true; // Return true to indicate the assignment was successful
+            // Assign the course to the teacher
+            try (PreparedStatement insertStmt = connection.prepareStatement(Query.INSERT_ASSIGNMENT.sql())) {
+                insertStmt.setInt(1, teacherId);
+                insertStmt.setInt(2, courseId);
+                insertStmt.executeUpdate();
+                CourseStatsStore.invalidate(courseId); // New instructor and section count
+                return true;
+            }
         }
     }
-}
-
-
-
-
 
     private ArrayList<String[]> fetchAllTeachers() throws SQLException {
         ArrayList<String[]> teachers = new ArrayList<>();
-        String query = "SELECT user_id, name FROM Users WHERE role = 'Teacher'";
-
-        try (Connection connection = DatabaseConfig.getConnection();
-             PreparedStatement stmt = connection.prepareStatement(query);
+        try (Connection connection = DatabaseConfig.getReadConnection();
+             PreparedStatement stmt = connection.prepareStatement(Query.ALL_TEACHERS.sql());
              ResultSet rs = stmt.executeQuery()) {
 
             while (rs.next()) {
@@ -186,10 +182,8 @@ public class TeacherManagementPage {
 
     private ArrayList<String[]> fetchAllCourses() throws SQLException {
         ArrayList<String[]> courses = new ArrayList<>();
-        String query = "SELECT course_id, name FROM Courses";
-
-        try (Connection connection = DatabaseConfig.getConnection();
-             PreparedStatement stmt = connection.prepareStatement(query);
+        try (Connection connection = DatabaseConfig.getReadConnection();
+             PreparedStatement stmt = connection.prepareStatement(Query.ALL_COURSES.sql());
              ResultSet rs = stmt.executeQuery()) {
 
             while (rs.next()) {
@@ -200,6 +194,19 @@ public class TeacherManagementPage {
         return courses;
     }
 
+    private List<Integer> fetchTeacherCourseIds(Connection connection, String email) throws SQLException {
+        List<Integer> courseIds = new ArrayList<>();
+        try (PreparedStatement stmt = connection.prepareStatement(Query.TEACHER_COURSE_IDS_BY_EMAIL.sql())) {
+            stmt.setString(1, email);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    courseIds.add(rs.getInt("course_id"));
+                }
+            }
+        }
+        return courseIds;
+    }
+
     private JButton createButton(String text, java.awt.event.ActionListener listener) {
         JButton button = new JButton(text);
         button.setFont(new Font("Arial", Font.BOLD, 14));
@@ -208,10 +215,9 @@ public class TeacherManagementPage {
         button.addActionListener(listener);
         return button;
     }
-    private boolean emailExists(String email) throws SQLException {
-    String query = "SELECT COUNT(*) FROM Users WHERE email = ? AND role = 'Teacher'";
-    try (Connection connection = DatabaseConfig.getConnection();
-         PreparedStatement stmt = connection.prepareStatement(query)) {
+    // Checked on the connection that makes the change, so a lagging replica cannot hide a taken email
+    private boolean emailExists(Connection connection, String email) throws SQLException {
+    try (PreparedStatement stmt = connection.prepareStatement(Query.TEACHER_EMAIL_EXISTS.sql())) {
 
         stmt.setString(1, email);
         try (ResultSet rs = stmt.executeQuery()) {
@@ -250,29 +256,33 @@ public class TeacherManagementPage {
             return;
         }
 
-        try {
-            // Check if the new email already exists for another teacher
-            if (!newEmail.equals(currentEmail) && emailExists(newEmail)) {
-                JOptionPane.showMessageDialog(null, "The email \"" + newEmail + "\" is already in use.", "Error", JOptionPane.ERROR_MESSAGE);
-                return;
-            }
-
-            // Update the teacher's details in the database
-            String query = "UPDATE Users SET name = ?, email = ? WHERE email = ?";
-            try (Connection connection = DatabaseConfig.getConnection();
-                 PreparedStatement stmt = connection.prepareStatement(query)) {
+        BackgroundTasks.submit(task -> {
+            try (Connection connection = DatabaseConfig.getWriteConnection()) {
+                // Check if the new email already exists for another teacher
+                if (!newEmail.equals(currentEmail) && emailExists(connection, newEmail)) {
+                    return false;
+                }
 
-                stmt.setString(1, newName);
-                stmt.setString(2, newEmail);
-                stmt.setString(3, currentEmail);
-                stmt.executeUpdate();
+                // Update the teacher's details in the database
+                List<Integer> courseIds = fetchTeacherCourseIds(connection, currentEmail);
+                try (PreparedStatement stmt = connection.prepareStatement(Query.UPDATE_USER_BY_EMAIL.sql())) {
 
-                JOptionPane.showMessageDialog(null, "Teacher updated successfully.");
-                loadTeacherData();
+                    stmt.setString(1, newName);
+                    stmt.setString(2, newEmail);
+                    stmt.setString(3, currentEmail);
+                    stmt.executeUpdate();
+                }
+                courseIds.forEach(CourseStatsStore::invalidate); // New instructor name
             }
-        } catch (SQLException ex) {
-            JOptionPane.showMessageDialog(null, "Error updating teacher: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-        }
+            return true;
+        }, updated -> {
+            if (!updated) {
+                JOptionPane.showMessageDialog(null, "The email \"" + newEmail + "\" is already in use.", "Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            JOptionPane.showMessageDialog(null, "Teacher updated successfully.");
+            loadTeacherData();
+        }, ex -> JOptionPane.showMessageDialog(null, "Error updating teacher: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE));
     }
 }
 
@@ -288,18 +298,22 @@ public class TeacherManagementPage {
 
         int confirm = JOptionPane.showConfirmDialog(null, "Are you sure you want to delete this teacher?", "Confirm Deletion", JOptionPane.YES_NO_OPTION);
         if (confirm == JOptionPane.YES_OPTION) {
-            String query = "DELETE FROM Users WHERE email = ?";
-            try (Connection connection = DatabaseConfig.getConnection();
-                 PreparedStatement stmt = connection.prepareStatement(query)) {
-
-                stmt.setString(1, email);
-                stmt.executeUpdate();
-
+            BackgroundTasks.submit(task -> {
+                try (Connection connection = DatabaseConfig.getWriteConnection()) {
+                    // Read before the delete cascades to the teacher's Assignments rows
+                    List<Integer> courseIds = fetchTeacherCourseIds(connection, email);
+                    try (PreparedStatement stmt = connection.prepareStatement(Query.DELETE_USER_BY_EMAIL.sql())) {
+
+                        stmt.setString(1, email);
+                        stmt.executeUpdate();
+                    }
+                    courseIds.forEach(CourseStatsStore::invalidate); // Instructor and section count
+                }
+                return null;
+            }, done -> {
                 JOptionPane.showMessageDialog(null, "Teacher deleted successfully.");
                 loadTeacherData();
-            } catch (SQLException ex) {
-                JOptionPane.showMessageDialog(null, "Error deleting teacher: " + ex.getMessage());
-            }
+            }, ex -> JOptionPane.showMessageDialog(null, "Error deleting teacher: " + ex.getMessage()));
         }
     }
 